@@ -45,6 +45,8 @@ import edu.stanford.nlp.process.TokenizerFactory;
 import edu.stanford.nlp.process.WordShapeClassifier;
 import edu.stanford.nlp.stats.*;
 import edu.stanford.nlp.util.*;
+import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 
 import java.io.*;
 import java.text.DecimalFormat;
@@ -229,8 +231,10 @@ import edu.stanford.nlp.util.logging.Redwood;
  * <tr><td>featureFormat</td><td>boolean</td><td>false</td><td>Assumes the input file isn't text strings but already featurized.  One column is treated as the class column (as defined by {@code goldAnswerColumn}, and all other columns are treated as features of the instance.  (If answers are not present, set {@code goldAnswerColumn} to a negative number.)</td></tr>
  * <tr><td>trainFromSVMLight</td><td>boolean</td><td>false</td><td>Assumes the trainFile is in SVMLight format (see <a href="http://svmlight.joachims.org/">SVMLight web page</a> for more information)</td></tr>
  * <tr><td>testFromSVMLight</td><td>boolean</td><td>false</td><td>Assumes the testFile is in SVMLight format</td></tr>
+ * <tr><td>mappedTrainFile</td><td>String</td><td>null</td><td>If non-null, the featurized training data is written to this file in the binary format of {@link MappedDataset}, as it is read, and the classifier is trained from the file rather than from memory, so the training data can be bigger than the heap. Options which need all the data in memory (such as featureMinimumSupport, shuffleTrainingData and crossValidationFolds) can't be used with it.</td></tr>
  * <tr><td>printSVMLightFormatTo</td><td>String</td><td>null</td><td>If non-null, print the featurized training data to an SVMLight format file (usually used with exitAfterTrainingFeaturization). This is just an option to write out data in a particular format. After that, you're on your own using some other piece of software that reads SVMlight format files.</td></tr>
  * <tr><td>crossValidationFolds</td><td>int</td><td>-1</td><td>If positive, the training data is divided in to this many folds and cross-validation is done on the training data (prior to testing on test data, if it is also specified)</td></tr>
+ * <tr><td>threads</td><td>int</td><td>1</td><td>The number of threads to make the datums of the training and test data on (except when printFeatures is used), and to train the cross-validation folds on. The folds being trained at once (one per thread) each need memory for a copy of the data; a fold is tested and let go as soon as it is trained, so with more threads the folds are reported in the order they finish.</td></tr>
  * <tr><td>printCrossValidationDecisions</td><td>boolean</td><td>false</td><td>Whether to print the individual classification decisions in cross-validation training, if crossValidationFolds is positive.</td></tr>
  * <tr><td>shuffleTrainingData</td><td>boolean</td><td>false</td><td>If true, the training data is shuffled prior to training and cross-validation. This is vital in cross-validation if the training data is otherwise sorted by class.</td></tr>
  * <tr><td>shuffleSeed</td><td>long</td><td>0</td><td>If non-zero, and the training data is being shuffled, this is used as the seed for the Random. Otherwise, System.nanoTime() is used.</td></tr>
@@ -251,7 +255,7 @@ public class ColumnDataClassifier  {
   private final Flags[] flags;
   private final Flags globalFlags; // simply points to flags[0]
   private Classifier<String,String> classifier; // really only assigned once too (either in train or load in setProperties)
-  private TokenizerFactory<Word> ptbFactory;
+  private volatile TokenizerFactory<Word> ptbFactory;
 
   private enum InputFormat { PLAIN, COMMENTS, HEADER }
 
@@ -352,9 +356,11 @@ public class ColumnDataClassifier  {
     if (globalFlags.printFeatures != null) {
       newFeaturePrinter(globalFlags.printFeatures, "train", Flags.encoding);
     }
-    Pair<GeneralDataset<String,String>, List<String[]>> dataInfo = readDataset(fileName, true);
+    Pair<GeneralDataset<String,String>, List<String[]>> dataInfo = readDataset(fileName, true, Flags.mappedTrainFile);
     GeneralDataset<String,String> train = dataInfo.first();
-    if (globalFlags.featureMinimumSupport > 1) {
+    if (globalFlags.featureMinimumSupport > 1 && train instanceof MappedDataset) {
+      logger.info("WARNING: featureMinimumSupport isn't applied to a mappedTrainFile");
+    } else if (globalFlags.featureMinimumSupport > 1) {
       logger.info("Removing Features with counts < " + globalFlags.featureMinimumSupport);
       train.applyFeatureCountThreshold(globalFlags.featureMinimumSupport);
     }
@@ -405,8 +411,15 @@ public class ColumnDataClassifier  {
    *  @param inTestPhase Whether to return the read String[] for each data item
    *  @return A Pair of a GeneralDataSet of Datums and a List of datums in String form.
    */
-  @SuppressWarnings("NonThreadSafeLazyInitialization")
   private Pair<GeneralDataset<String,String>, List<String[]>> readDataset(String filename, boolean inTestPhase) {
+    return readDataset(filename, inTestPhase, null);
+  }
+
+  /** As above, but if mappedFile isn't null, the datums are written to it and read back as a
+   *  {@link MappedDataset} (and the String forms of the lines aren't kept).
+   */
+  @SuppressWarnings("NonThreadSafeLazyInitialization")
+  private Pair<GeneralDataset<String,String>, List<String[]>> readDataset(String filename, boolean inTestPhase, String mappedFile) {
     Timing tim = new Timing();
     GeneralDataset<String,String> dataset;
     List<String[]> lineInfos = null;
@@ -425,7 +438,10 @@ public class ColumnDataClassifier  {
       }
     } else {
       try {
-        if (inTestPhase) {
+        MappedDataset.Writer<String,String> writer = null;
+        if (mappedFile != null) {
+          writer = new MappedDataset.Writer<>(mappedFile, globalFlags.usesRealValues);
+        } else if (inTestPhase) {
           lineInfos = new ArrayList<>();
         }
         if (globalFlags.usesRealValues) {
@@ -433,6 +449,13 @@ public class ColumnDataClassifier  {
         } else {
           dataset = new Dataset<>();
         }
+        // the datums are made on several threads, a chunk of lines at a time, and added in order
+        MulticoreWrapper<List<String[]>, List<Datum<String,String>>> featurizer = null;
+        List<String[]> chunk = null;
+        if (globalFlags.threads > 1 && globalFlags.printFeatures == null) {
+          featurizer = new MulticoreWrapper<>(globalFlags.threads, new DatumMaker());
+          chunk = new ArrayList<>(FEATURIZE_CHUNK_SIZE);
+        }
         int lineNo = 0;
         int minColumns = Integer.MAX_VALUE;
         int maxColumns = 0;
@@ -460,14 +483,39 @@ public class ColumnDataClassifier  {
           if (strings.length > maxColumns) {
             maxColumns = strings.length;
           }
-          if (inTestPhase) {
+          if (lineInfos != null) {
             lineInfos.add(strings);
           }
           if (strings.length < flags.length) {
             throw new RuntimeException("Error: Line has too few tab-separated columns (" + maxColumns +
                     ") for " + flags.length + " columns required by specified properties: " + line);
           }
-          dataset.add(makeDatumFromStrings(strings));
+          if (featurizer != null) {
+            chunk.add(strings);
+            if (chunk.size() == FEATURIZE_CHUNK_SIZE) {
+              featurizer.put(chunk);
+              chunk = new ArrayList<>(FEATURIZE_CHUNK_SIZE);
+              while (featurizer.peek()) {
+                addAll(featurizer.poll(), dataset, writer);
+              }
+            }
+          } else if (writer != null) {
+            writer.add(makeDatumFromStrings(strings));
+          } else {
+            dataset.add(makeDatumFromStrings(strings));
+          }
+        }
+        if (featurizer != null) {
+          if ( ! chunk.isEmpty()) {
+            featurizer.put(chunk);
+          }
+          featurizer.join();
+          while (featurizer.peek()) {
+            addAll(featurizer.poll(), dataset, writer);
+          }
+        }
+        if (writer != null) {
+          dataset = writer.finish();
         }
         if (lineNo > 0 && minColumns != maxColumns) {
           logger.info("WARNING: Number of tab-separated columns in " +
@@ -481,6 +529,36 @@ public class ColumnDataClassifier  {
     return new Pair<>(dataset, lineInfos);
   }
 
+  /** The number of lines featurized at a time by each thread, when there are several. */
+  private static final int FEATURIZE_CHUNK_SIZE = 256;
+
+  /** Makes the datums of a chunk of lines.  Shares nothing but the flags, so one instance serves all threads. */
+  private class DatumMaker implements ThreadsafeProcessor<List<String[]>, List<Datum<String,String>>> {
+    @Override
+    public List<Datum<String,String>> process(List<String[]> lines) {
+      List<Datum<String,String>> datums = new ArrayList<>(lines.size());
+      for (String[] strings : lines) {
+        datums.add(makeDatumFromStrings(strings));
+      }
+      return datums;
+    }
+
+    @Override
+    public ThreadsafeProcessor<List<String[]>, List<Datum<String,String>>> newInstance() {
+      return this;
+    }
+  }
+
+  private static void addAll(List<Datum<String,String>> datums, GeneralDataset<String,String> dataset, MappedDataset.Writer<String,String> writer) {
+    for (Datum<String,String> datum : datums) {
+      if (writer != null) {
+        writer.add(datum);
+      } else {
+        dataset.add(datum);
+      }
+    }
+  }
+
   /** Split according to whether we are using tsv file (default) or csv files. */
   private String[] splitLineToFields(String line) {
     if (globalFlags.csvInput) {
@@ -985,7 +1063,9 @@ public class ColumnDataClassifier  {
         if (i == flags.binnedLengths.length || len <= flags.binnedLengths[i]) {
           featureName = "Len-" + ((i == 0) ? 0 : (flags.binnedLengths[i - 1] + 1)) + '-' + ((i == flags.binnedLengths.length) ? "Inf" : Integer.toString(flags.binnedLengths[i]));
           if (flags.binnedLengthsCounter != null) {
-            flags.binnedLengthsCounter.incrementCount(featureName, goldAns);
+            synchronized (flags.binnedLengthsCounter) {
+              flags.binnedLengthsCounter.incrementCount(featureName, goldAns);
+            }
           }
           break;
         }
@@ -1004,7 +1084,9 @@ public class ColumnDataClassifier  {
         if (i == flags.binnedValues.length || val <= flags.binnedValues[i]) {
           featureName = "Val-(" + ((i == 0) ? "-Inf" : Double.toString(flags.binnedValues[i - 1])) + ',' + ((i == flags.binnedValues.length) ? "Inf" : Double.toString(flags.binnedValues[i])) + ']';
           if (flags.binnedValuesCounter != null) {
-            flags.binnedValuesCounter.incrementCount(featureName, goldAns);
+            synchronized (flags.binnedValuesCounter) {
+              flags.binnedValuesCounter.incrementCount(featureName, goldAns);
+            }
           }
           break;
         }
@@ -1198,10 +1280,18 @@ public class ColumnDataClassifier  {
    */
   private String[] ptbTokenize(String str) {
     // todo [cdm 2017]: Someday should generalize this to allow use of other tokenizers
-    if (ptbFactory==null) {
-      ptbFactory = PTBTokenizer.factory();
+    // made on first use, perhaps by one of several featurizing threads
+    TokenizerFactory<Word> factory = ptbFactory;
+    if (factory == null) {
+      synchronized (this) {
+        factory = ptbFactory;
+        if (factory == null) {
+          factory = PTBTokenizer.factory();
+          ptbFactory = factory;
+        }
+      }
     }
-    Tokenizer<Word> tokenizer = ptbFactory.getTokenizer(new StringReader(str));
+    Tokenizer<Word> tokenizer = factory.getTokenizer(new StringReader(str));
     List<Word> words = tokenizer.tokenize();
     String[] res = new String[words.size()];
     for (int i = 0, sz = words.size(); i < sz; i++) {
@@ -1831,6 +1921,8 @@ public class ColumnDataClassifier  {
         Flags.encoding = val;
       } else if (key.equals("printSVMLightFormatTo")) {
         Flags.printSVMLightFormatTo = val;
+      } else if (key.equals("mappedTrainFile")) {
+        Flags.mappedTrainFile = val;
       } else if (key.equals("displayedColumn")) {
         myFlags[col].displayedColumn = Integer.parseInt(val);
       } else if (key.equals("groupingColumn")) {
@@ -1884,6 +1976,8 @@ public class ColumnDataClassifier  {
         // logger.info("Biased Hyperplane is " + biasedHyperplane);
       } else if (key.equals("crossValidationFolds")) {
         myFlags[col].crossValidationFolds = Integer.parseInt(val);
+      } else if (key.equals("threads")) {
+        myFlags[col].threads = Integer.parseInt(val);
       } else if (key.equals("printCrossValidationDecisions")) {
         myFlags[col].printCrossValidationDecisions = Boolean.parseBoolean(val);
       } else if (key.equals("shuffleTrainingData")) {
@@ -2181,30 +2275,45 @@ public class ColumnDataClassifier  {
    */
   public Pair<Double,Double> crossValidate(GeneralDataset<String,String> dataset, List<String[]> lineInfos) {
     final int numFolds = globalFlags.crossValidationFolds;
+    double[] accuracies = new double[numFolds];
+    double[] macroF1s = new double[numFolds];
+    if (globalFlags.threads > 1) {
+      // the folds are trained on several threads, and each is tested (and let go) as soon as it is trained
+      MulticoreWrapper<Integer, Triple<Integer, Classifier<String,String>, GeneralDataset<String,String>>> trainer =
+          new MulticoreWrapper<>(Math.min(globalFlags.threads, numFolds), new ThreadsafeProcessor<Integer, Triple<Integer, Classifier<String,String>, GeneralDataset<String,String>>>() {
+            @Override
+            public Triple<Integer, Classifier<String,String>, GeneralDataset<String,String>> process(Integer fold) {
+              Pair<Classifier<String,String>, GeneralDataset<String,String>> trained = trainFold(dataset, fold, numFolds);
+              return new Triple<>(fold, trained.first(), trained.second());
+            }
+
+            @Override
+            public ThreadsafeProcessor<Integer, Triple<Integer, Classifier<String,String>, GeneralDataset<String,String>>> newInstance() {
+              return this;
+            }
+          }, false);
+      for (int fold = 0; fold < numFolds; fold++) {
+        trainer.put(fold);
+        while (trainer.peek()) {
+          testFold(trainer.poll(), numFolds, lineInfos, accuracies, macroF1s);
+        }
+      }
+      trainer.join();
+      while (trainer.peek()) {
+        testFold(trainer.poll(), numFolds, lineInfos, accuracies, macroF1s);
+      }
+    } else {
+      for (int fold = 0; fold < numFolds; fold++) {
+        Pair<Classifier<String,String>, GeneralDataset<String,String>> trained = trainFold(dataset, fold, numFolds);
+        testFold(new Triple<>(fold, trained.first(), trained.second()), numFolds, lineInfos, accuracies, macroF1s);
+      }
+    }
+    // added up in fold order, so the averages are the same however many threads there are
     double accuracySum = 0.0;
     double macroF1Sum = 0.0;
     for (int fold = 0; fold < numFolds; fold++) {
-      logger.info("");
-      logger.info("### Fold " + fold);
-      Pair<GeneralDataset<String,String>,GeneralDataset<String,String>> split =
-              dataset.splitOutFold(fold, numFolds);
-      GeneralDataset<String,String> devTrain = split.first();
-      GeneralDataset<String,String> devTest = split.second();
-
-      Classifier<String,String> cl = makeClassifier(devTrain);
-      printClassifier(cl);
-
-      int normalFoldSize = lineInfos.size()/numFolds;
-      int start = normalFoldSize * fold;
-      int end = start + normalFoldSize;
-      if (fold == (numFolds - 1)) {
-        end = lineInfos.size();
-      }
-
-      List<String[]> devTestLineInfos = lineInfos.subList(start, end);
-      Pair<Double,Double> accuracies = testExamples(cl, devTest, devTestLineInfos);
-      accuracySum += accuracies.first();
-      macroF1Sum += accuracies.second();
+      accuracySum += accuracies[fold];
+      macroF1Sum += macroF1s[fold];
     }
     double averageAccuracy = accuracySum / numFolds;
     double averageMacroF1 = macroF1Sum / numFolds;
@@ -2215,6 +2324,36 @@ public class ColumnDataClassifier  {
     return new Pair<>(averageAccuracy, averageMacroF1);
   }
 
+  /** Trains a classifier on all but one fold of the dataset, and returns it and the held out fold. */
+  private Pair<Classifier<String,String>, GeneralDataset<String,String>> trainFold(GeneralDataset<String,String> dataset, int fold, int numFolds) {
+    Pair<GeneralDataset<String,String>,GeneralDataset<String,String>> split =
+            dataset.splitOutFold(fold, numFolds);
+    return new Pair<>(makeClassifier(split.first()), split.second());
+  }
+
+  /** Tests the classifier of a fold on its held out data, and stores its accuracy and macro F1. */
+  private void testFold(Triple<Integer, Classifier<String,String>, GeneralDataset<String,String>> trained, int numFolds,
+                        List<String[]> lineInfos, double[] accuracies, double[] macroF1s) {
+    int fold = trained.first();
+    logger.info("");
+    logger.info("### Fold " + fold);
+    Classifier<String,String> cl = trained.second();
+    GeneralDataset<String,String> devTest = trained.third();
+    printClassifier(cl);
+
+    int normalFoldSize = lineInfos.size()/numFolds;
+    int start = normalFoldSize * fold;
+    int end = start + normalFoldSize;
+    if (fold == (numFolds - 1)) {
+      end = lineInfos.size();
+    }
+
+    List<String[]> devTestLineInfos = lineInfos.subList(start, end);
+    Pair<Double,Double> scores = testExamples(cl, devTest, devTestLineInfos);
+    accuracies[fold] = scores.first();
+    macroF1s[fold] = scores.second();
+  }
+
   public String classOf(Datum<String,String> example) {
     if (classifier == null) {
       throw new RuntimeException("Classifier is not initialized");
@@ -2354,6 +2493,7 @@ public class ColumnDataClassifier  {
     static boolean testFromSVMLight = false; //test file is in SVMLight format
     static String encoding = null;
     static String printSVMLightFormatTo;
+    static String mappedTrainFile; // write the training data to this file, and train from it
 
     static boolean displayAllAnswers = false;
 
@@ -2368,6 +2508,7 @@ public class ColumnDataClassifier  {
     boolean showTokenization = false;
 
     int crossValidationFolds = -1;
+    int threads = 1;
     boolean shuffleTrainingData = false;
     long shuffleSeed = 0;
 
@@ -2,6 +2,8 @@ package edu.stanford.nlp.classify;
 
 import edu.stanford.nlp.util.Pair;
 import edu.stanford.nlp.util.Triple;
+import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 import java.util.function.Function;
 
 import java.util.Iterator;
@@ -57,6 +59,44 @@ public class CrossValidator<L, F> {
     return sum / kFold;
   }
 
+  /**
+   * As {@link #computeAverage(ToDoubleFunction)}, but works out the folds on several threads
+   * at once, so the function must be threadsafe (each fold has its own saved state).  Only the
+   * folds being worked out (and the next one) are held in memory.  The scores are added up in
+   * fold order, so the average is the same as on one thread.
+   */
+  public double computeAverage(ToDoubleFunction<Triple<GeneralDataset<L, F>,GeneralDataset<L, F>,SavedState>> function, int numThreads) {
+    if (numThreads <= 1) {
+      return computeAverage(function);
+    }
+    MulticoreWrapper<Triple<GeneralDataset<L, F>,GeneralDataset<L, F>,SavedState>, Double> wrapper =
+        new MulticoreWrapper<>(Math.min(numThreads, kFold), new ThreadsafeProcessor<Triple<GeneralDataset<L, F>,GeneralDataset<L, F>,SavedState>, Double>() {
+          @Override
+          public Double process(Triple<GeneralDataset<L, F>,GeneralDataset<L, F>,SavedState> fold) {
+            return function.applyAsDouble(fold);
+          }
+
+          @Override
+          public ThreadsafeProcessor<Triple<GeneralDataset<L, F>,GeneralDataset<L, F>,SavedState>, Double> newInstance() {
+            return this;
+          }
+        });
+    // the folds are split out one at a time as threads come free, and let go once they are scored
+    double sum = 0;
+    Iterator<Triple<GeneralDataset<L, F>,GeneralDataset<L, F>,SavedState>> foldIt = iterator();
+    while (foldIt.hasNext()) {
+      wrapper.put(foldIt.next());
+      while (wrapper.peek()) {
+        sum += wrapper.poll();
+      }
+    }
+    wrapper.join();
+    while (wrapper.peek()) {
+      sum += wrapper.poll();
+    }
+    return sum / kFold;
+  }
+
 
   class CrossValidationIterator implements Iterator<Triple<GeneralDataset<L, F>,GeneralDataset<L, F>,SavedState>> {
 
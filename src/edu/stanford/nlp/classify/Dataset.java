@@ -301,11 +301,16 @@ public class Dataset<L, F> extends GeneralDataset<L, F> {
     add(features, label, true);
   }
 
+  /**
+   * Adds a datum.  The label and features are looked up in the indices before the datum is
+   * stored, and only storing it is synchronized, so that many threads can add datums at once
+   * if the indices are threadsafe (such as a
+   * {@link edu.stanford.nlp.util.concurrent.ConcurrentHashIndex}).
+   */
   public void add(Collection<F> features, L label, boolean addNewFeatures) {
-    ensureSize();
-    addLabel(label);
-    addFeatures(features, addNewFeatures);
-    size++;
+    int labelId = labelIndex.addToIndex(label);
+    int[] featureIds = featureIndices(features, addNewFeatures);
+    add(featureIds, labelId);
   }
 
   /**
@@ -314,7 +319,7 @@ public class Dataset<L, F> extends GeneralDataset<L, F> {
    * @param features
    * @param label
    */
-  public void add(int [] features, int label) {
+  public synchronized void add(int [] features, int label) {
     ensureSize();
     addLabelIndex(label);
     addFeatureIndices(features);
@@ -348,20 +353,21 @@ public class Dataset<L, F> extends GeneralDataset<L, F> {
   }
 
   protected void addFeatures(Collection<F> features, boolean addNewFeatures) {
+    data[size] = featureIndices(features, addNewFeatures);
+  }
+
+  /** The indices of the features which are (or, if addNewFeatures, can be put) in the feature index. */
+  protected int[] featureIndices(Collection<F> features, boolean addNewFeatures) {
     int[] intFeatures = new int[features.size()];
     int j = 0;
     for (F feature : features) {
-      if(addNewFeatures) featureIndex.add(feature);
-      int index = featureIndex.indexOf(feature);
+      int index = addNewFeatures ? featureIndex.addToIndex(feature) : featureIndex.indexOf(feature);
       if (index >= 0) {
-        intFeatures[j] = featureIndex.indexOf(feature);
+        intFeatures[j] = index;
         j++;
       }
     }
-    data[size] = new int[j];
-    synchronized (System.class) {
-      System.arraycopy(intFeatures, 0, data[size], 0, j);
-    }
+    return (j == intFeatures.length) ? intFeatures : Arrays.copyOf(intFeatures, j);
   }
 
   protected void addFeatureIndices(int [] features) {
@@ -151,11 +151,7 @@ public class LinearClassifier<L, F> implements ProbabilisticClassifier<L, F>, RV
     synchronized (System.class) {
       System.arraycopy(features, 0, activeFeatures, 0, i);
     }
-    Counter<L> scores = new ClassicCounter<>();
-    for (L lab : labels()) {
-      scores.setCount(lab, scoreOf(activeFeatures, lab));
-    }
-    return scores;
+    return scoresOf(activeFeatures);
   }
 
   /** Given a datum's features, construct a counter with keys
@@ -163,10 +159,84 @@ public class LinearClassifier<L, F> implements ProbabilisticClassifier<L, F>, RV
    *  for each class.
    */
   public Counter<L> scoresOf(int[] features) {
-    Counter<L> scores = new ClassicCounter<>();
-    for (L label : labels())
-      scores.setCount(label, scoreOf(features, label));
-    return scores;
+    double[] scores = new double[labelIndex.size()];
+    scoresOf(features, scores);
+    Counter<L> counter = new ClassicCounter<>(scores.length);
+    for (int i = 0; i < scores.length; i++) {
+      counter.setCount(labelIndex.get(i), scores[i]);
+    }
+    return counter;
+  }
+
+  /** Returns the indices of the features in the classifier's feature index,
+   *  leaving out those it doesn't know, for the {@code int[]} scoring methods.
+   */
+  public int[] featureIndicesOf(Collection<F> features) {
+    int[] indices = new int[features.size()];
+    int i = 0;
+    for (F f : features) {
+      int index = featureIndex.indexOf(f);
+      if (index >= 0) {
+        indices[i++] = index;
+      }
+    }
+    return (i == indices.length) ? indices : Arrays.copyOf(indices, i);
+  }
+
+  /** Writes the score (unnormalized log probability) of each class for a datum's
+   *  features into scores, indexed by the label index.  Nothing is allocated, so this
+   *  is the method to call in a loop.  Negative feature indices are skipped.
+   *
+   *  @param features The indices of the datum's features (see {@link #featureIndicesOf})
+   *  @param scores A buffer of at least {@code labelIndex().size()} elements
+   */
+  public void scoresOf(int[] features, double[] scores) {
+    addScores(features, null, scores, 0);
+  }
+
+  /** As {@link #scoresOf(int[], double[])}, but each feature has a value, as in an RVFDatum. */
+  public void scoresOf(int[] features, double[] values, double[] scores) {
+    addScores(features, values, scores, 0);
+  }
+
+  /** Scores many datums at once, writing the scores of datum i into
+   *  {@code scores[i * numLabels]} to {@code scores[(i + 1) * numLabels - 1]}.
+   *
+   *  @param data The feature indices of each datum
+   *  @param values The value of each feature of each datum, or null if they are all 1
+   *  @param scores A buffer of at least {@code data.length * labelIndex().size()} elements
+   */
+  public void scoresOf(int[][] data, double[][] values, double[] scores) {
+    int numLabels = labelIndex.size();
+    for (int i = 0; i < data.length; i++) {
+      addScores(data[i], (values == null) ? null : values[i], scores, i * numLabels);
+    }
+  }
+
+  private void addScores(int[] features, double[] values, double[] scores, int offset) {
+    int numLabels = labelIndex.size();
+    Arrays.fill(scores, offset, offset + numLabels, 0.0);
+    for (int i = 0; i < features.length; i++) {
+      int f = features[i];
+      if (f < 0) {
+        continue;
+      }
+      // the weights of a feature are already contiguous by label
+      double[] w = weights[f];
+      if (values == null) {
+        for (int l = 0; l < numLabels; l++) {
+          scores[offset + l] += w[l];
+        }
+      } else {
+        double v = values[i];
+        for (int l = 0; l < numLabels; l++) {
+          scores[offset + l] += w[l] * v;
+        }
+      }
+    }
+    for (int l = 0; l < numLabels; l++) {
+      scores[offset + l] += thresholds[l];
+    }
   }
 
   /** Returns of the score of the Datum for the specified label.
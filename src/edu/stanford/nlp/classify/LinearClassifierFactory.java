@@ -507,6 +507,14 @@ public class LinearClassifierFactory<L, F> extends AbstractLinearClassifierFacto
 
   public double[][] trainWeights(GeneralDataset<L, F> dataset, double[] initial, boolean bypassTuneSigma) {
     Minimizer<DiffFunction> minimizer = getMinimizer();
+    if (dataset instanceof MappedDataset) {
+      // the data is read from disk as needed; sigma tuning would need to split it, so isn't done
+      MappedLogConditionalObjectiveFunction<L, F> objective = new MappedLogConditionalObjectiveFunction<>((MappedDataset<L, F>) dataset, logPrior);
+      if (initial == null) {
+        initial = objective.initial();
+      }
+      return objective.to2D(minimizer.minimize(objective, TOL, initial));
+    }
     if(dataset instanceof RVFDataset)
       ((RVFDataset<L,F>)dataset).ensureRealValues();
     double[] interimWeights = null;
@@ -0,0 +1,488 @@
+package edu.stanford.nlp.classify;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.ling.BasicDatum;
+import edu.stanford.nlp.ling.Datum;
+import edu.stanford.nlp.ling.RVFDatum;
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * A read-only dataset which is kept on disk, in a compact binary format of label and feature
+ * ids, and read through memory mapping, so that it can be bigger than the heap.  Only the
+ * label and feature {@link Index}es are kept in memory.
+ *
+ * <p>
+ * A dataset is made with a {@link Writer}, to which the datums are added one at a time (for
+ * instance, while reading a training file in {@link ColumnDataClassifier} with the
+ * {@code mappedTrainFile} option), and opened with {@link #load}.  Datums are read by number with
+ * {@link #getLabel}, {@link #getFeatures} and {@link #getValues}, which may be called from several
+ * threads at once.  {@link LinearClassifierFactory} trains on a MappedDataset with a
+ * {@link MappedLogConditionalObjectiveFunction}, which reads just the datums of each batch, so
+ * is best used with a stochastic minimizer.  The methods which work on all the data at once,
+ * such as {@link #getDataArray}, read it all into memory; those which change it, such as
+ * {@link #add} and {@link #randomize}, aren't supported.
+ *
+ * <p>
+ * The file is a header (magic number, flags, number of datums, and the position of the
+ * offsets), then for each datum its label id, number of features, feature ids, and, if the
+ * dataset is real valued, feature values, and then the position of each datum in the file.
+ * The indices are serialized to a file of the same name plus {@code .index}.
+ */
+public class MappedDataset<L, F> extends GeneralDataset<L, F> implements Closeable {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels logger = Redwood.channels(MappedDataset.class);
+
+  private static final long serialVersionUID = 1L;
+
+  private static final int MAGIC = 0x4d445331; // "MDS1"
+  private static final int REAL_VALUED = 1;
+  private static final int HEADER_SIZE = 24;
+  /** The most bytes mapped by one buffer (a record can't be bigger than this) */
+  private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+  private final String path;
+  private final boolean realValued;
+  private transient FileChannel channel;
+  /** The position of each datum in the file */
+  private transient LongBuffer offsets;
+  /** The mapped parts of the file, each holding whole records, and where they start */
+  private transient MappedByteBuffer[] segments;
+  private transient long[] segmentStarts;
+
+  private MappedDataset(String path, Index<L> labelIndex, Index<F> featureIndex) throws IOException {
+    this.path = path;
+    this.labelIndex = labelIndex;
+    this.featureIndex = featureIndex;
+    channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+    if (header.getInt() != MAGIC) {
+      throw new IOException(path + " is not a MappedDataset file");
+    }
+    realValued = (header.getInt() & REAL_VALUED) != 0;
+    size = header.getInt();
+    header.getInt(); // unused
+    long offsetsStart = header.getLong();
+    offsets = channel.map(FileChannel.MapMode.READ_ONLY, offsetsStart, 8L * size).asLongBuffer();
+
+    // share the records out over segments, each starting at a record and holding whole records
+    long[] starts = new long[4];
+    int numSegments = 0;
+    for (int i = 0; i < size; ) {
+      long start = offsets.get(i);
+      int next = i;
+      while (next < size && end(next, offsetsStart) - start <= MAX_SEGMENT_SIZE) {
+        next++;
+      }
+      if (next == i) {
+        throw new IOException("Datum " + i + " in " + path + " is too big to map");
+      }
+      if (numSegments == starts.length) {
+        starts = Arrays.copyOf(starts, 2 * numSegments);
+      }
+      starts[numSegments++] = start;
+      i = next;
+    }
+    segmentStarts = Arrays.copyOf(starts, numSegments + 1);
+    segmentStarts[numSegments] = offsetsStart;
+    segments = new MappedByteBuffer[numSegments];
+    for (int s = 0; s < numSegments; s++) {
+      segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStarts[s], segmentStarts[s + 1] - segmentStarts[s]);
+    }
+  }
+
+  /** Where the record of the datum ends (the records run up to the offsets). */
+  private long end(int index, long offsetsStart) {
+    return (index + 1 < size) ? offsets.get(index + 1) : offsetsStart;
+  }
+
+  /**
+   * Opens a dataset written by a {@link Writer}.
+   *
+   * @param path The file the dataset was written to
+   */
+  @SuppressWarnings("unchecked")
+  public static <L, F> MappedDataset<L, F> load(String path) throws IOException {
+    Pair<Index<L>, Index<F>> indices;
+    try {
+      indices = IOUtils.readObjectFromFile(path + ".index");
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+    return new MappedDataset<>(path, indices.first(), indices.second());
+  }
+
+  /** Whether the features have values (rather than all being 1). */
+  public boolean isRealValued() {
+    return realValued;
+  }
+
+  /** Returns the buffer holding the datum, and sets pos[0] to where it starts in it. */
+  private ByteBuffer record(int index, int[] pos) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Datum " + index + " of " + size);
+    }
+    long offset = offsets.get(index);
+    int segment = Arrays.binarySearch(segmentStarts, offset);
+    if (segment < 0) {
+      segment = -segment - 2;
+    }
+    pos[0] = (int) (offset - segmentStarts[segment]);
+    return segments[segment];
+  }
+
+  /** Returns the label id of the datum. */
+  public int getLabel(int index) {
+    int[] pos = new int[1];
+    ByteBuffer buffer = record(index, pos);
+    return buffer.getInt(pos[0]);
+  }
+
+  /** Returns the feature ids of the datum. */
+  public int[] getFeatures(int index) {
+    int[] pos = new int[1];
+    ByteBuffer buffer = record(index, pos);
+    int p = pos[0] + 4;
+    int[] features = new int[buffer.getInt(p)];
+    p += 4;
+    for (int j = 0; j < features.length; j++, p += 4) {
+      features[j] = buffer.getInt(p);
+    }
+    return features;
+  }
+
+  /** Returns the feature values of the datum, or null if the dataset isn't real valued. */
+  public double[] getValues(int index) {
+    if ( ! realValued) {
+      return null;
+    }
+    int[] pos = new int[1];
+    ByteBuffer buffer = record(index, pos);
+    int p = pos[0] + 4;
+    double[] values = new double[buffer.getInt(p)];
+    p += 4 + 4 * values.length;
+    for (int j = 0; j < values.length; j++, p += 8) {
+      values[j] = buffer.getDouble(p);
+    }
+    return values;
+  }
+
+  @Override
+  public Datum<L, F> getDatum(int index) {
+    if (realValued) {
+      return getRVFDatum(index);
+    }
+    return new BasicDatum<>(featureIndex.objects(getFeatures(index)), labelIndex.get(getLabel(index)));
+  }
+
+  @Override
+  public RVFDatum<L, F> getRVFDatum(int index) {
+    int[] features = getFeatures(index);
+    double[] values = getValues(index);
+    ClassicCounter<F> c = new ClassicCounter<>();
+    for (int j = 0; j < features.length; j++) {
+      c.incrementCount(featureIndex.get(features[j]), (values == null) ? 1.0 : values[j]);
+    }
+    return new RVFDatum<>(c, labelIndex.get(getLabel(index)));
+  }
+
+  /** Reads all the labels into memory. */
+  @Override
+  public int[] getLabelsArray() {
+    if (labels == null) {
+      int[] labels = new int[size];
+      for (int i = 0; i < size; i++) {
+        labels[i] = getLabel(i);
+      }
+      this.labels = labels;
+    }
+    return labels;
+  }
+
+  /** Reads all the data into memory. */
+  @Override
+  public int[][] getDataArray() {
+    if (data == null) {
+      int[][] data = new int[size][];
+      for (int i = 0; i < size; i++) {
+        data[i] = getFeatures(i);
+      }
+      this.data = data;
+    }
+    return data;
+  }
+
+  /** Reads all the values into memory, or returns null if the dataset isn't real valued. */
+  @Override
+  public double[][] getValuesArray() {
+    if ( ! realValued) {
+      return null;
+    }
+    double[][] values = new double[size][];
+    for (int i = 0; i < size; i++) {
+      values[i] = getValues(i);
+    }
+    return values;
+  }
+
+  @Override
+  public float[] getFeatureCounts() {
+    float[] counts = new float[featureIndex.size()];
+    for (int i = 0; i < size; i++) {
+      for (int feature : getFeatures(i)) {
+        counts[feature] += 1.0f;
+      }
+    }
+    return counts;
+  }
+
+  @Override
+  public int numFeatureTokens() {
+    int[] pos = new int[1];
+    int x = 0;
+    for (int i = 0; i < size; i++) {
+      x += record(i, pos).getInt(pos[0] + 4);
+    }
+    return x;
+  }
+
+  @Override
+  public ClassicCounter<L> numDatumsPerLabel() {
+    ClassicCounter<L> numDatums = new ClassicCounter<>();
+    for (int i = 0; i < size; i++) {
+      numDatums.incrementCount(labelIndex.get(getLabel(i)));
+    }
+    return numDatums;
+  }
+
+  @Override
+  protected void initialize(int numDatums) {
+    throw new UnsupportedOperationException("MappedDataset is read only");
+  }
+
+  @Override
+  public void clear(int numDatums) {
+    throw new UnsupportedOperationException("MappedDataset is read only");
+  }
+
+  @Override
+  public void add(Datum<L, F> d) {
+    throw new UnsupportedOperationException("MappedDataset is read only; use a MappedDataset.Writer");
+  }
+
+  @Override
+  public void applyFeatureCountThreshold(int k) {
+    throw new UnsupportedOperationException("MappedDataset is read only");
+  }
+
+  @Override
+  public void applyFeatureMaxCountThreshold(int k) {
+    throw new UnsupportedOperationException("MappedDataset is read only");
+  }
+
+  @Override
+  public void retainFeatures(Set<F> features) {
+    throw new UnsupportedOperationException("MappedDataset is read only");
+  }
+
+  @Override
+  public void randomize(long randomSeed) {
+    throw new UnsupportedOperationException("MappedDataset is read only; shuffle the data before writing it");
+  }
+
+  @Override
+  public <E> void shuffleWithSideInformation(long randomSeed, java.util.List<E> sideInformation) {
+    throw new UnsupportedOperationException("MappedDataset is read only; shuffle the data before writing it");
+  }
+
+  @Override
+  public Pair<GeneralDataset<L, F>, GeneralDataset<L, F>> split(int start, int end) {
+    throw new UnsupportedOperationException("MappedDataset can't be split; split the data before writing it");
+  }
+
+  @Override
+  public Pair<GeneralDataset<L, F>, GeneralDataset<L, F>> split(double fractionSplit) {
+    throw new UnsupportedOperationException("MappedDataset can't be split; split the data before writing it");
+  }
+
+  @Override
+  public void summaryStatistics() {
+    logger.info("numDatums: " + size + " (mapped from " + path + ")");
+    logger.info("numDatumsPerLabel: " + numDatumsPerLabel());
+    logger.info("numFeatures (Phi(X) types): " + featureIndex.size());
+  }
+
+  @Override
+  public void printSparseFeatureMatrix() {
+    printSparseFeatureMatrix(new PrintWriter(System.out, true));
+  }
+
+  @Override
+  public void printSparseFeatureMatrix(PrintWriter pw) {
+    String sep = "\t";
+    for (int i = 0; i < size; i++) {
+      pw.print(labelIndex.get(getLabel(i)));
+      for (int j : getFeatures(i)) {
+        pw.print(sep + featureIndex.get(j));
+      }
+      pw.println();
+    }
+  }
+
+  /** Unmaps the file (once the buffers are garbage collected). */
+  @Override
+  public void close() throws IOException {
+    segments = null;
+    offsets = null;
+    channel.close();
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    throw new NotSerializableException("MappedDataset: save its path and use MappedDataset.load(" + path + ") instead");
+  }
+
+
+  /**
+   * Writes datums to a file one at a time, indexing their labels and features as it goes, so
+   * that a dataset bigger than the heap can be made.  Only the indices and the position of each
+   * datum are kept in memory.  {@link #close} finishes the file and saves the indices.
+   */
+  public static class Writer<L, F> implements Closeable {
+
+    private final String path;
+    private final boolean realValued;
+    private final Index<L> labelIndex;
+    private final Index<F> featureIndex;
+    private final DataOutputStream out;
+    private long position = HEADER_SIZE;
+    private long[] offsets = new long[1024];
+    private int size; // = 0;
+
+    /**
+     * Starts a dataset file.
+     *
+     * @param path The file to write the dataset to
+     * @param realValued Whether to keep the values of the features of RVFDatums
+     */
+    public Writer(String path, boolean realValued) throws IOException {
+      this(path, realValued, new HashIndex<>(), new HashIndex<>());
+    }
+
+    /** Starts a dataset file, adding the labels and features to the given indices. */
+    public Writer(String path, boolean realValued, Index<L> labelIndex, Index<F> featureIndex) throws IOException {
+      this.path = path;
+      this.realValued = realValued;
+      this.labelIndex = labelIndex;
+      this.featureIndex = featureIndex;
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+      out.write(new byte[HEADER_SIZE]); // filled in by close()
+    }
+
+    /** Adds the datum to the end of the dataset. */
+    public void add(Datum<L, F> d) {
+      int[] features;
+      double[] values = null;
+      if (realValued && d instanceof RVFDatum) {
+        Counter<F> counter = ((RVFDatum<L, F>) d).asFeaturesCounter();
+        features = new int[counter.size()];
+        values = new double[counter.size()];
+        int j = 0;
+        for (Map.Entry<F, Double> entry : counter.entrySet()) {
+          features[j] = featureIndex.addToIndex(entry.getKey());
+          values[j++] = entry.getValue();
+        }
+      } else {
+        Collection<F> featureList = d.asFeatures();
+        features = new int[featureList.size()];
+        int j = 0;
+        for (F feature : featureList) {
+          features[j++] = featureIndex.addToIndex(feature);
+        }
+        if (realValued) {
+          values = new double[features.length];
+          Arrays.fill(values, 1.0);
+        }
+      }
+      add(labelIndex.addToIndex(d.label()), features, values);
+    }
+
+    /** Adds a datum by the ids of its label and features (and their values, if real valued). */
+    public void add(int label, int[] features, double[] values) {
+      if (size == offsets.length) {
+        offsets = Arrays.copyOf(offsets, 2 * size);
+      }
+      offsets[size++] = position;
+      try {
+        out.writeInt(label);
+        out.writeInt(features.length);
+        for (int feature : features) {
+          out.writeInt(feature);
+        }
+        position += 8 + 4L * features.length;
+        if (realValued) {
+          for (double value : values) {
+            out.writeDouble(value);
+          }
+          position += 8L * values.length;
+        }
+      } catch (IOException e) {
+        throw new RuntimeIOException(e);
+      }
+    }
+
+    /** The number of datums added so far. */
+    public int size() {
+      return size;
+    }
+
+    public Index<L> labelIndex() {
+      return labelIndex;
+    }
+
+    public Index<F> featureIndex() {
+      return featureIndex;
+    }
+
+    /** Writes the positions of the datums and the header, and saves the indices. */
+    @Override
+    public void close() throws IOException {
+      for (int i = 0; i < size; i++) {
+        out.writeLong(offsets[i]);
+      }
+      out.close();
+      try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+        file.writeInt(MAGIC);
+        file.writeInt(realValued ? REAL_VALUED : 0);
+        file.writeInt(size);
+        file.writeInt(0);
+        file.writeLong(position);
+      }
+      IOUtils.writeObjectToFile(new Pair<>(labelIndex, featureIndex), path + ".index");
+    }
+
+    /** Closes the writer and opens the dataset it wrote. */
+    public MappedDataset<L, F> finish() throws IOException {
+      close();
+      return new MappedDataset<>(path, labelIndex, featureIndex);
+    }
+  }
+
+}
@@ -0,0 +1,151 @@
+package edu.stanford.nlp.classify;
+
+import java.util.Arrays;
+
+import edu.stanford.nlp.math.ArrayMath;
+import edu.stanford.nlp.optimization.AbstractStochasticCachingDiffUpdateFunction;
+
+/**
+ * The log conditional likelihood of a {@link MappedDataset}, as in
+ * {@link LogConditionalObjectiveFunction}, but reading each datum from the mapped file when
+ * it is needed rather than keeping the data in memory.  The stochastic methods read just the
+ * datums of the batch, so a stochastic minimizer (such as {@link edu.stanford.nlp.optimization.SGDMinimizer})
+ * can train on a dataset bigger than the heap; {@link #calculate} reads all the data once for
+ * each evaluation.
+ *
+ * <p>
+ * The weights are laid out as in LogConditionalObjectiveFunction (so {@link #to2D} gives the
+ * weights of a {@link LinearClassifier}).  As there, the prior is counted in by
+ * {@link #calculate} and {@link #calculateStochastic} (for the batch, its share of it) but not
+ * by the methods used by the in-place SGD minimizers, which regularize themselves.
+ */
+public class MappedLogConditionalObjectiveFunction<L, F> extends AbstractStochasticCachingDiffUpdateFunction {
+
+  private final MappedDataset<L, F> dataset;
+  private final LogPrior prior;
+  private final int numFeatures;
+  private final int numClasses;
+
+  public MappedLogConditionalObjectiveFunction(MappedDataset<L, F> dataset, LogPrior prior) {
+    this.dataset = dataset;
+    this.prior = prior;
+    this.numFeatures = dataset.numFeatures();
+    this.numClasses = dataset.numClasses();
+  }
+
+  @Override
+  public int domainDimension() {
+    return numFeatures * numClasses;
+  }
+
+  @Override
+  public int dataDimension() {
+    return dataset.size();
+  }
+
+  /** Converts a Phi feature number and class index into an f(x,y) feature index. */
+  private int indexOf(int f, int c) {
+    return f * numClasses + c;
+  }
+
+  public double[][] to2D(double[] x) {
+    double[][] x2 = new double[numFeatures][numClasses];
+    for (int i = 0; i < numFeatures; i++) {
+      for (int j = 0; j < numClasses; j++) {
+        x2[i][j] = x[indexOf(i, j)];
+      }
+    }
+    return x2;
+  }
+
+  /**
+   * Returns the negative log likelihood of datum m at the weights x * xscale, and adds scale
+   * times its derivative to target, if target isn't null.  Target may be x, since the
+   * activations are worked out before it is changed.
+   */
+  private double addDatum(int m, double[] x, double xscale, double[] sums, double[] target, double scale) {
+    int[] features = dataset.getFeatures(m);
+    double[] values = dataset.getValues(m);
+    int label = dataset.getLabel(m);
+    Arrays.fill(sums, 0.0);
+    for (int c = 0; c < numClasses; c++) {
+      for (int f = 0; f < features.length; f++) {
+        double v = (values != null) ? values[f] : 1.0;
+        sums[c] += x[indexOf(features[f], c)] * xscale * v;
+      }
+    }
+    double total = ArrayMath.logSum(sums);
+    if (target != null) {
+      for (int c = 0; c < numClasses; c++) {
+        // expected minus observed
+        double p = Math.exp(sums[c] - total) - ((c == label) ? 1.0 : 0.0);
+        for (int f = 0; f < features.length; f++) {
+          double v = (values != null) ? values[f] : 1.0;
+          target[indexOf(features[f], c)] += scale * p * v;
+        }
+      }
+    }
+    return total - sums[label];
+  }
+
+  @Override
+  protected void calculate(double[] x) {
+    value = 0.0;
+    Arrays.fill(derivative, 0.0);
+    double[] sums = new double[numClasses];
+    for (int m = 0, size = dataset.size(); m < size; m++) {
+      value += addDatum(m, x, 1.0, sums, derivative, 1.0);
+    }
+    value += prior.compute(x, derivative);
+  }
+
+  /** The value and derivative over the batch, with its share of the prior.  (Doesn't do Hessian vector products.) */
+  @Override
+  public void calculateStochastic(double[] x, double[] v, int[] batch) {
+    value = 0.0;
+    derivative = new double[x.length];
+    double[] sums = new double[numClasses];
+    for (int m : batch) {
+      value += addDatum(m, x, 1.0, sums, derivative, 1.0);
+    }
+    double[] priorDerivative = new double[x.length];
+    double share = ((double) batch.length) / dataset.size();
+    value += share * prior.compute(x, priorDerivative);
+    for (int i = 0; i < x.length; i++) {
+      derivative[i] += share * priorDerivative[i];
+    }
+  }
+
+  @Override
+  public double valueAt(double[] x, double xscale, int[] batch) {
+    value = 0.0;
+    double[] sums = new double[numClasses];
+    for (int m : batch) {
+      value += addDatum(m, x, xscale, sums, null, 0.0);
+    }
+    return value;
+  }
+
+  @Override
+  public double calculateStochasticUpdate(double[] x, double xscale, int[] batch, double gain) {
+    value = 0.0;
+    double[] sums = new double[numClasses];
+    for (int m : batch) {
+      value += addDatum(m, x, xscale, sums, x, -gain);
+    }
+    return value;
+  }
+
+  @Override
+  public void calculateStochasticGradient(double[] x, int[] batch) {
+    if (derivative == null) {
+      derivative = new double[domainDimension()];
+    }
+    Arrays.fill(derivative, 0.0);
+    double[] sums = new double[numClasses];
+    for (int m : batch) {
+      addDatum(m, x, 1.0, sums, derivative, 1.0);
+    }
+  }
+
+}
@@ -375,27 +375,20 @@ public class RVFDataset<L, F> extends GeneralDataset<L, F>  {  // implements Ite
   @Override
   // If you edit me, also take care of WeightedRVFDataset
   public void add(Datum<L, F> d) {
-    if (d instanceof RVFDatum<?, ?>) {
-      addLabel(d.label());
-      addFeatures(((RVFDatum<L, F>) d).asFeaturesCounter());
-      size++;
-    } else {
-      addLabel(d.label());
-      addFeatures(Counters.asCounter(d.asFeatures()));
+    int label = labelIndex.addToIndex(d.label());
+    Pair<int[], double[]> features = featureIndicesAndValues(featuresCounter(d));
+    synchronized (this) {
+      addLabelAndFeatures(label, features);
       size++;
     }
   }
 
   // If you edit me, also take care of WeightedRVFDataset
   public void add(Datum<L, F> d, String src, String id) {
-    if (d instanceof RVFDatum<?, ?>) {
-      addLabel(d.label());
-      addFeatures(((RVFDatum<L, F>) d).asFeaturesCounter());
-      addSourceAndId(src, id);
-      size++;
-    } else {
-      addLabel(d.label());
-      addFeatures(Counters.asCounter(d.asFeatures()));
+    int label = labelIndex.addToIndex(d.label());
+    Pair<int[], double[]> features = featureIndicesAndValues(featuresCounter(d));
+    synchronized (this) {
+      addLabelAndFeatures(label, features);
       addSourceAndId(src, id);
       size++;
     }
@@ -451,7 +444,42 @@ public class RVFDataset<L, F> extends GeneralDataset<L, F>  {  // implements Ite
     sourcesAndIds.add(new Pair<>(src, id));
   }
 
-  private void addLabel(L label) {
+  @SuppressWarnings("unchecked")
+  private Counter<F> featuresCounter(Datum<L, F> d) {
+    if (d instanceof RVFDatum<?, ?>) {
+      return ((RVFDatum<L, F>) d).asFeaturesCounter();
+    } else {
+      return Counters.asCounter(d.asFeatures());
+    }
+  }
+
+  /**
+   * The indices of the features in the feature index and their values.  This is done before
+   * the datum is stored, and isn't synchronized, so that many threads can add datums at once
+   * if the feature index is threadsafe (such as a
+   * {@link edu.stanford.nlp.util.concurrent.ConcurrentHashIndex}).
+   */
+  private Pair<int[], double[]> featureIndicesAndValues(Counter<F> features) {
+    final List<F> featureNames = new ArrayList<>(features.keySet());
+    final int nFeatures = featureNames.size();
+    int[] indices = new int[nFeatures];
+    double[] featureValues = new double[nFeatures];
+    for (int i = 0; i < nFeatures; ++i) {
+      F feature = featureNames.get(i);
+      int fID = featureIndex.addToIndex(feature);
+      if (fID >= 0) {
+        indices[i] = fID;
+        featureValues[i] = features.getCount(feature);
+      } else {
+        // Usually a feature present at test but not training time.
+        assert featureIndex.isLocked() : "Could not add feature to index: " + feature;
+      }
+    }
+    return new Pair<>(indices, featureValues);
+  }
+
+  /** Stores the label and features of datum number size (with the lock held). */
+  private void addLabelAndFeatures(int label, Pair<int[], double[]> features) {
     if (labels.length == size) {
       int[] newLabels = new int[size * 2];
       synchronized (System.class) {
@@ -459,10 +487,8 @@ public class RVFDataset<L, F> extends GeneralDataset<L, F>  {  // implements Ite
       }
       labels = newLabels;
     }
-    labels[size] = labelIndex.addToIndex(label);
-  }
+    labels[size] = label;
 
-  private void addFeatures(Counter<F> features) {
     if (data.length == size) {
       int[][] newData = new int[size * 2][];
       double[][] newValues = new double[size * 2][];
@@ -473,22 +499,8 @@ public class RVFDataset<L, F> extends GeneralDataset<L, F>  {  // implements Ite
       data = newData;
       values = newValues;
     }
-
-    final List<F> featureNames = new ArrayList<>(features.keySet());
-    final int nFeatures = featureNames.size();
-    data[size] = new int[nFeatures];
-    values[size] = new double[nFeatures];
-    for (int i = 0; i < nFeatures; ++i) {
-      F feature = featureNames.get(i);
-      int fID = featureIndex.addToIndex(feature);
-      if (fID >= 0) {
-        data[size][i] = fID;
-        values[size][i] = features.getCount(feature);
-      } else {
-        // Usually a feature present at test but not training time.
-        assert featureIndex.isLocked() : "Could not add feature to index: " + feature;
-      }
-    }
+    data[size] = features.first();
+    values[size] = features.second();
   }
 
   /**
@@ -82,10 +82,13 @@ public class WeightedDataset<L, F> extends Dataset<L, F> {
   }
 
   public void add(Collection<F> features, L label, float weight) {
-    ensureSize();
-    addLabel(label);
-    addFeatures(features);
-    weights[size++] = weight;
+    int labelId = labelIndex.addToIndex(label);
+    int[] featureIds = featureIndices(features, true);
+    synchronized (this) {
+      ensureSize();
+      weights[size] = weight;
+      add(featureIds, labelId);
+    }
   }
 
   /**
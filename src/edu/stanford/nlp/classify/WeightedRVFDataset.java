@@ -69,7 +69,7 @@ public class WeightedRVFDataset<L, F> extends RVFDataset<L, F> {
    * @param d The datum to add.
    * @param weight The weight of this datum.
    */
-  public void add(RVFDatum<L, F> d, float weight) {
+  public synchronized void add(RVFDatum<L, F> d, float weight) {
     addWeight(weight);
     super.add(d);
   }
@@ -77,14 +77,14 @@ public class WeightedRVFDataset<L, F> extends RVFDataset<L, F> {
 
   /** {@inheritDoc} */
   @Override
-  public void add(Datum<L, F> d) {
+  public synchronized void add(Datum<L, F> d) {
     addWeight(1.0f);
     super.add(d);
   }
 
   /** {@inheritDoc} */
   @Override
-  public void add(Datum<L, F> d, String src, String id) {
+  public synchronized void add(Datum<L, F> d, String src, String id) {
     addWeight(1.0f);
     super.add(d, src, id);
   }
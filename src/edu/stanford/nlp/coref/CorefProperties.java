@@ -66,6 +66,14 @@ public class CorefProperties {
     return PropertiesUtils.getInt(props, "coref.maxMentionDistanceWithStringMatch", 500);
   }
 
+  /**
+   * Number of sentences resolved at a time, 0 for the whole document at once.  Each window also
+   * sees enough preceding sentences to hold {@code coref.maxMentionDistance} mentions.
+   */
+  public static int windowSize(Properties props) {
+    return PropertiesUtils.getInt(props, "coref.windowSize", 0);
+  }
+
   // ---------- Mention Detection ----------
 
   public enum MentionDetectionType { RULE, HYBRID, DEPENDENCY }
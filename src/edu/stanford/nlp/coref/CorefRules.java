@@ -12,6 +12,7 @@ import edu.stanford.nlp.coref.data.CorefCluster;
 import edu.stanford.nlp.coref.data.Dictionaries;
 import edu.stanford.nlp.coref.data.Document;
 import edu.stanford.nlp.coref.data.Mention;
+import edu.stanford.nlp.coref.data.MentionFeatures;
 import edu.stanford.nlp.coref.data.Semantics;
 import edu.stanford.nlp.coref.data.SpeakerInfo;
 import edu.stanford.nlp.coref.data.Dictionaries.Animacy;
@@ -124,6 +125,15 @@ public class CorefRules {
     }
     return false;
   }
+  /** {@link #entityHaveIncompatibleModifier(CorefCluster, CorefCluster)} using the document's mention features */
+  public static boolean entityHaveIncompatibleModifier(MentionFeatures features, CorefCluster mentionCluster, CorefCluster potentialAntecedent) {
+    for(Mention m : mentionCluster.corefMentions){
+      for(Mention ant : potentialAntecedent.corefMentions){
+        if(features.haveIncompatibleModifier(m, ant)) return true;
+      }
+    }
+    return false;
+  }
   public static boolean entityIsRoleAppositive(CorefCluster mentionCluster, CorefCluster potentialAntecedent, Mention m1, Mention m2, Dictionaries dict) {
     if(!entityAttributesAgree(mentionCluster, potentialAntecedent)) return false;
     return m1.isRoleAppositive(m2, dict) || m2.isRoleAppositive(m1, dict);
@@ -380,6 +390,14 @@ public class CorefRules {
     }
     return headAgree;
   }
+  /** {@link #entityHeadsAgree(CorefCluster, CorefCluster, Mention, Mention, Dictionaries)} using the document's mention features */
+  public static boolean entityHeadsAgree(MentionFeatures features, CorefCluster mentionCluster, CorefCluster potentialAntecedent, Mention m, Mention ant) {
+    if(features.isPronoun(m) || features.isPronoun(ant)) return false;
+    for(Mention a : potentialAntecedent.corefMentions){
+      if(a.headString.equals(m.headString)) return true;
+    }
+    return false;
+  }
   public static boolean entityExactStringMatch(CorefCluster mentionCluster, CorefCluster potentialAntecedent, Dictionaries dict, Set<Mention> roleSet){
     boolean matched = false;
     for(Mention m : mentionCluster.corefMentions){
@@ -403,6 +421,22 @@ public class CorefRules {
     }
     return matched;
   }
+  /** {@link #entityExactStringMatch(CorefCluster, CorefCluster, Dictionaries, Set)} using the document's mention features */
+  public static boolean entityExactStringMatch(MentionFeatures features, CorefCluster mentionCluster, CorefCluster potentialAntecedent, Set<Mention> roleSet){
+    boolean matched = false;
+    for(Mention m : mentionCluster.corefMentions){
+      if(roleSet!=null && roleSet.contains(m)) return false;
+      if(features.isPronoun(m)) continue;
+      String mSpan = m.lowercaseNormalizedSpanString();
+      for(Mention ant : potentialAntecedent.corefMentions){
+        if(features.isPronoun(ant)) continue;
+        String antSpan = ant.lowercaseNormalizedSpanString();
+        if(mSpan.equals(antSpan)) matched = true;
+        if(mSpan.equals(antSpan+" 's") || antSpan.equals(mSpan+" 's")) matched = true;
+      }
+    }
+    return matched;
+  }
   public static boolean entityExactStringMatch(Mention m, Mention ant, Dictionaries dict, Set<Mention> roleSet){
     boolean matched = false;
     if(roleSet!=null && roleSet.contains(m)) return false;
@@ -419,6 +453,15 @@ public class CorefRules {
     return matched;
   }
 
+  /** {@link #entityExactStringMatch(Mention, Mention, Dictionaries, Set)} using the document's mention features */
+  public static boolean entityExactStringMatch(MentionFeatures features, Mention m, Mention ant, Set<Mention> roleSet){
+    if(roleSet!=null && roleSet.contains(m)) return false;
+    if(features.isPronoun(m) || features.isPronoun(ant)) return false;
+    String mSpan = m.lowercaseNormalizedSpanString();
+    String antSpan = ant.lowercaseNormalizedSpanString();
+    return mSpan.equals(antSpan) || mSpan.equals(antSpan+" 's") || antSpan.equals(mSpan+" 's");
+  }
+
   /**
    * Exact string match except phrase after head (only for proper noun):
    * For dealing with a error like {@literal "[Mr. Bickford] <- [Mr. Bickford , an 18-year mediation veteran] }"
@@ -445,6 +488,27 @@ public class CorefRules {
     return false;
   }
 
+  /**
+   * {@link #entityRelaxedExactStringMatch(CorefCluster, CorefCluster, Mention, Mention, Dictionaries, Set)}
+   * using the document's mention features
+   */
+  public static boolean entityRelaxedExactStringMatch(
+      MentionFeatures features,
+      CorefCluster mentionCluster,
+      CorefCluster potentialAntecedent,
+      Mention mention,
+      Mention ant,
+      Set<Mention> roleSet){
+    if(roleSet!=null && roleSet.contains(mention)) return false;
+    if(mention.mentionType == MentionType.LIST || ant.mentionType == MentionType.LIST) return false;
+    if(features.isPronoun(mention) || features.isPronoun(ant)) return false;
+    String mentionSpan = features.spanBeforePhraseAfterHead(mention);
+    String antSpan = features.spanBeforePhraseAfterHead(ant);
+    if(mentionSpan.equals("") || antSpan.equals("")) return false;
+
+    return mentionSpan.equals(antSpan) || mentionSpan.equals(antSpan+" 's") || antSpan.equals(mentionSpan+" 's");
+  }
+
   /** Check whether two mentions are in i-within-i relation (Chomsky, 1981) */
   public static boolean entityIWithinI(Mention m1, Mention m2, Dictionaries dict){
     // check for nesting: i-within-i
@@ -617,6 +681,11 @@ public class CorefRules {
     return false;
   }
 
+  /** {@link #entityNumberInLaterMention(Mention, Mention)} using the document's mention features */
+  public static boolean entityNumberInLaterMention(MentionFeatures features, Mention mention, Mention ant) {
+    return features.numberInLaterMention(mention, ant);
+  }
+
   /** Have extra proper noun except strings involved in semantic match */
   public static boolean entityHaveExtraProperNoun(Mention m, Mention a, Set<String> exceptWords) {
     Set<String> mProper = Generics.newHashSet();
@@ -2,9 +2,13 @@ package edu.stanford.nlp.coref;
 
 import java.io.FileOutputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import edu.stanford.nlp.coref.data.CorefChain;
@@ -12,8 +16,13 @@ import edu.stanford.nlp.coref.data.CorefCluster;
 import edu.stanford.nlp.coref.data.Dictionaries;
 import edu.stanford.nlp.coref.data.Document;
 import edu.stanford.nlp.coref.data.DocumentMaker;
+import edu.stanford.nlp.coref.data.Mention;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.IntTuple;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.util.logging.Redwood;
 
@@ -26,6 +35,10 @@ public class CorefSystem {
   private final CorefAlgorithm corefAlgorithm;
   private final boolean removeSingletonClusters;
   private final boolean verbose;
+  /** Sentences resolved at a time (0 for the whole document at once) */
+  private final int windowSize;
+  /** Mentions of context each window gets before its sentences */
+  private final int maxMentionDistance;
 
   public CorefSystem(Properties props) {
     try {
@@ -34,6 +47,8 @@ public class CorefSystem {
       corefAlgorithm = CorefAlgorithm.fromProps(props, dictionaries);
       removeSingletonClusters = CorefProperties.removeSingletonClusters(props);
       verbose = CorefProperties.verbose(props);
+      windowSize = CorefProperties.windowSize(props);
+      maxMentionDistance = CorefProperties.maxMentionDistance(props);
     } catch (Exception e) {
       throw new RuntimeException("Error initializing coref system", e);
     }
@@ -41,13 +56,24 @@ public class CorefSystem {
 
   public CorefSystem(DocumentMaker docMaker, CorefAlgorithm corefAlgorithm,
       boolean removeSingletonClusters, boolean verbose) {
+    this(docMaker, corefAlgorithm, removeSingletonClusters, verbose, 0, 0);
+  }
+
+  public CorefSystem(DocumentMaker docMaker, CorefAlgorithm corefAlgorithm,
+      boolean removeSingletonClusters, boolean verbose, int windowSize, int maxMentionDistance) {
     this.docMaker = docMaker;
     this.corefAlgorithm = corefAlgorithm;
     this.removeSingletonClusters = removeSingletonClusters;
     this.verbose = verbose;
+    this.windowSize = windowSize;
+    this.maxMentionDistance = maxMentionDistance;
   }
 
   public void annotate(Annotation ann) {
+    if (windowSize > 0 && ann.get(CoreAnnotations.SentencesAnnotation.class).size() > windowSize) {
+      annotateInWindows(ann);
+      return;
+    }
     Document document;
     try {
       document = docMaker.makeDocument(ann);
@@ -69,6 +95,164 @@ public class CorefSystem {
     ann.set(CorefCoreAnnotations.CorefChainAnnotation.class, result);
   }
 
+  /**
+   * Resolves coreference a window of {@code windowSize} sentences at a time, so the
+   * {@link Document} built for coref (and the mention pairs the algorithm looks at) stays the
+   * same size however long the annotation is.  Each window also sees the sentences just before
+   * it, enough of them to hold {@code maxMentionDistance} of the annotation's mentions, so the
+   * mentions of the window have the same candidate antecedents within that distance as they
+   * would in the whole document.  Antecedents further back, such as those an algorithm allows
+   * up to {@code coref.maxMentionDistanceWithStringMatch} mentions back, are only found if they
+   * are in the context.  Links are only taken from a window for mentions in its own sentences:
+   * each such mention is linked to the mention before it in the cluster the algorithm puts it
+   * in (which may be in an earlier window), and the clusters of the whole document are the
+   * connected mentions.
+   *
+   * <p>
+   * The mention ids are those the preprocessing gives the mentions of each window (numbering
+   * the annotation's mentions in order, including those it then drops), offset by the number
+   * of mentions in the sentences before the window.  So the result is the same
+   * CorefChainAnnotation, with the same mention ids, as resolving the whole document at once
+   * would give, though links further back than the context of a window are not found.
+   * Only the mentions of the annotation can be resolved this way, not gold mentions.
+   */
+  private void annotateInWindows(Annotation ann) {
+    if (docMaker.usesGoldMentions()) {
+      throw new IllegalArgumentException("Coref windows can't be used with gold mentions");
+    }
+    List<CoreMap> sentences = ann.get(CoreAnnotations.SentencesAnnotation.class);
+    // the number of mentions before each sentence, as the preprocessing numbers them
+    int[] mentionsBefore = new int[sentences.size() + 1];
+    for (int i = 0; i < sentences.size(); i++) {
+      List<Mention> sentenceMentions = sentences.get(i).get(CorefCoreAnnotations.CorefMentionsAnnotation.class);
+      mentionsBefore[i + 1] = mentionsBefore[i] + ((sentenceMentions == null) ? 0 : sentenceMentions.size());
+    }
+    int numIds = mentionsBefore[sentences.size()];
+    int[] parents = new int[numIds];
+    for (int i = 0; i < parents.length; i++) {
+      parents[i] = i;
+    }
+    // the mentions kept by the preprocessing of their own window, and where they are
+    Mention[] mentions = new Mention[numIds];
+    int[] sentNums = new int[numIds];
+    IntTuple[] positions = new IntTuple[numIds];
+
+    for (int start = 0; start < sentences.size(); start += windowSize) {
+      int end = Math.min(sentences.size(), start + windowSize);
+      int contextStart = start;
+      while (contextStart > 0 && mentionsBefore[start] - mentionsBefore[contextStart] < maxMentionDistance) {
+        contextStart--;
+      }
+      Document document;
+      try {
+        document = docMaker.makeDocument(windowAnnotation(ann, contextStart, end));
+      } catch (Exception e) {
+        throw new RuntimeException("Error making document", e);
+      }
+      CorefUtils.checkForInterrupt();
+      corefAlgorithm.runCoref(document);
+
+      int offset = mentionsBefore[contextStart];
+      for (CorefCluster c : document.corefClusters.values()) {
+        List<Mention> clusterMentions = new ArrayList<>(c.getCorefMentions());
+        clusterMentions.sort((m1, m2) -> Integer.compare(m1.mentionNum, m2.mentionNum));
+        for (int i = 1; i < clusterMentions.size(); i++) {
+          if (contextStart + clusterMentions.get(i).sentNum >= start) {
+            union(parents, id(clusterMentions.get(i - 1), offset, numIds), id(clusterMentions.get(i), offset, numIds));
+          }
+        }
+      }
+      // later windows renumber these mentions, so keep their ids and positions in the whole document now
+      for (Map.Entry<Mention, IntTuple> entry : document.positions.entrySet()) {
+        Mention m = entry.getKey();
+        if (contextStart + m.sentNum >= start) {
+          int id = id(m, offset, numIds);
+          mentions[id] = m;
+          sentNums[id] = contextStart + m.sentNum;
+          positions[id] = new IntTuple(new int[] { sentNums[id], entry.getValue().get(1) });
+        }
+      }
+    }
+    CorefUtils.checkForInterrupt();
+
+    // a cluster is keyed by the id of its first mention
+    Map<Integer, Set<Mention>> clusters = Generics.newHashMap();
+    Map<Mention, IntTuple> mentionPositions = new IdentityHashMap<>();
+    for (int id = 0; id < numIds; id++) {
+      Mention m = mentions[id];
+      if (m == null) {
+        // dropped by the preprocessing or the algorithm
+        continue;
+      }
+      int clusterId = find(parents, id);
+      m.mentionID = id;
+      m.sentNum = sentNums[id];
+      m.corefClusterID = clusterId;
+      mentionPositions.put(m, positions[id]);
+      clusters.computeIfAbsent(clusterId, k -> Generics.newHashSet()).add(m);
+    }
+    // a mention not kept by its own window may still have the cluster id of a later window it was context in
+    for (CoreMap sentence : sentences) {
+      List<Mention> sentenceMentions = sentence.get(CorefCoreAnnotations.CorefMentionsAnnotation.class);
+      if (sentenceMentions != null) {
+        for (Mention m : sentenceMentions) {
+          if ( ! mentionPositions.containsKey(m)) {
+            m.corefClusterID = -1;
+          }
+        }
+      }
+    }
+    Map<Integer, CorefChain> result = Generics.newHashMap();
+    for (Map.Entry<Integer, Set<Mention>> cluster : clusters.entrySet()) {
+      if (removeSingletonClusters && cluster.getValue().size() == 1) {
+        continue;
+      }
+      result.put(cluster.getKey(), new CorefChain(new CorefCluster(cluster.getKey(), cluster.getValue()), mentionPositions));
+    }
+    ann.set(CorefCoreAnnotations.CorefChainAnnotation.class, result);
+  }
+
+  /** The id in the whole document of a mention of a window whose mentions start at offset. */
+  private static int id(Mention m, int offset, int numIds) {
+    int id = offset + m.mentionID;
+    if (m.mentionID < 0 || id >= numIds) {
+      throw new IllegalStateException("Mention " + m + " of a coref window isn't one of the annotation's mentions");
+    }
+    return id;
+  }
+
+  /** The sentences from {@code start} to {@code end} of the annotation, as a document of their own. */
+  private static Annotation windowAnnotation(Annotation ann, int start, int end) {
+    Annotation window = ann.copy();
+    List<CoreMap> sentences = new ArrayList<>(ann.get(CoreAnnotations.SentencesAnnotation.class).subList(start, end));
+    List<CoreLabel> tokens = new ArrayList<>();
+    for (CoreMap sentence : sentences) {
+      tokens.addAll(sentence.get(CoreAnnotations.TokensAnnotation.class));
+    }
+    window.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+    window.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    return window;
+  }
+
+  private static int find(int[] parents, int i) {
+    while (parents[i] != i) {
+      parents[i] = parents[parents[i]];
+      i = parents[i];
+    }
+    return i;
+  }
+
+  /** Joins the sets of i and j, keeping the smaller id as the root. */
+  private static void union(int[] parents, int i, int j) {
+    int ri = find(parents, i);
+    int rj = find(parents, j);
+    if (ri < rj) {
+      parents[rj] = ri;
+    } else if (rj < ri) {
+      parents[ri] = rj;
+    }
+  }
+
   public void runOnConll(Properties props) throws Exception {
     String baseName = CorefProperties.conllOutputPath(props) +
         Calendar.getInstance().getTime().toString().replaceAll("\\s", "-").replaceAll(":", "-");
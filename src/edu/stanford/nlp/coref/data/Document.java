@@ -113,6 +113,9 @@ public class Document implements Serializable {
 
   public Map<Pair<Integer, Integer>, Boolean> acronymCache;
 
+  /** Features of the predicted mentions for the pair checks of the sieves, made when first asked for */
+  private transient MentionFeatures mentionFeatures;
+
   /** Map of speaker name/id to speaker info
    *  the key is the value of the variable 'speakers'
    */
@@ -186,6 +189,18 @@ public class Document implements Serializable {
       incompatibleClusters.add(r.second);
     }
   }
+  /**
+   * The features of the predicted mentions which the sieves' mention pair checks look at.
+   * The table is made the first time it is asked for, so this should be after the mentions
+   * are preprocessed.
+   */
+  public MentionFeatures getMentionFeatures(Dictionaries dict) {
+    if (mentionFeatures == null) {
+      mentionFeatures = new MentionFeatures(this, dict);
+    }
+    return mentionFeatures;
+  }
+
   public void mergeAcronymCache(CorefCluster to, CorefCluster from) {
     Map<Pair<Integer, Integer>, Boolean> replacements = Generics.newHashMap();
     for(Pair<Integer, Integer> p : acronymCache.keySet()) {
@@ -60,6 +60,11 @@ public class DocumentMaker {
     return new CoNLLDocumentReader(corpusPath, options);
   }
 
+  /** Whether documents are made with the gold mentions of the input rather than the mentions of the annotation. */
+  public boolean usesGoldMentions() {
+    return CorefProperties.useGoldMentions(props);
+  }
+
   public Document makeDocument(Annotation anno) throws Exception {
     return makeDocument(new InputDoc(anno, null, null));
   }
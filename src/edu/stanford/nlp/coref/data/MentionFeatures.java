@@ -0,0 +1,174 @@
+package edu.stanford.nlp.coref.data;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.math.NumberMatchingRegex;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+
+/**
+ * The features of the mentions of a {@link Document} which the mention pair checks of
+ * {@link edu.stanford.nlp.coref.CorefRules} look at, worked out once per document rather than
+ * from the raw {@link Mention} fields on every comparison: whether the span is a pronoun, the
+ * span before any phrase after the head, and the words of the span as sorted arrays of ids,
+ * so that subset checks between two mentions are a merge of two int arrays.
+ *
+ * <p>
+ * Mentions are looked up by mentionID; a mention which isn't one of the document's predicted
+ * mentions (or which was made after the table) gets its features worked out when it is asked for.
+ */
+public class MentionFeatures {
+
+  private static final Set<String> LOCATION_MODIFIERS = Generics.newHashSet(Arrays.asList("east", "west", "north", "south",
+      "eastern", "western", "northern", "southern", "upper", "lower"));
+
+  private static final Set<String> NUMBERS = Generics.newHashSet(Arrays.asList(
+      "one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten", "hundred", "thousand", "million", "billion"));
+
+  private final Dictionaries dict;
+  private final Index<String> words = new HashIndex<>();
+  private final Entry[] entries;
+
+  /** The cached features of one mention. */
+  private static class Entry {
+    final Mention mention;
+    /** Pronominal, or a span which is a pronoun */
+    final boolean pronoun;
+    /** {@link Mention#removePhraseAfterHead()} */
+    final String spanBeforePhraseAfterHead;
+    /** Lowercased words of the span */
+    final int[] lowercaseWords;
+    /** Lowercased nouns, adjectives, numbers and verbs of the span other than the head */
+    final int[] modifiers;
+    /** Lowercased location modifiers of the span */
+    final int[] locationModifiers;
+    /** Words of the span */
+    final int[] spanWords;
+    /** Words of the span which are numbers */
+    final int[] numbers;
+
+    Entry(Mention m, Dictionaries dict, Index<String> index) {
+      mention = m;
+      pronoun = m.isPronominal() || (dict != null && dict.allPronouns.contains(m.lowercaseNormalizedSpanString()));
+      spanBeforePhraseAfterHead = m.removePhraseAfterHead();
+      List<CoreLabel> span = m.originalSpan;
+      int[] lowercase = new int[span.size()];
+      int[] modifiers = new int[span.size()];
+      int[] locations = new int[span.size()];
+      int[] exact = new int[span.size()];
+      int[] numbers = new int[span.size()];
+      int numModifiers = 0;
+      int numLocations = 0;
+      int numNumbers = 0;
+      for (int i = 0; i < span.size(); i++) {
+        String word = span.get(i).get(CoreAnnotations.TextAnnotation.class);
+        String lowercased = word.toLowerCase();
+        String pos = span.get(i).get(CoreAnnotations.PartOfSpeechAnnotation.class);
+        lowercase[i] = index.addToIndex(lowercased);
+        exact[i] = index.addToIndex(word);
+        if (pos != null && (pos.startsWith("N") || pos.startsWith("JJ") || pos.equals("CD") || pos.startsWith("V"))
+            && ! lowercased.equalsIgnoreCase(m.headString)) {
+          modifiers[numModifiers++] = lowercase[i];
+        }
+        if (LOCATION_MODIFIERS.contains(lowercased)) {
+          locations[numLocations++] = lowercase[i];
+        }
+        // Note: this is locale specific for English and ascii numerals
+        if (NumberMatchingRegex.isDouble(word) || NUMBERS.contains(lowercased)) {
+          numbers[numNumbers++] = exact[i];
+        }
+      }
+      lowercaseWords = sortedSet(lowercase, lowercase.length);
+      this.modifiers = sortedSet(modifiers, numModifiers);
+      locationModifiers = sortedSet(locations, numLocations);
+      spanWords = sortedSet(exact, exact.length);
+      this.numbers = sortedSet(numbers, numNumbers);
+    }
+  }
+
+  /** Makes the table for the predicted mentions of the document. */
+  public MentionFeatures(Document document, Dictionaries dict) {
+    this.dict = dict;
+    int maxId = -1;
+    for (Map.Entry<Integer, Mention> entry : document.predictedMentionsByID.entrySet()) {
+      maxId = Math.max(maxId, entry.getKey());
+    }
+    entries = new Entry[maxId + 1];
+    for (Map.Entry<Integer, Mention> entry : document.predictedMentionsByID.entrySet()) {
+      entries[entry.getKey()] = new Entry(entry.getValue(), dict, words);
+    }
+  }
+
+  private Entry entry(Mention m) {
+    if (m.mentionID >= 0 && m.mentionID < entries.length && entries[m.mentionID] != null
+        && entries[m.mentionID].mention == m) {
+      return entries[m.mentionID];
+    }
+    return new Entry(m, dict, words);
+  }
+
+  /** Whether the mention is pronominal or its span is a pronoun. */
+  public boolean isPronoun(Mention m) {
+    return entry(m).pronoun;
+  }
+
+  /** The same as {@link Mention#removePhraseAfterHead()}. */
+  public String spanBeforePhraseAfterHead(Mention m) {
+    return entry(m).spanBeforePhraseAfterHead;
+  }
+
+  /**
+   * The same as {@link edu.stanford.nlp.coref.CorefRules#entityHaveIncompatibleModifier(Mention, Mention)}:
+   * whether the mention has a modifier the antecedent hasn't, or the antecedent a location
+   * modifier the mention hasn't, for mentions with the same head.
+   */
+  public boolean haveIncompatibleModifier(Mention m, Mention ant) {
+    if ( ! ant.headString.equalsIgnoreCase(m.headString)) return false;
+    Entry mEntry = entry(m);
+    Entry antEntry = entry(ant);
+    return ! containsAll(antEntry.lowercaseWords, mEntry.modifiers)
+        || ! containsAll(mEntry.modifiers, antEntry.locationModifiers);
+  }
+
+  /**
+   * The same as {@link edu.stanford.nlp.coref.CorefRules#entityNumberInLaterMention(Mention, Mention)}:
+   * whether the mention has a number which isn't in the antecedent.
+   */
+  public boolean numberInLaterMention(Mention mention, Mention ant) {
+    return ! containsAll(entry(ant).spanWords, entry(mention).numbers);
+  }
+
+  /** The first n elements of the array, sorted and without duplicates. */
+  private static int[] sortedSet(int[] array, int n) {
+    int[] sorted = Arrays.copyOf(array, n);
+    Arrays.sort(sorted);
+    int size = 0;
+    for (int i = 0; i < n; i++) {
+      if (size == 0 || sorted[size - 1] != sorted[i]) {
+        sorted[size++] = sorted[i];
+      }
+    }
+    return (size == n) ? sorted : Arrays.copyOf(sorted, size);
+  }
+
+  /** Whether the sorted set {@code set} contains all of the sorted set {@code subset}. */
+  private static boolean containsAll(int[] set, int[] subset) {
+    int i = 0;
+    for (int x : subset) {
+      while (i < set.length && set[i] < x) {
+        i++;
+      }
+      if (i == set.length || set[i] != x) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
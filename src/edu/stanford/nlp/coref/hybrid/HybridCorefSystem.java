@@ -204,9 +204,12 @@ public class HybridCorefSystem implements CorefAlgorithm {
                                int docCnt) {
     while (wrapper.peek()) {
       StringBuilder[] output = wrapper.poll();
-      writerGold.print(output[0]);
-      writerBeforeCoref.print(output[1]);
-      writerAfterCoref.print(output[2]);
+      // the conll outputs are only written when scoring
+      if (writerGold != null) {
+        writerGold.print(output[0]);
+        writerBeforeCoref.print(output[1]);
+        writerAfterCoref.print(output[2]);
+      }
       if (output[3].length() > 0) {
         log.info(output[3]);
       }
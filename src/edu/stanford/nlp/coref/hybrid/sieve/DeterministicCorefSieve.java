@@ -39,6 +39,7 @@ import edu.stanford.nlp.coref.data.CorefCluster;
 import edu.stanford.nlp.coref.data.Dictionaries;
 import edu.stanford.nlp.coref.data.Document;
 import edu.stanford.nlp.coref.data.Mention;
+import edu.stanford.nlp.coref.data.MentionFeatures;
 import edu.stanford.nlp.coref.data.Dictionaries.MentionType;
 import edu.stanford.nlp.coref.data.Dictionaries.Number;
 import edu.stanford.nlp.coref.data.Dictionaries.Person;
@@ -346,7 +347,8 @@ public abstract class DeterministicCorefSieve extends Sieve  {
     }
 
     // Match checks
-    if(flags.USE_EXACTSTRINGMATCH && CorefRules.entityExactStringMatch(mention, ant, dict, roleSet)){
+    MentionFeatures features = document.getMentionFeatures(dict);
+    if(flags.USE_EXACTSTRINGMATCH && CorefRules.entityExactStringMatch(features, mention, ant, roleSet)){
       return true;
     }
 //    if(flags.USE_EXACTSTRINGMATCH && Rules.entityExactStringMatch(mentionCluster, potentialAntecedent, dict, roleSet)){
@@ -356,7 +358,7 @@ public abstract class DeterministicCorefSieve extends Sieve  {
       ret = true;
     }
 
-    if(flags.USE_RELAXED_EXACTSTRINGMATCH && CorefRules.entityRelaxedExactStringMatch(mentionCluster, potentialAntecedent, mention, ant, dict, roleSet)){
+    if(flags.USE_RELAXED_EXACTSTRINGMATCH && CorefRules.entityRelaxedExactStringMatch(features, mentionCluster, potentialAntecedent, mention, ant, roleSet)){
       return true;
     }
     if(flags.USE_APPOSITION && CorefRules.entityIsApposition(mentionCluster, potentialAntecedent, mention, ant)) {
@@ -383,7 +385,7 @@ public abstract class DeterministicCorefSieve extends Sieve  {
         if(CorefRules.entityIsRoleAppositive(mentionCluster, potentialAntecedent, mention, ant, dict))
           ret = true;
     }
-    if(flags.USE_INCLUSION_HEADMATCH && CorefRules.entityHeadsAgree(mentionCluster, potentialAntecedent, mention, ant, dict)){
+    if(flags.USE_INCLUSION_HEADMATCH && CorefRules.entityHeadsAgree(features, mentionCluster, potentialAntecedent, mention, ant)){
       ret = true;
     }
     if(flags.USE_RELAXED_HEADMATCH && CorefRules.entityRelaxedHeadsAgreeBetweenMentions(mentionCluster, potentialAntecedent, mention, ant) ){
@@ -394,7 +396,7 @@ public abstract class DeterministicCorefSieve extends Sieve  {
       return false;
     }
 
-    if(flags.USE_INCOMPATIBLE_MODIFIER && ret && CorefRules.entityHaveIncompatibleModifier(mentionCluster, potentialAntecedent)) {
+    if(flags.USE_INCOMPATIBLE_MODIFIER && ret && CorefRules.entityHaveIncompatibleModifier(features, mentionCluster, potentialAntecedent)) {
       return false;
     }
     if(flags.USE_PROPERHEAD_AT_LAST && ret && !CorefRules.entitySameProperHeadLastWord(mentionCluster, potentialAntecedent, mention, ant)) {
@@ -410,7 +412,7 @@ public abstract class DeterministicCorefSieve extends Sieve  {
       return false;
     }
     if(flags.USE_NUMBER_IN_MENTION
-        && CorefRules.entityNumberInLaterMention(mention, ant)) {
+        && CorefRules.entityNumberInLaterMention(features, mention, ant)) {
       if(flags.USE_PROPERHEAD_AT_LAST  && ret && mention.goldCorefClusterID!=ant.goldCorefClusterID) {
       }
       return false;
@@ -20,6 +20,7 @@ import edu.stanford.nlp.coref.data.Dictionaries.Person;
 import edu.stanford.nlp.coref.data.Document;
 import edu.stanford.nlp.coref.data.Document.DocType;
 import edu.stanford.nlp.coref.data.Mention;
+import edu.stanford.nlp.coref.data.MentionFeatures;
 import edu.stanford.nlp.coref.hybrid.HybridCorefPrinter;
 import edu.stanford.nlp.coref.hybrid.HybridCorefProperties;
 import edu.stanford.nlp.coref.hybrid.rf.RandomForest;
@@ -489,19 +490,20 @@ public class RFSieve extends Sieve  {
 
         Set<MentionType> mType = HybridCorefProperties.getMentionType(props, sievename);
         if(mType.contains(MentionType.PROPER) || mType.contains(MentionType.NOMINAL)) {
+          MentionFeatures mentionFeatures = document.getMentionFeatures(dict);
           if(m.headString.equals(candidate.headString)) features.incrementCount("B-HEADMATCH");
-          if(CorefRules.entityHeadsAgree(mC, aC, m, candidate, dict)) features.incrementCount("B-HEADSAGREE");
-          if(CorefRules.entityExactStringMatch(mC, aC, dict, document.roleSet)) features.incrementCount("B-EXACTSTRINGMATCH");
+          if(CorefRules.entityHeadsAgree(mentionFeatures, mC, aC, m, candidate)) features.incrementCount("B-HEADSAGREE");
+          if(CorefRules.entityExactStringMatch(mentionFeatures, mC, aC, document.roleSet)) features.incrementCount("B-EXACTSTRINGMATCH");
           if(CorefRules.entityHaveExtraProperNoun(m, candidate, new HashSet<>())) features.incrementCount("B-HAVE-EXTRA-PROPER-NOUN");
           if(CorefRules.entityBothHaveProper(mC, aC)) features.incrementCount("B-BOTH-HAVE-PROPER");
           if(CorefRules.entityHaveDifferentLocation(m, candidate, dict)) features.incrementCount("B-HAVE-DIFF-LOC");
-          if(CorefRules.entityHaveIncompatibleModifier(mC, aC)) features.incrementCount("B-HAVE-INCOMPATIBLE-MODIFIER");
+          if(CorefRules.entityHaveIncompatibleModifier(mentionFeatures, mC, aC)) features.incrementCount("B-HAVE-INCOMPATIBLE-MODIFIER");
           if(CorefRules.entityIsAcronym(document, mC, aC)) features.incrementCount("B-IS-ACRONYM");
           if(CorefRules.entityIsApposition(mC, aC, m, candidate)) features.incrementCount("B-IS-APPOSITION");
           if(CorefRules.entityIsPredicateNominatives(mC, aC, m, candidate)) features.incrementCount("B-IS-PREDICATE-NOMINATIVES");
           if(CorefRules.entityIsRoleAppositive(mC, aC, m, candidate, dict)) features.incrementCount("B-IS-ROLE-APPOSITIVE");
-          if(CorefRules.entityNumberInLaterMention(m, candidate)) features.incrementCount("B-NUMBER-IN-LATER");
-          if(CorefRules.entityRelaxedExactStringMatch(mC, aC, m, candidate, dict, document.roleSet)) features.incrementCount("B-RELAXED-EXACT-STRING-MATCH");
+          if(CorefRules.entityNumberInLaterMention(mentionFeatures, m, candidate)) features.incrementCount("B-NUMBER-IN-LATER");
+          if(CorefRules.entityRelaxedExactStringMatch(mentionFeatures, mC, aC, m, candidate, document.roleSet)) features.incrementCount("B-RELAXED-EXACT-STRING-MATCH");
           if(CorefRules.entityRelaxedHeadsAgreeBetweenMentions(mC, aC, m, candidate)) features.incrementCount("B-RELAXED-HEAD-AGREE");
           if(CorefRules.entitySameProperHeadLastWord(m, candidate)) features.incrementCount("B-SAME-PROPER-HEAD");
           if(CorefRules.entitySameProperHeadLastWord(mC, aC, m, candidate)) features.incrementCount("B-CLUSTER-SAME-PROPER-HEAD");
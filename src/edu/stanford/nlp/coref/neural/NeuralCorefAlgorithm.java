@@ -68,31 +68,39 @@ public class NeuralCorefAlgorithm implements CorefAlgorithm {
     }
 
     SimpleMatrix documentEmbedding = embeddingExtractor.getDocumentEmbedding(document);
-    Map<Integer, SimpleMatrix> antecedentEmbeddings = new HashMap<>();
-    Map<Integer, SimpleMatrix> anaphorEmbeddings = new HashMap<>();
+    Map<Integer, Integer> mentionIndices = new HashMap<>();
+    List<SimpleMatrix> mentionEmbeddings = new ArrayList<>(sortedMentions.size());
     Counter<Integer> anaphoricityScores = new ClassicCounter<>();
     for (Mention m : sortedMentions) {
       SimpleMatrix mentionEmbedding = embeddingExtractor.getMentionEmbeddings(m, documentEmbedding);
-      antecedentEmbeddings.put(m.mentionID, model.getAntecedentEmbedding(mentionEmbedding));
-      anaphorEmbeddings.put(m.mentionID, model.getAnaphorEmbedding(mentionEmbedding));
+      mentionIndices.put(m.mentionID, mentionEmbeddings.size());
+      mentionEmbeddings.add(mentionEmbedding);
       anaphoricityScores.incrementCount(m.mentionID,
           model.getAnaphoricityScore(mentionEmbedding,
               featureExtractor.getAnaphoricityFeatures(m, document, mentionsByHeadIndex)));
     }
+    NeuralCorefModel.PairwiseScorer pairwiseScorer = model.getPairwiseScorer(mentionEmbeddings);
 
     Map<Integer, List<Integer>> mentionToCandidateAntecedents = CorefUtils.heuristicFilter(sortedMentions,
         maxMentionDistance, maxMentionDistanceWithStringMatch);
     for (Map.Entry<Integer, List<Integer>> e : mentionToCandidateAntecedents.entrySet()) {
       double bestScore = anaphoricityScores.getCount(e.getKey()) - 50 * (greedyness - 0.5);
       int m = e.getKey();
+      List<Integer> candidates = e.getValue();
+      int[] candidateIndices = new int[candidates.size()];
+      List<SimpleMatrix> pairFeatures = new ArrayList<>(candidates.size());
+      for (int i = 0; i < candidates.size(); i++) {
+        int ca = candidates.get(i);
+        candidateIndices[i] = mentionIndices.get(ca);
+        pairFeatures.add(featureExtractor.getPairFeatures(new Pair<>(ca, m), document, mentionsByHeadIndex));
+      }
+      // all the candidates are scored in one batch
+      double[] scores = pairwiseScorer.score(mentionIndices.get(m), candidateIndices, pairFeatures);
       Integer antecedent = null;
-      for (int ca : e.getValue()) {
-        double score = model.getPairwiseScore(antecedentEmbeddings.get(ca),
-            anaphorEmbeddings.get(m), featureExtractor.getPairFeatures(
-                  new Pair<>(ca, m), document, mentionsByHeadIndex));
-        if (score > bestScore) {
-          bestScore = score;
-          antecedent = ca;
+      for (int i = 0; i < scores.length; i++) {
+        if (scores[i] > bestScore) {
+          bestScore = scores[i];
+          antecedent = candidates.get(i);
         }
       }
 
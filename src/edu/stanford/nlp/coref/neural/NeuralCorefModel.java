@@ -5,6 +5,8 @@ import java.util.List;
 
 import edu.stanford.nlp.neural.Embedding;
 import edu.stanford.nlp.neural.NeuralUtils;
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.ops.CommonOps;
 import org.ejml.simple.SimpleMatrix;
 
 /**
@@ -60,6 +62,103 @@ public class NeuralCorefModel implements Serializable {
     return features.elementSum();
   }
 
+  /**
+   * Returns a scorer for the pairs of mentions of a document, given the embeddings of its mentions.
+   * The scorer isn't thread safe, so use one per document.
+   */
+  public PairwiseScorer getPairwiseScorer(List<SimpleMatrix> mentionEmbeddings) {
+    return new PairwiseScorer(mentionEmbeddings);
+  }
+
+  /**
+   * Scores all the candidate antecedents of an anaphor together, stacking the pairs as the
+   * columns of one matrix so each layer of the network is a single matrix multiplication
+   * instead of one per pair.  The antecedent and anaphor embeddings of all the mentions are
+   * computed up front with one multiplication each, and the intermediate matrices are reused
+   * from one anaphor to the next.
+   */
+  public class PairwiseScorer {
+    /** The antecedent and anaphor embeddings of mention i are column i of these */
+    private final DenseMatrix64F antecedentEmbeddings;
+    private final DenseMatrix64F anaphorEmbeddings;
+    private final DenseMatrix64F pairFeatures = new DenseMatrix64F(1, 1);
+    private DenseMatrix64F layer = new DenseMatrix64F(1, 1);
+    private DenseMatrix64F nextLayer = new DenseMatrix64F(1, 1);
+
+    private PairwiseScorer(List<SimpleMatrix> mentionEmbeddings) {
+      DenseMatrix64F mentions = new DenseMatrix64F(antecedentMatrix.numCols(), mentionEmbeddings.size());
+      for (int i = 0; i < mentionEmbeddings.size(); i++) {
+        setColumn(mentions, i, mentionEmbeddings.get(i).getMatrix());
+      }
+      antecedentEmbeddings = new DenseMatrix64F(antecedentMatrix.numRows(), mentions.numCols);
+      CommonOps.mult(antecedentMatrix.getMatrix(), mentions, antecedentEmbeddings);
+      anaphorEmbeddings = new DenseMatrix64F(anaphorMatrix.numRows(), mentions.numCols);
+      CommonOps.mult(anaphorMatrix.getMatrix(), mentions, anaphorEmbeddings);
+    }
+
+    /**
+     * Returns the same scores as {@link #getPairwiseScore} for the anaphor at index {@code anaphor}
+     * of the mention embeddings and each of the antecedents, given the features of each pair.
+     */
+    public double[] score(int anaphor, int[] antecedents, List<SimpleMatrix> features) {
+      int numPairs = antecedents.length;
+      if (numPairs == 0) {
+        return new double[0];
+      }
+      pairFeatures.reshape(features.get(0).numRows(), numPairs, false);
+      for (int j = 0; j < numPairs; j++) {
+        setColumn(pairFeatures, j, features.get(j).getMatrix());
+      }
+      DenseMatrix64F firstLayer = pairwiseFirstLayerBias.getMatrix();
+      layer.reshape(pairFeaturesMatrix.numRows(), numPairs, false);
+      CommonOps.mult(pairFeaturesMatrix.getMatrix(), pairFeatures, layer);
+      int rows = layer.numRows;
+      for (int j = 0; j < numPairs; j++) {
+        int antecedent = antecedents[j];
+        for (int r = 0; r < rows; r++) {
+          // same order of additions as getPairwiseScore
+          double x = antecedentEmbeddings.data[r * antecedentEmbeddings.numCols + antecedent]
+              + anaphorEmbeddings.data[r * anaphorEmbeddings.numCols + anaphor]
+              + layer.data[r * numPairs + j]
+              + firstLayer.data[r];
+          layer.data[r * numPairs + j] = Math.max(x, 0);
+        }
+      }
+
+      for (int i = 0; i < pairwiseModel.size(); i += 2) {
+        DenseMatrix64F weights = pairwiseModel.get(i).getMatrix();
+        DenseMatrix64F bias = pairwiseModel.get(i + 1).getMatrix();
+        nextLayer.reshape(weights.numRows, numPairs, false);
+        CommonOps.mult(weights, layer, nextLayer);
+        boolean relu = weights.numRows > 1;
+        for (int r = 0; r < weights.numRows; r++) {
+          double b = bias.data[r];
+          for (int j = 0, index = r * numPairs; j < numPairs; j++, index++) {
+            double x = nextLayer.data[index] + b;
+            nextLayer.data[index] = relu ? Math.max(x, 0) : x;
+          }
+        }
+        DenseMatrix64F swap = layer;
+        layer = nextLayer;
+        nextLayer = swap;
+      }
+
+      double[] scores = new double[numPairs];
+      for (int r = 0; r < layer.numRows; r++) {
+        for (int j = 0; j < numPairs; j++) {
+          scores[j] += layer.data[r * numPairs + j];
+        }
+      }
+      return scores;
+    }
+  }
+
+  private static void setColumn(DenseMatrix64F matrix, int column, DenseMatrix64F vector) {
+    for (int r = 0; r < matrix.numRows; r++) {
+      matrix.data[r * matrix.numCols + column] = vector.data[r];
+    }
+  }
+
   public SimpleMatrix getAnaphorEmbedding(SimpleMatrix mentionEmbedding) {
     return anaphorMatrix.mult(mentionEmbedding);
   }
@@ -0,0 +1,523 @@
+package edu.stanford.nlp.graph;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * A read-only copy of a {@link DirectedMultiGraph}, stored in arrays rather than in maps
+ * of maps. The vertices are numbered, and for each vertex the neighbors and the edges to
+ * them are stored contiguously, compressed sparse row style, once in each direction.
+ * This takes a fraction of the memory of the map based graph, and iterating over the
+ * edges or neighbors of a vertex does not touch any hash tables.
+ * <br>
+ * All the methods which read the graph return the same results, in the same order, as
+ * they would on the graph that was copied. The methods which would change the graph
+ * throw an {@link UnsupportedOperationException}; copy the graph with
+ * {@link DirectedMultiGraph#DirectedMultiGraph(DirectedMultiGraph)} to change it.
+ * <br>
+ * Vertices are found by a {@link VertexKey}, a small number which should mostly be
+ * different for different vertices, such as the index of a word in its sentence.
+ * Vertices whose keys are negative, very large or shared are found through a hash map.
+ *
+ * @param <V> Type of the vertices
+ * @param <E> Type of the edges
+ */
+public class CompactDirectedMultiGraph<V, E> extends DirectedMultiGraph<V, E> {
+
+  /**
+   * Gives a small non-negative number for a vertex, which is the same for equal vertices.
+   */
+  @FunctionalInterface
+  public interface VertexKey<V> extends ToIntFunction<V>, Serializable { }
+
+  private final VertexKey<? super V> vertexKey;
+  private final Object[] vertices;
+  /** One more than the position of the vertex with each key, or 0 if there is none. */
+  private final int[] positionsByKey;
+  /** The positions of the vertices which are not in {@link #positionsByKey}, or null if there are none. */
+  private final Map<V, Integer> otherPositions;
+
+  private final Adjacency outgoing;
+  private final Adjacency incoming;
+
+  /** The neighbors of each vertex on one side, and the edges to each of them. */
+  private static class Adjacency implements Serializable {
+    /** Where the neighbors of each vertex start in {@link #neighbors}. */
+    final int[] neighborStarts;
+    /** The positions of the neighbors. */
+    final int[] neighbors;
+    /** Where the edges to each neighbor start in {@link #edges}. */
+    final int[] edgeStarts;
+    final Object[] edges;
+
+    Adjacency(int[] neighborStarts, int[] neighbors, int[] edgeStarts, Object[] edges) {
+      this.neighborStarts = neighborStarts;
+      this.neighbors = neighbors;
+      this.edgeStarts = edgeStarts;
+      this.edges = edges;
+    }
+
+    int firstEdge(int vertex) {
+      return edgeStarts[neighborStarts[vertex]];
+    }
+
+    int lastEdge(int vertex) {
+      return edgeStarts[neighborStarts[vertex + 1]];
+    }
+
+    /** The index in {@link #neighbors} of the given neighbor of the vertex, or -1. */
+    int find(int vertex, int neighbor) {
+      for (int i = neighborStarts[vertex]; i < neighborStarts[vertex + 1]; i++) {
+        if (neighbors[i] == neighbor) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private static final long serialVersionUID = 1L;
+  }
+
+  /**
+   * Copies the graph into arrays.
+   *
+   * @param graph The graph to copy
+   * @param vertexKey A small number for each vertex, such as its index in a sentence
+   */
+  public CompactDirectedMultiGraph(DirectedMultiGraph<V, E> graph, VertexKey<? super V> vertexKey) {
+    super(graph.outerMapFactory, graph.innerMapFactory);
+    this.vertexKey = vertexKey;
+    Map<V, Map<V, List<E>>> outgoingEdges = graph.outgoingEdgeMap();
+    Map<V, Map<V, List<E>>> incomingEdges = graph.incomingEdgeMap();
+
+    int numVertices = outgoingEdges.size();
+    vertices = new Object[numVertices];
+    int maxKey = -1;
+    int p = 0;
+    for (V vertex : outgoingEdges.keySet()) {
+      vertices[p++] = vertex;
+      maxKey = Math.max(maxKey, vertexKey.applyAsInt(vertex));
+    }
+    // keys are expected to be small: beyond this, vertices are looked up in the map
+    positionsByKey = new int[Math.min(maxKey + 1, 4 * numVertices + 16)];
+    Map<V, Integer> others = null;
+    for (p = 0; p < numVertices; p++) {
+      V vertex = vertex(p);
+      int key = vertexKey.applyAsInt(vertex);
+      if (key >= 0 && key < positionsByKey.length && positionsByKey[key] == 0) {
+        positionsByKey[key] = p + 1;
+      } else {
+        if (others == null) {
+          others = new HashMap<>();
+        }
+        others.put(vertex, p);
+      }
+    }
+    otherPositions = others;
+
+    outgoing = makeAdjacency(outgoingEdges);
+    incoming = makeAdjacency(incomingEdges);
+  }
+
+  private Adjacency makeAdjacency(Map<V, Map<V, List<E>>> edgeMap) {
+    int numNeighbors = 0;
+    int numEdges = 0;
+    for (Map<V, List<E>> neighbors : edgeMap.values()) {
+      numNeighbors += neighbors.size();
+      for (List<E> edges : neighbors.values()) {
+        numEdges += edges.size();
+      }
+    }
+    int[] neighborStarts = new int[vertices.length + 1];
+    int[] neighborPositions = new int[numNeighbors];
+    int[] edgeStarts = new int[numNeighbors + 1];
+    Object[] edgeArray = new Object[numEdges];
+    int n = 0;
+    int e = 0;
+    for (int p = 0; p < vertices.length; p++) {
+      neighborStarts[p] = n;
+      Map<V, List<E>> neighbors = edgeMap.get(vertex(p));
+      if (neighbors == null) {
+        continue;
+      }
+      for (Map.Entry<V, List<E>> entry : neighbors.entrySet()) {
+        neighborPositions[n] = position(entry.getKey());
+        edgeStarts[n] = e;
+        n++;
+        for (E edge : entry.getValue()) {
+          edgeArray[e++] = edge;
+        }
+      }
+    }
+    neighborStarts[vertices.length] = n;
+    edgeStarts[n] = e;
+    return new Adjacency(neighborStarts, neighborPositions, edgeStarts, edgeArray);
+  }
+
+  @SuppressWarnings("unchecked")
+  private V vertex(int position) {
+    return (V) vertices[position];
+  }
+
+  /** The position of the vertex, or -1 if it is not in the graph. */
+  @SuppressWarnings("unchecked")
+  private int position(Object vertex) {
+    if (vertex == null) {
+      return -1;
+    }
+    int key;
+    try {
+      key = vertexKey.applyAsInt((V) vertex);
+    } catch (ClassCastException e) {
+      return -1;
+    }
+    if (key >= 0 && key < positionsByKey.length) {
+      int position = positionsByKey[key] - 1;
+      if (position >= 0 && vertices[position].equals(vertex)) {
+        return position;
+      }
+    }
+    if (otherPositions != null) {
+      Integer position = otherPositions.get(vertex);
+      if (position != null) {
+        return position;
+      }
+    }
+    return -1;
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<E> edgeList(Object[] edges, int from, int to) {
+    return (List<E>) Collections.unmodifiableList(Arrays.asList(edges).subList(from, to));
+  }
+
+  /** The vertices at some positions in an array, as a read-only set. */
+  private class VertexSet extends AbstractSet<V> {
+    private final int[] positions; // null for all the vertices in order
+    private final int from;
+    private final int to;
+
+    VertexSet(int[] positions, int from, int to) {
+      this.positions = positions;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public int size() {
+      return to - from;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      int position = position(o);
+      if (position < 0) {
+        return false;
+      }
+      if (positions == null) {
+        return true;
+      }
+      for (int i = from; i < to; i++) {
+        if (positions[i] == position) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+      return new Iterator<V>() {
+        private int next = from;
+
+        @Override
+        public boolean hasNext() {
+          return next < to;
+        }
+
+        @Override
+        public V next() {
+          if (next >= to) {
+            throw new NoSuchElementException();
+          }
+          int i = next++;
+          return vertex(positions == null ? i : positions[i]);
+        }
+      };
+    }
+  }
+
+  /** Iterates over part of an array of edges. */
+  private class EdgeArrayIterator implements Iterator<E> {
+    private final Object[] edges;
+    private int next;
+    private final int end;
+
+    EdgeArrayIterator(Object[] edges, int from, int to) {
+      this.edges = edges;
+      this.next = from;
+      this.end = to;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < end;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+      if (next >= end) {
+        throw new NoSuchElementException("Graph edge iterator exhausted.");
+      }
+      return (E) edges[next++];
+    }
+  }
+
+  private Iterator<E> edgeIterator(Adjacency adjacency, V vertex) {
+    int position = position(vertex);
+    if (position < 0) {
+      return Collections.emptyIterator();
+    }
+    return new EdgeArrayIterator(adjacency.edges, adjacency.firstEdge(position), adjacency.lastEdge(position));
+  }
+
+  private static UnsupportedOperationException readOnly() {
+    return new UnsupportedOperationException("CompactDirectedMultiGraph is read-only; copy it into a DirectedMultiGraph to change it");
+  }
+
+  @Override
+  Map<V, Map<V, List<E>>> outgoingEdgeMap() {
+    return edgeMap(outgoing);
+  }
+
+  @Override
+  Map<V, Map<V, List<E>>> incomingEdgeMap() {
+    return edgeMap(incoming);
+  }
+
+  private Map<V, Map<V, List<E>>> edgeMap(Adjacency adjacency) {
+    Map<V, Map<V, List<E>>> map = outerMapFactory.newMap();
+    for (int p = 0; p < vertices.length; p++) {
+      Map<V, List<E>> neighbors = innerMapFactory.newMap();
+      for (int i = adjacency.neighborStarts[p]; i < adjacency.neighborStarts[p + 1]; i++) {
+        neighbors.put(vertex(adjacency.neighbors[i]),
+                      new ArrayList<>(edgeList(adjacency.edges, adjacency.edgeStarts[i], adjacency.edgeStarts[i + 1])));
+      }
+      map.put(vertex(p), neighbors);
+    }
+    return map;
+  }
+
+  @Override
+  public boolean addVertex(V v) {
+    throw readOnly();
+  }
+
+  @Override
+  public void add(V source, V dest, E data) {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean removeEdges(V source, V dest) {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean removeEdge(V source, V dest, E data) {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean removeVertex(V vertex) {
+    throw readOnly();
+  }
+
+  @Override
+  public boolean removeVertices(Collection<V> vertices) {
+    throw readOnly();
+  }
+
+  @Override
+  public void clear() {
+    throw readOnly();
+  }
+
+  @Override
+  public void removeZeroDegreeNodes() {
+    throw readOnly();
+  }
+
+  @Override
+  public void deleteDuplicateEdges() {
+    throw readOnly();
+  }
+
+  @Override
+  public int getNumVertices() {
+    return vertices.length;
+  }
+
+  @Override
+  public int getNumEdges() {
+    return outgoing.edges.length;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return vertices.length == 0;
+  }
+
+  @Override
+  public boolean containsVertex(V v) {
+    return position(v) >= 0;
+  }
+
+  @Override
+  public List<E> getOutgoingEdges(V v) {
+    int position = position(v);
+    if (position < 0) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<>(edgeList(outgoing.edges, outgoing.firstEdge(position), outgoing.lastEdge(position)));
+  }
+
+  @Override
+  public List<E> getIncomingEdges(V v) {
+    int position = position(v);
+    if (position < 0) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<>(edgeList(incoming.edges, incoming.firstEdge(position), incoming.lastEdge(position)));
+  }
+
+  @Override
+  public Set<V> getParents(V vertex) {
+    int position = position(vertex);
+    if (position < 0) {
+      return null;
+    }
+    return new VertexSet(incoming.neighbors, incoming.neighborStarts[position], incoming.neighborStarts[position + 1]);
+  }
+
+  @Override
+  public Set<V> getChildren(V vertex) {
+    int position = position(vertex);
+    if (position < 0) {
+      return null;
+    }
+    return new VertexSet(outgoing.neighbors, outgoing.neighborStarts[position], outgoing.neighborStarts[position + 1]);
+  }
+
+  @Override
+  public boolean isEdge(V source, V dest) {
+    int sourcePosition = position(source);
+    int destPosition = position(dest);
+    if (sourcePosition < 0 || destPosition < 0) {
+      return false;
+    }
+    int i = outgoing.find(sourcePosition, destPosition);
+    return i >= 0 && outgoing.edgeStarts[i + 1] > outgoing.edgeStarts[i];
+  }
+
+  @Override
+  public Set<V> getAllVertices() {
+    return new VertexSet(null, 0, vertices.length);
+  }
+
+  @Override
+  public List<E> getAllEdges() {
+    return new ArrayList<>(edgeList(outgoing.edges, 0, outgoing.edges.length));
+  }
+
+  @Override
+  public List<E> getEdges(V source, V dest) {
+    int sourcePosition = position(source);
+    int destPosition = position(dest);
+    if (sourcePosition < 0 || destPosition < 0) {
+      return Collections.emptyList();
+    }
+    int i = outgoing.find(sourcePosition, destPosition);
+    if (i < 0) {
+      return Collections.emptyList();
+    }
+    return edgeList(outgoing.edges, outgoing.edgeStarts[i], outgoing.edgeStarts[i + 1]);
+  }
+
+  @Override
+  public int getInDegree(V vertex) {
+    int position = position(vertex);
+    return position < 0 ? 0 : incoming.lastEdge(position) - incoming.firstEdge(position);
+  }
+
+  @Override
+  public int getOutDegree(V vertex) {
+    int position = position(vertex);
+    return position < 0 ? 0 : outgoing.lastEdge(position) - outgoing.firstEdge(position);
+  }
+
+  @Override
+  public Iterator<E> incomingEdgeIterator(final V vertex) {
+    return edgeIterator(incoming, vertex);
+  }
+
+  @Override
+  public Iterable<E> incomingEdgeIterable(final V vertex) {
+    return () -> edgeIterator(incoming, vertex);
+  }
+
+  @Override
+  public Iterator<E> outgoingEdgeIterator(final V vertex) {
+    return edgeIterator(outgoing, vertex);
+  }
+
+  @Override
+  public Iterable<E> outgoingEdgeIterable(final V vertex) {
+    return () -> edgeIterator(outgoing, vertex);
+  }
+
+  @Override
+  public Iterator<E> edgeIterator() {
+    return new EdgeArrayIterator(outgoing.edges, 0, outgoing.edges.length);
+  }
+
+  @Override
+  public Iterable<E> edgeIterable() {
+    return this::edgeIterator;
+  }
+
+  @Override
+  public List<V> topologicalSort() {
+    List<V> result = new ArrayList<>(vertices.length);
+    boolean[] temporary = new boolean[vertices.length];
+    boolean[] permanent = new boolean[vertices.length];
+    for (int p = 0; p < vertices.length; p++) {
+      if ( ! temporary[p]) {
+        topologicalSortHelper(p, temporary, permanent, result);
+      }
+    }
+    Collections.reverse(result);
+    return result;
+  }
+
+  private void topologicalSortHelper(int vertex, boolean[] temporary, boolean[] permanent, List<V> result) {
+    temporary[vertex] = true;
+    for (int i = outgoing.neighborStarts[vertex]; i < outgoing.neighborStarts[vertex + 1]; i++) {
+      int neighbor = outgoing.neighbors[i];
+      if (permanent[neighbor]) {
+        continue;
+      }
+      if (temporary[neighbor]) {
+        throw new IllegalStateException("This graph has cycles. Topological sort not possible: " + this.toString());
+      }
+      topologicalSortHelper(neighbor, temporary, permanent, result);
+    }
+    result.add(vertex(vertex));
+    permanent[vertex] = true;
+  }
+
+  private static final long serialVersionUID = 1L;
+
+}
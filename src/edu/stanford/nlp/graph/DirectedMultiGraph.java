@@ -48,14 +48,14 @@ public class DirectedMultiGraph<V, E> implements Graph<V, E> /* Serializable */{
    */
   public DirectedMultiGraph(DirectedMultiGraph<V,E> graph) {
     this(graph.outerMapFactory, graph.innerMapFactory);
-    for (Map.Entry<V, Map<V, List<E>>> map : graph.outgoingEdges.entrySet()) {
+    for (Map.Entry<V, Map<V, List<E>>> map : graph.outgoingEdgeMap().entrySet()) {
       Map<V, List<E>> edgesCopy = innerMapFactory.newMap();
       for (Map.Entry<V, List<E>> entry : map.getValue().entrySet()) {
         edgesCopy.put(entry.getKey(), Generics.newArrayList(entry.getValue()));
       }
       this.outgoingEdges.put(map.getKey(), edgesCopy);
     }
-    for (Map.Entry<V, Map<V, List<E>>> map : graph.incomingEdges.entrySet()) {
+    for (Map.Entry<V, Map<V, List<E>>> map : graph.incomingEdgeMap().entrySet()) {
       Map<V, List<E>> edgesCopy = innerMapFactory.newMap();
       for (Map.Entry<V, List<E>> entry : map.getValue().entrySet()) {
         edgesCopy.put(entry.getKey(), Generics.newArrayList(entry.getValue()));
@@ -69,7 +69,7 @@ public class DirectedMultiGraph<V, E> implements Graph<V, E> /* Serializable */{
    * will throw off the hash code, messing up your hash table
    */
   public int hashCode() {
-    return outgoingEdges.hashCode();
+    return outgoingEdgeMap().hashCode();
   }
 
   public boolean equals(Object that) {
@@ -77,7 +77,20 @@ public class DirectedMultiGraph<V, E> implements Graph<V, E> /* Serializable */{
       return true;
     if (!(that instanceof DirectedMultiGraph))
       return false;
-    return outgoingEdges.equals(((DirectedMultiGraph<?, ?>) that).outgoingEdges);
+    return outgoingEdgeMap().equals(((DirectedMultiGraph<?, ?>) that).outgoingEdgeMap());
+  }
+
+  /**
+   * The edges out of each vertex, grouped by target. Subclasses which store their
+   * edges differently return an equivalent map, which is only read.
+   */
+  Map<V, Map<V, List<E>>> outgoingEdgeMap() {
+    return outgoingEdges;
+  }
+
+  /** The edges into each vertex, grouped by source, as for {@link #outgoingEdgeMap}. */
+  Map<V, Map<V, List<E>>> incomingEdgeMap() {
+    return incomingEdges;
   }
 
   /**
@@ -385,7 +398,7 @@ public class DirectedMultiGraph<V, E> implements Graph<V, E> /* Serializable */{
    * direction insensitive (the paths can go "up" or through the parents)
    */
   public List<V> getShortestPath(V node1, V node2) {
-    if (!outgoingEdges.containsKey(node1) || !outgoingEdges.containsKey(node2)) {
+    if (!containsVertex(node1) || !containsVertex(node2)) {
       return null;
     }
     return getShortestPath(node1, node2, false);
@@ -405,7 +418,7 @@ public class DirectedMultiGraph<V, E> implements Graph<V, E> /* Serializable */{
    * @return the list of nodes you get through to get there
    */
   public List<V> getShortestPath(V node1, V node2, boolean directionSensitive) {
-    if (!outgoingEdges.containsKey(node1) || !outgoingEdges.containsKey(node2)) {
+    if (!containsVertex(node1) || !containsVertex(node2)) {
       return null;
     }
     return DijkstraShortestPath.getShortestPath(this, node1, node2, directionSensitive);
@@ -663,14 +676,15 @@ public class DirectedMultiGraph<V, E> implements Graph<V, E> /* Serializable */{
   public String toString() {
     StringBuilder s = new StringBuilder();
     s.append("{\n");
+    Map<V, Map<V, List<E>>> outgoing = outgoingEdgeMap();
     s.append("Vertices:\n");
-    for (V vertex : outgoingEdges.keySet()) {
+    for (V vertex : outgoing.keySet()) {
       s.append("  ").append(vertex).append('\n');
     }
     s.append("Edges:\n");
-    for (V source : outgoingEdges.keySet()) {
-      for (V dest : outgoingEdges.get(source).keySet()) {
-        for (E edge : outgoingEdges.get(source).get(dest)) {
+    for (V source : outgoing.keySet()) {
+      for (V dest : outgoing.get(source).keySet()) {
+        for (E edge : outgoing.get(source).get(dest)) {
           s.append("  ").append(source).append(" -> ").append(dest).append(" : ").append(edge).append('\n');
         }
       }
@@ -1181,33 +1181,52 @@ public abstract class AbstractSequenceClassifier<IN extends CoreMap> implements
       }
     };
 
-    MulticoreWrapper<List<IN>, List<IN>> wrapper = null;
-    if (flags.multiThreadClassifier != 0) {
-      wrapper = new MulticoreWrapper<>(flags.multiThreadClassifier, threadProcessor);
-    }
+    if (flags.streamingChunkSize > 0) {
+      boolean[] counted = { resultsCounted };
+      ChunkedDocumentClassifier<IN> streamer = new ChunkedDocumentClassifier<>(this::classify, results -> {
+        try {
+          writeAnswers(results, printWriter, readerWriter);
+        } catch (IOException e) {
+          throw new RuntimeIOException(e);
+        }
+        counted[0] = counted[0] && countResults(results, entityTP, entityFP, entityFN);
+      }, flags.multiThreadClassifier, flags.streamingChunkSize);
+      for (List<IN> doc: documents) {
+        numWords += doc.size();
+        numDocs++;
+        streamer.put(doc);
+      }
+      streamer.finish();
+      resultsCounted = counted[0];
+    } else {
+      MulticoreWrapper<List<IN>, List<IN>> wrapper = null;
+      if (flags.multiThreadClassifier != 0) {
+        wrapper = new MulticoreWrapper<>(flags.multiThreadClassifier, threadProcessor);
+      }
 
-    for (List<IN> doc: documents) {
-      numWords += doc.size();
-      numDocs++;
+      for (List<IN> doc: documents) {
+        numWords += doc.size();
+        numDocs++;
+        if (wrapper != null) {
+          wrapper.put(doc);
+          while (wrapper.peek()) {
+            List<IN> results = wrapper.poll();
+            writeAnswers(results, printWriter, readerWriter);
+            resultsCounted = resultsCounted && countResults(results, entityTP, entityFP, entityFN);
+          }
+        } else {
+          List<IN> results = threadProcessor.process(doc);
+          writeAnswers(results, printWriter, readerWriter);
+          resultsCounted = resultsCounted && countResults(results, entityTP, entityFP, entityFN);
+        }
+      }
       if (wrapper != null) {
-        wrapper.put(doc);
+        wrapper.join();
         while (wrapper.peek()) {
           List<IN> results = wrapper.poll();
           writeAnswers(results, printWriter, readerWriter);
           resultsCounted = resultsCounted && countResults(results, entityTP, entityFP, entityFN);
         }
-      } else {
-        List<IN> results = threadProcessor.process(doc);
-        writeAnswers(results, printWriter, readerWriter);
-        resultsCounted = resultsCounted && countResults(results, entityTP, entityFP, entityFN);
-      }
-    }
-    if (wrapper != null) {
-      wrapper.join();
-      while (wrapper.peek()) {
-        List<IN> results = wrapper.poll();
-        writeAnswers(results, printWriter, readerWriter);
-        resultsCounted = resultsCounted && countResults(results, entityTP, entityFP, entityFN);
       }
     }
 
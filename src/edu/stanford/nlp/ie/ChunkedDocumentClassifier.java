@@ -0,0 +1,182 @@
+package edu.stanford.nlp.ie;
+
+import edu.stanford.nlp.process.WordToSentenceProcessor;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Classifies a stream of documents with bounded memory, for
+ * {@link AbstractSequenceClassifier#classifyAndWriteAnswers} with {@code -streamingChunkSize}.
+ *
+ * Documents are packed into chunks of about {@code chunkSize} tokens. A document longer
+ * than that is first cut at sentence boundaries, so that its pieces can be classified
+ * concurrently; the classified pieces are joined again before the document is passed on.
+ * Chunks are classified by a pool of threads, but at most {@code 2 * numThreads} of them
+ * are in flight at a time: {@link #put} blocks when the window is full. Classified
+ * documents are passed to the output in the order they were put.
+ *
+ * This class is not itself thread-safe: put documents from one thread only.
+ *
+ * @param <IN> The type of the tokens
+ */
+class ChunkedDocumentClassifier<IN> {
+
+  private final Function<List<IN>, List<IN>> classifier;
+  private final Consumer<List<IN>> output;
+  private final int chunkSize;
+  private final int maxInFlight;
+  private final ExecutorService threadPool; // null when classifying in the calling thread
+  private final Deque<Future<List<List<IN>>>> inFlight = new ArrayDeque<>();
+  /** For each chunk in flight, in order, whether each of its pieces ends a document. */
+  private final Deque<boolean[]> inFlightEnds = new ArrayDeque<>();
+
+  private List<List<IN>> chunk = new ArrayList<>();
+  private List<Boolean> chunkEnds = new ArrayList<>();
+  private int chunkTokens; // = 0
+  /** The classified pieces of the document currently being put together again. */
+  private final List<List<IN>> pendingPieces = new ArrayList<>();
+  private WordToSentenceProcessor<IN> sentenceSplitter; // made lazily
+
+  /**
+   * @param classifier Classifies one document or piece of a document
+   * @param output Receives the classified documents, in input order
+   * @param numThreads The number of classifying threads; with 1 everything is done in the calling thread
+   * @param chunkSize About how many tokens are classified together as one task
+   */
+  ChunkedDocumentClassifier(Function<List<IN>, List<IN>> classifier, Consumer<List<IN>> output,
+                            int numThreads, int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+    }
+    this.classifier = classifier;
+    this.output = output;
+    this.chunkSize = chunkSize;
+    int threads = Math.max(1, numThreads);
+    this.maxInFlight = 2 * threads;
+    this.threadPool = threads == 1 ? null : Executors.newFixedThreadPool(threads, r -> {
+      Thread thread = new Thread(r, "Streaming classifier");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /** Adds a document to the stream. This may write out earlier documents, and may block. */
+  void put(List<IN> document) {
+    if (document.size() <= chunkSize) {
+      addPiece(document, true);
+      return;
+    }
+    if (sentenceSplitter == null) {
+      sentenceSplitter = new WordToSentenceProcessor<>();
+    }
+    List<IN> piece = new ArrayList<>();
+    for (List<IN> sentence : sentenceSplitter.process(document)) {
+      if ( ! piece.isEmpty() && piece.size() + sentence.size() > chunkSize) {
+        addPiece(piece, false);
+        piece = new ArrayList<>();
+      }
+      piece.addAll(sentence);
+    }
+    addPiece(piece, true);
+  }
+
+  /** Classifies and writes out all remaining documents, and stops the threads. */
+  void finish() {
+    submitChunk();
+    while ( ! inFlight.isEmpty()) {
+      writeHead();
+    }
+    if (threadPool != null) {
+      threadPool.shutdown();
+    }
+  }
+
+  private void addPiece(List<IN> piece, boolean endsDocument) {
+    chunk.add(piece);
+    chunkEnds.add(endsDocument);
+    chunkTokens += piece.size();
+    if (chunkTokens >= chunkSize) {
+      submitChunk();
+    }
+  }
+
+  private void submitChunk() {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    List<List<IN>> pieces = chunk;
+    boolean[] ends = new boolean[chunkEnds.size()];
+    for (int i = 0; i < ends.length; i++) {
+      ends[i] = chunkEnds.get(i);
+    }
+    chunk = new ArrayList<>();
+    chunkEnds = new ArrayList<>();
+    chunkTokens = 0;
+
+    if (threadPool == null) {
+      writePieces(classifyPieces(pieces), ends);
+      return;
+    }
+    while (inFlight.size() >= maxInFlight) {
+      writeHead();
+    }
+    inFlight.add(threadPool.submit(() -> classifyPieces(pieces)));
+    inFlightEnds.add(ends);
+    // write out whatever is already done, without waiting
+    while ( ! inFlight.isEmpty() && inFlight.peek().isDone()) {
+      writeHead();
+    }
+  }
+
+  private List<List<IN>> classifyPieces(List<List<IN>> pieces) {
+    List<List<IN>> classified = new ArrayList<>(pieces.size());
+    for (List<IN> piece : pieces) {
+      classified.add(classifier.apply(piece));
+    }
+    return classified;
+  }
+
+  private void writeHead() {
+    List<List<IN>> pieces;
+    try {
+      pieces = inFlight.remove().get();
+    } catch (InterruptedException e) {
+      throw new RuntimeInterruptedException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    writePieces(pieces, inFlightEnds.remove());
+  }
+
+  private void writePieces(List<List<IN>> pieces, boolean[] ends) {
+    for (int i = 0; i < ends.length; i++) {
+      if (ends[i] && pendingPieces.isEmpty()) {
+        output.accept(pieces.get(i));
+      } else {
+        pendingPieces.add(pieces.get(i));
+        if (ends[i]) {
+          List<IN> document = new ArrayList<>();
+          for (List<IN> piece : pendingPieces) {
+            document.addAll(piece);
+          }
+          pendingPieces.clear();
+          output.accept(document);
+        }
+      }
+    }
+  }
+
+}
@@ -6,6 +6,7 @@ import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
 import edu.stanford.nlp.stats.GeneralizedCounter;
 import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
 import edu.stanford.nlp.util.logging.Redwood;
 
 import java.util.ArrayList;
@@ -555,31 +556,13 @@ public class CRFCliqueTree<E> implements ListeningSequenceModel  {
       int numClasses, Index<E> classIndex, E backgroundSymbol, CliquePotentialFunction cliquePotentialFunc, double[][][] featureVals) {
 
     FactorTable[] factorTables = new FactorTable[data.length];
-    FactorTable[] messages = new FactorTable[data.length - 1];
-
     for (int i = 0; i < data.length; i++) {
       double[][] featureValByCliqueSize = null;
       if (featureVals != null)
         featureValByCliqueSize = featureVals[i];
       factorTables[i] = getFactorTable(data[i], labelIndices, numClasses, cliquePotentialFunc, featureValByCliqueSize, i);
-
-      // log.info("before calibration,FT["+i+"] = " + factorTables[i].toProbString());
-
-      if (i > 0) {
-        messages[i - 1] = factorTables[i - 1].sumOutFront();
-        // log.info("forward message, message["+(i-1)+"] = " + messages[i-1].toProbString());
-        factorTables[i].multiplyInFront(messages[i - 1]);
-        // log.info("after forward calibration, FT["+i+"] = " + factorTables[i].toProbString());
-      }
-    }
-
-    for (int i = factorTables.length - 2; i >= 0; i--) {
-      FactorTable summedOut = factorTables[i + 1].sumOutEnd();
-      summedOut.divideBy(messages[i]);
-      // log.info("backward summedOut, summedOut= " + summedOut.toProbString());
-      factorTables[i].multiplyInEnd(summedOut);
-      // log.info("after backward calibration, FT["+i+"] = " + factorTables[i].toProbString());
     }
+    calibrate(factorTables);
 
     return new CRFCliqueTree<>(factorTables, classIndex, backgroundSymbol);
   }
@@ -592,64 +575,127 @@ public class CRFCliqueTree<E> implements ListeningSequenceModel  {
       int[][][] data, List<Index<CRFLabel>> labelIndices, int numClasses, Index<E> classIndex, E backgroundSymbol) {
 
     FactorTable[] factorTables = new FactorTable[data.length];
-    FactorTable[] messages = new FactorTable[data.length - 1];
-
     for (int i = 0; i < data.length; i++) {
-
       factorTables[i] = getFactorTable(weights, wscale, weightIndices, data[i], labelIndices, numClasses);
-
-      if (i > 0) {
-        messages[i - 1] = factorTables[i - 1].sumOutFront();
-        factorTables[i].multiplyInFront(messages[i - 1]);
-      }
     }
+    calibrate(factorTables);
 
-    for (int i = factorTables.length - 2; i >= 0; i--) {
+    return new CRFCliqueTree<>(factorTables, classIndex, backgroundSymbol);
+  }
 
-      FactorTable summedOut = factorTables[i + 1].sumOutEnd();
-      summedOut.divideBy(messages[i]);
-      factorTables[i].multiplyInEnd(summedOut);
+  /**
+   * Runs forward-backward message passing over the chain of factor tables, in place.
+   * Messages live in flat per-thread buffers rather than in a FactorTable per position,
+   * so the only allocation per document is the factor tables themselves.
+   * The results are identical to multiplying in {@code sumOutFront()} forward and
+   * {@code sumOutEnd()} divided by the forward message backward.
+   */
+  static void calibrate(FactorTable[] factorTables) {
+    if (Thread.interrupted()) {  // the log sums below skip ArrayMath's per-call check
+      throw new RuntimeInterruptedException();
+    }
+    int length = factorTables.length;
+    if (length < 2) {
+      return;
+    }
+    int messageSize = factorTables[0].size() / factorTables[0].numClasses();
+    CalibrationBuffers buffers = CALIBRATION_BUFFERS.get();
+    double[] messages = buffers.messages((length - 1) * messageSize);
+    double[] backward = buffers.backward(messageSize);
+    int[] argmax = buffers.argmax(messageSize);
+    double[] acc = buffers.acc(messageSize);
+
+    for (int i = 1; i < length; i++) {
+      int offset = (i - 1) * messageSize;
+      factorTables[i - 1].sumOutFront(messages, offset, argmax, acc);
+      factorTables[i].multiplyInFront(messages, offset);
     }
 
-    return new CRFCliqueTree<>(factorTables, classIndex, backgroundSymbol);
+    for (int i = length - 2; i >= 0; i--) {
+      factorTables[i + 1].sumOutEnd(backward);
+      for (int k = 0, offset = i * messageSize; k < messageSize; k++) {
+        double forward = messages[offset + k];
+        if (backward[k] != Double.NEGATIVE_INFINITY || forward != Double.NEGATIVE_INFINITY) {
+          backward[k] -= forward;
+        }
+      }
+      factorTables[i].multiplyInEnd(backward);
+    }
   }
 
-  private static FactorTable getFactorTable(double[] weights, double wScale, int[][] weightIndices, int[][] data,
-      List<Index<CRFLabel>> labelIndices, int numClasses) {
+  /** Scratch arrays reused across documents by one thread. They only ever grow. */
+  private static class CalibrationBuffers {
 
-    FactorTable factorTable = null;
+    private double[] messages = new double[0];
+    private double[] backward = new double[0];
+    private int[] argmax = new int[0];
+    private double[] acc = new double[0];
+    private double[] cliqueA = new double[0];
+    private double[] cliqueB = new double[0];
 
-    for (int j = 0, sz = labelIndices.size(); j < sz; j++) {
-      Index<CRFLabel> labelIndex = labelIndices.get(j);
-      FactorTable ft = new FactorTable(numClasses, j + 1);
+    double[] messages(int size) {
+      if (messages.length < size) {
+        messages = new double[Math.max(size, 2 * messages.length)];
+      }
+      return messages;
+    }
 
-      // ... and each possible labeling for that clique
-      for (int k = 0, liSize = labelIndex.size(); k < liSize; k++) {
-        int[] label = labelIndex.get(k).getLabel();
-        double weight = 0.0;
-        for (int m = 0; m < data[j].length; m++) {
-          int wi = weightIndices[data[j][m]][k];
-          weight += wScale * weights[wi];
-        }
-        // try{
-        ft.setValue(label, weight);
-        // } catch (Exception e) {
-        // System.out.println("CRFCliqueTree::getFactorTable");
-        // System.out.println("NumClasses: " + numClasses + " j+1: " + (j+1));
-        // System.out.println("k: " + k+" label: " +label+" labelIndexSize: " +
-        // labelIndex.size());
-        // throw new RunTimeException(e.toString());
-        // }
+    double[] backward(int size) {
+      if (backward.length < size) {
+        backward = new double[size];
+      }
+      return backward;
+    }
 
+    int[] argmax(int size) {
+      if (argmax.length < size) {
+        argmax = new int[size];
       }
-      if (j > 0) {
-        ft.multiplyInEnd(factorTable);
+      return argmax;
+    }
+
+    double[] acc(int size) {
+      if (acc.length < size) {
+        acc = new double[size];
       }
-      factorTable = ft;
+      return acc;
+    }
 
+    /** Alternating scratch tables for building up the smaller cliques of a position. */
+    double[] clique(int j, int size) {
+      if ((j & 1) == 0) {
+        if (cliqueA.length < size) {
+          cliqueA = new double[size];
+        }
+        return cliqueA;
+      } else {
+        if (cliqueB.length < size) {
+          cliqueB = new double[size];
+        }
+        return cliqueB;
+      }
     }
 
-    return factorTable;
+  } // end class CalibrationBuffers
+
+  private static final ThreadLocal<CalibrationBuffers> CALIBRATION_BUFFERS = ThreadLocal.withInitial(CalibrationBuffers::new);
+
+  /** Gives the potential of labeling {@code labelIndex} for the clique of size {@code cliqueIndex + 1}. */
+  @FunctionalInterface
+  private interface CliqueScorer {
+    double score(int cliqueIndex, int labelIndex);
+  }
+
+  private static FactorTable getFactorTable(double[] weights, double wScale, int[][] weightIndices, int[][] data,
+      List<Index<CRFLabel>> labelIndices, int numClasses) {
+    return getFactorTable(labelIndices, numClasses, (j, k) -> {
+      double weight = 0.0;
+      for (int m = 0; m < data[j].length; m++) {
+        int wi = weightIndices[data[j][m]][k];
+        weight += wScale * weights[wi];
+      }
+      return weight;
+    });
   }
 
   // static FactorTable getFactorTable(double[][] weights, int[][] data, List<Index<CRFLabel>> labelIndices, int numClasses, int posInSent) {
@@ -659,38 +705,55 @@ public class CRFCliqueTree<E> implements ListeningSequenceModel  {
 
   static FactorTable getFactorTable(int[][] data, List<Index<CRFLabel>> labelIndices, int numClasses,
       CliquePotentialFunction cliquePotentialFunc, double[][] featureValByCliqueSize, int posInSent) {
-    FactorTable factorTable = null;
-
-    for (int j = 0, sz = labelIndices.size(); j < sz; j++) {
-      Index<CRFLabel> labelIndex = labelIndices.get(j);
-      FactorTable ft = new FactorTable(numClasses, j + 1);
+    return getFactorTable(labelIndices, numClasses, (j, k) -> {
       double[] featureVal = null;
       if (featureValByCliqueSize != null)
         featureVal = featureValByCliqueSize[j];
+      return cliquePotentialFunc.computeCliquePotential(j+1, k, data[j], featureVal, posInSent);
+    });
+  }
+
+  /**
+   * Builds the factor table for one position as the product of its clique potentials
+   * of every size. Smaller cliques are accumulated in scratch buffers and only the full
+   * window-size table is allocated. Each entry sums the same terms in the same order
+   * as successively multiplying smaller tables in at the end.
+   */
+  private static FactorTable getFactorTable(List<Index<CRFLabel>> labelIndices, int numClasses, CliqueScorer scorer) {
+    int numCliques = labelIndices.size();
+    FactorTable factorTable = new FactorTable(numClasses, numCliques);
+    CalibrationBuffers buffers = CALIBRATION_BUFFERS.get();
+    double[] prev = null;
+    int prevSize = 0;
+
+    for (int j = 0; j < numCliques; j++) {
+      Index<CRFLabel> labelIndex = labelIndices.get(j);
+      int size = prevSize == 0 ? numClasses : prevSize * numClasses;
+      double[] table;
+      if (j == numCliques - 1) {
+        table = factorTable.table();
+      } else {
+        table = buffers.clique(j, size);
+        Arrays.fill(table, 0, size, Double.NEGATIVE_INFINITY);
+      }
 
       // ... and each possible labeling for that clique
       for (int k = 0, liSize = labelIndex.size(); k < liSize; k++) {
-        int[] label = labelIndex.get(k).getLabel();
-        double cliquePotential = cliquePotentialFunc.computeCliquePotential(j+1, k, data[j], featureVal, posInSent);
-        // for (int m = 0; m < data[j].length; m++) {
-        //   weight += weights[data[j][m]][k];
-        // }
-        // try{
-        ft.setValue(label, cliquePotential);
-        // } catch (Exception e) {
-        // System.out.println("CRFCliqueTree::getFactorTable");
-        // System.out.println("NumClasses: " + numClasses + " j+1: " + (j+1));
-        // System.out.println("k: " + k+" label: " +label+" labelIndexSize: " +
-        // labelIndex.size());
-        // throw new RunTimeException(e.toString());
-        // }
-
+        int index = 0;
+        for (int item : labelIndex.get(k).getLabel()) {
+          index = index * numClasses + item;
+        }
+        table[index] = scorer.score(j, k);
       }
       if (j > 0) {
-        ft.multiplyInEnd(factorTable);
+        for (int base = 0; base < size; base += prevSize) {
+          for (int i = 0; i < prevSize; i++) {
+            table[base + i] += prev[i];
+          }
+        }
       }
-      factorTable = ft;
-
+      prev = table;
+      prevSize = size;
     }
 
     return factorTable;
@@ -50,6 +50,8 @@ public class CRFLogConditionalObjectiveFunction extends AbstractStochasticCachin
   protected final double[][] E;
   protected double[][][] parallelE;
   protected double[][][] parallelEhat;
+  /** Used instead of parallelE and parallelEhat when multiThreadGrad &gt; 1; made lazily. */
+  private ShardedExpectedCounts shardedCounts;
 
   protected final int window;
   protected final int numClasses;
@@ -159,13 +161,34 @@ public class CRFLogConditionalObjectiveFunction extends AbstractStochasticCachin
 
   protected void empiricalCountsForADoc(double[][] eHat, int docIndex) {
     int[][][] docData = data[docIndex];
-    int[] docLabels = labels[docIndex];
-    int[] windowLabels = new int[window];
-    Arrays.fill(windowLabels, classIndex.indexOf(backgroundSymbol));
+    int[][] goldLabels = goldCliqueLabels(docIndex);
     double[][][] featureValArr = null;
     if (featureVal != null)
       featureValArr = featureVal[docIndex];
 
+    for (int i = 0; i < docData.length; i++) {
+      for (int j = 0; j < docData[i].length; j++) {
+        int labelIndex = goldLabels[i][j];
+        for (int n = 0; n < docData[i][j].length; n++) {
+          double fVal = 1.0;
+          if (featureValArr != null && j == 0) // j == 0 because only node features gets feature values
+            fVal = featureValArr[i][j][n];
+          eHat[docData[i][j][n]][labelIndex] += fVal;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the index in labelIndices.get(j) of the gold labeling of the
+   * clique of size j+1 ending at each position i of the document.
+   */
+  int[][] goldCliqueLabels(int docIndex) {
+    int[][][] docData = data[docIndex];
+    int[] docLabels = labels[docIndex];
+    int[] windowLabels = new int[window];
+    Arrays.fill(windowLabels, classIndex.indexOf(backgroundSymbol));
+
     if (docLabels.length>docData.length) { // only true for self-training
       // fill the windowLabel array with the extra docLabels
       System.arraycopy(docLabels, 0, windowLabels, 0, windowLabels.length);
@@ -174,23 +197,19 @@ public class CRFLogConditionalObjectiveFunction extends AbstractStochasticCachin
       System.arraycopy(docLabels, docLabels.length-newDocLabels.length, newDocLabels, 0, newDocLabels.length);
       docLabels = newDocLabels;
     }
+    int[][] goldLabels = new int[docData.length][];
     for (int i = 0; i < docData.length; i++) {
       System.arraycopy(windowLabels, 1, windowLabels, 0, window - 1);
       windowLabels[window - 1] = docLabels[i];
+      goldLabels[i] = new int[docData[i].length];
       for (int j = 0; j < docData[i].length; j++) {
         int[] cliqueLabel = new int[j + 1];
         System.arraycopy(windowLabels, window - 1 - j, cliqueLabel, 0, j + 1);
         CRFLabel crfLabel = new CRFLabel(cliqueLabel);
-        int labelIndex = labelIndices.get(j).indexOf(crfLabel);
-        //log.info(crfLabel + " " + labelIndex);
-        for (int n = 0; n < docData[i][j].length; n++) {
-          double fVal = 1.0;
-          if (featureValArr != null && j == 0) // j == 0 because only node features gets feature values
-            fVal = featureValArr[i][j][n];
-          eHat[docData[i][j][n]][labelIndex] += fVal;
-        }
+        goldLabels[i][j] = labelIndices.get(j).indexOf(crfLabel);
       }
     }
+    return goldLabels;
   }
 
   @Override
@@ -261,7 +280,7 @@ public class CRFLogConditionalObjectiveFunction extends AbstractStochasticCachin
   }
 
   /** Compute the log probability of the document given the model with the parameters x. */
-  private double documentLogProbability(int[][][] docData, int docIndex, CRFCliqueTree<String> cliqueTree) {
+  double documentLogProbability(int[][][] docData, int docIndex, CRFCliqueTree<String> cliqueTree) {
     int[] docLabels = labels[docIndex];
     int[] given = new int[window - 1];
     Arrays.fill(given, classIndex.indexOf(backgroundSymbol));
@@ -356,7 +375,23 @@ public class CRFLogConditionalObjectiveFunction extends AbstractStochasticCachin
     return multiThreadGradient(docIDs, false);
   }
 
+  /**
+   * Whether multiThreadGradient may use {@link ShardedExpectedCounts}, which works from
+   * this class's own clique tree and counts code. Subclasses that change how a
+   * document's counts are computed should return false.
+   */
+  protected boolean useShardedGradient() {
+    return true;
+  }
+
   protected double multiThreadGradient(List<Integer> docIDs, boolean calculateEmpirical) {
+    if (multiThreadGrad > 1 && useShardedGradient()) {
+      if (shardedCounts == null) {
+        shardedCounts = new ShardedExpectedCounts(this, multiThreadGrad);
+      }
+      return shardedCounts.compute(docIDs, E, calculateEmpirical ? Ehat : null);
+    }
+
     double objective = 0.0;
     // TODO: This is a bunch of unnecessary heap traffic, should all be on the stack
     if (multiThreadGrad > 1) {
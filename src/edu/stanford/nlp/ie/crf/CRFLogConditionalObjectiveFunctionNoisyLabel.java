@@ -46,6 +46,12 @@ public class CRFLogConditionalObjectiveFunctionNoisyLabel extends CRFLogConditio
     return prob;
   }
 
+  /** Empirical counts here come from a second clique tree, so use the per-thread count arrays. */
+  @Override
+  protected boolean useShardedGradient() {
+    return false;
+  }
+
   @Override
   protected double regularGradientAndValue() {
     int totalLen = data.length;
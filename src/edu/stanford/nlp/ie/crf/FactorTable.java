@@ -410,6 +410,11 @@ public class FactorTable  {
     return unnormalizedLogProbEnd(label) - totalMass();
   }
 
+  /** The backing array, indexed as in {@link #toArray(int)}. Used to fill tables in place. */
+  double[] table() {
+    return table;
+  }
+
   public double getValue(int index) {
     return table[index];
   }
@@ -457,6 +462,20 @@ public class FactorTable  {
     }
   }
 
+  /**
+   * Multiplies in a message over the first {@code windowSize - 1} variables, stored
+   * in {@code message} starting at {@code offset}. Equivalent to
+   * {@code multiplyInFront(other)} for a table {@code other} one variable smaller than this one.
+   */
+  void multiplyInFront(double[] message, int offset) {
+    for (int i = 0, front = offset; i < table.length; i += numClasses, front++) {
+      double m = message[front];
+      for (int k = i, end = i + numClasses; k < end; k++) {
+        table[k] += m;
+      }
+    }
+  }
+
   public void multiplyInEnd(FactorTable other) {
     int divisor = SloppyMath.intPow(numClasses, other.windowSize());
     for (int i = 0; i < table.length; i++) {
@@ -464,26 +483,99 @@ public class FactorTable  {
     }
   }
 
+  /**
+   * Multiplies in a message over the last {@code windowSize - 1} variables.
+   * Equivalent to {@code multiplyInEnd(other)} for a table {@code other} one variable smaller than this one.
+   */
+  void multiplyInEnd(double[] message) {
+    int stride = table.length / numClasses;
+    for (int base = 0; base < table.length; base += stride) {
+      for (int i = 0; i < stride; i++) {
+        table[base + i] += message[i];
+      }
+    }
+  }
+
   public FactorTable sumOutEnd() {
     FactorTable ft = new FactorTable(numClasses, windowSize - 1);
-    for (int i = 0, sz = ft.size(); i < sz; i++) {
-      ft.table[i] = ArrayMath.logSum(table, i * numClasses, (i+1) * numClasses);
-    }
-    /*
-    for (int i = 0; i < table.length; i++) {
-      ft.logIncrementValue(i / numClasses, table[i]);
-    }
-    */
+    sumOutEnd(ft.table);
     return ft;
   }
 
+  /**
+   * Sums out the last variable, writing the {@code size() / numClasses()} resulting
+   * log masses into the front of {@code dest}.
+   */
+  void sumOutEnd(double[] dest) {
+    for (int i = 0, start = 0; start < table.length; i++, start += numClasses) {
+      dest[i] = logSum(table, start, start + numClasses);
+    }
+  }
+
   public FactorTable sumOutFront() {
     FactorTable ft = new FactorTable(numClasses, windowSize - 1);
-    int stride = ft.size();
+    sumOutFront(ft.table, 0, new int[ft.size()], new double[ft.size()]);
+    return ft;
+  }
+
+  /**
+   * Sums out the first variable, writing the {@code size() / numClasses()} resulting
+   * log masses into {@code dest} starting at {@code offset}.
+   * This computes the same values as {@link ArrayMath#logSum(double[], int, int, int)}
+   * over each strided column, but walks the table row by row so that the inner loops
+   * run over contiguous memory. {@code argmax} and {@code acc} are scratch space of at
+   * least that length.
+   */
+  void sumOutFront(double[] dest, int offset, int[] argmax, double[] acc) {
+    int stride = table.length / numClasses;
+    System.arraycopy(table, 0, dest, offset, stride);
+    Arrays.fill(argmax, 0, stride, 0);
+    for (int k = 1; k < numClasses; k++) {
+      for (int i = 0, base = k * stride; i < stride; i++) {
+        if (table[base + i] > dest[offset + i]) {
+          dest[offset + i] = table[base + i];
+          argmax[i] = k;
+        }
+      }
+    }
+    Arrays.fill(acc, 0, stride, 0.0);
+    for (int k = 0; k < numClasses; k++) {
+      for (int i = 0, base = k * stride; i < stride; i++) {
+        double max = dest[offset + i];
+        double v = table[base + i];
+        if (k != argmax[i] && v > max - SloppyMath.LOGTOLERANCE) {
+          acc[i] += Math.exp(v - max);
+        }
+      }
+    }
     for (int i = 0; i < stride; i++) {
-      ft.setValue(i, ArrayMath.logSum(table, i, table.length, stride));
+      if (acc[i] != 0.0) {
+        dest[offset + i] += Math.log(1.0 + acc[i]);
+      }
     }
-    return ft;
+  }
+
+  /**
+   * Same as {@link ArrayMath#logSum(double[], int, int)} on a non-empty range, but without
+   * the per-call interrupt check, which calibration does once per document instead.
+   */
+  private static double logSum(double[] logInputs, int fromIndex, int toIndex) {
+    int maxIdx = fromIndex;
+    double max = logInputs[fromIndex];
+    for (int i = fromIndex + 1; i < toIndex; i++) {
+      if (logInputs[i] > max) {
+        maxIdx = i;
+        max = logInputs[i];
+      }
+    }
+    double intermediate = 0.0;
+    double cutoff = max - SloppyMath.LOGTOLERANCE;
+    for (int i = fromIndex; i < toIndex; i++) {
+      if (i != maxIdx && logInputs[i] > cutoff) {
+        intermediate += Math.exp(logInputs[i] - max);
+      }
+    }
+    return intermediate == 0.0 ? max : max + Math.log(1.0 + intermediate);
   }
 
   public void divideBy(FactorTable other) {
@@ -0,0 +1,240 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.RuntimeInterruptedException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computes the expected (and optionally empirical) feature counts and the log
+ * likelihood of a {@link CRFLogConditionalObjectiveFunction} with several
+ * threads, but with only one copy of the counts arrays.
+ *
+ * Documents are processed in batches of bounded size. In the first phase,
+ * threads take the batch's documents longest first from a shared counter,
+ * calibrate a clique tree for each, and keep only its clique marginals, gold
+ * clique labels and log probability. In the second phase, the features are
+ * cut into more shards than there are threads, and each shard's rows of
+ * {@code E} and {@code Ehat} are updated by a single thread going over the
+ * whole batch. Every count thus receives its contributions in the same order as
+ * in a single-threaded pass, so the gradient doesn't depend on the number of threads.
+ */
+class ShardedExpectedCounts {
+
+  /** Bounds the number of clique marginals kept for one batch (32MB of doubles). */
+  private static final int MAX_BATCH_MARGINALS = 1 << 22;
+  /** Feature shards per thread, so that threads that finish early can take more. */
+  private static final int SHARDS_PER_THREAD = 4;
+
+  private final CRFLogConditionalObjectiveFunction func;
+  private final int numThreads;
+  /** The number of labelings of each clique size. */
+  private final int[] cliqueSizes;
+
+  ShardedExpectedCounts(CRFLogConditionalObjectiveFunction func, int numThreads) {
+    this.func = func;
+    this.numThreads = numThreads;
+    cliqueSizes = new int[func.labelIndices.size()];
+    for (int j = 0; j < cliqueSizes.length; j++) {
+      cliqueSizes[j] = func.labelIndices.get(j).size();
+    }
+  }
+
+  /**
+   * Adds the expected counts of the given documents to {@code E}, and their
+   * empirical counts to {@code Ehat} unless it is null.  The threads are started for the
+   * call and stopped before it returns, as with the MulticoreWrapper of multiThreadGradient.
+   *
+   * @return The summed log probability of the documents
+   */
+  double compute(List<Integer> docIDs, double[][] E, double[][] Ehat) {
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads, r -> {
+      Thread thread = new Thread(r, "CRF gradient");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      double objective = 0.0;
+      int start = 0;
+      while (start < docIDs.size()) {
+        int end = start;
+        long batchMarginals = 0;
+        do {
+          batchMarginals += numMarginals(func.data[docIDs.get(end)]);
+          end++;
+        } while (end < docIDs.size() && batchMarginals + numMarginals(func.data[docIDs.get(end)]) <= MAX_BATCH_MARGINALS);
+        objective += computeBatch(executor, docIDs.subList(start, end), E, Ehat);
+        start = end;
+      }
+      return objective;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private int numMarginals(int[][][] docData) {
+    int count = 0;
+    for (int[][] position : docData) {
+      for (int j = 0; j < position.length; j++) {
+        count += cliqueSizes[j];
+      }
+    }
+    return count;
+  }
+
+  private double computeBatch(ExecutorService executor, List<Integer> batch, double[][] E, double[][] Ehat) {
+    int size = batch.size();
+    double[][] marginals = new double[size][];
+    int[][] gold = Ehat == null ? null : new int[size][];
+    double[] logProbs = new double[size];
+
+    // Phase 1: clique trees, longest documents first
+    Integer[] order = new Integer[size];
+    for (int b = 0; b < size; b++) {
+      order[b] = b;
+    }
+    Arrays.sort(order, Comparator.comparingInt((Integer b) -> func.data[batch.get(b)].length).reversed());
+    AtomicInteger nextDoc = new AtomicInteger();
+    List<Callable<Void>> tasks = new ArrayList<>(numThreads);
+    for (int t = 0; t < numThreads; t++) {
+      tasks.add(() -> {
+        for (int i = nextDoc.getAndIncrement(); i < size; i = nextDoc.getAndIncrement()) {
+          int b = order[i];
+          int docIndex = batch.get(b);
+          marginals[b] = new double[numMarginals(func.data[docIndex])];
+          logProbs[b] = cliqueMarginals(docIndex, marginals[b]);
+          if (gold != null) {
+            gold[b] = goldLabels(docIndex);
+          }
+        }
+        return null;
+      });
+    }
+    runAll(executor, tasks);
+
+    // Phase 2: each feature shard is summed by one thread, in document order
+    int numShards = Math.min(numThreads * SHARDS_PER_THREAD, Math.max(1, E.length));
+    AtomicInteger nextShard = new AtomicInteger();
+    tasks.clear();
+    for (int t = 0; t < numThreads; t++) {
+      tasks.add(() -> {
+        for (int s = nextShard.getAndIncrement(); s < numShards; s = nextShard.getAndIncrement()) {
+          int lo = (int) ((long) E.length * s / numShards);
+          int hi = (int) ((long) E.length * (s + 1) / numShards);
+          for (int b = 0; b < size; b++) {
+            addCounts(batch.get(b), marginals[b], gold == null ? null : gold[b], E, Ehat, lo, hi);
+          }
+        }
+        return null;
+      });
+    }
+    runAll(executor, tasks);
+
+    double objective = 0.0;
+    for (double logProb : logProbs) {
+      objective += logProb;
+    }
+    return objective;
+  }
+
+  /**
+   * Fills in the marginal probability of every labeling of every clique of
+   * the document, position by position.
+   *
+   * @return The log probability of the document's labels
+   */
+  private double cliqueMarginals(int docIndex, double[] marginals) {
+    int[][][] docData = func.data[docIndex];
+    double[][][] featureVal3DArr = func.featureVal == null ? null : func.featureVal[docIndex];
+    CRFCliqueTree<String> cliqueTree = CRFCliqueTree.getCalibratedCliqueTree(docData, func.labelIndices,
+        func.numClasses, func.classIndex, func.backgroundSymbol, func.cliquePotentialFunc, featureVal3DArr);
+    int offset = 0;
+    for (int i = 0; i < docData.length; i++) {
+      for (int j = 0; j < docData[i].length; j++) {
+        Index<CRFLabel> labelIndex = func.labelIndices.get(j);
+        for (int k = 0; k < cliqueSizes[j]; k++) {
+          marginals[offset++] = cliqueTree.prob(i, labelIndex.get(k).getLabel());
+        }
+      }
+    }
+    return func.documentLogProbability(docData, docIndex, cliqueTree);
+  }
+
+  /** The index of the gold labeling of each clique, position by position. */
+  private int[] goldLabels(int docIndex) {
+    int[][] cliqueLabels = func.goldCliqueLabels(docIndex);
+    int count = 0;
+    for (int[] position : cliqueLabels) {
+      count += position.length;
+    }
+    int[] gold = new int[count];
+    int g = 0;
+    for (int[] position : cliqueLabels) {
+      for (int labelIndex : position) {
+        gold[g++] = labelIndex;
+      }
+    }
+    return gold;
+  }
+
+  /**
+   * Does what documentExpectedCounts and empiricalCountsForADoc do for one
+   * document, but only for the features in [lo, hi).
+   */
+  private void addCounts(int docIndex, double[] marginals, int[] gold, double[][] E, double[][] Ehat, int lo, int hi) {
+    int[][][] docData = func.data[docIndex];
+    double[][][] featureVal3DArr = func.featureVal == null ? null : func.featureVal[docIndex];
+    int offset = 0;
+    int g = 0;
+    for (int i = 0; i < docData.length; i++) {
+      for (int j = 0; j < docData[i].length; j++) {
+        int[] features = docData[i][j];
+        int cliqueSize = cliqueSizes[j];
+        for (int n = 0; n < features.length; n++) {
+          int f = features[n];
+          if (f < lo || f >= hi) {
+            continue;
+          }
+          double fVal = 1.0;
+          if (j == 0 && featureVal3DArr != null) { // only node features have feature values
+            fVal = featureVal3DArr[i][j][n];
+          }
+          double[] row = E[f];
+          for (int k = 0; k < cliqueSize; k++) {
+            row[k] += marginals[offset + k] * fVal;
+          }
+          if (gold != null) {
+            Ehat[f][gold[g]] += fVal;
+          }
+        }
+        offset += cliqueSize;
+        g++;
+      }
+    }
+  }
+
+  private static void runAll(ExecutorService executor, List<Callable<Void>> tasks) {
+    try {
+      for (Future<Void> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeInterruptedException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+}
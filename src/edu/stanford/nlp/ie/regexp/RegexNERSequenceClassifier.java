@@ -11,18 +11,23 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Properties;
+import java.util.TreeMap;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
+import java.util.stream.IntStream;
 
 import edu.stanford.nlp.ie.AbstractSequenceClassifier;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.tokensregex.ComplexNodePattern;
+import edu.stanford.nlp.ling.tokensregex.matcher.AhoCorasickMatcher;
 import edu.stanford.nlp.sequences.DocumentReaderAndWriter;
 import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.Generics;
@@ -55,8 +60,9 @@ import edu.stanford.nlp.util.Generics;
  * already been tokenized.  So, for example, with our usual English tokenization, things like genitives
  * and commas at the end of words will be separated in the input and matched as a separate token.
  *
- * This class isn't implemented very efficiently, since every regex is evaluated at every token position.
- * So it can and does get quite slow if you have a lot of patterns in your NER rules.
+ * Entries whose tokens are all plain strings (no regex special characters) are found with one pass of an
+ * {@link AhoCorasickMatcher}, so long lists of names are cheap. But every other regex is evaluated at every
+ * token position, so it can and does get quite slow if you have a lot of real regex patterns in your NER rules.
  * {@code TokensRegex} is a more general framework to provide the functionality of this class.
  * But at present we still use this class.
  *
@@ -70,6 +76,11 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
 
   private final List<Entry> entries;
 
+  /** Finds where entries made only of literal tokens occur; the values are indices into entries. */
+  private final AhoCorasickMatcher literalMatcher;
+  /** The indices of the other entries, which are searched for token by token. */
+  private final int[] regexEntryIndices;
+
   private final Set<String> myLabels;
 
   private final boolean ignoreCase;
@@ -116,6 +127,8 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
     }
 
     this.ignoreCase = ignoreCase;
+    literalMatcher = buildLiteralMatcher(entries, ignoreCase);
+    regexEntryIndices = regexEntryIndices(entries);
     myLabels = Generics.newHashSet();
     // Can always override background or none.
     myLabels.add(flags.backgroundSymbol);
@@ -158,6 +171,8 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
     }
 
     this.ignoreCase = ignoreCase;
+    literalMatcher = buildLiteralMatcher(entries, ignoreCase);
+    regexEntryIndices = regexEntryIndices(entries);
     myLabels = Generics.newHashSet();
     // Can always override background or none.
     myLabels.add(flags.backgroundSymbol);
@@ -168,9 +183,29 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
     // log.info("RegexNER using labels: " + myLabels);
   }
 
+  private static AhoCorasickMatcher buildLiteralMatcher(List<Entry> entries, boolean ignoreCase) {
+    AhoCorasickMatcher.Builder builder = new AhoCorasickMatcher.Builder(ignoreCase);
+    for (int i = 0; i < entries.size(); i++) {
+      Entry entry = entries.get(i);
+      if (entry.literal) {
+        List<String> key = new ArrayList<>(entry.regex.size());
+        for (Pattern p : entry.regex) {
+          key.add(p.pattern());
+        }
+        builder.add(key, i);
+      }
+    }
+    return builder.build();
+  }
+
+  private static int[] regexEntryIndices(List<Entry> entries) {
+    return IntStream.range(0, entries.size()).filter(i -> ! entries.get(i).literal).toArray();
+  }
+
   private static class Entry implements Comparable<Entry> {
     public List<Pattern> regex; // the regex, tokenized by splitting on white space
     public List<String> exact = new ArrayList<>();
+    public final boolean literal; // whether every token of the regex is a plain string
     public String type; // the associated type
     public Set<String> overwritableTypes;
     public double priority;
@@ -181,13 +216,16 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
       this.overwritableTypes = overwritableTypes;
       this.priority = priority;
       // Efficiency shortcut
+      boolean literal = true;
       for (Pattern p : regex) {
         if (p.toString().matches("[a-zA-Z0-9]+")) {
           exact.add(p.toString());
         } else {
           exact.add(null);
         }
+        literal = literal && ! p.pattern().isEmpty() && ComplexNodePattern.isLiteralRegex(p.pattern());
       }
+      this.literal = literal;
     }
 
     /** If the given priorities are equal, an entry whose regex has more tokens is assigned
@@ -225,30 +263,55 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
 
   @Override
   public List<CoreLabel> classify(List<CoreLabel> document) {
-    // This is pretty deathly slow. It loops over each entry, and then loops over each document token for it.
-    // We could gain by compiling into disjunctions patterns for the same class with the same priorities and restrictions?
-    for (Entry entry : entries) {
-      int start = 0; // the index of the token from which we begin our search each iteration
-      while (true) {
-        // only search the part of the document that we haven't yet considered
-        // log.info("REGEX FIND MATCH FOR " + entry.regex.toString());
-        start = findStartIndex(entry, document, start, myLabels, this.ignoreCase);
-        if (start < 0) break; // no match found
-
-        // make sure we annotate only valid POS tags
-        if (containsValidPos(document, start, start + entry.regex.size())) {
-          // annotate each matching token
-          for (int i = start; i < start + entry.regex.size(); i++) {
-            CoreLabel token = document.get(i);
-            token.set(CoreAnnotations.AnswerAnnotation.class, entry.type);
+    // Entries are applied in order, each seeing the annotations of the ones before.
+    // Entries made of plain strings can only match where the literal matcher finds them,
+    // so only those entries and positions are checked. Each other entry is still
+    // tried at every token, which is slow if there are many of them.
+    List<String> words = new ArrayList<>(document.size());
+    for (CoreLabel token : document) {
+      words.add(token.word());
+    }
+    TreeMap<Integer,List<Integer>> literalStarts = new TreeMap<>();
+    literalMatcher.findAll(words, (start, end, index) ->
+        literalStarts.computeIfAbsent(index, k -> new ArrayList<>()).add(start));
+
+    int r = 0;
+    while (r < regexEntryIndices.length || ! literalStarts.isEmpty()) {
+      if (literalStarts.isEmpty() || (r < regexEntryIndices.length && regexEntryIndices[r] < literalStarts.firstKey())) {
+        Entry entry = entries.get(regexEntryIndices[r++]);
+        int start = 0; // the index of the token from which we begin our search each iteration
+        while (true) {
+          // only search the part of the document that we haven't yet considered
+          // log.info("REGEX FIND MATCH FOR " + entry.regex.toString());
+          start = findStartIndex(entry, document, start, myLabels, this.ignoreCase);
+          if (start < 0) break; // no match found
+          annotate(entry, document, start);
+          start++;
+        }
+      } else {
+        Map.Entry<Integer,List<Integer>> occurrences = literalStarts.pollFirstEntry();
+        Entry entry = entries.get(occurrences.getKey());
+        for (int start : occurrences.getValue()) {
+          if (matchesAt(entry, document, start, myLabels, this.ignoreCase)) {
+            annotate(entry, document, start);
           }
         }
-        start++;
       }
     }
     return document;
   }
 
+  private void annotate(Entry entry, List<CoreLabel> document, int start) {
+    // make sure we annotate only valid POS tags
+    if (containsValidPos(document, start, start + entry.regex.size())) {
+      // annotate each matching token
+      for (int i = start; i < start + entry.regex.size(); i++) {
+        CoreLabel token = document.get(i);
+        token.set(CoreAnnotations.AnswerAnnotation.class, entry.type);
+      }
+    }
+  }
+
   /**
    *  Creates a combined list of Entries using the provided mapping file, and sorts them by
    *  first by priority, then the number of tokens in the regex.
@@ -317,25 +380,7 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
     // log.info("REGEX FIND MATCH FOR " + regex.toString() + " length: " + rSize);
 
     for (int start = searchStart, end = document.size() - regex.size(); start <= end; start++) {
-      boolean failed = false;
-      for (int i = 0; i < rSize; i++) {
-        Pattern pattern = regex.get(i);
-        String exact = entry.exact.get(i);
-        CoreLabel token = document.get(start + i);
-        String NERType = token.get(CoreAnnotations.NamedEntityTagAnnotation.class);
-        String currentType = token.get(CoreAnnotations.AnswerAnnotation.class);
-
-        if (
-            currentType != null ||
-            (exact != null && ! (ignoreCase ? exact.equalsIgnoreCase(token.word()) : exact.equals(token.word()))) ||
-            ! (entry.overwritableTypes.contains(NERType) || myLabels.contains(NERType))  ||
-            ! pattern.matcher(token.word()).matches()  // last, as this is likely the expensive operation
-            ) {
-          failed = true;
-          break;
-        }
-      }
-      if (! failed) {
+      if (matchesAt(entry, document, start, myLabels, ignoreCase)) {
         // log.info("MATCHED REGEX:");
         // for(int i = start; i < start + regex.size(); i ++) log.info(" " + document.get(i).word());
         // log.info();
@@ -345,6 +390,28 @@ public class RegexNERSequenceClassifier extends AbstractSequenceClassifier<CoreL
     return -1;
   }
 
+  /** Whether the entry's regex sequence matches the document at index start, under the conditions of findStartIndex. */
+  private static boolean matchesAt(Entry entry, List<CoreLabel> document, int start, Set<String> myLabels, boolean ignoreCase) {
+    List<Pattern> regex = entry.regex;
+    for (int i = 0, rSize = regex.size(); i < rSize; i++) {
+      Pattern pattern = regex.get(i);
+      String exact = entry.exact.get(i);
+      CoreLabel token = document.get(start + i);
+      String NERType = token.get(CoreAnnotations.NamedEntityTagAnnotation.class);
+      String currentType = token.get(CoreAnnotations.AnswerAnnotation.class);
+
+      if (
+          currentType != null ||
+          (exact != null && ! (ignoreCase ? exact.equalsIgnoreCase(token.word()) : exact.equals(token.word()))) ||
+          ! (entry.overwritableTypes.contains(NERType) || myLabels.contains(NERType))  ||
+          ! pattern.matcher(token.word()).matches()  // last, as this is likely the expensive operation
+          ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
 
   @Override
   public List<CoreLabel> classifyWithGlobalInformation(List<CoreLabel> tokenSeq, final CoreMap doc, final CoreMap sent) {
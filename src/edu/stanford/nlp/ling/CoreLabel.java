@@ -33,6 +33,16 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
 
   private static final long serialVersionUID = 2L;
 
+  // Slots of the keys read most often through the accessors below; see ArrayCoreMap.keySlot()
+  private static final int TEXT_SLOT = keySlot(CoreAnnotations.TextAnnotation.class);
+  private static final int VALUE_SLOT = keySlot(CoreAnnotations.ValueAnnotation.class);
+  private static final int TAG_SLOT = keySlot(CoreAnnotations.PartOfSpeechAnnotation.class);
+  private static final int NER_SLOT = keySlot(CoreAnnotations.NamedEntityTagAnnotation.class);
+  private static final int LEMMA_SLOT = keySlot(CoreAnnotations.LemmaAnnotation.class);
+  private static final int INDEX_SLOT = keySlot(CoreAnnotations.IndexAnnotation.class);
+  private static final int BEGIN_SLOT = keySlot(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
+  private static final int END_SLOT = keySlot(CoreAnnotations.CharacterOffsetEndAnnotation.class);
+
 
   // /**
   //  * Should warnings be printed when converting from MapLabel family.
@@ -386,7 +396,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public final void setValue(String value) {
-    set(CoreAnnotations.ValueAnnotation.class, value);
+    setBySlot(CoreAnnotations.ValueAnnotation.class, value, VALUE_SLOT);
   }
 
   /**
@@ -394,7 +404,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public final String value() {
-    return get(CoreAnnotations.ValueAnnotation.class);
+    return getBySlot(CoreAnnotations.ValueAnnotation.class, VALUE_SLOT);
   }
 
   /**
@@ -403,8 +413,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public void setWord(String word) {
-    String originalWord = get(CoreAnnotations.TextAnnotation.class);
-    set(CoreAnnotations.TextAnnotation.class, word);
+    String originalWord = setBySlot(CoreAnnotations.TextAnnotation.class, word, TEXT_SLOT);
     // Pado feb 09: if you change the word, delete the lemma.
     // Gabor dec 2012: check if there was a real change -- this remove is actually rather expensive if it gets called a lot
     // todo [cdm 2015]: probably no one now knows why this was even needed, but maybe it should just be removed. It's kind of weird.
@@ -418,7 +427,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public String word() {
-    return get(CoreAnnotations.TextAnnotation.class);
+    return getBySlot(CoreAnnotations.TextAnnotation.class, TEXT_SLOT);
   }
 
   /**
@@ -426,7 +435,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public void setTag(String tag) {
-    set(CoreAnnotations.PartOfSpeechAnnotation.class, tag);
+    setBySlot(CoreAnnotations.PartOfSpeechAnnotation.class, tag, TAG_SLOT);
   }
 
   /**
@@ -434,7 +443,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public String tag() {
-    return get(CoreAnnotations.PartOfSpeechAnnotation.class);
+    return getBySlot(CoreAnnotations.PartOfSpeechAnnotation.class, TAG_SLOT);
   }
 
   /**
@@ -523,7 +532,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public String ner() {
-    return get(CoreAnnotations.NamedEntityTagAnnotation.class);
+    return getBySlot(CoreAnnotations.NamedEntityTagAnnotation.class, NER_SLOT);
   }
 
   /**
@@ -531,7 +540,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public void setNER(String ner) {
-    set(CoreAnnotations.NamedEntityTagAnnotation.class, ner);
+    setBySlot(CoreAnnotations.NamedEntityTagAnnotation.class, ner, NER_SLOT);
   }
 
   /**
@@ -544,7 +553,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public String lemma() {
-    return get(CoreAnnotations.LemmaAnnotation.class);
+    return getBySlot(CoreAnnotations.LemmaAnnotation.class, LEMMA_SLOT);
   }
 
   /**
@@ -552,7 +561,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public void setLemma(String lemma) {
-    set(CoreAnnotations.LemmaAnnotation.class, lemma);
+    setBySlot(CoreAnnotations.LemmaAnnotation.class, lemma, LEMMA_SLOT);
   }
 
   /**
@@ -597,7 +606,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public int index() {
-    Integer n = get(CoreAnnotations.IndexAnnotation.class);
+    Integer n = getBySlot(CoreAnnotations.IndexAnnotation.class, INDEX_SLOT);
     if(n == null)
       return -1;
     return n;
@@ -608,7 +617,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public void setIndex(int index) {
-    set(CoreAnnotations.IndexAnnotation.class, index);
+    setBySlot(CoreAnnotations.IndexAnnotation.class, index, INDEX_SLOT);
   }
 
   /**
@@ -635,7 +644,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public int beginPosition() {
-    Integer i = get(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
+    Integer i = getBySlot(CoreAnnotations.CharacterOffsetBeginAnnotation.class, BEGIN_SLOT);
     if(i != null) return i;
     return -1;
   }
@@ -645,7 +654,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public int endPosition() {
-    Integer i = get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
+    Integer i = getBySlot(CoreAnnotations.CharacterOffsetEndAnnotation.class, END_SLOT);
     if(i != null) return i;
     return -1;
   }
@@ -655,7 +664,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public void setBeginPosition(int beginPos) {
-    set(CoreAnnotations.CharacterOffsetBeginAnnotation.class, beginPos);
+    setBySlot(CoreAnnotations.CharacterOffsetBeginAnnotation.class, beginPos, BEGIN_SLOT);
   }
 
   /**
@@ -663,7 +672,7 @@ public class CoreLabel extends ArrayCoreMap implements AbstractCoreLabel, HasCat
    */
   @Override
   public void setEndPosition(int endPos) {
-    set(CoreAnnotations.CharacterOffsetEndAnnotation.class, endPos);
+    setBySlot(CoreAnnotations.CharacterOffsetEndAnnotation.class, endPos, END_SLOT);
   }
 
   /**
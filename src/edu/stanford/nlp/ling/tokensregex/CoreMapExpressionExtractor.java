@@ -16,6 +16,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.*;
+import java.util.function.BiFunction;
 import java.util.function.Predicate;
 
 
@@ -54,6 +55,8 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
   private boolean keepTags = false;
   /* Collapses extraction rules - use with care */
   private boolean collapseExtractionRules = false;
+  /* Skips the rules whose triggers show they can't match a sentence */
+  private boolean useTriggers = true;
   private final Class<CoreAnnotation<List<? extends CoreMap>>> tokensAnnotationKey;
   private final Map<Integer, Stage<T>> stages;
 
@@ -79,6 +82,11 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
     SequenceMatchRules.ExtractRule<List<? extends CoreMap>, T> compositeExtractRule;
     /** Filtering rule */
     Predicate<T> filterRule;
+    /**
+     * Triggers of the token pattern rules among the basic and composite rules (rules without
+     * one are applied to every sentence)
+     */
+    final Map<SequenceMatchRules.ExtractRule<?, T>, TokenSequenceTrigger> triggers = new IdentityHashMap<>();
 
     private static <I,O> SequenceMatchRules.ExtractRule<I,O> addRule(SequenceMatchRules.ExtractRule<I, O> origRule,
                                                                      SequenceMatchRules.ExtractRule<I, O> rule) {
@@ -96,10 +104,25 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
 
     private void addCompositeRule(SequenceMatchRules.ExtractRule<List<? extends CoreMap>, T> rule) {
       compositeExtractRule = addRule(compositeExtractRule, rule);
+      addTrigger(rule);
     }
 
     private void addBasicRule(SequenceMatchRules.ExtractRule<CoreMap, T> rule) {
       basicExtractRule = addRule(basicExtractRule, rule);
+      addTrigger(rule);
+    }
+
+    private void addTrigger(SequenceMatchRules.ExtractRule<?, T> rule) {
+      if (rule instanceof SequenceMatchRules.AnnotationExtractRule) {
+        SequenceMatchRules.AnnotationExtractRule aer = (SequenceMatchRules.AnnotationExtractRule) rule;
+        // basic rules over the CoreMap itself rather than one of its token lists can't be triggered
+        if (aer.hasTokensRegexPattern() && (aer.isComposite || aer.annotationField != CoreMap.class)) {
+          TokenSequenceTrigger trigger = TokenSequenceTrigger.of((TokenSequencePattern) aer.pattern);
+          if (trigger != null) {
+            triggers.put(rule, trigger);
+          }
+        }
+      }
     }
 
     private void addFilterRule(Predicate<T> rule) {
@@ -416,9 +439,11 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
   }
 
   private Pair<List<? extends CoreMap>, List<T>> applyCompositeRule(
+          Stage<T> stage,
           SequenceMatchRules.ExtractRule<List<? extends CoreMap>, T> compositeExtractRule,
           List<? extends CoreMap> merged,
-          List<T> matchedExpressions, int limit) {
+          List<T> matchedExpressions, int limit,
+          Map<Object, TokenSequenceTrigger.Index> indices) {
     // Apply higher order rules
     boolean done = false;
     // Limit of number of times rules are applied just in case
@@ -426,10 +451,11 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
     int iters = 0;
     while (! done) {
       List<T> newExprs = new ArrayList<>();
-      boolean extracted = compositeExtractRule.extract(merged, newExprs);
+      boolean extracted = extractTriggered(stage, compositeExtractRule, merged, newExprs, (rule, in) -> in, indices);
       if (verbose && extracted) log.info("applyCompositeRule() extracting with " + compositeExtractRule + " from " + merged + " gives " + newExprs);
       if (extracted) {
         annotateExpressions(merged, newExprs);
+        indices.clear();
         newExprs = MatchedExpression.removeNullValues(newExprs);
         if ( ! newExprs.isEmpty()) {
           newExprs = MatchedExpression.removeNested(newExprs);
@@ -472,6 +498,8 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
     List<T> matchedExpressions = new ArrayList<>();
     List<Integer> stageIds = new ArrayList<>(stages.keySet());
     Collections.sort(stageIds);
+    // Indices of the token lists rules are applied to, for checking their triggers
+    Map<Object, TokenSequenceTrigger.Index> indices = new IdentityHashMap<>();
     for (int stageId : stageIds) {
       Stage<T> stage = stages.get(stageId);
       SequenceMatchRules.ExtractRule<CoreMap, T> basicExtractRule = stage.basicExtractRule;
@@ -479,11 +507,15 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
         matchedExpressions.clear();
       }
       if (basicExtractRule != null) {
-        basicExtractRule.extract(annotation, matchedExpressions);
+        boolean extracted = extractTriggered(stage, basicExtractRule, annotation, matchedExpressions,
+                (rule, in) -> in.get(((SequenceMatchRules.AnnotationExtractRule) rule).annotationField), indices);
         if (verbose && matchedExpressions != null) {
           log.info("extractExpressions() extracting with " + basicExtractRule + " from " + annotation + " gives " + matchedExpressions);
         }
         annotateExpressions(annotation, matchedExpressions);
+        if (extracted) {
+          indices.clear();
+        }
         matchedExpressions = MatchedExpression.removeNullValues(matchedExpressions);
         matchedExpressions = MatchedExpression.removeNested(matchedExpressions);
         matchedExpressions = MatchedExpression.removeOverlapping(matchedExpressions);
@@ -493,7 +525,7 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
       SequenceMatchRules.ExtractRule<List<? extends CoreMap>, T> compositeExtractRule = stage.compositeExtractRule;
       if (compositeExtractRule != null) {
         Pair<List<? extends CoreMap>, List<T>> p = applyCompositeRule(
-                compositeExtractRule, merged, matchedExpressions, stage.limitIters);
+                stage, compositeExtractRule, merged, matchedExpressions, stage.limitIters, indices);
         merged = p.first();
         matchedExpressions = p.second();
       }
@@ -506,6 +538,43 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
     return matchedExpressions;
   }
 
+  /**
+   * Applies a rule, or each of a list of rules in turn, skipping the token pattern rules whose
+   * triggers are missing from the tokens they would be applied to (so that a stage none of whose
+   * rules can match a sentence costs little more than indexing its tokens).  As the actions of
+   * rules may change the tokens, the indices are dropped whenever a rule extracts something.
+   *
+   * @param tokensOf Gives the tokens a rule is applied to, given the rule and its input
+   * @param indices Indices of the token lists rules are applied to
+   * @return Whether any rule extracted something
+   */
+  private <I> boolean extractTriggered(Stage<T> stage, SequenceMatchRules.ExtractRule<I, T> rule, I in, List<T> out,
+                                       BiFunction<SequenceMatchRules.ExtractRule<I, T>, I, Object> tokensOf,
+                                       Map<Object, TokenSequenceTrigger.Index> indices) {
+    if (rule instanceof SequenceMatchRules.ListExtractRule) {
+      boolean extracted = false;
+      for (SequenceMatchRules.ExtractRule<I, T> r : ((SequenceMatchRules.ListExtractRule<I, T>) rule).rules) {
+        if (extractTriggered(stage, r, in, out, tokensOf, indices)) {
+          extracted = true;
+        }
+      }
+      return extracted;
+    }
+    TokenSequenceTrigger trigger = useTriggers ? stage.triggers.get(rule) : null;
+    if (trigger != null) {
+      Object tokens = tokensOf.apply(rule, in);
+      if (tokens instanceof List &&
+          ! trigger.canMatch(indices.computeIfAbsent(tokens, t -> new TokenSequenceTrigger.Index((List<?>) t)))) {
+        return false;
+      }
+    }
+    boolean extracted = rule.extract(in, out);
+    if (extracted) {
+      indices.clear();
+    }
+    return extracted;
+  }
+
   private void annotateExpressions(CoreMap annotation, List<T> expressions) {
     // TODO: Logging can be excessive
     List<T> toDiscard = new ArrayList<>();
@@ -589,6 +658,15 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
     return this;
   }
 
+  /**
+   * Sets whether to skip the token pattern rules whose triggers (words, lemmas or named entity
+   * tags one of which every match of the pattern contains) are missing from a sentence.
+   * This is on by default, and doesn't change what is extracted.
+   */
+  public void setUseTriggers(boolean useTriggers) {
+    this.useTriggers = useTriggers;
+  }
+
   public static void setVerbose(boolean v) {
     verbose = v;
   }
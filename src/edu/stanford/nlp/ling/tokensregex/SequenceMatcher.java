@@ -88,6 +88,10 @@ public class SequenceMatcher<T> extends BasicSequenceMatchResult<T> {
   // Branching limit for searching with back tracking. Higher value makes the search faster but uses more memory.
   int branchLimit = 32;
 
+  // Whether to run the pattern's compiled program (if it has one) instead of its NFA states
+  boolean useProgram = true;
+  SequenceProgram.Runner programRunner;
+
   protected SequenceMatcher(SequencePattern<T> pattern, List<? extends T> elements)
   {
     this.pattern = pattern;
@@ -467,6 +471,9 @@ public class SequenceMatcher<T> extends BasicSequenceMatchResult<T> {
   protected boolean findMatchStart(int start, boolean matchAllTokens) {
     switch (findType) {
       case FIND_NONOVERLAPPING:
+        if (useProgram && pattern.program != null && !matchWithResult) {
+          return findMatchStartProgram(start, matchAllTokens);
+        }
         return findMatchStartBacktracking(start, matchAllTokens);
       case FIND_ALL:
         // TODO: Should use backtracking here too, need to keep track of todo stack
@@ -541,6 +548,27 @@ public class SequenceMatcher<T> extends BasicSequenceMatchResult<T> {
     return false;
   }
 
+  // Runs the compiled program of the pattern (see SequenceProgram), which finds the same match as the NFA
+  protected boolean findMatchStartProgram(int start, boolean matchAllTokens) {
+    if (Thread.interrupted()) {
+      throw new RuntimeInterruptedException();
+    }
+    if (programRunner == null) {
+      programRunner = pattern.program.runner(elements);
+    }
+    if (!programRunner.run(start, regionEnd, matchAllTokens)) {
+      return false;
+    }
+    clearMatched();
+    int[] groups = programRunner.matchedGroups();
+    for (int i = 0; i < matchedGroups.length; i++) {
+      if (groups[2*i] >= 0) {
+        matchedGroups[i] = new MatchedGroup(groups[2*i], groups[2*i+1], null);
+      }
+    }
+    return true;
+  }
+
   /**
    * Checks if the pattern matches the entire sequence
    * @return true if the entire sequence is matched (false otherwise)
@@ -99,6 +99,8 @@ public class SequencePattern<T> implements Serializable {
 
   State root;
   int totalGroups = 0;
+  // The pattern compiled for SequenceMatcher's faster engine (null if it uses features that engine doesn't support)
+  transient SequenceProgram program;
 
   // binding of group number to variable name
   VarGroupBindings varGroupBindings;
@@ -128,6 +130,7 @@ public class SequencePattern<T> implements Serializable {
     Frag f = nodeSequencePattern.build();
     f.connect(MATCH_STATE);
     this.root = f.start;
+    this.program = SequenceProgram.compile(nodeSequencePattern);
     varGroupBindings = new VarGroupBindings(totalGroups+1);
     nodeSequencePattern.updateBindings(varGroupBindings);
   }
@@ -597,7 +600,7 @@ public class SequencePattern<T> implements Serializable {
 
   public static class ValuePatternExpr extends PatternExpr {
 
-    private final PatternExpr expr;
+    final PatternExpr expr;
     private final Object value;
 
     public ValuePatternExpr(PatternExpr expr, Object value) {
@@ -643,9 +646,9 @@ public class SequencePattern<T> implements Serializable {
 
     private static final long serialVersionUID = -6477601300665620926L;
 
-    private final PatternExpr pattern;
-    private final boolean capture; // Do capture or not?  If do capture, an capture group id will be assigned
-    private int captureGroupId; // -1 if this pattern is not part of a capture group or capture group not yet assigned,
+    final PatternExpr pattern;
+    final boolean capture; // Do capture or not?  If do capture, an capture group id will be assigned
+    int captureGroupId; // -1 if this pattern is not part of a capture group or capture group not yet assigned,
                              // otherwise, capture group number
     private final String varname;  // Alternate variable with which to refer to this group
 
@@ -729,10 +732,10 @@ public class SequencePattern<T> implements Serializable {
 
     private static final long serialVersionUID = 3935482630250147745L;
 
-    private final PatternExpr pattern;
-    private final int minMatch;
-    private final int maxMatch;
-    private final boolean greedyMatch;
+    final PatternExpr pattern;
+    final int minMatch;
+    final int maxMatch;
+    final boolean greedyMatch;
 
     public RepeatPatternExpr(PatternExpr pattern, int minMatch, int maxMatch) {
       this(pattern, minMatch, maxMatch, true);
@@ -851,7 +854,7 @@ public class SequencePattern<T> implements Serializable {
 
     private static final long serialVersionUID = 2566259662702631896L;
 
-    private final List<PatternExpr> patterns;
+    final List<PatternExpr> patterns;
 
     public OrPatternExpr(List<PatternExpr> patterns) {
       this.patterns = patterns;
@@ -1087,7 +1090,7 @@ public class SequencePattern<T> implements Serializable {
 
     private static final long serialVersionUID = -5470437627660213806L;
 
-    private final List<PatternExpr> patterns;
+    final List<PatternExpr> patterns;
 
     public AndPatternExpr(List<PatternExpr> patterns) {
       this.patterns = patterns;
@@ -1835,6 +1838,7 @@ public class SequencePattern<T> implements Serializable {
     Frag f = patternExpr.build();
     f.connect(MATCH_STATE);
     this.root = f.start;
+    this.program = SequenceProgram.compile(patternExpr);
     varGroupBindings = new VarGroupBindings(totalGroups+1);
     patternExpr.updateBindings(varGroupBindings);
   }
@@ -0,0 +1,536 @@
+package edu.stanford.nlp.ling.tokensregex;
+
+import java.util.*;
+
+/**
+ * A {@link SequencePattern} compiled into a flat array of int instructions, for the common
+ * case of patterns built only from node patterns, sequences, groups, disjunctions, repeats and
+ * the sequence start and end markers.
+ *
+ * <p>
+ * {@link SequenceMatcher} runs the program instead of the NFA of {@link SequencePattern.State}s
+ * when it can.  The program is simulated one element at a time with a list of threads in order
+ * of priority, where each thread is just an instruction and the positions of the capture groups
+ * in int arrays, so matching allocates nothing per element.  Two threads at the same instruction
+ * have the same future, so only the one with the higher priority is kept, which bounds the work
+ * per element by the size of the program.  The result of each node pattern on each element is
+ * kept in a bitset, so a node pattern is tried at most once on an element however many times
+ * the sequence is searched.  The match chosen is the same one the NFA chooses: the one of the
+ * highest priority (greedy quantifiers and the earlier alternatives of a disjunction first), or
+ * for {@link SequenceMatcher#matches()} the longest one.
+ *
+ * <p>
+ * Patterns with backreferences, conjunctions, multi node patterns, values attached to groups or
+ * node patterns that evaluate expressions (which may bind variables as they match) are not
+ * compiled, and are matched with the NFA as before.  So are repeats of subpatterns which can
+ * match nothing.
+ */
+final class SequenceProgram {
+
+  /** Programs larger than this (counted repeats are unrolled) are not compiled. */
+  private static final int MAX_SIZE = 10000;
+
+  // Instructions.  Unless it jumps, an instruction continues with the next one.
+  /** Consumes one element if node pattern {@code arg1} matches it. */
+  private static final int NODE = 0;
+  /** Continues with {@code arg1} and, at a lower priority, with {@code arg2}. */
+  private static final int SPLIT = 1;
+  /** Continues with {@code arg1}. */
+  private static final int JUMP = 2;
+  /** Starts group {@code arg1} (-1 for a noncapturing group); only passed just before an element is consumed. */
+  private static final int GROUP_START = 3;
+  /** Ends group {@code arg1} (-1 for a noncapturing group). */
+  private static final int GROUP_END = 4;
+  private static final int SEQ_START = 5;
+  private static final int SEQ_END = 6;
+  private static final int MATCH = 7;
+
+  private final int[] ops;
+  private final int[] arg1;
+  private final int[] arg2;
+  /** The distinct node patterns used by the NODE instructions. */
+  private final NodePattern<?>[] nodePatterns;
+  private final int numGroups;
+
+  private SequenceProgram(int[] ops, int[] arg1, int[] arg2, NodePattern<?>[] nodePatterns, int numGroups) {
+    this.ops = ops;
+    this.arg1 = arg1;
+    this.arg2 = arg2;
+    this.nodePatterns = nodePatterns;
+    this.numGroups = numGroups;
+  }
+
+  public int size() {
+    return ops.length;
+  }
+
+  /**
+   * Compiles a pattern (with its capture groups already numbered).
+   *
+   * @return The program, or null if the pattern uses something the program can't express
+   */
+  static SequenceProgram compile(SequencePattern.PatternExpr expr) {
+    Compiler compiler = new Compiler();
+    if ( ! compiler.compile(expr, false)) {
+      return null;
+    }
+    compiler.emit(MATCH, 0, 0);
+    if (compiler.size > MAX_SIZE) {
+      return null;
+    }
+    return new SequenceProgram(Arrays.copyOf(compiler.ops, compiler.size), Arrays.copyOf(compiler.arg1, compiler.size),
+        Arrays.copyOf(compiler.arg2, compiler.size), compiler.nodePatterns.toArray(new NodePattern<?>[0]),
+        compiler.numGroups);
+  }
+
+  private static class Compiler {
+
+    private int[] ops = new int[16];
+    private int[] arg1 = new int[16];
+    private int[] arg2 = new int[16];
+    private int size; // = 0
+    private final List<NodePattern<?>> nodePatterns = new ArrayList<>();
+    private final Map<NodePattern<?>, Integer> nodePatternIndices = new IdentityHashMap<>();
+    private int numGroups; // = 0
+
+    private int emit(int op, int a1, int a2) {
+      if (size == ops.length) {
+        ops = Arrays.copyOf(ops, 2 * size);
+        arg1 = Arrays.copyOf(arg1, 2 * size);
+        arg2 = Arrays.copyOf(arg2, 2 * size);
+      }
+      ops[size] = op;
+      arg1[size] = a1;
+      arg2[size] = a2;
+      return size++;
+    }
+
+    /** Compiles expr, returning false if it can't be. */
+    private boolean compile(SequencePattern.PatternExpr expr, boolean inRepeat) {
+      if (size > MAX_SIZE) {
+        return false;
+      }
+      if (expr instanceof SequencePattern.NodePatternExpr) {
+        NodePattern<?> nodePattern = ((SequencePattern.NodePatternExpr) expr).nodePattern;
+        if ( ! isPure(nodePattern)) {
+          return false;
+        }
+        Integer index = nodePatternIndices.get(nodePattern);
+        if (index == null) {
+          index = nodePatterns.size();
+          nodePatterns.add(nodePattern);
+          nodePatternIndices.put(nodePattern, index);
+        }
+        emit(NODE, index, 0);
+        return true;
+      } else if (expr instanceof SequencePattern.SequenceStartPatternExpr) {
+        emit(SEQ_START, 0, 0);
+        return true;
+      } else if (expr instanceof SequencePattern.SequenceEndPatternExpr) {
+        // the NFA only checks for the end of the sequence after an element is consumed,
+        // which a repeat may postpone until the next element
+        if (inRepeat) {
+          return false;
+        }
+        emit(SEQ_END, 0, 0);
+        return true;
+      } else if (expr instanceof SequencePattern.SequencePatternExpr) {
+        List<SequencePattern.PatternExpr> patterns = ((SequencePattern.SequencePatternExpr) expr).patterns;
+        if (patterns.isEmpty()) {
+          return false;
+        }
+        for (SequencePattern.PatternExpr pattern : patterns) {
+          if ( ! compile(pattern, inRepeat)) {
+            return false;
+          }
+        }
+        return true;
+      } else if (expr instanceof SequencePattern.GroupPatternExpr) {
+        SequencePattern.GroupPatternExpr group = (SequencePattern.GroupPatternExpr) expr;
+        int groupId = group.capture ? group.captureGroupId : -1;
+        numGroups = Math.max(numGroups, groupId + 1);
+        emit(GROUP_START, groupId, 0);
+        if ( ! compile(group.pattern, inRepeat)) {
+          return false;
+        }
+        emit(GROUP_END, groupId, 0);
+        return true;
+      } else if (expr instanceof SequencePattern.OrPatternExpr) {
+        return compileOr(((SequencePattern.OrPatternExpr) expr).patterns, inRepeat);
+      } else if (expr instanceof SequencePattern.RepeatPatternExpr) {
+        return compileRepeat((SequencePattern.RepeatPatternExpr) expr, inRepeat);
+      } else {
+        // backreferences, conjunctions, values, multi node and other special patterns
+        return false;
+      }
+    }
+
+    private boolean compileOr(List<SequencePattern.PatternExpr> patterns, boolean inRepeat) {
+      if (patterns.isEmpty()) {
+        return false;
+      }
+      int[] jumps = new int[patterns.size() - 1];
+      for (int i = 0; i < patterns.size(); i++) {
+        SequencePattern.PatternExpr pattern = patterns.get(i);
+        if (pattern.value() != null) {
+          return false;
+        }
+        if (i < patterns.size() - 1) {
+          int split = emit(SPLIT, size + 1, -1);
+          if ( ! compile(pattern, inRepeat)) {
+            return false;
+          }
+          jumps[i] = emit(JUMP, -1, 0);
+          arg2[split] = size;
+        } else if ( ! compile(pattern, inRepeat)) {
+          return false;
+        }
+      }
+      for (int jump : jumps) {
+        arg1[jump] = size;
+      }
+      return true;
+    }
+
+    private boolean compileRepeat(SequencePattern.RepeatPatternExpr repeat, boolean inRepeat) {
+      if (repeat.minMatch == 1 && repeat.maxMatch == 1) {
+        return compile(repeat.pattern, inRepeat);
+      }
+      // the NFA doesn't agree with itself on how often an empty match repeats
+      if (canMatchEmpty(repeat.pattern)) {
+        return false;
+      }
+      for (int i = 0; i < repeat.minMatch; i++) {
+        if ( ! compile(repeat.pattern, true)) {
+          return false;
+        }
+      }
+      if (repeat.maxMatch < 0) {
+        int split = emit(SPLIT, -1, -1);
+        if ( ! compile(repeat.pattern, true)) {
+          return false;
+        }
+        emit(JUMP, split, 0);
+        setSplit(split, split + 1, size, repeat.greedyMatch);
+      } else {
+        int[] splits = new int[repeat.maxMatch - repeat.minMatch];
+        for (int i = 0; i < splits.length; i++) {
+          splits[i] = emit(SPLIT, -1, -1);
+          if ( ! compile(repeat.pattern, true)) {
+            return false;
+          }
+        }
+        for (int split : splits) {
+          setSplit(split, split + 1, size, repeat.greedyMatch);
+        }
+      }
+      return true;
+    }
+
+    /** Makes a SPLIT try another repetition first if greedy, and last if not. */
+    private void setSplit(int split, int repeat, int exit, boolean greedy) {
+      arg1[split] = greedy ? repeat : exit;
+      arg2[split] = greedy ? exit : repeat;
+    }
+
+  }
+
+  private static boolean canMatchEmpty(SequencePattern.PatternExpr expr) {
+    if (expr instanceof SequencePattern.NodePatternExpr) {
+      return false;
+    } else if (expr instanceof SequencePattern.SequencePatternExpr) {
+      for (SequencePattern.PatternExpr pattern : ((SequencePattern.SequencePatternExpr) expr).patterns) {
+        if ( ! canMatchEmpty(pattern)) {
+          return false;
+        }
+      }
+      return true;
+    } else if (expr instanceof SequencePattern.GroupPatternExpr) {
+      return canMatchEmpty(((SequencePattern.GroupPatternExpr) expr).pattern);
+    } else if (expr instanceof SequencePattern.OrPatternExpr) {
+      for (SequencePattern.PatternExpr pattern : ((SequencePattern.OrPatternExpr) expr).patterns) {
+        if (canMatchEmpty(pattern)) {
+          return true;
+        }
+      }
+      return false;
+    } else if (expr instanceof SequencePattern.RepeatPatternExpr) {
+      SequencePattern.RepeatPatternExpr repeat = (SequencePattern.RepeatPatternExpr) expr;
+      return repeat.minMatch == 0 || canMatchEmpty(repeat.pattern);
+    } else {
+      // including the sequence start and end markers
+      return true;
+    }
+  }
+
+  /** Whether a node pattern always gives the same answer for the same element. */
+  private static boolean isPure(NodePattern<?> nodePattern) {
+    if (nodePattern instanceof CoreMapExpressionNodePattern) {
+      return false;
+    } else if (nodePattern instanceof NodePattern.NegateNodePattern) {
+      return isPure(((NodePattern.NegateNodePattern<?>) nodePattern).p);
+    } else if (nodePattern instanceof NodePattern.ConjNodePattern) {
+      return ((NodePattern.ConjNodePattern<?>) nodePattern).nodePatterns.stream().allMatch(SequenceProgram::isPure);
+    } else if (nodePattern instanceof NodePattern.DisjNodePattern) {
+      return ((NodePattern.DisjNodePattern<?>) nodePattern).nodePatterns.stream().allMatch(SequenceProgram::isPure);
+    }
+    return true;
+  }
+
+  /** Returns a runner for matching this program against the given elements. */
+  Runner runner(List<?> elements) {
+    return new Runner(this, elements);
+  }
+
+
+  /**
+   * Runs a program over one sequence of elements.  Holds the thread lists and the results of
+   * the node patterns on the elements, so it is reused for all the searches of one sequence.
+   */
+  static class Runner {
+
+    private final SequenceProgram program;
+    private final List<?> elements;
+    /** Two ints per group, for its start and end. */
+    private final int width;
+    /** Longs per element in {@link #tried} and {@link #matched}. */
+    private final int words;
+    /** Which node patterns have been tried on each element, and which of those matched. */
+    private long[] tried, matched;
+
+    // Threads waiting for the next element, in priority order.
+    // Instruction -1 marks the position of the best match so far, when looking for the longest.
+    private final int[] waiting;
+    private final int[] waitingGroups;
+    private int numWaiting;
+    private int numLive;
+    // Threads which have consumed the current element, in priority order
+    private final int[] consumed;
+    private final int[] consumedGroups;
+    private int numConsumed;
+
+    /** Instructions already visited in this step are marked with the step number. */
+    private final int[] visited;
+    private int step; // = 0
+    /** Instructions to visit, and group positions to restore once one is done with, in pairs. */
+    private final int[] stack;
+    /** The group positions of the thread being run. */
+    private final int[] groups;
+
+    private final int[] bestGroups;
+    private boolean found;
+    private int bestLength;
+    /** Whether the best match so far is later in the waiting list than the thread being run. */
+    private boolean bestBelow;
+    private boolean markerWaiting;
+    /** Set when a match means the threads below the current one can be dropped. */
+    private boolean cut;
+
+    private Runner(SequenceProgram program, List<?> elements) {
+      this.program = program;
+      this.elements = elements;
+      int size = program.size();
+      width = 2 * program.numGroups;
+      words = (program.nodePatterns.length + 63) / 64;
+      waiting = new int[size + 1];
+      waitingGroups = new int[(size + 1) * width];
+      consumed = new int[size];
+      consumedGroups = new int[size * width];
+      visited = new int[size];
+      stack = new int[8 * size + 2];
+      groups = new int[width];
+      bestGroups = new int[width];
+    }
+
+    /** The start and end of each group of the last match found, or -1 for groups which didn't match. */
+    int[] matchedGroups() {
+      return bestGroups;
+    }
+
+    /**
+     * Looks for a match starting at element {@code start}.
+     *
+     * @param start The element the match starts with
+     * @param end The element to stop before
+     * @param longest Whether to look for the longest match, rather than the one of the highest priority
+     * @return Whether there was a match
+     */
+    boolean run(int start, int end, boolean longest) {
+      if (tried == null) {
+        tried = new long[elements.size() * words];
+        matched = new long[elements.size() * words];
+      }
+      found = false;
+      markerWaiting = false;
+      Arrays.fill(groups, -1);
+      numWaiting = 0;
+      numLive = 0;
+      wait(0);
+      for (int i = start; i < end && numLive > 0; i++) {
+        // Try the element with the waiting threads
+        step++;
+        cut = false;
+        bestBelow = markerWaiting;
+        numConsumed = 0;
+        for (int t = 0; t < numWaiting && ! cut; t++) {
+          if (waiting[t] < 0) {
+            bestBelow = false;
+            continue;
+          }
+          System.arraycopy(waitingGroups, t * width, groups, 0, width);
+          run(waiting[t], i, true, longest);
+        }
+        // Then take the threads which consumed it to the next ones
+        step++;
+        cut = false;
+        bestBelow = false;
+        markerWaiting = false;
+        numWaiting = 0;
+        numLive = 0;
+        for (int t = 0; t < numConsumed && ! cut; t++) {
+          System.arraycopy(consumedGroups, t * width, groups, 0, width);
+          run(consumed[t], i, false, longest);
+        }
+      }
+      return found;
+    }
+
+    /**
+     * Runs one thread from an instruction until it waits for the next element.  Before an
+     * element is consumed (consume is true) this also tries the element; after it, threads stop
+     * at the group starts as well as the node patterns, as the NFA does.
+     */
+    private void run(int pc, int position, boolean consume, boolean longest) {
+      int sp = 0;
+      stack[sp++] = pc;
+      stack[sp++] = 0;
+      while (sp > 0) {
+        int value = stack[--sp];
+        pc = stack[--sp];
+        if (pc < 0) {
+          groups[-pc - 1] = value;
+          continue;
+        }
+        if (visited[pc] == step) {
+          continue;
+        }
+        visited[pc] = step;
+        int arg = program.arg1[pc];
+        switch (program.ops[pc]) {
+          case NODE:
+            if ( ! consume) {
+              wait(pc);
+            } else if (matches(arg, position)) {
+              consumed[numConsumed] = pc + 1;
+              System.arraycopy(groups, 0, consumedGroups, numConsumed * width, width);
+              numConsumed++;
+            }
+            break;
+          case GROUP_START:
+            if ( ! consume) {
+              wait(pc);
+              break;
+            }
+            if (arg >= 0) {
+              sp = save(sp, 2 * arg);
+              sp = save(sp, 2 * arg + 1);
+              groups[2 * arg] = position;
+              groups[2 * arg + 1] = -1;
+            }
+            stack[sp++] = pc + 1;
+            stack[sp++] = 0;
+            break;
+          case GROUP_END:
+            if (arg >= 0) {
+              sp = save(sp, 2 * arg + 1);
+              groups[2 * arg + 1] = consume ? position : position + 1;
+            }
+            stack[sp++] = pc + 1;
+            stack[sp++] = 0;
+            break;
+          case SPLIT:
+            stack[sp++] = program.arg2[pc];
+            stack[sp++] = 0;
+            stack[sp++] = arg;
+            stack[sp++] = 0;
+            break;
+          case JUMP:
+            stack[sp++] = arg;
+            stack[sp++] = 0;
+            break;
+          case SEQ_START:
+            if (consume && position == 0) {
+              stack[sp++] = pc + 1;
+              stack[sp++] = 0;
+            }
+            break;
+          case SEQ_END:
+            if ( ! consume && position == elements.size() - 1) {
+              stack[sp++] = pc + 1;
+              stack[sp++] = 0;
+            }
+            break;
+          case MATCH:
+            match(consume, longest);
+            if (cut) {
+              return;
+            }
+            break;
+          default:
+            throw new IllegalStateException("Unknown instruction " + program.ops[pc]);
+        }
+      }
+    }
+
+    /** Pushes the current value of a group position, to be restored after the instructions pushed next. */
+    private int save(int sp, int index) {
+      stack[sp++] = -index - 1;
+      stack[sp++] = groups[index];
+      return sp;
+    }
+
+    private void wait(int pc) {
+      waiting[numWaiting] = pc;
+      System.arraycopy(groups, 0, waitingGroups, numWaiting * width, width);
+      numWaiting++;
+      numLive++;
+    }
+
+    private void match(boolean consume, boolean longest) {
+      int length = groups[1] - groups[0];
+      if ( ! longest) {
+        // every thread left is of a higher priority than this one
+        System.arraycopy(groups, 0, bestGroups, 0, width);
+        found = true;
+        cut = true;
+      } else if ( ! found || length > bestLength || (length == bestLength && bestBelow)) {
+        System.arraycopy(groups, 0, bestGroups, 0, width);
+        found = true;
+        bestLength = length;
+        bestBelow = false;
+        if ( ! consume) {
+          // a match of the same length may still be found just before the next element is
+          // consumed, and is better if it comes from a thread above this one
+          waiting[numWaiting++] = -1;
+          markerWaiting = true;
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean matches(int nodePattern, int position) {
+      int index = position * words + (nodePattern >>> 6);
+      long bit = 1L << nodePattern;
+      if ((tried[index] & bit) == 0) {
+        tried[index] |= bit;
+        Object element = elements.get(position);
+        if (element != null && ((NodePattern<Object>) program.nodePatterns[nodePattern]).match(element)) {
+          matched[index] |= bit;
+        }
+      }
+      return (matched[index] & bit) != 0;
+    }
+
+  }
+
+}
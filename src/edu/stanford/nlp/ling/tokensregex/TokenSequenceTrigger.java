@@ -0,0 +1,219 @@
+package edu.stanford.nlp.ling.tokensregex;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Pair;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * The words, lemmas or named entity tags one of which every match of a {@link SequencePattern}
+ * over {@link CoreMap}s has to contain, so that {@link CoreMapExpressionExtractor} can skip the
+ * rules which can't match a sentence without running their patterns on it.
+ *
+ * <p>
+ * The trigger is worked out from the pattern: every match of a sequence contains a match of each
+ * of its parts, every match of a disjunction a match of one of its alternatives, and a node
+ * pattern which requires a word, lemma or tag to be one of a few strings (or to match a regex
+ * which is just a disjunction of literal strings) only matches elements with one of those.
+ * Patterns for which no such strings can be found, such as {@code []*} or
+ * {@code [ { tag:/NN.*\/ } ]}, have no trigger.
+ */
+final class TokenSequenceTrigger {
+
+  /** The annotations the words, lemmas and tags of elements are indexed under. */
+  private static final List<Class<? extends CoreAnnotation<String>>> KEYS = Arrays.asList(
+      CoreAnnotations.TextAnnotation.class,
+      CoreAnnotations.LemmaAnnotation.class,
+      CoreAnnotations.NamedEntityTagAnnotation.class);
+
+
+  private static final int REGEX_CASE_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+  /** The terms (see {@link #term}) one of which a sequence has to contain for the pattern to match. */
+  private final Set<String> terms;
+
+  private TokenSequenceTrigger(Set<String> terms) {
+    this.terms = terms;
+  }
+
+  /**
+   * Returns the trigger of the pattern, or null if it has none (and so may match any sequence).
+   */
+  static TokenSequenceTrigger of(SequencePattern<?> pattern) {
+    Set<String> terms = terms(pattern.getPatternExpr());
+    return (terms == null) ? null : new TokenSequenceTrigger(Collections.unmodifiableSet(terms));
+  }
+
+  /** Whether the pattern may match a sequence with the given index (false only if it can't). */
+  boolean canMatch(Index index) {
+    if (index.terms == null) {
+      return true;
+    }
+    for (String term : terms) {
+      if (index.terms.contains(term)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  Set<String> terms() {
+    return terms;
+  }
+
+  @Override
+  public String toString() {
+    return terms.toString();
+  }
+
+  /**
+   * The words, lemmas and named entity tags of the elements of a sequence, exactly and lowercased.
+   */
+  static class Index {
+
+    /** The terms of the elements (null if some element is not a CoreMap, when any pattern may match) */
+    private final Set<String> terms;
+
+    Index(List<?> elements) {
+      Set<String> terms = new HashSet<>();
+      for (Object element : elements) {
+        if ( ! (element instanceof CoreMap)) {
+          terms = null;
+          break;
+        }
+        for (int k = 0; k < KEYS.size(); k++) {
+          String value = ((CoreMap) element).get(KEYS.get(k));
+          if (value != null) {
+            terms.add(term(k, value, false));
+            terms.add(term(k, value, true));
+          }
+        }
+      }
+      this.terms = terms;
+    }
+
+  }
+
+  private static String term(int key, String value, boolean ignoreCase) {
+    return ignoreCase ? ((char) ('a' + key) + value.toLowerCase(Locale.ROOT)) : ((char) ('A' + key) + value);
+  }
+
+  /** The smaller of two sets of terms, either of which may be null for no trigger. */
+  private static Set<String> smaller(Set<String> a, Set<String> b) {
+    if (a == null) return b;
+    if (b == null) return a;
+    return (b.size() < a.size()) ? b : a;
+  }
+
+  private static Set<String> terms(SequencePattern.PatternExpr expr) {
+    if (expr instanceof SequencePattern.NodePatternExpr) {
+      return terms(((SequencePattern.NodePatternExpr) expr).nodePattern);
+    } else if (expr instanceof SequencePattern.SequencePatternExpr) {
+      // any part that has to match will do
+      Set<String> best = null;
+      for (SequencePattern.PatternExpr p : ((SequencePattern.SequencePatternExpr) expr).patterns) {
+        best = smaller(best, terms(p));
+      }
+      return best;
+    } else if (expr instanceof SequencePattern.AndPatternExpr) {
+      Set<String> best = null;
+      for (SequencePattern.PatternExpr p : ((SequencePattern.AndPatternExpr) expr).patterns) {
+        best = smaller(best, terms(p));
+      }
+      return best;
+    } else if (expr instanceof SequencePattern.OrPatternExpr) {
+      Set<String> union = new HashSet<>();
+      for (SequencePattern.PatternExpr p : ((SequencePattern.OrPatternExpr) expr).patterns) {
+        Set<String> terms = terms(p);
+        if (terms == null) {
+          return null;
+        }
+        union.addAll(terms);
+      }
+      return union.isEmpty() ? null : union;
+    } else if (expr instanceof SequencePattern.GroupPatternExpr) {
+      return terms(((SequencePattern.GroupPatternExpr) expr).pattern);
+    } else if (expr instanceof SequencePattern.ValuePatternExpr) {
+      return terms(((SequencePattern.ValuePatternExpr) expr).expr);
+    } else if (expr instanceof SequencePattern.RepeatPatternExpr) {
+      SequencePattern.RepeatPatternExpr repeat = (SequencePattern.RepeatPatternExpr) expr;
+      return (repeat.minMatch > 0) ? terms(repeat.pattern) : null;
+    } else {
+      // backreferences, multinode patterns, and the sequence start and end
+      return null;
+    }
+  }
+
+  private static Set<String> terms(NodePattern<?> nodePattern) {
+    if (nodePattern instanceof CoreMapNodePattern) {
+      // all the annotations have to match
+      Set<String> best = null;
+      for (Pair<?, ?> p : ((CoreMapNodePattern) nodePattern).getAnnotationPatterns()) {
+        for (int k = 0; k < KEYS.size(); k++) {
+          if (KEYS.get(k).equals(p.first)) {
+            best = smaller(best, terms(k, (NodePattern<?>) p.second));
+          }
+        }
+      }
+      return best;
+    } else if (nodePattern instanceof NodePattern.ConjNodePattern) {
+      Set<String> best = null;
+      for (NodePattern<?> p : ((NodePattern.ConjNodePattern<?>) nodePattern).nodePatterns) {
+        best = smaller(best, terms(p));
+      }
+      return best;
+    } else if (nodePattern instanceof NodePattern.DisjNodePattern) {
+      Set<String> union = new HashSet<>();
+      for (NodePattern<?> p : ((NodePattern.DisjNodePattern<?>) nodePattern).nodePatterns) {
+        Set<String> terms = terms(p);
+        if (terms == null) {
+          return null;
+        }
+        union.addAll(terms);
+      }
+      return union.isEmpty() ? null : union;
+    } else {
+      return null;
+    }
+  }
+
+  /** The terms for a string pattern on annotation {@code KEYS.get(key)}, or null if it isn't one we can index. */
+  private static Set<String> terms(int key, NodePattern<?> stringPattern) {
+    Set<String> terms = new HashSet<>();
+    if (stringPattern instanceof ComplexNodePattern.StringAnnotationPattern) {
+      ComplexNodePattern.StringAnnotationPattern p = (ComplexNodePattern.StringAnnotationPattern) stringPattern;
+      if (p.normalize()) {
+        return null;
+      }
+      terms.add(term(key, p.getString(), p.ignoreCase()));
+    } else if (stringPattern instanceof ComplexNodePattern.StringInSetAnnotationPattern) {
+      ComplexNodePattern.StringInSetAnnotationPattern p = (ComplexNodePattern.StringInSetAnnotationPattern) stringPattern;
+      if (p.normalize()) {
+        return null;
+      }
+      for (String target : p.getTargets()) {
+        terms.add(term(key, target, p.ignoreCase()));
+      }
+    } else if (stringPattern instanceof ComplexNodePattern.StringAnnotationRegexPattern) {
+      Pattern regex = ((ComplexNodePattern.StringAnnotationRegexPattern) stringPattern).getPattern();
+      if ((regex.flags() & ~REGEX_CASE_FLAGS) != 0) {
+        return null;
+      }
+      boolean ignoreCase = (regex.flags() & REGEX_CASE_FLAGS) != 0;
+      // a disjunction of literals such as /this|next|last/
+      for (String literal : regex.pattern().split("\\|", -1)) {
+        if ( ! ComplexNodePattern.LITERAL_PATTERN.matcher(literal).matches()) {
+          return null;
+        }
+        terms.add(term(key, literal, ignoreCase));
+      }
+    } else {
+      return null;
+    }
+    return terms;
+  }
+
+}
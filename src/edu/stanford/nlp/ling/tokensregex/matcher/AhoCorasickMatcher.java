@@ -0,0 +1,512 @@
+package edu.stanford.nlp.ling.tokensregex.matcher;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Finds all occurrences of many literal token sequences in a sequence of tokens in one
+ * left-to-right pass, with an Aho-Corasick automaton over token ids.
+ *
+ * Unlike {@link TrieMapMatcher}, which walks the trie from every start position, the time
+ * taken is linear in the number of tokens plus the number of matches, however many keys
+ * there are. The automaton, vocabulary included, is stored in a few flat int and char tables
+ * (about 30 bytes per trie state) rather than in a tree of Maps, so it stays small for
+ * gazetteers with millions of entries. It can be written to a file, and loading it maps the
+ * file and reads the tables in place, so a loaded automaton takes next to no heap and its
+ * pages are shared by all the processes that load the same file.
+ *
+ * Keys are sequences of Strings and values are ints (typically an index into a list of
+ * entries kept by the caller). The same key may be added with several values.
+ * If the matcher ignores case, keys and tokens are compared as by {@link String#equalsIgnoreCase}.
+ * A built or loaded matcher is immutable and can be shared between threads.
+ */
+public class AhoCorasickMatcher {
+
+  private static final int MAGIC = 0x41484f43; // "AHOC"
+  private static final int VERSION = 2;
+
+  /** Receives the matches found by {@link #findAll}. */
+  @FunctionalInterface
+  public interface MatchHandler {
+    /** Called for an occurrence of a key with the given value over tokens [start, end). */
+    void match(int start, int end, int value);
+  }
+
+  private final boolean ignoreCase;
+  private final int numKeys;
+
+  // vocabulary: open addressed table from token string to id, where the string of id
+  // is wordChars[wordStarts[id] .. wordStarts[id+1])
+  private final IntBuffer wordSlots; // id + 1, or 0 if empty
+  private final int wordMask;
+  private final IntBuffer wordStarts;
+  private final CharBuffer wordChars;
+
+  // states, with the root as state 0; the edges out of state s are
+  // edgeLabels/edgeTargets[edgeStarts[s] .. edgeStarts[s+1]), sorted by label
+  private final IntBuffer edgeStarts;
+  private final IntBuffer edgeLabels;
+  private final IntBuffer edgeTargets;
+  private final IntBuffer failure;
+  /** The nearest state on the failure chain that has values, or -1. */
+  private final IntBuffer dictionaryLinks;
+  private final IntBuffer depths;
+  private final IntBuffer valueStarts;
+  private final IntBuffer values;
+
+  /** Takes the tables in the order they are saved: wordSlots, wordStarts, then the automaton's. */
+  private AhoCorasickMatcher(boolean ignoreCase, int numKeys, CharBuffer wordChars, IntBuffer... tables) {
+    this.ignoreCase = ignoreCase;
+    this.numKeys = numKeys;
+    this.wordSlots = tables[0];
+    this.wordMask = wordSlots.limit() - 1;
+    this.wordStarts = tables[1];
+    this.wordChars = wordChars;
+    this.edgeStarts = tables[2];
+    this.edgeLabels = tables[3];
+    this.edgeTargets = tables[4];
+    this.failure = tables[5];
+    this.dictionaryLinks = tables[6];
+    this.depths = tables[7];
+    this.valueStarts = tables[8];
+    this.values = tables[9];
+  }
+
+  public boolean ignoreCase() {
+    return ignoreCase;
+  }
+
+  /** The number of keys added (counting a key added with several values several times). */
+  public int size() {
+    return numKeys;
+  }
+
+  public int numStates() {
+    return failure.limit();
+  }
+
+  /**
+   * Reports every occurrence of every key in the tokens, including overlapping ones,
+   * ordered by end position and then from longest to shortest.
+   * A null token matches nothing.
+   */
+  public void findAll(List<String> tokens, MatchHandler handler) {
+    int state = 0;
+    for (int i = 0, sz = tokens.size(); i < sz; i++) {
+      int id = wordId(tokens.get(i));
+      if (id < 0) {
+        state = 0; // no key contains this token
+        continue;
+      }
+      int next;
+      while ((next = transition(state, id)) < 0 && state != 0) {
+        state = failure.get(state);
+      }
+      state = next < 0 ? 0 : next;
+      for (int s = hasValues(state) ? state : dictionaryLinks.get(state); s >= 0; s = dictionaryLinks.get(s)) {
+        int depth = depths.get(s);
+        for (int v = valueStarts.get(s), vEnd = valueStarts.get(s + 1); v < vEnd; v++) {
+          handler.match(i + 1 - depth, i + 1, values.get(v));
+        }
+      }
+    }
+  }
+
+  private boolean hasValues(int state) {
+    return valueStarts.get(state) < valueStarts.get(state + 1);
+  }
+
+  private int wordId(String word) {
+    if (word == null) {
+      return -1;
+    }
+    if (ignoreCase) {
+      word = foldCase(word);
+    }
+    for (int slot = spread(word.hashCode()) & wordMask; ; slot = (slot + 1) & wordMask) {
+      int entry = wordSlots.get(slot);
+      if (entry == 0) {
+        return -1;
+      }
+      if (wordEquals(entry - 1, word)) {
+        return entry - 1;
+      }
+    }
+  }
+
+  private boolean wordEquals(int id, String word) {
+    int start = wordStarts.get(id);
+    int length = word.length();
+    if (wordStarts.get(id + 1) - start != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (wordChars.get(start + i) != word.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int transition(int state, int label) {
+    int index = binarySearch(edgeLabels, edgeStarts.get(state), edgeStarts.get(state + 1), label);
+    return index < 0 ? -1 : edgeTargets.get(index);
+  }
+
+  /** As {@link Arrays#binarySearch(int[], int, int, int)}, but returns -1 whenever the key isn't found. */
+  private static int binarySearch(IntBuffer sorted, int from, int to, int key) {
+    int low = from;
+    int high = to - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int midVal = sorted.get(mid);
+      if (midVal < key) {
+        low = mid + 1;
+      } else if (midVal > key) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Maps a String to one that is equal to the fold of another String exactly
+   * when the two are equal ignoring case.
+   */
+  static String foldCase(String str) {
+    char[] chars = null;
+    for (int i = 0, len = str.length(); i < len; i++) {
+      char c = str.charAt(i);
+      char folded = Character.toLowerCase(Character.toUpperCase(c));
+      if (folded != c) {
+        if (chars == null) {
+          chars = str.toCharArray();
+        }
+        chars[i] = folded;
+      }
+    }
+    return chars == null ? str : new String(chars);
+  }
+
+
+  /**
+   * Writes the automaton in a form that {@link #load} reads back: little endian (the order of
+   * most machines, so that loaded tables are read without swapping bytes) and aligned.
+   */
+  public void save(File file) throws IOException {
+    IntBuffer[] tables = { wordSlots, wordStarts, edgeStarts, edgeLabels, edgeTargets, failure, dictionaryLinks, depths, valueStarts, values };
+    // the chars are padded to a whole number of ints, so that the tables after them are aligned
+    int numChars = wordChars.limit();
+    long size = 4 * 5 + 2 * (numChars + numChars % 2);
+    for (IntBuffer table : tables) {
+      size += 4 * (1 + table.limit());
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Too big to save as one AhoCorasickMatcher file: " + size + " bytes");
+    }
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC);
+      buffer.putInt(VERSION);
+      buffer.putInt(ignoreCase ? 1 : 0);
+      buffer.putInt(numKeys);
+      buffer.putInt(numChars);
+      for (int i = 0; i < numChars; i++) {
+        buffer.putChar(wordChars.get(i));
+      }
+      if (numChars % 2 != 0) {
+        buffer.putChar((char) 0);
+      }
+      for (IntBuffer table : tables) {
+        buffer.putInt(table.limit());
+        for (int i = 0, length = table.limit(); i < length; i++) {
+          buffer.putInt(table.get(i));
+        }
+      }
+    }
+  }
+
+  /**
+   * Loads an automaton written by {@link #save}. The file is mapped into memory and matching
+   * reads the tables from the mapping, so nothing but a few buffer objects is put on the heap.
+   * The mapping stays open as long as the matcher is reachable.
+   */
+  public static AhoCorasickMatcher load(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Too big to map as a saved AhoCorasickMatcher: " + file);
+      }
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException("Not a saved AhoCorasickMatcher: " + file);
+      }
+      boolean ignoreCase = buffer.getInt() != 0;
+      int numKeys = buffer.getInt();
+      int numChars = buffer.getInt();
+      CharBuffer wordChars = buffer.asCharBuffer();
+      wordChars.limit(numChars);
+      buffer.position(buffer.position() + 2 * (numChars + numChars % 2));
+      IntBuffer[] tables = new IntBuffer[10];
+      for (int t = 0; t < tables.length; t++) {
+        int length = buffer.getInt();
+        tables[t] = buffer.asIntBuffer();
+        tables[t].limit(length);
+        buffer.position(buffer.position() + 4 * length);
+      }
+      return new AhoCorasickMatcher(ignoreCase, numKeys, wordChars, tables);
+    }
+  }
+
+
+  /** Collects keys and builds an {@link AhoCorasickMatcher} from them. Not thread-safe. */
+  public static class Builder {
+
+    private final boolean ignoreCase;
+    private final Map<String,Integer> wordIds = new HashMap<>();
+    private final List<String> words = new ArrayList<>();
+    /** Maps parent state and label, packed into a long, to the child state. */
+    private final LongIntTable children = new LongIntTable();
+    private int[] parents = new int[1024];
+    private int[] labels = new int[1024];
+    private int numStates = 1; // the root
+    private int[] keyStates = new int[1024];
+    private int[] keyValues = new int[1024];
+    private int numKeys; // = 0
+
+    public Builder(boolean ignoreCase) {
+      this.ignoreCase = ignoreCase;
+      parents[0] = -1;
+      labels[0] = -1;
+    }
+
+    /** Adds a key, which must have at least one token. */
+    public Builder add(List<String> key, int value) {
+      if (key.isEmpty()) {
+        throw new IllegalArgumentException("Keys cannot be empty");
+      }
+      int state = 0;
+      for (String token : key) {
+        if (ignoreCase) {
+          token = foldCase(token);
+        }
+        Integer id = wordIds.get(token);
+        if (id == null) {
+          id = words.size();
+          wordIds.put(token, id);
+          words.add(token);
+        }
+        long edge = ((long) state << 32) | id;
+        int child = children.get(edge);
+        if (child < 0) {
+          child = numStates++;
+          if (child == parents.length) {
+            parents = Arrays.copyOf(parents, 2 * child);
+            labels = Arrays.copyOf(labels, 2 * child);
+          }
+          parents[child] = state;
+          labels[child] = id;
+          children.put(edge, child);
+        }
+        state = child;
+      }
+      if (numKeys == keyStates.length) {
+        keyStates = Arrays.copyOf(keyStates, 2 * numKeys);
+        keyValues = Arrays.copyOf(keyValues, 2 * numKeys);
+      }
+      keyStates[numKeys] = state;
+      keyValues[numKeys] = value;
+      numKeys++;
+      return this;
+    }
+
+    public AhoCorasickMatcher build() {
+      // edges out of each state, sorted by label
+      int[] edgeStarts = countingOffsets(parents, 1, numStates, numStates);
+      int[] edgeTargets = new int[numStates - 1];
+      int[] fill = Arrays.copyOf(edgeStarts, numStates);
+      for (int s = 1; s < numStates; s++) {
+        edgeTargets[fill[parents[s]]++] = s;
+      }
+      int[] edgeLabels = new int[numStates - 1];
+      for (int s = 0; s < numStates; s++) {
+        sortByLabel(edgeTargets, edgeStarts[s], edgeStarts[s + 1]);
+      }
+      for (int e = 0; e < edgeTargets.length; e++) {
+        edgeLabels[e] = labels[edgeTargets[e]];
+      }
+
+      // values of each state, in the order the keys were added
+      int[] valueStarts = countingOffsets(keyStates, 0, numKeys, numStates);
+      int[] values = new int[numKeys];
+      fill = Arrays.copyOf(valueStarts, numStates);
+      for (int k = 0; k < numKeys; k++) {
+        values[fill[keyStates[k]]++] = keyValues[k];
+      }
+
+      // failure and dictionary links, breadth first
+      int[] failure = new int[numStates];
+      int[] dictionaryLinks = new int[numStates];
+      int[] depths = new int[numStates];
+      dictionaryLinks[0] = -1;
+      int[] queue = new int[numStates];
+      int head = 0;
+      int tail = 0;
+      queue[tail++] = 0;
+      while (head < tail) {
+        int state = queue[head++];
+        for (int e = edgeStarts[state]; e < edgeStarts[state + 1]; e++) {
+          int child = edgeTargets[e];
+          int label = edgeLabels[e];
+          depths[child] = depths[state] + 1;
+          int f = 0;
+          if (state != 0) {
+            for (int s = failure[state]; ; s = failure[s]) {
+              int index = Arrays.binarySearch(edgeLabels, edgeStarts[s], edgeStarts[s + 1], label);
+              if (index >= 0) {
+                f = edgeTargets[index];
+                break;
+              }
+              if (s == 0) {
+                break;
+              }
+            }
+          }
+          failure[child] = f;
+          dictionaryLinks[child] = f == 0 ? -1 : (valueStarts[f] < valueStarts[f + 1] ? f : dictionaryLinks[f]);
+          queue[tail++] = child;
+        }
+      }
+
+      // the vocabulary, as one array of chars and a table from strings to ids
+      int[] wordStarts = new int[words.size() + 1];
+      for (int id = 0; id < words.size(); id++) {
+        wordStarts[id + 1] = wordStarts[id] + words.get(id).length();
+      }
+      char[] wordChars = new char[wordStarts[words.size()]];
+      int capacity = Integer.highestOneBit(Math.max(4, words.size()) * 2 - 1) << 1;
+      int[] wordSlots = new int[capacity];
+      for (int id = 0; id < words.size(); id++) {
+        String word = words.get(id);
+        word.getChars(0, word.length(), wordChars, wordStarts[id]);
+        int slot = spread(word.hashCode()) & (capacity - 1);
+        while (wordSlots[slot] != 0) {
+          slot = (slot + 1) & (capacity - 1);
+        }
+        wordSlots[slot] = id + 1;
+      }
+
+      return new AhoCorasickMatcher(ignoreCase, numKeys, CharBuffer.wrap(wordChars),
+          IntBuffer.wrap(wordSlots), IntBuffer.wrap(wordStarts), IntBuffer.wrap(edgeStarts), IntBuffer.wrap(edgeLabels),
+          IntBuffer.wrap(edgeTargets), IntBuffer.wrap(failure), IntBuffer.wrap(dictionaryLinks), IntBuffer.wrap(depths),
+          IntBuffer.wrap(valueStarts), IntBuffer.wrap(values));
+    }
+
+    /** Returns offsets of size numBuckets + 1 for the counts of keys[from .. to). */
+    private static int[] countingOffsets(int[] keys, int from, int to, int numBuckets) {
+      int[] offsets = new int[numBuckets + 1];
+      for (int i = from; i < to; i++) {
+        offsets[keys[i] + 1]++;
+      }
+      for (int b = 0; b < numBuckets; b++) {
+        offsets[b + 1] += offsets[b];
+      }
+      return offsets;
+    }
+
+    private void sortByLabel(int[] states, int from, int to) {
+      // insertion sort for the usual short runs
+      if (to - from > 16) {
+        long[] packed = new long[to - from];
+        for (int i = from; i < to; i++) {
+          packed[i - from] = ((long) labels[states[i]] << 32) | states[i];
+        }
+        Arrays.sort(packed);
+        for (int i = from; i < to; i++) {
+          states[i] = (int) packed[i - from];
+        }
+        return;
+      }
+      for (int i = from + 1; i < to; i++) {
+        int state = states[i];
+        int j = i - 1;
+        while (j >= from && labels[states[j]] > labels[state]) {
+          states[j + 1] = states[j];
+          j--;
+        }
+        states[j + 1] = state;
+      }
+    }
+
+  } // end static class Builder
+
+
+  /** An open addressed map from non-negative long to non-negative int, used while building. */
+  private static class LongIntTable {
+
+    private long[] keys = new long[1024];
+    private int[] vals = new int[1024];
+    private int size; // = 0
+
+    LongIntTable() {
+      Arrays.fill(keys, -1L);
+    }
+
+    int get(long key) {
+      int mask = keys.length - 1;
+      for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+        if (keys[slot] == key) {
+          return vals[slot];
+        }
+        if (keys[slot] == -1L) {
+          return -1;
+        }
+      }
+    }
+
+    void put(long key, int value) {
+      if (2 * (size + 1) > keys.length) {
+        long[] oldKeys = keys;
+        int[] oldVals = vals;
+        keys = new long[2 * oldKeys.length];
+        vals = new int[2 * oldKeys.length];
+        Arrays.fill(keys, -1L);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+          if (oldKeys[i] != -1L) {
+            put(oldKeys[i], oldVals[i]);
+          }
+        }
+      }
+      int mask = keys.length - 1;
+      int slot = hash(key) & mask;
+      while (keys[slot] != -1L && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      if (keys[slot] == -1L) {
+        size++;
+      }
+      keys[slot] = key;
+      vals[slot] = value;
+    }
+
+    private static int hash(long key) {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32));
+    }
+
+  } // end static class LongIntTable
+
+}
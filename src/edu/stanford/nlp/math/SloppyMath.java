@@ -223,7 +223,7 @@ public final class SloppyMath  {
    * difference of them will just be the larger (to 12 or so decimal
    * places for double, and 7 or 8 for float).
    */
-  static final double LOGTOLERANCE = 30.0;
+  public static final double LOGTOLERANCE = 30.0;
   static final float LOGTOLERANCE_F = 20.0f;
 
 
@@ -303,6 +303,40 @@ public final class SloppyMath  {
     }
   }
 
+  private static final double LOG2E = 1.4426950408889634;
+  // ln 2 split in two, so that k * LN2_HI is exact for the k used
+  private static final double LN2_HI = 0.6931471803691238;
+  private static final double LN2_LO = 1.9082149292705877e-10;
+  // adding this rounds a double of magnitude below 2^51 to an integer, left in the low bits
+  private static final double ROUND = 0x1.8p52;
+
+  /**
+   * An approximation to {@link Math#exp} with a relative error below 1e-8 (rather than about
+   * 1e-16), which is faster, especially in loops.  It writes x as k ln 2 + r, with |r| &lt;= ln 2 / 2,
+   * and works out e^r with a polynomial and 2^k by putting k in the exponent.  Results which
+   * would be subnormal (x &lt; -708) come out as 0.0.
+   */
+  public static double fastExp(double x) {
+    if ( ! (x > -708.0)) {
+      return (x != x) ? x : 0.0; // NaN or underflow
+    }
+    if (x > 709.0) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return fastExpInRange(x);
+  }
+
+  /** {@link #fastExp} for -708 &lt; x &lt; 709, without the checks, so loops over it stay branch free. */
+  static double fastExpInRange(double x) {
+    double t = x * LOG2E + ROUND;
+    double k = t - ROUND;
+    double r = (x - k * LN2_HI) - k * LN2_LO;
+    // Taylor series to r^7 / 7!; the error is below r^8 / 8! < 6e-9
+    double p = 1.0 + r * (1.0 + r * (1.0 / 2 + r * (1.0 / 6 + r * (1.0 / 24 + r * (1.0 / 120 + r * (1.0 / 720 + r * (1.0 / 5040)))))));
+    // the low bits of t hold k, which shifted into place gives 2^k
+    return p * Double.longBitsToDouble((Double.doubleToRawLongBits(t) << 52) + (1023L << 52));
+  }
+
   /**
    * Computes n choose k in an efficient way.  Works with
    * k == 0 or k == n but undefined if k &lt; 0 or k &gt; n
@@ -83,6 +83,11 @@ public class LambdaSolve  {
   private double[][] sum;// auxiliary array
   private double[][] sub;// auxiliary array
   public boolean weightRanks = false;
+  /**
+   * If this is true, the normalizing constants are worked out with
+   * ArrayMath.fastLogSum, which is faster but only accurate to about 1e-8.
+   */
+  public boolean fastExp = false;
   private boolean convertValues = false;
 
 
@@ -899,7 +904,7 @@ public class LambdaSolve  {
 
     for (int x = 0; x < probConds.length; x++) {
       //again
-      zlambda[x] = ArrayMath.logSum(probConds[x]); // cpu samples #4,#15: 4.5%
+      zlambda[x] = fastExp ? ArrayMath.fastLogSum(probConds[x]) : ArrayMath.logSum(probConds[x]); // cpu samples #4,#15: 4.5%
       //log.info("zlambda "+x+" "+zlambda[x]);
       s += zlambda[x] * p.data.ptildeX(x) * p.data.getNumber();
 
@@ -967,7 +972,7 @@ public class LambdaSolve  {
 
     for (int x = 0; x < probConds.length; x++) {
       //again
-      zlambda[x] = ArrayMath.logSum(probConds[x]); // cpu samples #4,#15: 4.5%
+      zlambda[x] = fastExp ? ArrayMath.fastLogSum(probConds[x]) : ArrayMath.logSum(probConds[x]); // cpu samples #4,#15: 4.5%
       //log.info("zlambda "+x+" "+zlambda[x]);
       s += zlambda[x] * exp.ptildeX(x) * exp.getNumber();
 
@@ -1091,7 +1096,7 @@ public class LambdaSolve  {
     Experiments exp = p.data;
     for (int x = 0; x < probConds.length; x++) {
       //again
-      zlambda[x] = ArrayMath.logSum(probConds[x]); // cpu samples #4,#15: 4.5%
+      zlambda[x] = fastExp ? ArrayMath.fastLogSum(probConds[x]) : ArrayMath.logSum(probConds[x]); // cpu samples #4,#15: 4.5%
       //log.info("zlambda "+x+" "+zlambda[x]);
 
 
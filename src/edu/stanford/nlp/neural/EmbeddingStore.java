@@ -0,0 +1,401 @@
+package edu.stanford.nlp.neural;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.ejml.simple.SimpleMatrix;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * A read-only store of word vectors, kept as one contiguous matrix of floats (a row per
+ * word) with a hash table from the words to their rows, rather than an object per word as in
+ * {@link Embedding} or {@link VectorMap}.  A store is saved in a binary format which
+ * {@link #load} memory maps, so that loading doesn't parse or copy the vectors, they are kept
+ * off the heap, and processes using the same file share one copy of it in the page cache.
+ * Lookups may be made from several threads at once.
+ *
+ * <p>
+ * A store is written with a {@link Writer}, or converted from the other formats with
+ * {@link #fromText}, {@link #fromMap} and {@link #fromEmbedding}; {@link #main} converts a file.
+ * The vectors are read with {@link #indexOf} and {@link #get(int, float[], int)}, which don't
+ * allocate, or with {@link #get(String)} and {@link #getMatrix}, which do.
+ *
+ * <p>
+ * The file is a header (magic number, dimension, number of words, and the position of the
+ * words), then the vectors as little-endian floats, and then the words, each as its length
+ * and UTF-8 bytes.
+ */
+public class EmbeddingStore implements Closeable {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(EmbeddingStore.class);
+
+  private static final int MAGIC = 0x454d4231; // "EMB1"
+  private static final int HEADER_SIZE = 24;
+  /** The most bytes of vectors mapped by one buffer */
+  private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+  private final int dim;
+  private final String[] words;
+  /** Open addressing hash table of the row of each word plus one; 0 is empty */
+  private final int[] table;
+  /** The vectors, rowsPerSegment rows to a buffer */
+  private FloatBuffer[] segments;
+  private final int rowsPerSegment;
+  private final FileChannel channel; // null if the store isn't mapped
+
+  /**
+   * Makes a store in memory.
+   *
+   * @param words The words, in the order of their rows
+   * @param vectors The vectors, one after another (used, not copied)
+   * @param dim The dimension of the vectors
+   */
+  public EmbeddingStore(String[] words, float[] vectors, int dim) {
+    if (vectors.length != (long) words.length * dim) {
+      throw new IllegalArgumentException("Expected " + words.length + " vectors of dimension " + dim + " but got " + vectors.length + " floats");
+    }
+    this.dim = dim;
+    this.words = words;
+    this.table = buildTable(words);
+    this.segments = new FloatBuffer[] { FloatBuffer.wrap(vectors) };
+    this.rowsPerSegment = Math.max(words.length, 1);
+    this.channel = null;
+  }
+
+  private EmbeddingStore(String path) throws IOException {
+    channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+    ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    if (header.getInt() != MAGIC) {
+      throw new IOException(path + " is not an EmbeddingStore file");
+    }
+    dim = header.getInt();
+    int size = header.getInt();
+    header.getInt(); // unused
+    long wordsStart = header.getLong();
+
+    long wordsSize = channel.size() - wordsStart;
+    if (wordsSize > Integer.MAX_VALUE) {
+      throw new IOException("The vocabulary of " + path + " is too big to map");
+    }
+    ByteBuffer wordBuffer = channel.map(FileChannel.MapMode.READ_ONLY, wordsStart, wordsSize).order(ByteOrder.LITTLE_ENDIAN);
+    words = new String[size];
+    for (int i = 0; i < size; i++) {
+      byte[] bytes = new byte[wordBuffer.getInt()];
+      wordBuffer.get(bytes);
+      words[i] = new String(bytes, StandardCharsets.UTF_8);
+    }
+    table = buildTable(words);
+
+    rowsPerSegment = (int) Math.max(1, Math.min(Math.max(size, 1), MAX_SEGMENT_SIZE / (4L * Math.max(dim, 1))));
+    int numSegments = (size + rowsPerSegment - 1) / rowsPerSegment;
+    segments = new FloatBuffer[numSegments];
+    for (int s = 0; s < numSegments; s++) {
+      long start = HEADER_SIZE + 4L * dim * s * rowsPerSegment;
+      long rows = Math.min(rowsPerSegment, size - (long) s * rowsPerSegment);
+      segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, 4L * dim * rows).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+  }
+
+  /**
+   * Opens a store written by a {@link Writer}, mapping its vectors into memory.
+   *
+   * @param path The file the store was written to
+   */
+  public static EmbeddingStore load(String path) throws IOException {
+    log.info("Mapping word vectors from " + path);
+    EmbeddingStore store = new EmbeddingStore(path);
+    log.info("  num words = " + store.size() + ", dimension = " + store.dim());
+    return store;
+  }
+
+  private static int[] buildTable(String[] words) {
+    int capacity = Integer.highestOneBit(Math.max(2 * words.length, 2) - 1) << 1;
+    int[] table = new int[capacity];
+    for (int i = 0; i < words.length; i++) {
+      int slot = slot(table, words, words[i]);
+      table[slot] = i + 1; // a repeated word gets its last vector, as with Map.put
+    }
+    return table;
+  }
+
+  /** Returns the slot of the word in the table, or the empty slot where it would go. */
+  private static int slot(int[] table, String[] words, String word) {
+    int mask = table.length - 1;
+    int h = word.hashCode();
+    int slot = (h ^ (h >>> 16)) & mask;
+    while (table[slot] != 0 && ! words[table[slot] - 1].equals(word)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /** The number of words. */
+  public int size() {
+    return words.length;
+  }
+
+  /** The dimension of the vectors. */
+  public int dim() {
+    return dim;
+  }
+
+  /** Returns the word of the row. */
+  public String word(int index) {
+    return words[index];
+  }
+
+  /** Returns the row of the word's vector, or -1 if there isn't one. */
+  public int indexOf(String word) {
+    return table[slot(table, words, word)] - 1;
+  }
+
+  public boolean containsWord(String word) {
+    return indexOf(word) >= 0;
+  }
+
+  /** Returns element i of the vector in the row. */
+  public float get(int index, int i) {
+    if (i < 0 || i >= dim) {
+      throw new IndexOutOfBoundsException("Element " + i + " of a vector of dimension " + dim);
+    }
+    return segments[index / rowsPerSegment].get((index % rowsPerSegment) * dim + i);
+  }
+
+  /** Copies the vector in the row into dest, starting at offset. */
+  public void get(int index, float[] dest, int offset) {
+    if (index < 0 || index >= words.length) {
+      throw new IndexOutOfBoundsException("Row " + index + " of " + words.length);
+    }
+    FloatBuffer segment = segments[index / rowsPerSegment].duplicate();
+    segment.position((index % rowsPerSegment) * dim);
+    segment.get(dest, offset, dim);
+  }
+
+  /** Returns a copy of the word's vector, or null if there isn't one. */
+  public float[] get(String word) {
+    int index = indexOf(word);
+    if (index < 0) {
+      return null;
+    }
+    float[] vector = new float[dim];
+    get(index, vector, 0);
+    return vector;
+  }
+
+  /** Returns the word's vector as a column vector, as in {@link Embedding}, or null if there isn't one. */
+  public SimpleMatrix getMatrix(String word) {
+    int index = indexOf(word);
+    if (index < 0) {
+      return null;
+    }
+    SimpleMatrix vector = new SimpleMatrix(dim, 1);
+    for (int i = 0; i < dim; i++) {
+      vector.set(i, get(index, i));
+    }
+    return vector;
+  }
+
+  /** Unmaps the file (once the buffers are garbage collected). */
+  @Override
+  public void close() throws IOException {
+    segments = null;
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
+
+  /**
+   * Converts a text file of a word and its vector on each line, as read by {@link Embedding}
+   * and written by word2vec and GloVe.  A first line of just the number of words and the
+   * dimension, as word2vec writes, is skipped.
+   *
+   * @param textFile The file to convert
+   * @param path The file to write the store to
+   * @return The store, mapped from path
+   */
+  public static EmbeddingStore fromText(String textFile, String path) throws IOException {
+    Writer writer = null;
+    try {
+      for (String line : IOUtils.readLines(textFile, "utf-8")) {
+        String[] split = line.trim().split("\\s+");
+        if (writer == null && split.length == 2 && split[0].matches("[0-9]+") && split[1].matches("[0-9]+")) {
+          continue; // word2vec header
+        }
+        if (split.length < 2) {
+          continue;
+        }
+        if (writer == null) {
+          writer = new Writer(path, split.length - 1);
+        }
+        if (split.length - 1 != writer.dim) {
+          throw new IOException("Vector of " + split[0] + " in " + textFile + " has dimension " + (split.length - 1) + ", not " + writer.dim);
+        }
+        float[] vector = new float[writer.dim];
+        for (int i = 0; i < vector.length; i++) {
+          vector[i] = Float.parseFloat(split[i + 1]);
+        }
+        writer.add(split[0], vector);
+      }
+      if (writer == null) {
+        throw new IOException("No word vectors in " + textFile);
+      }
+    } catch (IOException | RuntimeException e) {
+      if (writer != null) {
+        writer.close();
+      }
+      throw e;
+    }
+    return writer.finish();
+  }
+
+  /** Converts a map of word vectors, such as a {@link VectorMap}. */
+  public static EmbeddingStore fromMap(Map<String, float[]> vectors, String path) throws IOException {
+    if (vectors.isEmpty()) {
+      throw new IllegalArgumentException("No word vectors to store");
+    }
+    Writer writer = new Writer(path, vectors.values().iterator().next().length);
+    for (Map.Entry<String, float[]> entry : vectors.entrySet()) {
+      writer.add(entry.getKey(), entry.getValue());
+    }
+    return writer.finish();
+  }
+
+  /** Converts an {@link Embedding}, narrowing its vectors to floats. */
+  public static EmbeddingStore fromEmbedding(Embedding embedding, String path) throws IOException {
+    Writer writer = new Writer(path, embedding.getEmbeddingSize());
+    float[] vector = new float[embedding.getEmbeddingSize()];
+    for (Map.Entry<String, SimpleMatrix> entry : embedding.entrySet()) {
+      SimpleMatrix matrix = entry.getValue();
+      for (int i = 0; i < vector.length; i++) {
+        vector[i] = (float) matrix.get(i);
+      }
+      writer.add(entry.getKey(), vector);
+    }
+    return writer.finish();
+  }
+
+
+  /**
+   * Writes word vectors to a file one at a time, so that a store bigger than the heap can be
+   * made.  Only the words are kept in memory.  {@link #close} finishes the file.
+   */
+  public static class Writer implements Closeable {
+
+    private final String path;
+    private final int dim;
+    private final FileChannel out;
+    private final ByteBuffer buffer;
+    private final List<String> words = new ArrayList<>();
+
+    /**
+     * Starts a store file.
+     *
+     * @param path The file to write the store to
+     * @param dim The dimension of the vectors
+     */
+    public Writer(String path, int dim) throws IOException {
+      this.path = path;
+      this.dim = dim;
+      out = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      buffer = ByteBuffer.allocate(Math.max(1 << 16, 4 * dim)).order(ByteOrder.LITTLE_ENDIAN);
+      out.position(HEADER_SIZE); // the header is written by close()
+    }
+
+    /** Adds the word's vector as the next row. */
+    public void add(String word, float[] vector) {
+      if (vector.length != dim) {
+        throw new IllegalArgumentException("Vector of " + word + " has dimension " + vector.length + ", not " + dim);
+      }
+      try {
+        if (buffer.remaining() < 4 * dim) {
+          flush();
+        }
+        for (float v : vector) {
+          buffer.putFloat(v);
+        }
+      } catch (IOException e) {
+        throw new RuntimeIOException(e);
+      }
+      words.add(word);
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        out.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    /** The number of words added so far. */
+    public int size() {
+      return words.size();
+    }
+
+    /** Writes the words and the header. */
+    @Override
+    public void close() throws IOException {
+      flush();
+      long wordsStart = out.position();
+      for (String word : words) {
+        byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+        if (buffer.remaining() < 4 + bytes.length) {
+          flush();
+        }
+        if (buffer.remaining() < 4 + bytes.length) {
+          out.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, bytes.length));
+          out.write(ByteBuffer.wrap(bytes));
+        } else {
+          buffer.putInt(bytes.length).put(bytes);
+        }
+      }
+      flush();
+      buffer.putInt(MAGIC).putInt(dim).putInt(words.size()).putInt(0).putLong(wordsStart);
+      buffer.flip();
+      out.write(buffer, 0);
+      buffer.clear();
+      out.close();
+    }
+
+    /** Closes the writer and opens the store it wrote. */
+    public EmbeddingStore finish() throws IOException {
+      close();
+      return new EmbeddingStore(path);
+    }
+  }
+
+
+  /**
+   * Converts word vectors to an EmbeddingStore file.
+   * Usage: {@code java edu.stanford.nlp.neural.EmbeddingStore [-vectorMap] input output},
+   * where the input is a text file of words and vectors, or with {@code -vectorMap} a
+   * serialized {@link VectorMap}.
+   */
+  public static void main(String[] args) throws IOException {
+    boolean vectorMap = args.length > 0 && args[0].equals("-vectorMap");
+    String[] files = vectorMap ? Arrays.copyOfRange(args, 1, args.length) : args;
+    if (files.length != 2) {
+      log.info("Usage: java edu.stanford.nlp.neural.EmbeddingStore [-vectorMap] input output");
+      return;
+    }
+    try (EmbeddingStore store = vectorMap ? fromMap(VectorMap.deserialize(files[0]), files[1]) : fromText(files[0], files[1])) {
+      log.info("Wrote " + store.size() + " vectors of dimension " + store.dim() + " to " + files[1]);
+    }
+  }
+
+}
@@ -0,0 +1,208 @@
+package edu.stanford.nlp.optimization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
+import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
+
+/**
+ * Works out a function which is a sum over data, such as the log likelihood of a classifier,
+ * in parallel.  The data is split into a fixed number of shards, whose values and
+ * derivatives are worked out with {@link AbstractStochasticCachingDiffFunction#calculateStochastic}
+ * on several threads, each with its own copy of the function, and then added up in shard
+ * order.  So the result only depends on the number of shards, not on the number of threads
+ * or on which thread finishes first.
+ *
+ * <p>
+ * As for stochastic minimization, the values and derivatives of the shards must add up to
+ * the value and derivative of the whole function (counting in the prior).  The copies of the
+ * function are made once, by the given supplier, and should share their (read only) data.
+ *
+ * <p>
+ * This is also a {@link ParallelFunction}: the values at several points are worked out by
+ * sharing the threads out over all the shards of all the points, and the derivatives are kept,
+ * so that asking for the value and derivative at one of the points afterwards doesn't work
+ * them out again.
+ *
+ * <p>
+ * The threads are started at the first evaluation and kept for the later ones (they are daemon
+ * threads, so they don't keep the JVM running); {@link #close} stops them.
+ */
+public class ParallelDiffFunction extends AbstractCachingDiffFunction implements ParallelFunction, AutoCloseable {
+
+  private final Supplier<? extends AbstractStochasticCachingDiffFunction> newFunction;
+  private final int numThreads;
+  /** The data indices of each shard */
+  private final int[][] shards;
+  private final int domainDimension;
+  /** One copy of the function per thread, made when first needed */
+  private final List<AbstractStochasticCachingDiffFunction> functions = new ArrayList<>();
+  /** Runs the shards, made at the first evaluation and reused until {@link #close} */
+  private MulticoreWrapper<Pair<double[], int[]>, Pair<Double, double[]>> wrapper; // = null;
+
+  /** The points last passed to {@link #valuesAt}, and their values and derivatives */
+  private double[][] lastPoints; // = null;
+  private double[] lastValues;
+  private double[][] lastDerivatives;
+
+  /**
+   * Makes the parallel version of a function.
+   *
+   * @param newFunction Makes a copy of the function; called once per thread
+   * @param numThreads The number of threads to use
+   * @param numShards The number of parts to split the data into (at least numThreads, so
+   *                  that threads aren't idle; more if some data takes longer than the rest)
+   */
+  public ParallelDiffFunction(Supplier<? extends AbstractStochasticCachingDiffFunction> newFunction, int numThreads, int numShards) {
+    this.newFunction = newFunction;
+    this.numThreads = numThreads;
+    AbstractStochasticCachingDiffFunction function = newFunction.get();
+    functions.add(function);
+    domainDimension = function.domainDimension();
+    int dataDimension = function.dataDimension();
+    numShards = Math.max(1, Math.min(numShards, dataDimension));
+    shards = new int[numShards][];
+    for (int shard = 0; shard < numShards; shard++) {
+      int start = (int) ((long) dataDimension * shard / numShards);
+      int end = (int) ((long) dataDimension * (shard + 1) / numShards);
+      shards[shard] = new int[end - start];
+      for (int i = start; i < end; i++) {
+        shards[shard][i - start] = i;
+      }
+    }
+  }
+
+  /** Makes the parallel version of a function, with one shard per thread. */
+  public ParallelDiffFunction(Supplier<? extends AbstractStochasticCachingDiffFunction> newFunction, int numThreads) {
+    this(newFunction, numThreads, numThreads);
+  }
+
+  @Override
+  public int domainDimension() {
+    return domainDimension;
+  }
+
+  @Override
+  public double[] initial() {
+    return functions.get(0).initial();
+  }
+
+  /** Works out the value and derivative of one shard at one point, with its own copy of the function. */
+  private class ShardProcessor implements ThreadsafeProcessor<Pair<double[], int[]>, Pair<Double, double[]>> {
+    private final AbstractStochasticCachingDiffFunction function;
+    private int instances; // = 0;
+
+    private ShardProcessor(int id) {
+      synchronized (functions) {
+        while (functions.size() <= id) {
+          functions.add(newFunction.get());
+        }
+        function = functions.get(id);
+      }
+    }
+
+    @Override
+    public Pair<Double, double[]> process(Pair<double[], int[]> pointAndShard) {
+      function.calculateStochastic(pointAndShard.first(), null, pointAndShard.second());
+      return new Pair<>(function.lastValue(), function.getDerivative().clone());
+    }
+
+    @Override
+    public ThreadsafeProcessor<Pair<double[], int[]>, Pair<Double, double[]>> newInstance() {
+      return new ShardProcessor(++instances);
+    }
+  }
+
+  /** Works out the values and derivatives at all the points, in parallel over all their shards. */
+  private void calculate(double[][] points, double[] values, double[][] derivatives) {
+    if (wrapper == null) {
+      wrapper = new MulticoreWrapper<Pair<double[], int[]>, Pair<Double, double[]>>(numThreads, new ShardProcessor(0)) {
+        @Override
+        protected ThreadPoolExecutor buildThreadPool(int nThreads) {
+          return (ThreadPoolExecutor) Executors.newFixedThreadPool(nThreads, r -> {
+            Thread thread = new Thread(r, "ParallelDiffFunction");
+            thread.setDaemon(true);
+            return thread;
+          });
+        }
+      };
+    }
+    for (double[] point : points) {
+      for (int[] shard : shards) {
+        wrapper.put(new Pair<>(point, shard));
+      }
+    }
+    wrapper.join(false);
+    // the results come back in the order they were put, so the sums are the same every time
+    for (int p = 0; p < points.length; p++) {
+      values[p] = 0.0;
+      derivatives[p] = new double[domainDimension];
+      for (int s = 0; s < shards.length; s++) {
+        Pair<Double, double[]> result = wrapper.poll();
+        values[p] += result.first();
+        double[] shardDerivative = result.second();
+        for (int i = 0; i < domainDimension; i++) {
+          derivatives[p][i] += shardDerivative[i];
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void calculate(double[] x) {
+    if (lastPoints != null) {
+      for (int p = 0; p < lastPoints.length; p++) {
+        if (Arrays.equals(x, lastPoints[p])) {
+          value = lastValues[p];
+          copy(derivative, lastDerivatives[p]);
+          return;
+        }
+      }
+    }
+    double[] values = new double[1];
+    double[][] derivatives = new double[1][];
+    calculate(new double[][] { x }, values, derivatives);
+    value = values[0];
+    copy(derivative, derivatives[0]);
+  }
+
+  @Override
+  public synchronized double[] valuesAt(double[][] points) {
+    double[] values = new double[points.length];
+    double[][] derivatives = new double[points.length][];
+    calculate(points, values, derivatives);
+    lastPoints = new double[points.length][];
+    for (int p = 0; p < points.length; p++) {
+      lastPoints[p] = points[p].clone();
+    }
+    lastValues = values;
+    lastDerivatives = derivatives;
+    return values.clone();
+  }
+
+  @Override
+  public synchronized double valueAt(double[] x) {
+    return super.valueAt(x);
+  }
+
+  @Override
+  public synchronized double[] derivativeAt(double[] x) {
+    return super.derivativeAt(x);
+  }
+
+  /** Stops the threads.  The function may still be used afterwards, and starts new ones. */
+  @Override
+  public synchronized void close() {
+    if (wrapper != null) {
+      wrapper.join();
+      wrapper = null;
+    }
+  }
+
+}
@@ -0,0 +1,24 @@
+package edu.stanford.nlp.optimization;
+
+import java.util.Arrays;
+
+/**
+ * A function which can work out its value at several points at once, such as the trial
+ * step sizes of a line search.  A threadsafe function declares itself so just by
+ * implementing this interface; the default {@link #valuesAt} then works out the values in
+ * parallel.  Functions which are parallel inside, such as {@link ParallelDiffFunction},
+ * can instead share their threads out over all the points.
+ *
+ * @see QNMinimizer#setParallelLineSearchPoints(int)
+ */
+public interface ParallelFunction extends Function {
+
+  /**
+   * Returns the values of the function at the points, in the same order.
+   * Calls of this and the other methods of the function must be threadsafe.
+   */
+  default double[] valuesAt(double[][] points) {
+    return Arrays.stream(points).parallel().mapToDouble(this::valueAt).toArray();
+  }
+
+}
@@ -131,6 +131,7 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
 
   private boolean suppressTestPrompt = false;
   private int terminateOnEvalImprovementNumOfEpoch = 1;
+  private int parallelLineSearchPoints = 1; // step sizes tried at once by the backtracking search of a ParallelFunction
 
   private int evaluateIters = 0;    // Evaluate every x iterations (0 = no evaluation)
   private int startEvaluateIters = 0; // starting evaluation after x iterations
@@ -257,6 +258,16 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
     lsOpt = eLineSearch.BACKTRACK;
   }
 
+  /**
+   * Sets how many step sizes the backtracking line search tries at once, when the function
+   * is a {@link ParallelFunction}.  The search accepts the same step as when they are tried
+   * one at a time, but may evaluate the function at some steps it didn't need to.
+   * The default is 1 (tried one at a time).
+   */
+  public void setParallelLineSearchPoints(int parallelLineSearchPoints) {
+    this.parallelLineSearchPoints = parallelLineSearchPoints;
+  }
+
   public void useDiagonalScaling() {
     scaleOpt = eScaling.DIAGONAL;
   }
@@ -1359,6 +1370,10 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
     // c = c * mult(grad, dir);
     c = c * normGradInDir;
 
+    if (parallelLineSearchPoints > 1 && func instanceof ParallelFunction) {
+      return lineSearchBacktrackParallel((ParallelFunction) func, dir, x, newX, lastValue, step, c1, c, sb);
+    }
+
     double[] newPoint = new double[3];
 
     while ((newPoint[f] = func.valueAt((plusAndConstMult(x, dir, step, newX)))) > lastValue
@@ -1382,6 +1397,46 @@ public class QNMinimizer implements Minimizer<DiffFunction>, HasEvaluators  {
     return newPoint;
   }
 
+  /*
+   * lineSearchBacktrackParallel tries the step sizes of lineSearchBacktrack
+   * several at a time, and accepts the first of them that it would have.
+   */
+  private double[] lineSearchBacktrackParallel(ParallelFunction func, double[] dir, double[] x,
+      double[] newX, double lastValue, double step, double c1, double c, StringBuilder sb)
+      throws MaxEvaluationsExceeded {
+
+    double[] newPoint = new double[3];
+    double[] steps = new double[parallelLineSearchPoints];
+    double[][] points = new double[parallelLineSearchPoints][];
+    while (true) {
+      for (int i = 0; i < steps.length; i++) {
+        steps[i] = step;
+        points[i] = plusAndConstMult(x, dir, step, new double[x.length]);
+        step = c1 * step;
+      }
+      double[] values = func.valuesAt(points);
+      fevals += values.length;
+      for (int i = 0; i < values.length; i++) {
+        // not (value > bound), so that a NaN value is accepted, as by the serial loop
+        if ( ! (values[i] > lastValue + c * steps[i])) {
+          System.arraycopy(points[i], 0, newX, 0, newX.length);
+          newPoint[f] = values[i];
+          newPoint[a] = steps[i];
+          if (fevals > maxFevals) {
+            throw new MaxEvaluationsExceeded("Exceeded during lineSearch() Function.");
+          }
+          return newPoint;
+        }
+        if (values[i] < lastValue) {
+          // an improvement, but not good enough... suspicious!
+          sb.append('!');
+        } else {
+          sb.append('.');
+        }
+      }
+    }
+  }
+
   private double[] lineSearchMinPack(DiffFunction dfunc, double[] dir,
       double[] x, double[] newX, double[] grad, double f0, double tol, StringBuilder sb)
       throws MaxEvaluationsExceeded {
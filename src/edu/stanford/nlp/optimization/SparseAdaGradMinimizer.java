@@ -3,11 +3,16 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 import edu.stanford.nlp.stats.Counter;
 import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counters;
 import edu.stanford.nlp.util.Timing;
+import edu.stanford.nlp.util.concurrent.ConcurrentHashCounter;
+import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
+import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * AdaGrad optimizer that works online, and use sparse gradients, need a
@@ -27,6 +32,7 @@ public class SparseAdaGradMinimizer<K, F extends SparseOnlineFunction<K>> implem
   protected double eta;
   protected double lambdaL1;
   protected double lambdaL2;
+  protected int numThreads = 1;
 
   protected Counter<K> sumGradSquare;
   protected Counter<K> x;
@@ -56,6 +62,15 @@ public class SparseAdaGradMinimizer<K, F extends SparseOnlineFunction<K>> implem
 	this.sumGradSquare = new ClassicCounter<>();
   }
 
+  /**
+   * Sets the number of threads to work out the batches on, Hogwild style.  With more than one
+   * thread, the valueAt and derivativeAt of the function must be threadsafe, and the function
+   * is passed a threadsafe Counter of the weights which other threads are updating.
+   */
+  public void setNumThreads(int numThreads) {
+	this.numThreads = numThreads;
+  }
+
   @Override
   public Counter<K> minimize(F function, Counter<K> initial) {
 	return minimize(function, initial, -1);
@@ -76,6 +91,10 @@ public class SparseAdaGradMinimizer<K, F extends SparseOnlineFunction<K>> implem
 	sayln("       Batches per pass through data:  " + numBatches);
 	sayln("       Number of passes is = " + numPasses);
 	sayln("       Max iterations is = " + maxIterations);
+	if (numThreads > 1) {
+	  sayln("       Number of threads is = " + numThreads);
+	  return minimizeHogwild(function, x, maxIterations, numBatches);
+	}
 
 	Counter<K> lastUpdated = new ClassicCounter<>();
 	int timeStep = 0;
@@ -83,7 +102,7 @@ public class SparseAdaGradMinimizer<K, F extends SparseOnlineFunction<K>> implem
 	Timing total = new Timing();
 	total.start();
 
-	for (int iter = 0; iter < numPasses; iter++) {
+	for (int iter = 0; iter < numPasses && ! (maxIterations > 0 && timeStep > maxIterations); iter++) {
 	  double totalObjValue = 0;
 
 	  for (int j = 0; j < numBatches; j++) {
@@ -93,36 +112,122 @@ public class SparseAdaGradMinimizer<K, F extends SparseOnlineFunction<K>> implem
 		totalObjValue = totalObjValue + function.valueAt(x, selectedData);
 
 		for (K feature : gradient.keySet()) {
-		  double gradf = gradient.getCount(feature);
-		  double prevrate = eta / (Math.sqrt(sumGradSquare.getCount(feature)) + soften);
-
-		  double sgsValue = sumGradSquare.incrementCount(feature, gradf * gradf);
-		  double currentrate = eta / (Math.sqrt(sgsValue) + soften);
-		  double testupdate = x.getCount(feature) - (currentrate * gradient.getCount(feature));
-		  double lastUpdateTimeStep = lastUpdated.getCount(feature);
-		  double idleinterval = timeStep - lastUpdateTimeStep - 1;
-		  lastUpdated.setCount(feature, (double) timeStep);
-
-		  // does lazy update using idleinterval
-		  double trunc = Math
-			  .max(0.0, (Math.abs(testupdate) - (currentrate + prevrate * idleinterval) * this.lambdaL1));
-		  double trunc2 = trunc * Math.pow(1 - this.lambdaL2, currentrate + prevrate * idleinterval); 
-		  double realupdate = Math.signum(testupdate) * trunc2;
-		  if (realupdate < EPS) {
-			x.remove(feature);
-		  } else {
-			x.setCount(feature, realupdate);
-		  }
-
-		  // reporting
+		  update(x, sumGradSquare, lastUpdated, feature, gradient.getCount(feature), timeStep, false);
 		  timeStep++;
-		  if (timeStep > maxIterations) {
-			sayln("Stochastic Optimization complete.  Stopped after max iterations");
-			break;
-		  }
-		  sayln(System.out.format("Iter %d \t batch: %d \t time=%.2f \t obj=%.4f", iter, timeStep,
-			  total.report() / 1000.0, totalObjValue).toString());
 		}
+		// a batch's features are all updated; maxIterations <= 0 means no limit
+		if (maxIterations > 0 && timeStep > maxIterations) {
+		  sayln("Stochastic Optimization complete.  Stopped after max iterations");
+		  break;
+		}
+	  }
+	  sayln(String.format("Iter %d \t batch: %d \t time=%.2f \t obj=%.4f", iter, timeStep,
+		  total.report() / 1000.0, totalObjValue));
+	}
+	return x;
+  }
+
+  /**
+   * The AdaGrad and FOBOS update of one feature, given its gradient and the sums of the squares
+   * of its gradients so far, which it adds the square of the gradient to.  If {@code hogwild}, the
+   * step is added to the weight with incrementCount, rather than the new weight set, so that
+   * when the counters are {@link ConcurrentHashCounter}s the steps of threads updating the
+   * same feature at once all count; small weights are then left in x rather than removed.
+   */
+  private void update(Counter<K> x, Counter<K> sumGradSquare, Counter<K> lastUpdated, K feature, double gradf, int timeStep, boolean hogwild) {
+	double prevrate = eta / (Math.sqrt(sumGradSquare.getCount(feature)) + soften);
+
+	double sgsValue = sumGradSquare.incrementCount(feature, gradf * gradf);
+	double currentrate = eta / (Math.sqrt(sgsValue) + soften);
+	double oldValue = x.getCount(feature);
+	double testupdate = oldValue - (currentrate * gradf);
+	double lastUpdateTimeStep = lastUpdated.getCount(feature);
+	double idleinterval = timeStep - lastUpdateTimeStep - 1;
+	lastUpdated.setCount(feature, (double) timeStep);
+
+	// does lazy update using idleinterval
+	double trunc = Math
+		.max(0.0, (Math.abs(testupdate) - (currentrate + prevrate * idleinterval) * this.lambdaL1));
+	double trunc2 = trunc * Math.pow(1 - this.lambdaL2, currentrate + prevrate * idleinterval);
+	double realupdate = Math.signum(testupdate) * trunc2;
+	if (hogwild) {
+	  x.incrementCount(feature, realupdate - oldValue);
+	} else if (Math.abs(realupdate) < EPS) {
+	  x.remove(feature);
+	} else {
+	  x.setCount(feature, realupdate);
+	}
+  }
+
+  /**
+   * Hogwild! (Niu et al. 2011): the batches are shared out over the threads, which each work
+   * out the gradient of a batch at the current weights and update the weights of its features
+   * straight away, without locking out the other threads.  The weights and the AdaGrad sums
+   * are kept in {@link ConcurrentHashCounter}s, and each step is added to its weight
+   * atomically, so no step is lost; but as in Hogwild, a step may be worked out from a weight
+   * (or AdaGrad sum) which another thread has since changed, and the last-update times used
+   * for the lazy regularization may be out of order.
+   */
+  private Counter<K> minimizeHogwild(F function, Counter<K> x, int maxIterations, int numBatches) {
+	ConcurrentHashCounter<K> weights = new ConcurrentHashCounter<>();
+	Counters.addInPlace(weights, x);
+	// the threads add to a copy of the AdaGrad sums, which is copied back at the end
+	ConcurrentHashCounter<K> sums = new ConcurrentHashCounter<>();
+	Counters.addInPlace(sums, sumGradSquare);
+	Counter<K> lastUpdated = new ConcurrentHashCounter<>();
+	AtomicInteger timeStep = new AtomicInteger();
+
+	ThreadsafeProcessor<int[], Double> processor = new ThreadsafeProcessor<int[], Double>() {
+	  @Override
+	  public Double process(int[] selectedData) {
+		Counter<K> gradient = function.derivativeAt(weights, selectedData);
+		double value = function.valueAt(weights, selectedData);
+		for (K feature : gradient.keySet()) {
+		  update(weights, sums, lastUpdated, feature, gradient.getCount(feature), timeStep.getAndIncrement(), true);
+		}
+		return value;
+	  }
+
+	  @Override
+	  public ThreadsafeProcessor<int[], Double> newInstance() {
+		return this;
+	  }
+	};
+	MulticoreWrapper<int[], Double> wrapper = new MulticoreWrapper<>(numThreads, processor, false);
+
+	Timing total = new Timing();
+	total.start();
+
+	for (int iter = 0; iter < numPasses && ! (maxIterations > 0 && timeStep.get() > maxIterations); iter++) {
+	  double totalObjValue = 0;
+
+	  for (int j = 0; j < numBatches; j++) {
+		wrapper.put(getSample(function, this.batchSize));
+		while (wrapper.peek()) {
+		  totalObjValue += wrapper.poll();
+		}
+		if (maxIterations > 0 && timeStep.get() > maxIterations) {
+		  sayln("Stochastic Optimization complete.  Stopped after max iterations");
+		  break;
+		}
+	  }
+	  wrapper.join(false);
+	  while (wrapper.peek()) {
+		totalObjValue += wrapper.poll();
+	  }
+	  sayln(String.format("Iter %d \t batch: %d \t time=%.2f \t obj=%.4f", iter, timeStep.get(),
+		  total.report() / 1000.0, totalObjValue));
+	}
+	wrapper.join();
+	sumGradSquare.clear();
+	Counters.addInPlace(sumGradSquare, sums);
+
+	// leave out the small weights, which the serial updates remove
+	x.clear();
+	for (K feature : weights.keySet()) {
+	  double weight = weights.getCount(feature);
+	  if (Math.abs(weight) >= EPS) {
+		x.setCount(feature, weight);
 	  }
 	}
 	return x;
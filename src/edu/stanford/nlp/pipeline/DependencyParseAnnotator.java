@@ -48,6 +48,11 @@ public class DependencyParseAnnotator extends SentenceAnnotator  {
    */
   private final GrammaticalStructure.Extras extraDependencies;
 
+  /**
+   * If true, store the finished dependency graphs in their compact, read-mostly form.
+   */
+  private final boolean compactGraphs;
+
   public DependencyParseAnnotator() {
     this(new Properties());
   }
@@ -59,6 +64,7 @@ public class DependencyParseAnnotator extends SentenceAnnotator  {
     nThreads = PropertiesUtils.getInt(properties, "nthreads", DEFAULT_NTHREADS);
     maxTime = PropertiesUtils.getLong(properties, "sentenceTimeout", DEFAULT_MAXTIME);
     extraDependencies = MetaClass.cast(properties.getProperty("extradependencies", "NONE"), GrammaticalStructure.Extras.class);
+    compactGraphs = PropertiesUtils.getBool(properties, "compactGraphs", false);
   }
 
   @Override
@@ -87,6 +93,9 @@ public class DependencyParseAnnotator extends SentenceAnnotator  {
     sentence.set(SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class, ccDeps);
     sentence.set(SemanticGraphCoreAnnotations.EnhancedDependenciesAnnotation.class, enhancedDeps);
     sentence.set(SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class, enhancedPlusPlusDeps);
+    if (compactGraphs) {
+      ParserAnnotatorUtils.compactDependencies(sentence);
+    }
   }
 
   @Override
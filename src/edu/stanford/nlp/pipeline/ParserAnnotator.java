@@ -72,6 +72,9 @@ public class ParserAnnotator extends SentenceAnnotator  {
   private final boolean noSquash;
   private final GrammaticalStructure.Extras extraDependencies;
 
+  /** If true, store the finished dependency graphs in their compact, read-mostly form. */
+  private final boolean compactGraphs;
+
   public ParserAnnotator(boolean verbose, int maxSent) {
     this(System.getProperty("parse.model", LexicalizedParser.DEFAULT_PARSER_LOC), verbose, maxSent, StringUtils.EMPTY_STRING_ARRAY);
   }
@@ -107,6 +110,7 @@ public class ParserAnnotator extends SentenceAnnotator  {
     this.saveBinaryTrees = false;
     this.noSquash = false;
     this.extraDependencies = GrammaticalStructure.Extras.NONE;
+    this.compactGraphs = false;
   }
 
 
@@ -160,6 +164,7 @@ public class ParserAnnotator extends SentenceAnnotator  {
     this.saveBinaryTrees = PropertiesUtils.getBool(props, annotatorName + ".binaryTrees", usesBinary);
     this.noSquash = PropertiesUtils.getBool(props, annotatorName + ".nosquash", false);
     this.extraDependencies = MetaClass.cast(props.getProperty(annotatorName + ".extradependencies", "NONE"), GrammaticalStructure.Extras.class);
+    this.compactGraphs = PropertiesUtils.getBool(props, annotatorName + ".compactGraphs", false);
   }
 
   @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
@@ -190,6 +195,8 @@ public class ParserAnnotator extends SentenceAnnotator  {
       props.getProperty(annotatorName + ".keepPunct", "true"));
     os.append(annotatorName + ".extradependencies:" +
         props.getProperty(annotatorName + ".extradependencies", "NONE").toLowerCase());
+    os.append(annotatorName + ".compactGraphs:" +
+        props.getProperty(annotatorName + ".compactGraphs", "false"));
     boolean usesBinary = StanfordCoreNLP.usesBinaryTrees(props);
     boolean saveBinaryTrees = PropertiesUtils.getBool(props, annotatorName + ".binaryTrees", usesBinary);
     os.append(annotatorName + ".binaryTrees:" + saveBinaryTrees);
@@ -295,6 +302,9 @@ public class ParserAnnotator extends SentenceAnnotator  {
     }
 
     ParserAnnotatorUtils.fillInParseAnnotations(VERBOSE, BUILD_GRAPHS, gsf, sentence, trees, extraDependencies);
+    if (compactGraphs) {
+      ParserAnnotatorUtils.compactDependencies(sentence);
+    }
 
     if (saveBinaryTrees) {
       TreeBinarizer binarizer = TreeBinarizer.simpleTreeBinarizer(parser.getTLPParams().headFinder(), parser.treebankLanguagePack());
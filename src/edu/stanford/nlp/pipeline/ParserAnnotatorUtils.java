@@ -1,7 +1,9 @@
 package edu.stanford.nlp.pipeline; 
 
+import java.util.Arrays;
 import java.util.List;
 
+import edu.stanford.nlp.ling.CoreAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.HasTag;
@@ -86,6 +88,26 @@ public class ParserAnnotatorUtils  {
     }
   }
 
+  /**
+   * Stores the dependency graphs of a sentence in the compact form of
+   * {@link SemanticGraph#compact()}, once they are finished.
+   */
+  public static void compactDependencies(CoreMap sentence) {
+    for (Class<? extends CoreAnnotation<SemanticGraph>> key : DEPENDENCY_ANNOTATIONS) {
+      SemanticGraph graph = sentence.get(key);
+      if (graph != null) {
+        graph.compact();
+      }
+    }
+  }
+
+  private static final List<Class<? extends CoreAnnotation<SemanticGraph>>> DEPENDENCY_ANNOTATIONS = Arrays.asList(
+      SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class,
+      SemanticGraphCoreAnnotations.CollapsedDependenciesAnnotation.class,
+      SemanticGraphCoreAnnotations.CollapsedCCProcessedDependenciesAnnotation.class,
+      SemanticGraphCoreAnnotations.EnhancedDependenciesAnnotation.class,
+      SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class);
+
   /**
    * Set the tags of the original tokens and the leaves if they
    * aren't already set.
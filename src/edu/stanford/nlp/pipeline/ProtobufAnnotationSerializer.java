@@ -31,9 +31,16 @@ import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations.*;
 import edu.stanford.nlp.time.TimeAnnotations.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import com.google.protobuf.CodedInputStream;
+
 import edu.stanford.nlp.coref.CorefCoreAnnotations.*;
 
 import edu.stanford.nlp.coref.data.CorefChain;
@@ -194,6 +201,75 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
     return Pair.makePair(fromProto(doc), is);
   }
 
+  /**
+   * Like {@link #read(InputStream)}, but the trees, dependency graphs, relation triples and
+   * numerized tokens of the sentences are only made when they are first asked for.
+   * See {@link #fromProtoLazy(CoreNLPProtos.Document)}.
+   */
+  public Pair<Annotation, InputStream> readLazy(InputStream is) throws IOException {
+    CoreNLPProtos.Document doc = CoreNLPProtos.Document.parseDelimitedFrom(is);
+    return Pair.makePair(fromProtoLazy(doc), is);
+  }
+
+  /**
+   * Reads a single (undelimited) protocol buffer from a region of a file, mapping the region
+   * into memory rather than reading it through a file stream, and makes a lazy Annotation from it as
+   * {@link #fromProtoLazy(CoreNLPProtos.Document)} does.  This is meant for files which hold
+   * many serialized documents, with their offsets kept in an index.
+   *
+   * @param file The file to read.
+   * @param position The offset in the file where the document starts.
+   * @param size The length of the serialized document in bytes.
+   * @return A parsed Annotation.
+   * @throws IOException In case the file cannot be read or the region is not a document.
+   */
+  public Annotation readLazy(File file, long position, long size) throws IOException {
+    CoreNLPProtos.Document doc;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+      // Read the buffer through a stream: the protobuf decoder for direct buffers reads them with
+      // Unsafe at addresses which aren't right on newer JVMs
+      CodedInputStream input = CodedInputStream.newInstance(new ByteBufferInputStream(buffer));
+      input.setSizeLimit(Integer.MAX_VALUE);
+      doc = CoreNLPProtos.Document.parseFrom(input);
+    }
+    return fromProtoLazy(doc);
+  }
+
+  /** An InputStream of the remaining bytes of a buffer. */
+  private static class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if ( ! buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+
+  }
+
   /**
    * Read a single protocol buffer, which constitutes the entire stream.
    * This is in contrast to the default, where mutliple buffers may come out of the stream,
@@ -1498,10 +1574,14 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
    * @return A CoreMap, representing a sentence as stored in the protocol buffer (and therefore missing some fields)
    */
   protected CoreMap fromProtoNoTokens(CoreNLPProtos.Sentence proto) {
+    return fromProtoNoTokens(proto, false);
+  }
+
+  private CoreMap fromProtoNoTokens(CoreNLPProtos.Sentence proto, boolean lazy) {
     if (Thread.interrupted()) {
       throw new RuntimeInterruptedException();
     }
-    CoreMap sentence = new ArrayCoreMap();
+    CoreMap sentence = lazy ? new LazyCoreMap() : new ArrayCoreMap();
     // Required fields
     sentence.set(TokenBeginAnnotation.class, proto.getTokenOffsetBegin());
     sentence.set(TokenEndAnnotation.class, proto.getTokenOffsetEnd());
@@ -1509,13 +1589,13 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
     if (proto.hasSentenceIndex()) { sentence.set(SentenceIndexAnnotation.class, proto.getSentenceIndex()); }
     if (proto.hasCharacterOffsetBegin()) { sentence.set(CharacterOffsetBeginAnnotation.class, proto.getCharacterOffsetBegin()); }
     if (proto.hasCharacterOffsetEnd()) { sentence.set(CharacterOffsetEndAnnotation.class, proto.getCharacterOffsetEnd()); }
-    if (proto.hasParseTree()) { sentence.set(TreeAnnotation.class, fromProto(proto.getParseTree())); }
-    if (proto.hasBinarizedParseTree()) { sentence.set(BinarizedTreeAnnotation.class, fromProto(proto.getBinarizedParseTree())); }
+    if (proto.hasParseTree()) { set(sentence, TreeAnnotation.class, () -> fromProto(proto.getParseTree())); }
+    if (proto.hasBinarizedParseTree()) { set(sentence, BinarizedTreeAnnotation.class, () -> fromProto(proto.getBinarizedParseTree())); }
     if (proto.getKBestParseTreesCount() > 0) {
-      List<Tree> trees = proto.getKBestParseTreesList().stream().map(this::fromProto).collect(Collectors.toCollection(LinkedList::new));
-      sentence.set(KBestTreesAnnotation.class, trees);
+      set(sentence, KBestTreesAnnotation.class,
+          () -> proto.getKBestParseTreesList().stream().map(this::fromProto).collect(Collectors.toCollection(LinkedList::new)));
     }
-    if (proto.hasAnnotatedParseTree()) { sentence.set(SentimentCoreAnnotations.SentimentAnnotatedTree.class, fromProto(proto.getAnnotatedParseTree())); }
+    if (proto.hasAnnotatedParseTree()) { set(sentence, SentimentCoreAnnotations.SentimentAnnotatedTree.class, () -> fromProto(proto.getAnnotatedParseTree())); }
     if (proto.hasSentiment()) { sentence.set(SentimentCoreAnnotations.SentimentClass.class, proto.getSentiment()); }
     // Non-default fields
     if (proto.hasHasRelationAnnotations() && proto.getHasRelationAnnotations()) {
@@ -1619,8 +1699,39 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
    * @param proto The protocol buffer to read the document from.
    * @return An Annotation corresponding to the read protobuf.
    */
-  @SuppressWarnings("deprecation")
   public Annotation fromProto(CoreNLPProtos.Document proto) {
+    return fromProto(proto, false);
+  }
+
+  /**
+   * Returns a document like {@link #fromProto(CoreNLPProtos.Document)} does, but whose sentences
+   * are {@link LazyCoreMap}s: the tokens, entity mentions and the other light annotations are
+   * read straight away, while the parse trees, dependency graphs, entailed fragments, relation
+   * triples and numerized tokens of a sentence are made from the protocol buffer the first
+   * time they are asked for.  Readers which only look at the tokens (and their tags) don't pay
+   * for the rest.
+   *
+   * @param proto The protocol buffer to read the document from.
+   * @return An Annotation corresponding to the read protobuf.
+   */
+  public Annotation fromProtoLazy(CoreNLPProtos.Document proto) {
+    return fromProto(proto, true);
+  }
+
+  /**
+   * Sets the value of the key in the map, from the supplier straight away, or when it is first
+   * asked for if the map is a {@link LazyCoreMap}.
+   */
+  private static <V> void set(CoreMap map, Class<? extends CoreAnnotation<V>> key, Supplier<V> value) {
+    if (map instanceof LazyCoreMap) {
+      ((LazyCoreMap) map).setLazily(key, value);
+    } else {
+      map.set(key, value.get());
+    }
+  }
+
+  @SuppressWarnings("deprecation")
+  private Annotation fromProto(CoreNLPProtos.Document proto, boolean lazy) {
     if (Thread.interrupted()) {
       throw new RuntimeInterruptedException();
     }
@@ -1696,7 +1807,7 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
     List<CoreMap> sentences = new ArrayList<>(proto.getSentenceCount());
     for (int sentIndex = 0; sentIndex < proto.getSentenceCount(); ++sentIndex) {
       CoreNLPProtos.Sentence sentence = proto.getSentence(sentIndex);
-      CoreMap map = fromProtoNoTokens(sentence);
+      CoreMap map = fromProtoNoTokens(sentence, lazy);
       if (!tokens.isEmpty() && sentence.hasTokenOffsetBegin() && sentence.hasTokenOffsetEnd() &&
           map.get(TokensAnnotation.class) == null) {
         // Set tokens for sentence
@@ -1799,60 +1910,64 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
     HashMap<Integer, CoreNLPProtos.Mention> idToProtoMention = new HashMap<>();
 
     // Set things in the sentence that need a document context.
+    final String sentenceDocid = docid;
     for (int sentenceIndex = 0; sentenceIndex < proto.getSentenceCount(); ++sentenceIndex) {
       CoreNLPProtos.Sentence sentence = proto.getSentenceList().get(sentenceIndex);
       CoreMap map = sentences.get(sentenceIndex);
       List<CoreLabel> sentenceTokens = map.get(TokensAnnotation.class);
       // Set dependency graphs
       if (sentence.hasBasicDependencies()) {
-        map.set(BasicDependenciesAnnotation.class, fromProto(sentence.getBasicDependencies(), sentenceTokens, docid));
+        set(map, BasicDependenciesAnnotation.class, () -> fromProto(sentence.getBasicDependencies(), sentenceTokens, sentenceDocid));
       }
       if (sentence.hasCollapsedDependencies()) {
-        map.set(CollapsedDependenciesAnnotation.class, fromProto(sentence.getCollapsedDependencies(), sentenceTokens, docid));
+        set(map, CollapsedDependenciesAnnotation.class, () -> fromProto(sentence.getCollapsedDependencies(), sentenceTokens, sentenceDocid));
       }
       if (sentence.hasCollapsedCCProcessedDependencies()) {
-        map.set(CollapsedCCProcessedDependenciesAnnotation.class, fromProto(sentence.getCollapsedCCProcessedDependencies(), sentenceTokens, docid));
+        set(map, CollapsedCCProcessedDependenciesAnnotation.class, () -> fromProto(sentence.getCollapsedCCProcessedDependencies(), sentenceTokens, sentenceDocid));
       }
       if (sentence.hasAlternativeDependencies()) {
-        map.set(AlternativeDependenciesAnnotation.class, fromProto(sentence.getAlternativeDependencies(), sentenceTokens, docid));
+        set(map, AlternativeDependenciesAnnotation.class, () -> fromProto(sentence.getAlternativeDependencies(), sentenceTokens, sentenceDocid));
       }
       if (sentence.hasEnhancedDependencies()) {
-        map.set(EnhancedDependenciesAnnotation.class, fromProto(sentence.getEnhancedDependencies(), sentenceTokens, docid));
+        set(map, EnhancedDependenciesAnnotation.class, () -> fromProto(sentence.getEnhancedDependencies(), sentenceTokens, sentenceDocid));
       }
       if (sentence.hasEnhancedPlusPlusDependencies()) {
-        map.set(EnhancedPlusPlusDependenciesAnnotation.class, fromProto(sentence.getEnhancedPlusPlusDependencies(), sentenceTokens, docid));
+        set(map, EnhancedPlusPlusDependenciesAnnotation.class, () -> fromProto(sentence.getEnhancedPlusPlusDependencies(), sentenceTokens, sentenceDocid));
       }
       // Set entailed sentences
       if (sentence.getEntailedSentenceCount() > 0) {
-        Set<SentenceFragment> entailedSentences = sentence.getEntailedSentenceList().stream().map(frag -> fromProto(frag, map.get(EnhancedPlusPlusDependenciesAnnotation.class))).collect(Collectors.toSet());
-        map.set(NaturalLogicAnnotations.EntailedSentencesAnnotation.class, entailedSentences);
+        set(map, NaturalLogicAnnotations.EntailedSentencesAnnotation.class,
+            () -> sentence.getEntailedSentenceList().stream().map(frag -> fromProto(frag, map.get(EnhancedPlusPlusDependenciesAnnotation.class))).collect(Collectors.toSet()));
       }
       if (sentence.getEntailedClauseCount() > 0) {
-        Set<SentenceFragment> entailedClauses = sentence.getEntailedClauseList().stream().map(frag -> fromProto(frag, map.get(CollapsedDependenciesAnnotation.class))).collect(Collectors.toSet());
-        map.set(NaturalLogicAnnotations.EntailedClausesAnnotation.class, entailedClauses);
+        set(map, NaturalLogicAnnotations.EntailedClausesAnnotation.class,
+            () -> sentence.getEntailedClauseList().stream().map(frag -> fromProto(frag, map.get(CollapsedDependenciesAnnotation.class))).collect(Collectors.toSet()));
       }
       // Set relation triples
-      ArrayList<RelationTriple> triples = new ArrayList<>();
-      if (sentence.getHasOpenieTriplesAnnotation())
-        map.set(NaturalLogicAnnotations.RelationTriplesAnnotation.class, triples);
-      if (sentence.getOpenieTripleCount() > 0) {
-        for (CoreNLPProtos.RelationTriple triple : sentence.getOpenieTripleList()) {
-          triples.add(fromProto(triple, ann, sentenceIndex));
-        }
-        map.set(NaturalLogicAnnotations.RelationTriplesAnnotation.class, triples);
+      final int sentIndex = sentenceIndex;
+      if (sentence.getHasOpenieTriplesAnnotation() || sentence.getOpenieTripleCount() > 0) {
+        set(map, NaturalLogicAnnotations.RelationTriplesAnnotation.class, () -> {
+          List<RelationTriple> triples = new ArrayList<>();
+          for (CoreNLPProtos.RelationTriple triple : sentence.getOpenieTripleList()) {
+            triples.add(fromProto(triple, ann, sentIndex));
+          }
+          return triples;
+        });
       }
       // Set kbp relation triples
-      if (sentence.getHasKBPTriplesAnnotation())
-        map.set(KBPTriplesAnnotation.class, new ArrayList<>());
-      if (sentence.getKbpTripleCount() > 0) {
-        for (CoreNLPProtos.RelationTriple kbpTriple : sentence.getKbpTripleList()) {
-          map.get(KBPTriplesAnnotation.class).add(fromProto(kbpTriple, ann, sentenceIndex));
-        }
+      if (sentence.getHasKBPTriplesAnnotation() || sentence.getKbpTripleCount() > 0) {
+        set(map, KBPTriplesAnnotation.class, () -> {
+          List<RelationTriple> triples = new ArrayList<>();
+          for (CoreNLPProtos.RelationTriple kbpTriple : sentence.getKbpTripleList()) {
+            triples.add(fromProto(kbpTriple, ann, sentIndex));
+          }
+          return triples;
+        });
       }
       // Redo some light annotation
       if ( map.containsKey(TokensAnnotation.class) &&
           (!sentence.hasHasNumerizedTokensAnnotation() || sentence.getHasNumerizedTokensAnnotation())) {
-        map.set(NumerizedTokensAnnotation.class, NumberNormalizer.findAndMergeNumbers(map));
+        set(map, NumerizedTokensAnnotation.class, () -> NumberNormalizer.findAndMergeNumbers(map));
       }
       // add the CoreLabel and IndexedWord info to each mention
       // when Mentions are serialized, just storing the index in the sentence for CoreLabels and IndexedWords
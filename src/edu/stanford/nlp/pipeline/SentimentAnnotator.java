@@ -8,7 +8,7 @@ import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
 import edu.stanford.nlp.sentiment.CollapseUnaryTransformer;
 import edu.stanford.nlp.sentiment.SentimentCoreAnnotations;
-import edu.stanford.nlp.sentiment.SentimentCostAndGradient;
+import edu.stanford.nlp.sentiment.SentimentBatchEvaluator;
 import edu.stanford.nlp.sentiment.SentimentModel;
 import edu.stanford.nlp.sentiment.SentimentUtils;
 import edu.stanford.nlp.trees.Tree;
@@ -72,14 +72,19 @@ public class SentimentAnnotator implements Annotator {
     if (annotation.containsKey(CoreAnnotations.SentencesAnnotation.class)) {
       // TODO: parallelize
       List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+      List<Tree> collapsedTrees = new ArrayList<>(sentences.size());
       for (CoreMap sentence : sentences) {
         Tree binarized = sentence.get(TreeCoreAnnotations.BinarizedTreeAnnotation.class);
         if (binarized == null) {
           throw new AssertionError("Binarized sentences not built by parser");
         }
-        Tree collapsedUnary = transformer.transformTree(binarized);
-        SentimentCostAndGradient scorer = new SentimentCostAndGradient(model, null);
-        scorer.forwardPropagateTree(collapsedUnary);
+        collapsedTrees.add(transformer.transformTree(binarized));
+      }
+      // run the model over all the sentences of the document at once
+      new SentimentBatchEvaluator(model).forwardPropagateTrees(collapsedTrees);
+      for (int i = 0; i < sentences.size(); i++) {
+        CoreMap sentence = sentences.get(i);
+        Tree collapsedUnary = collapsedTrees.get(i);
         sentence.set(SentimentCoreAnnotations.SentimentAnnotatedTree.class, collapsedUnary);
         int sentiment = RNNCoreAnnotations.getPredictedClass(collapsedUnary);
         sentence.set(SentimentCoreAnnotations.SentimentClass.class, SentimentUtils.sentimentString(model, sentiment));
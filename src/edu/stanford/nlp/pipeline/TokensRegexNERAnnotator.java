@@ -6,13 +6,17 @@ import edu.stanford.nlp.ling.CoreAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.tokensregex.*;
+import edu.stanford.nlp.ling.tokensregex.matcher.AhoCorasickMatcher;
 import edu.stanford.nlp.ling.tokensregex.matcher.TrieMap;
 import edu.stanford.nlp.sequences.SeqClassifierFlags;
 import edu.stanford.nlp.util.*;
 import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.regex.Pattern;
 
@@ -120,6 +124,16 @@ import java.util.regex.Pattern;
  *      <td>{@code false}</td></tr>
  *   <tr><td>{@code verbose}</td><td>If true, turns on extra debugging messages.</td>
  *      <td>{@code false}</td></tr>
+ *   <tr><td>{@code literaltrie}</td><td>If true, entries whose tokens are all literal strings are matched
+ *      with one {@link AhoCorasickMatcher} instead of as TokensRegex patterns. This is much faster to build
+ *      and to match for large gazetteers. Overlapping matches that tie on priority, weight and length are
+ *      then resolved in mapping file order.</td>
+ *      <td>{@code false}</td></tr>
+ *   <tr><td>{@code literaltrie.cache}</td><td>If set (with {@code literaltrie}), a directory where the literal
+ *      matchers are saved once built. Later runs with the same literal entries load them from there by
+ *      mapping the files into memory, rather than building them again, and share their pages with other
+ *      processes that load them.</td>
+ *      <td>{@code}</td></tr>
  * </table>
  *
  * <p>
@@ -159,6 +173,9 @@ public class TokensRegexNERAnnotator implements Annotator  {
   private final List<Entry> entries;
   private final Map<SequencePattern<CoreMap>,Entry> patternToEntry;
   private final MultiPatternMatcher<CoreMap>  multiPatternMatcher;
+  /** Matchers for the literal entries of case sensitive and case insensitive mapping files, or null. */
+  private final AhoCorasickMatcher[] literalMatchers;
+  private final Map<Entry,Integer> entryIndices;
   private final List<Class> annotationFields; // list of fields to annotate (default to just NamedEntityTag)
 
   private final Set<String> myLabels;  // set of labels to always overwrite
@@ -196,6 +213,8 @@ public class TokensRegexNERAnnotator implements Annotator  {
                   " specified overwriteableType for the regex will the NER type be overwritten."),
           new PropertiesUtils.Property("backgroundSymbol", DEFAULT_BACKGROUND_SYMBOL, "Comma separated list of NER labels to always replace."),
           new PropertiesUtils.Property("verbose", "false", ""),
+          new PropertiesUtils.Property("literaltrie", "false", "Whether to match entries that are literal token sequences with a token trie rather than TokensRegex."),
+          new PropertiesUtils.Property("literaltrie.cache", "", "Directory to save the literal token tries to, and to map them from when the literal entries are the same."),
   };
 
   /** Construct a new TokensRegexAnnotator.
@@ -315,7 +334,19 @@ public class TokensRegexNERAnnotator implements Annotator  {
     annotationFieldnames = processPerFileOptions(name, mappings, ignoreCaseList, validPosPatternList, headerList, ignoreCase, validPosPattern, headerFields, annotationFieldnames, annotationFields);
     entries = Collections.unmodifiableList(readEntries(name, noDefaultOverwriteLabels, ignoreCaseList, headerList, entryToMappingFileNumber, verbose, annotationFieldnames, mappings));
     IdentityHashMap<SequencePattern<CoreMap>, Entry> patternToEntry = new IdentityHashMap<>();
-    multiPatternMatcher = createPatternMatcher(patternToEntry);
+    if (PropertiesUtils.getBool(properties, prefix + "literaltrie", false)) {
+      literalMatchers = new AhoCorasickMatcher[2];
+      entryIndices = new IdentityHashMap<>();
+      for (int i = 0; i < entries.size(); i++) {
+        entryIndices.put(entries.get(i), i);
+      }
+    } else {
+      literalMatchers = null;
+      entryIndices = null;
+    }
+    String literalCache = properties.getProperty(prefix + "literaltrie.cache");
+    multiPatternMatcher = createPatternMatcher(patternToEntry, literalMatchers,
+        StringUtils.isNullOrEmpty(literalCache) ? null : new File(literalCache));
     this.patternToEntry = Collections.unmodifiableMap(patternToEntry);
     Set<String> myLabels = Generics.newHashSet();
     // Can always override background or none.
@@ -353,11 +384,25 @@ public class TokensRegexNERAnnotator implements Annotator  {
       logger.info("done.");
   }
 
-  private MultiPatternMatcher<CoreMap> createPatternMatcher(Map<SequencePattern<CoreMap>, Entry> patternToEntry) {
+  /**
+   * Compiles the entries to TokensRegex patterns. If literalMatchers isn't null, entries whose
+   * tokens are all literal strings are instead put in an AhoCorasickMatcher for case sensitive
+   * (literalMatchers[0]) or case insensitive (literalMatchers[1]) entries, which are loaded from or
+   * saved to literalCache if it isn't null.
+   */
+  private MultiPatternMatcher<CoreMap> createPatternMatcher(Map<SequencePattern<CoreMap>, Entry> patternToEntry,
+                                                            AhoCorasickMatcher[] literalMatchers, File literalCache) {
     // Convert to tokensregex pattern
 
     List<TokenSequencePattern> patterns = new ArrayList<>(entries.size());
-    for (Entry entry:entries) {
+    List<List<Integer>> literalEntries = Arrays.asList(new ArrayList<>(), new ArrayList<>());
+    for (int i = 0; i < entries.size(); i++) {
+      Entry entry = entries.get(i);
+      if (literalMatchers != null && isLiteral(entry)) {
+        boolean ignoreCaseEntry = ignoreCaseList.get(entryToMappingFileNumber.get(entry));
+        literalEntries.get(ignoreCaseEntry ? 1 : 0).add(i);
+        continue;
+      }
       TokenSequencePattern pattern;
 
       Boolean ignoreCaseEntry = ignoreCaseList.get(entryToMappingFileNumber.get(entry));
@@ -391,47 +436,210 @@ public class TokensRegexNERAnnotator implements Annotator  {
       patterns.add(pattern);
       patternToEntry.put(pattern, entry);
     }
+    if (literalMatchers != null) {
+      for (int i = 0; i < literalMatchers.length; i++) {
+        if ( ! literalEntries.get(i).isEmpty()) {
+          literalMatchers[i] = literalMatcher(literalEntries.get(i), i == 1, literalCache);
+        }
+      }
+    }
     return TokenSequencePattern.getMultiPatternMatcher(patterns);
   }
 
+  /**
+   * Builds the matcher of the given literal entries, with their indices as values. If cacheDir
+   * isn't null, the matcher is loaded from a file there named by a hash of the entries, or
+   * built and saved to it if there isn't one.
+   */
+  private AhoCorasickMatcher literalMatcher(List<Integer> entryNums, boolean ignoreCaseEntries, File cacheDir) {
+    File file = null;
+    if (cacheDir != null) {
+      // FNV-1a over the keys and their indices
+      long hash = 0xcbf29ce484222325L;
+      for (int i : entryNums) {
+        for (String token : entries.get(i).regex) {
+          for (int c = 0; c < token.length(); c++) {
+            hash = (hash ^ token.charAt(c)) * 0x100000001b3L;
+          }
+          hash = (hash ^ 0xFFFF) * 0x100000001b3L;
+        }
+        hash = (hash ^ i) * 0x100000001b3L;
+      }
+      file = new File(cacheDir, "literals-" + Long.toHexString(hash) + (ignoreCaseEntries ? "-ignorecase" : "") + ".ahoc");
+      if (file.exists()) {
+        try {
+          AhoCorasickMatcher matcher = AhoCorasickMatcher.load(file);
+          if (matcher.ignoreCase() == ignoreCaseEntries && matcher.size() == entryNums.size()) {
+            return matcher;
+          }
+          logger.warn("Rebuilding literal matcher, as " + file + " is for other entries");
+        } catch (IOException e) {
+          logger.warn("Rebuilding literal matcher, as " + file + " can't be loaded: " + e);
+        }
+      }
+    }
+    AhoCorasickMatcher.Builder builder = new AhoCorasickMatcher.Builder(ignoreCaseEntries);
+    for (int i : entryNums) {
+      builder.add(Arrays.asList(entries.get(i).regex), i);
+    }
+    AhoCorasickMatcher matcher = builder.build();
+    if (file != null) {
+      // saved under another name first, so that no one loads a half written file
+      File temp = null;
+      try {
+        cacheDir.mkdirs();
+        temp = File.createTempFile("literals", ".tmp", cacheDir);
+        matcher.save(temp);
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        logger.warn("Couldn't save literal matcher to " + file + ": " + e);
+        if (temp != null) {
+          temp.delete();
+        }
+      }
+    }
+    return matcher;
+  }
+
+  /**
+   * Whether the entry is a sequence of plain strings, each matching just that token text
+   * (as {@link CoreMapNodePattern#valueOf(String, int)} makes literal patterns for those).
+   */
+  private boolean isLiteral(Entry entry) {
+    if (entry.tokensRegex != null || entry.annotateGroup != 0) {
+      return false;
+    }
+    if (validPosPatternList.get(entryToMappingFileNumber.get(entry)) != null && PosMatchType.MATCH_ALL_TOKENS.equals(posMatchType)) {
+      return false;
+    }
+    for (String token : entry.regex) {
+      if (token.isEmpty() || ! ComplexNodePattern.isLiteralRegex(token)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** A match of an entry, found either by TokensRegex or by a literal matcher. */
+  private static class EntryMatch {
+    final Entry entry;
+    final int order;
+    final int start;
+    final int end;
+    final SequenceMatchResult<CoreMap> result; // null for literal matches
+
+    EntryMatch(Entry entry, int order, int start, int end, SequenceMatchResult<CoreMap> result) {
+      this.entry = entry;
+      this.order = order;
+      this.start = start;
+      this.end = end;
+      this.result = result;
+    }
+  }
+
+  /** The same ordering as {@link SequenceMatchResult#DEFAULT_COMPARATOR}, with entry order as the order. */
+  private static final Comparator<EntryMatch> ENTRY_MATCH_COMPARATOR = (m1, m2) -> {
+    int cmp = Double.compare(m2.entry.priority, m1.entry.priority);
+    if (cmp == 0) cmp = Double.compare(m2.entry.weight, m1.entry.weight);
+    if (cmp == 0) cmp = Integer.compare(m2.end - m2.start, m1.end - m1.start);
+    if (cmp == 0) cmp = Integer.compare(m1.order, m2.order);
+    if (cmp == 0) cmp = Integer.compare(m1.start, m2.start);
+    if (cmp == 0) cmp = Integer.compare(m1.end, m2.end);
+    return cmp;
+  };
+
+  /**
+   * Finds non-overlapping matches of all entries like {@link MultiPatternMatcher#findNonOverlapping},
+   * but with literal entries matched by the literal matchers.
+   */
+  private List<EntryMatch> findNonOverlappingWithLiterals(List<CoreLabel> tokens) {
+    List<EntryMatch> all = new ArrayList<>();
+    for (SequencePattern<CoreMap> p : multiPatternMatcher.getTriggeredPatterns(tokens)) {
+      if (Thread.interrupted()) {  // Allow interrupting
+        throw new RuntimeInterruptedException();
+      }
+      Entry entry = patternToEntry.get(p);
+      SequenceMatcher<CoreMap> m = p.getMatcher(tokens);
+      while (m.find()) {
+        SequenceMatchResult<CoreMap> result = m.toBasicSequenceMatchResult();
+        all.add(new EntryMatch(entry, entryIndices.get(entry), result.start(), result.end(), result));
+      }
+    }
+    List<String> words = new ArrayList<>(tokens.size());
+    for (CoreLabel token : tokens) {
+      words.add(token.word());
+    }
+    for (AhoCorasickMatcher literalMatcher : literalMatchers) {
+      if (literalMatcher == null) {
+        continue;
+      }
+      // like a TokensRegex matcher, take each entry's matches left to right without overlaps
+      Map<Integer,Integer> lastEnds = new HashMap<>();
+      literalMatcher.findAll(words, (start, end, index) -> {
+        Integer lastEnd = lastEnds.get(index);
+        if (lastEnd == null || start >= lastEnd) {
+          lastEnds.put(index, end);
+          all.add(new EntryMatch(entries.get(index), index, start, end, null));
+        }
+      });
+    }
+    List<EntryMatch> res = IntervalTree.getNonOverlapping(all,
+        m -> Interval.toInterval(m.start, m.end, Interval.INTERVAL_OPEN_END), ENTRY_MATCH_COMPARATOR);
+    res.sort((m1, m2) -> m1.start != m2.start ? Integer.compare(m1.start, m2.start) : Integer.compare(m1.end, m2.end));
+    return res;
+  }
+
   private void annotateMatched(List<CoreLabel> tokens) {
+    if (literalMatchers != null) {
+      for (EntryMatch m : findNonOverlappingWithLiterals(tokens)) {
+        if (m.result != null) {
+          int g = m.entry.annotateGroup;
+          annotateMatch(tokens, m.entry, m.result.start(g), m.result.end(g), m.result.group(g), m.result.groupNodes(g));
+        } else {
+          List<CoreLabel> nodes = tokens.subList(m.start, m.end);
+          annotateMatch(tokens, m.entry, m.start, m.end,
+              ChunkAnnotationUtils.getTokenText(nodes, CoreAnnotations.TextAnnotation.class), nodes);
+        }
+      }
+      return;
+    }
     List<SequenceMatchResult<CoreMap>> matched = multiPatternMatcher.findNonOverlapping(tokens);
     for (SequenceMatchResult<CoreMap> m:matched) {
       Entry entry = patternToEntry.get(m.pattern());
-
-      // Check if we will overwrite the existing annotation with this annotation
       int g = entry.annotateGroup;
-      int start = m.start(g);
-      int end = m.end(g);
-
-      String str = m.group(g);
-      if (commonWords.contains(str)) {
-        if (verbose) {
-          logger.info("Not annotating (common word) '" + str + "': " +
-              StringUtils.joinFields(m.groupNodes(g), CoreAnnotations.NamedEntityTagAnnotation.class)
-              + " with " + entry.getTypeDescription() + ", sentence is '" + StringUtils.joinWords(tokens, " ") + "'");
-        }
-        continue;
-      }
+      annotateMatch(tokens, entry, m.start(g), m.end(g), m.group(g), m.groupNodes(g));
+    }
+  }
 
-      boolean overwriteOriginalNer = checkPosTags(tokens, start, end);
-      if (overwriteOriginalNer) {
-        overwriteOriginalNer = checkOrigNerTags(entry, tokens, start, end);
+  private void annotateMatch(List<CoreLabel> tokens, Entry entry, int start, int end,
+                             String str, List<? extends CoreMap> nodes) {
+    // Check if we will overwrite the existing annotation with this annotation
+    if (commonWords.contains(str)) {
+      if (verbose) {
+        logger.info("Not annotating (common word) '" + str + "': " +
+            StringUtils.joinFields(nodes, CoreAnnotations.NamedEntityTagAnnotation.class)
+            + " with " + entry.getTypeDescription() + ", sentence is '" + StringUtils.joinWords(tokens, " ") + "'");
       }
-      if (overwriteOriginalNer) {
-        for (int i = start; i < end; i++) {
-          CoreLabel token = tokens.get(i);
-          for (int j = 0; j < annotationFields.size(); j++) {
-            token.set(annotationFields.get(j), entry.types[j]);
-          }
-         // tokens.get(i).set(CoreAnnotations.NamedEntityTagAnnotation.class, entry.type);
-        }
-      } else {
-        if (verbose) {
-          logger.info("Not annotating  '" + m.group(g) + "': " +
-                  StringUtils.joinFields(m.groupNodes(g), CoreAnnotations.NamedEntityTagAnnotation.class)
-                  + " with " + entry.getTypeDescription() + ", sentence is '" + StringUtils.joinWords(tokens, " ") + "'");
+      return;
+    }
+
+    boolean overwriteOriginalNer = checkPosTags(tokens, start, end);
+    if (overwriteOriginalNer) {
+      overwriteOriginalNer = checkOrigNerTags(entry, tokens, start, end);
+    }
+    if (overwriteOriginalNer) {
+      for (int i = start; i < end; i++) {
+        CoreLabel token = tokens.get(i);
+        for (int j = 0; j < annotationFields.size(); j++) {
+          token.set(annotationFields.get(j), entry.types[j]);
         }
+       // tokens.get(i).set(CoreAnnotations.NamedEntityTagAnnotation.class, entry.type);
+      }
+    } else {
+      if (verbose) {
+        logger.info("Not annotating  '" + str + "': " +
+                StringUtils.joinFields(nodes, CoreAnnotations.NamedEntityTagAnnotation.class)
+                + " with " + entry.getTypeDescription() + ", sentence is '" + StringUtils.joinWords(tokens, " ") + "'");
       }
     }
   }
@@ -5,6 +5,7 @@ import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import edu.stanford.nlp.graph.CompactDirectedMultiGraph;
 import edu.stanford.nlp.graph.DirectedMultiGraph;
 import edu.stanford.nlp.international.Language;
 import edu.stanford.nlp.ling.CoreAnnotations;
@@ -69,7 +70,8 @@ public class SemanticGraph implements Serializable  {
    */
   private final Collection<IndexedWord> roots;
 
-  private final DirectedMultiGraph<IndexedWord, SemanticGraphEdge> graph;
+  /** A CompactDirectedMultiGraph after {@link #compact()}, until the graph is next changed. */
+  private DirectedMultiGraph<IndexedWord, SemanticGraphEdge> graph;
 
   private static final MapFactory<IndexedWord, Map<IndexedWord, List<SemanticGraphEdge>>> outerMapFactory = MapFactory.hashMapFactory();
   private static final MapFactory<IndexedWord, List<SemanticGraphEdge>> innerMapFactory = MapFactory.hashMapFactory();
@@ -106,7 +108,7 @@ public class SemanticGraph implements Serializable  {
   }
 
   public void addVertex(IndexedWord vertex) {
-    graph.addVertex(vertex);
+    mutableGraph().addVertex(vertex);
   }
 
   public boolean containsVertex(IndexedWord vertex) {
@@ -126,11 +128,69 @@ public class SemanticGraph implements Serializable  {
   }
 
   public boolean removeEdge(SemanticGraphEdge e) {
-    return graph.removeEdge(e.getSource(), e.getTarget(), e);
+    return mutableGraph().removeEdge(e.getSource(), e.getTarget(), e);
   }
 
   public boolean removeVertex(IndexedWord vertex) {
-    return graph.removeVertex(vertex);
+    return mutableGraph().removeVertex(vertex);
+  }
+
+  /**
+   * Stores the graph in a compact, read-only form, which takes much less memory and is
+   * faster to traverse: see {@link CompactDirectedMultiGraph}. This is meant for when a
+   * graph is finished, for example at the end of a parser annotator. The graph can still
+   * be changed afterwards; the first change turns it back into the usual form.
+   */
+  public void compact() {
+    if ( ! isCompact()) {
+      graph = new CompactDirectedMultiGraph<>(graph, IndexedWord::index);
+    }
+  }
+
+  /** Whether the graph is in the form made by {@link #compact()}. */
+  public boolean isCompact() {
+    return graph instanceof CompactDirectedMultiGraph;
+  }
+
+  /** Returns the graph, first turning it back into the usual form if it is compact. */
+  private DirectedMultiGraph<IndexedWord, SemanticGraphEdge> mutableGraph() {
+    if (isCompact()) {
+      graph = new DirectedMultiGraph<>(graph);
+    }
+    return graph;
+  }
+
+  /**
+   * The iterators of a compact graph cannot remove edges themselves, so this removes
+   * them from the graph instead, while the iteration carries on over the compact form.
+   */
+  private Iterator<SemanticGraphEdge> removableIterator(Iterator<SemanticGraphEdge> iterator) {
+    if ( ! isCompact()) {
+      return iterator;
+    }
+    return new Iterator<SemanticGraphEdge>() {
+      private SemanticGraphEdge last; // = null
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public SemanticGraphEdge next() {
+        last = iterator.next();
+        return last;
+      }
+
+      @Override
+      public void remove() {
+        if (last == null) {
+          throw new IllegalStateException();
+        }
+        removeEdge(last);
+        last = null;
+      }
+    };
   }
 
   /**
@@ -163,23 +223,23 @@ public class SemanticGraph implements Serializable  {
   }
 
   public Iterable<SemanticGraphEdge> edgeIterable() {
-    return graph.edgeIterable();
+    return () -> removableIterator(graph.edgeIterator());
   }
 
   public Iterator<SemanticGraphEdge> outgoingEdgeIterator(IndexedWord v) {
-    return graph.outgoingEdgeIterator(v);
+    return removableIterator(graph.outgoingEdgeIterator(v));
   }
 
   public Iterable<SemanticGraphEdge> outgoingEdgeIterable(IndexedWord v) {
-    return graph.outgoingEdgeIterable(v);
+    return () -> removableIterator(graph.outgoingEdgeIterator(v));
   }
 
   public Iterator<SemanticGraphEdge> incomingEdgeIterator(IndexedWord v) {
-    return graph.incomingEdgeIterator(v);
+    return removableIterator(graph.incomingEdgeIterator(v));
   }
 
   public Iterable<SemanticGraphEdge> incomingEdgeIterable(IndexedWord v) {
-    return graph.incomingEdgeIterable(v);
+    return () -> removableIterator(graph.incomingEdgeIterator(v));
   }
 
   public List<SemanticGraphEdge> outgoingEdgeList(IndexedWord v) {
@@ -1670,14 +1730,14 @@ public class SemanticGraph implements Serializable  {
 
   public SemanticGraphEdge addEdge(IndexedWord s, IndexedWord d, GrammaticalRelation reln, double weight, boolean isExtra) {
     SemanticGraphEdge newEdge = new SemanticGraphEdge(s, d, reln, weight, isExtra);
-    graph.add(s, d, newEdge);
+    mutableGraph().add(s, d, newEdge);
     return newEdge;
   }
 
   public SemanticGraphEdge addEdge(SemanticGraphEdge edge) {
     SemanticGraphEdge newEdge = new SemanticGraphEdge(edge.getGovernor(), edge.getDependent(),
         edge.getRelation(), edge.getWeight(), edge.isExtra());
-    graph.add(edge.getGovernor(), edge.getDependent(), newEdge);
+    mutableGraph().add(edge.getGovernor(), edge.getDependent(), newEdge);
     return newEdge;
   }
 
@@ -2037,7 +2097,7 @@ public class SemanticGraph implements Serializable  {
    *
    */
   public void deleteDuplicateEdges() {
-    graph.deleteDuplicateEdges();
+    mutableGraph().deleteDuplicateEdges();
   }
 
 
@@ -34,6 +34,9 @@ public class CoordinationPattern extends SemgrexPattern  {
 
   public boolean isNodeCoord() { return isNodeCoord; }
 
+  /** Whether all the children must match ("and"), rather than any of them ("or"). */
+  boolean isConjunction() { return isConj; }
+
   @Override
   public void setChild(SemgrexPattern child) {
     if (isNodeCoord) {
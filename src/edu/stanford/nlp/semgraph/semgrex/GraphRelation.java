@@ -89,6 +89,22 @@ abstract class GraphRelation implements Serializable {
     return name;
   }
 
+  /**
+   * Returns the type an edge must have for this relation to hold, if the relation is
+   * over a single edge of one exact type, or null otherwise.
+   */
+  String exactEdgeRelation() {
+    return null;
+  }
+
+  /** Returns the raw type if it is a single relation name rather than a regex or anything. */
+  String exactRawType() {
+    if (rawType == null || rawType.isEmpty() || rawType.matches("/.*/")) {
+      return null;
+    }
+    return rawType;
+  }
+
 
   // ALIGNMENT graph relation: "@" ==============================================
 
@@ -241,6 +257,11 @@ abstract class GraphRelation implements Serializable {
       super(">", reln, name);
     }
 
+    @Override
+    String exactEdgeRelation() {
+      return exactRawType();
+    }
+
     @Override
     boolean satisfies(IndexedWord l1, IndexedWord l2, SemanticGraph sg) {
       List<Pair<GrammaticalRelation, IndexedWord>> deps = sg.childPairs(l1);
@@ -293,6 +314,11 @@ abstract class GraphRelation implements Serializable {
       super("<", reln, name);
     }
 
+    @Override
+    String exactEdgeRelation() {
+      return exactRawType();
+    }
+
     @Override
     boolean satisfies(IndexedWord l1, IndexedWord l2, SemanticGraph sg) {
       if (l1.equals(IndexedWord.NO_WORD) || l2.equals(IndexedWord.NO_WORD) )
@@ -178,6 +178,31 @@ public class NodePattern extends SemgrexPattern  {
     return !negDesc;
   }
 
+  /**
+   * Returns the annotations a node must have, with exactly the given values (compared
+   * case sensitively), to match this pattern. These are only the ones that are certain:
+   * the map is empty for a negated description, the root or the empty node.
+   */
+  Map<Class<?>, String> exactAttributes() {
+    if (negDesc || isRoot || isEmpty) {
+      return Collections.emptyMap();
+    }
+    Map<Class<?>, String> exact = Generics.newHashMap();
+    for (Map.Entry<String, Pair<Object, Object>> attr : attributes.entrySet()) {
+      Object toMatch = attr.getValue().first;
+      Class<?> key = Env.lookupAnnotationKey(env, attr.getKey());
+      if (toMatch instanceof String && key != null) {
+        exact.put(key, (String) toMatch);
+      }
+    }
+    return exact;
+  }
+
+  /** The type of the edge which links this node to its parent pattern node, if there is one exact type. */
+  String exactRelation() {
+    return reln == null ? null : reln.exactEdgeRelation();
+  }
+
   public void makeLink() {
     isLink = true;
   }
@@ -0,0 +1,333 @@
+package edu.stanford.nlp.semgraph.semgrex;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * An inverted index over a collection of {@link SemanticGraph}s, for running Semgrex
+ * patterns over a large corpus. For each word, lemma, tag and named entity tag of a node,
+ * and each edge relation, it lists the ids of the graphs that contain it; graphs are
+ * numbered in the order they are added.
+ *
+ * {@link #candidates} uses the postings to find the graphs a pattern could match: those
+ * with every exact attribute value and edge relation that the pattern requires (outside
+ * negations, optional relations and disjunctions). Only those graphs need to be given to
+ * a {@link SemgrexMatcher}, which is what {@link #find} does. Attribute values are indexed
+ * as they are, so the candidates are for case sensitive matching.
+ *
+ * An index can be written to a file and loaded back; loading maps the file into memory
+ * and reads postings from the mapping as they are needed. The index does not hold the
+ * graphs themselves: those stay wherever the corpus is stored.
+ */
+public class SemgrexIndex {
+
+  private static final int MAGIC = 0x53474958; // "SGIX"
+  private static final int VERSION = 1;
+
+  /** The node annotations which are indexed, with the prefixes of their terms. */
+  private static final Map<Class<?>, Character> INDEXED_ANNOTATIONS = new LinkedHashMap<>();
+  static {
+    INDEXED_ANNOTATIONS.put(CoreAnnotations.TextAnnotation.class, 'w');
+    INDEXED_ANNOTATIONS.put(CoreAnnotations.LemmaAnnotation.class, 'l');
+    INDEXED_ANNOTATIONS.put(CoreAnnotations.PartOfSpeechAnnotation.class, 't');
+    INDEXED_ANNOTATIONS.put(CoreAnnotations.NamedEntityTagAnnotation.class, 'n');
+  }
+  private static final char RELATION_PREFIX = 'r';
+
+  /** Receives the matches of a pattern. */
+  @FunctionalInterface
+  public interface MatchHandler {
+    void handle(int graphId, SemgrexMatcher matcher);
+  }
+
+  private final int numGraphs;
+  /** Where each term's postings are in {@link #postings}: start and length, packed into a long. */
+  private final Map<String, Long> terms;
+  private final IntBuffer postings;
+
+  private SemgrexIndex(int numGraphs, Map<String, Long> terms, IntBuffer postings) {
+    this.numGraphs = numGraphs;
+    this.terms = terms;
+    this.postings = postings;
+  }
+
+  /** The number of graphs indexed. */
+  public int size() {
+    return numGraphs;
+  }
+
+  /** The number of distinct terms indexed. */
+  public int numTerms() {
+    return terms.size();
+  }
+
+  private static String term(char prefix, String value) {
+    return prefix + value;
+  }
+
+  private int[] postings(String term) {
+    Long location = terms.get(term);
+    if (location == null) {
+      return new int[0];
+    }
+    int[] ids = new int[(int) (location & 0xffffffffL)];
+    IntBuffer view = postings.duplicate();
+    view.position((int) (location >>> 32));
+    view.get(ids);
+    return ids;
+  }
+
+  /** The ids of the graphs with a node whose annotation has this value. */
+  public int[] graphsWithAttribute(Class<?> annotation, String value) {
+    Character prefix = INDEXED_ANNOTATIONS.get(annotation);
+    if (prefix == null) {
+      throw new IllegalArgumentException("Not an indexed annotation: " + annotation);
+    }
+    return postings(term(prefix, value));
+  }
+
+  /** The ids of the graphs with an edge of this relation. */
+  public int[] graphsWithRelation(String relation) {
+    return postings(term(RELATION_PREFIX, relation));
+  }
+
+  /**
+   * Returns the ids of the graphs which the pattern could match, in increasing order.
+   * Every graph the pattern matches (case sensitively) is among them.
+   */
+  public int[] candidates(SemgrexPattern pattern) {
+    Set<String> required = new LinkedHashSet<>();
+    collectRequiredTerms(pattern, required);
+    if (required.isEmpty()) {
+      int[] all = new int[numGraphs];
+      for (int i = 0; i < numGraphs; i++) {
+        all[i] = i;
+      }
+      return all;
+    }
+    List<int[]> lists = new ArrayList<>(required.size());
+    for (String term : required) {
+      int[] ids = postings(term);
+      if (ids.length == 0) {
+        return ids;
+      }
+      lists.add(ids);
+    }
+    lists.sort(Comparator.comparingInt(ids -> ids.length));
+    int[] result = lists.get(0);
+    for (int i = 1; i < lists.size() && result.length > 0; i++) {
+      result = intersect(result, lists.get(i));
+    }
+    return result;
+  }
+
+  private static void collectRequiredTerms(SemgrexPattern pattern, Set<String> required) {
+    if (pattern.isNegated() || pattern.isOptional()) {
+      return;
+    }
+    if (pattern instanceof NodePattern) {
+      NodePattern node = (NodePattern) pattern;
+      for (Map.Entry<Class<?>, String> attribute : node.exactAttributes().entrySet()) {
+        Character prefix = INDEXED_ANNOTATIONS.get(attribute.getKey());
+        if (prefix != null) {
+          required.add(term(prefix, attribute.getValue()));
+        }
+      }
+      String relation = node.exactRelation();
+      if (relation != null) {
+        required.add(term(RELATION_PREFIX, relation));
+      }
+      for (SemgrexPattern child : pattern.getChildren()) {
+        collectRequiredTerms(child, required);
+      }
+    } else if (pattern instanceof CoordinationPattern && ((CoordinationPattern) pattern).isConjunction()) {
+      for (SemgrexPattern child : pattern.getChildren()) {
+        collectRequiredTerms(child, required);
+      }
+    }
+    // any single alternative of a disjunction may match, so none of them is required
+  }
+
+  /** Intersects two sorted lists of ids, searching the longer one if it is much longer. */
+  private static int[] intersect(int[] shorter, int[] longer) {
+    int[] result = new int[shorter.length];
+    int size = 0;
+    if (longer.length > 16 * shorter.length) {
+      int from = 0;
+      for (int id : shorter) {
+        int found = Arrays.binarySearch(longer, from, longer.length, id);
+        if (found >= 0) {
+          result[size++] = id;
+          from = found + 1;
+        } else {
+          from = -found - 1;
+        }
+        if (from == longer.length) {
+          break;
+        }
+      }
+    } else {
+      for (int i = 0, j = 0; i < shorter.length && j < longer.length; ) {
+        if (shorter[i] < longer[j]) {
+          i++;
+        } else if (shorter[i] > longer[j]) {
+          j++;
+        } else {
+          result[size++] = shorter[i];
+          i++;
+          j++;
+        }
+      }
+    }
+    return size == result.length ? result : Arrays.copyOf(result, size);
+  }
+
+  /**
+   * Runs a pattern on the graphs it could match.
+   *
+   * @param pattern The pattern
+   * @param graphs Gets a graph by its id in this index, for example by reading it from the corpus
+   * @param handler Is passed each match; the matcher moves on to the next match after the call
+   */
+  public void find(SemgrexPattern pattern, IntFunction<SemanticGraph> graphs, MatchHandler handler) {
+    for (int id : candidates(pattern)) {
+      SemgrexMatcher matcher = pattern.matcher(graphs.apply(id));
+      while (matcher.find()) {
+        handler.handle(id, matcher);
+      }
+    }
+  }
+
+
+  /** Writes the index in a form that {@link #load} reads back. */
+  public void save(File file) throws IOException {
+    List<String> sortedTerms = new ArrayList<>(terms.keySet());
+    Collections.sort(sortedTerms);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(numGraphs);
+      out.writeInt(sortedTerms.size());
+      long position = 0;
+      for (String term : sortedTerms) {
+        byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        int length = (int) (terms.get(term) & 0xffffffffL);
+        out.writeLong((position << 32) | length);
+        position += length;
+      }
+      // postings follow, in the order of the terms
+      for (String term : sortedTerms) {
+        for (int id : postings(term)) {
+          out.writeInt(id);
+        }
+      }
+    }
+  }
+
+  /**
+   * Loads an index written by {@link #save}. The term dictionary is read into memory,
+   * while the postings are read from a mapping of the file. The postings of one index
+   * file are limited to 2GB.
+   */
+  public static SemgrexIndex load(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IOException("Not a saved SemgrexIndex: " + file);
+      }
+      int numGraphs = buffer.getInt();
+      int numTerms = buffer.getInt();
+      Map<String, Long> terms = new HashMap<>(numTerms * 2);
+      byte[] bytes = new byte[64];
+      for (int i = 0; i < numTerms; i++) {
+        int length = buffer.getInt();
+        if (length > bytes.length) {
+          bytes = new byte[Math.max(length, 2 * bytes.length)];
+        }
+        buffer.get(bytes, 0, length);
+        terms.put(new String(bytes, 0, length, StandardCharsets.UTF_8), buffer.getLong());
+      }
+      return new SemgrexIndex(numGraphs, terms, buffer.slice().asIntBuffer());
+    }
+  }
+
+
+  /** Collects graphs and builds a {@link SemgrexIndex} of them. Not thread-safe. */
+  public static class Builder {
+
+    private final Map<String, int[]> postings = new HashMap<>();
+    /** How many ids are in each array of {@link #postings}. */
+    private final Map<String, Integer> sizes = new HashMap<>();
+    private int numGraphs; // = 0
+
+    /**
+     * Adds a graph to the index.
+     *
+     * @return The id of the graph in the index
+     */
+    public int add(SemanticGraph graph) {
+      int id = numGraphs++;
+      Set<String> graphTerms = new HashSet<>();
+      for (IndexedWord node : graph.vertexSet()) {
+        for (Map.Entry<Class<?>, Character> annotation : INDEXED_ANNOTATIONS.entrySet()) {
+          @SuppressWarnings("unchecked")
+          Object value = node.get((Class) annotation.getKey());
+          if (value != null) {
+            graphTerms.add(term(annotation.getValue(), value.toString()));
+          }
+        }
+      }
+      for (SemanticGraphEdge edge : graph.edgeIterable()) {
+        graphTerms.add(term(RELATION_PREFIX, edge.getRelation().toString()));
+      }
+      for (String term : graphTerms) {
+        int[] ids = postings.get(term);
+        int size = sizes.getOrDefault(term, 0);
+        if (ids == null) {
+          ids = new int[4];
+        } else if (size == ids.length) {
+          ids = Arrays.copyOf(ids, 2 * size);
+        }
+        ids[size] = id;
+        postings.put(term, ids);
+        sizes.put(term, size + 1);
+      }
+      return id;
+    }
+
+    public SemgrexIndex build() {
+      long total = 0;
+      for (int size : sizes.values()) {
+        total += size;
+      }
+      if (total > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Too many postings for one index: " + total);
+      }
+      int[] all = new int[(int) total];
+      Map<String, Long> terms = new HashMap<>(postings.size() * 2);
+      int position = 0;
+      for (Map.Entry<String, int[]> entry : postings.entrySet()) {
+        int size = sizes.get(entry.getKey());
+        System.arraycopy(entry.getValue(), 0, all, position, size);
+        terms.put(entry.getKey(), ((long) position << 32) | size);
+        position += size;
+      }
+      return new SemgrexIndex(numGraphs, terms, IntBuffer.wrap(all));
+    }
+
+  }
+
+}
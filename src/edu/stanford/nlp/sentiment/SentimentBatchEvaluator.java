@@ -0,0 +1,248 @@
+package edu.stanford.nlp.sentiment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.ops.CommonOps;
+import org.ejml.simple.SimpleMatrix;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.neural.SimpleTensor;
+import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
+import edu.stanford.nlp.trees.Tree;
+
+/**
+ * Runs the sentiment model forward over many trees at once, annotating each node as
+ * {@link SentimentCostAndGradient#forwardPropagateTree} does.  The nodes of all the trees are
+ * grouped by their height, and the nodes of a height which use the same matrices are stacked as
+ * the columns of one matrix, so that each step of the network is a single matrix multiplication
+ * per height rather than several small ones per node.  The intermediate matrices are reused
+ * from one group to the next, so an evaluator should be kept while the model is unchanged.
+ *
+ * <p>
+ * The additions are done in the same order as in forwardPropagateTree, so the predicted classes
+ * are the same.  An evaluator isn't thread safe, so use one per thread.
+ */
+public class SentimentBatchEvaluator {
+
+  /** The number of nodes whose tensor products are worked out together, small enough to stay in cache */
+  private static final int BLOCK_SIZE = 256;
+
+  private final SentimentModel model;
+
+  /** The inputs of a group of nodes, the child vectors (and a bias row) in each column */
+  private final DenseMatrix64F input = new DenseMatrix64F(1, 1);
+  /** The child vectors without the bias row */
+  private final DenseMatrix64F tensorIn = new DenseMatrix64F(1, 1);
+  private final DenseMatrix64F hidden = new DenseMatrix64F(1, 1);
+  private final DenseMatrix64F scores = new DenseMatrix64F(1, 1);
+  /** The products of the input columns of a block with the slice, and their sums */
+  private final double[] products;
+  private final double[] sums = new double[BLOCK_SIZE];
+
+  public SentimentBatchEvaluator(SentimentModel model) {
+    this.model = model;
+    this.products = new double[2 * model.numHid * BLOCK_SIZE];
+  }
+
+  /** Annotates the nodes of each tree with their node vector, predictions and predicted class. */
+  public void forwardPropagateTrees(List<Tree> trees) {
+    List<List<Tree>> levels = new ArrayList<>();
+    for (Tree tree : trees) {
+      addByHeight(tree, levels);
+    }
+    for (int height = 0; height < levels.size(); height++) {
+      // group the nodes by the matrices they use, so each group is one multiplication
+      // (the transform and tensor of a node are looked up by the same pair of categories)
+      Map<SimpleMatrix, List<Tree>> groups = new IdentityHashMap<>();
+      for (Tree node : levels.get(height)) {
+        SimpleMatrix key = (height == 0) ? classification(node) : transform(node);
+        groups.computeIfAbsent(key, k -> new ArrayList<>()).add(node);
+      }
+      for (List<Tree> group : groups.values()) {
+        if (height == 0) {
+          forwardPropagatePreterminals(group);
+        } else {
+          forwardPropagateBinaryNodes(group);
+        }
+      }
+    }
+  }
+
+  /** Adds the non-leaf nodes of the tree to the list of their height, and returns its height. */
+  private static int addByHeight(Tree tree, List<List<Tree>> levels) {
+    int height;
+    if (tree.isLeaf()) {
+      throw new AssertionError("We should not have reached leaves in forwardPropagate");
+    } else if (tree.isPreTerminal()) {
+      height = 0;
+    } else if (tree.children().length == 1) {
+      throw new AssertionError("Non-preterminal nodes of size 1 should have already been collapsed");
+    } else if (tree.children().length == 2) {
+      height = 1 + Math.max(addByHeight(tree.children()[0], levels), addByHeight(tree.children()[1], levels));
+    } else {
+      throw new AssertionError("Tree not correctly binarized");
+    }
+    if ( ! (tree.label() instanceof CoreLabel)) {
+      throw new AssertionError("Expected CoreLabels in the nodes");
+    }
+    while (levels.size() <= height) {
+      levels.add(new ArrayList<>());
+    }
+    levels.get(height).add(tree);
+    return height;
+  }
+
+  private SimpleMatrix classification(Tree node) {
+    if (node.isPreTerminal()) {
+      return model.getUnaryClassification(node.label().value());
+    }
+    return model.getBinaryClassification(node.children()[0].label().value(), node.children()[1].label().value());
+  }
+
+  private SimpleMatrix transform(Tree node) {
+    return model.getBinaryTransform(node.children()[0].label().value(), node.children()[1].label().value());
+  }
+
+  private SimpleTensor tensor(Tree node) {
+    return model.getBinaryTensor(node.children()[0].label().value(), node.children()[1].label().value());
+  }
+
+  private void forwardPropagatePreterminals(List<Tree> nodes) {
+    for (Tree node : nodes) {
+      SimpleMatrix wordVector = model.getWordVector(node.children()[0].label().value());
+      SimpleMatrix nodeVector = new SimpleMatrix(wordVector.numRows(), 1);
+      for (int i = 0; i < nodeVector.numRows(); i++) {
+        nodeVector.set(i, Math.tanh(wordVector.get(i)));
+      }
+      ((CoreLabel) node.label()).set(RNNCoreAnnotations.NodeVector.class, nodeVector);
+    }
+    classify(nodes, classification(nodes.get(0)));
+  }
+
+  /** Propagates nodes which all use the same transform, tensor and classification. */
+  private void forwardPropagateBinaryNodes(List<Tree> nodes) {
+    int k = nodes.size();
+    int numHid = model.numHid;
+    input.reshape(2 * numHid + 1, k, false);
+    tensorIn.reshape(2 * numHid, k, false);
+    for (int j = 0; j < k; j++) {
+      SimpleMatrix left = RNNCoreAnnotations.getNodeVector(nodes.get(j).children()[0]);
+      SimpleMatrix right = RNNCoreAnnotations.getNodeVector(nodes.get(j).children()[1]);
+      setColumn(input, j, 0, left);
+      setColumn(input, j, numHid, right);
+      input.set(2 * numHid, j, 1.0);
+      setColumn(tensorIn, j, 0, left);
+      setColumn(tensorIn, j, numHid, right);
+    }
+    hidden.reshape(numHid, k, false);
+    CommonOps.mult(transform(nodes.get(0)).getMatrix(), input, hidden);
+
+    if (model.op.useTensors) {
+      addBilinearProducts(tensor(nodes.get(0)), k);
+    }
+
+    for (int j = 0; j < k; j++) {
+      SimpleMatrix nodeVector = new SimpleMatrix(numHid, 1);
+      for (int i = 0; i < numHid; i++) {
+        nodeVector.set(i, Math.tanh(hidden.get(i, j)));
+      }
+      ((CoreLabel) nodes.get(j).label()).set(RNNCoreAnnotations.NodeVector.class, nodeVector);
+    }
+
+    // binary nodes with the same transform may yet be classified differently
+    Map<SimpleMatrix, List<Tree>> byClassification = new IdentityHashMap<>();
+    for (Tree node : nodes) {
+      byClassification.computeIfAbsent(classification(node), c -> new ArrayList<>()).add(node);
+    }
+    for (Map.Entry<SimpleMatrix, List<Tree>> entry : byClassification.entrySet()) {
+      classify(entry.getValue(), entry.getKey());
+    }
+  }
+
+  /**
+   * Adds in^T T in for each slice T of the tensor to the row of hidden for the slice, for each
+   * column in of tensorIn.  As in {@link SimpleTensor#bilinearProducts}, in^T T is worked out first,
+   * summing in the same order, but for a block of nodes at a time.
+   */
+  private void addBilinearProducts(SimpleTensor tensor, int k) {
+    int size = tensorIn.numRows;
+    double[] in = tensorIn.data;
+    for (int start = 0; start < k; start += BLOCK_SIZE) {
+      int n = Math.min(BLOCK_SIZE, k - start);
+      for (int slice = 0; slice < tensor.numSlices(); slice++) {
+        double[] t = tensor.getSlice(slice).getMatrix().data;
+        Arrays.fill(products, 0, size * n, 0.0);
+        for (int r = 0; r < size; r++) {
+          int inRow = r * k + start;
+          for (int c = 0; c < size; c++) {
+            double a = t[r * size + c];
+            int row = c * n;
+            for (int j = 0; j < n; j++) {
+              products[row + j] += in[inRow + j] * a;
+            }
+          }
+        }
+        Arrays.fill(sums, 0, n, 0.0);
+        for (int c = 0; c < size; c++) {
+          int row = c * n;
+          int inRow = c * k + start;
+          for (int j = 0; j < n; j++) {
+            sums[j] += products[row + j] * in[inRow + j];
+          }
+        }
+        int hiddenRow = slice * k + start;
+        for (int j = 0; j < n; j++) {
+          hidden.data[hiddenRow + j] += sums[j];
+        }
+      }
+    }
+  }
+
+  /** Sets the predictions and predicted class of nodes which have their node vectors. */
+  private void classify(List<Tree> nodes, SimpleMatrix classification) {
+    int k = nodes.size();
+    int numHid = model.numHid;
+    input.reshape(numHid + 1, k, false);
+    for (int j = 0; j < k; j++) {
+      setColumn(input, j, 0, RNNCoreAnnotations.getNodeVector(nodes.get(j)));
+      input.set(numHid, j, 1.0);
+    }
+    scores.reshape(classification.numRows(), k, false);
+    CommonOps.mult(classification.getMatrix(), input, scores);
+
+    for (int j = 0; j < k; j++) {
+      // softmax, as in NeuralUtils.softmax
+      SimpleMatrix predictions = new SimpleMatrix(scores.numRows, 1);
+      double sum = 0.0;
+      for (int i = 0; i < scores.numRows; i++) {
+        double p = Math.exp(scores.get(i, j));
+        predictions.set(i, p);
+        sum += p;
+      }
+      double scale = 1.0 / sum;
+      int argmax = 0;
+      for (int i = 0; i < scores.numRows; i++) {
+        predictions.set(i, predictions.get(i) * scale);
+        if (predictions.get(i) > predictions.get(argmax)) {
+          argmax = i;
+        }
+      }
+      CoreLabel label = (CoreLabel) nodes.get(j).label();
+      label.set(RNNCoreAnnotations.Predictions.class, predictions);
+      label.set(RNNCoreAnnotations.PredictedClass.class, argmax);
+    }
+  }
+
+  private static void setColumn(DenseMatrix64F matrix, int column, int row, SimpleMatrix vector) {
+    DenseMatrix64F v = vector.getMatrix();
+    for (int i = 0; i < v.numRows; i++) {
+      matrix.set(row + i, column, v.data[i]);
+    }
+  }
+
+}
@@ -1080,6 +1080,14 @@ public class SeqClassifierFlags implements Serializable  {
    */
   public boolean useMoreNeighborNGrams = false;
 
+  /**
+   * If positive, classifyAndWriteAnswers streams its input: documents are packed into chunks
+   * of about this many tokens (documents longer than this are cut at sentence boundaries),
+   * at most a few chunks per thread are in memory at once, and answers are written in input
+   * order. Cut documents are classified piece by piece, so answers near the cuts can differ.
+   */
+  public int streamingChunkSize = 0;
+
 
   // "ADD VARIABLES ABOVE HERE"
 
@@ -2632,6 +2640,8 @@ public class SeqClassifierFlags implements Serializable  {
         combinationMode = val;
       } else if (key.equalsIgnoreCase("ner.model")) {
         nerModel = val;
+      } else if (key.equalsIgnoreCase("streamingChunkSize")) {
+        streamingChunkSize = Integer.parseInt(val);
       } else if (key.equalsIgnoreCase("sutime.language")) {
         // ADD VALUE ABOVE HERE
       } else if ( ! key.isEmpty() && ! key.equals("prop")) {
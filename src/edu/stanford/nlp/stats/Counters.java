@@ -309,6 +309,12 @@ public class Counters  {
   // In-place arithmetic
   //
 
+  /** Whether both counters are {@link IndexedCounter}s over the same Index, for the fast paths below. */
+  private static boolean sameIndex(Counter<?> c1, Counter<?> c2) {
+    return c1 instanceof IndexedCounter && c2 instanceof IndexedCounter &&
+        ((IndexedCounter<?>) c1).index() == ((IndexedCounter<?>) c2).index();
+  }
+
   /**
    * Sets each value of target to be target[k]+scale*arg[k] for all keys k in
    * target.
@@ -319,6 +325,10 @@ public class Counters  {
    */
   // TODO: Rewrite to use arg.entrySet()
   public static <E> void addInPlace(Counter<E> target, Counter<E> arg, double scale) {
+    if (sameIndex(target, arg)) {
+      ((IndexedCounter<E>) target).addInPlace((IndexedCounter<E>) arg, scale, false);
+      return;
+    }
     for (E key : arg.keySet()) {
       target.incrementCount(key, scale * arg.getCount(key));
     }
@@ -328,6 +338,10 @@ public class Counters  {
    * Sets each value of target to be target[k]+arg[k] for all keys k in arg.
    */
   public static <E> void addInPlace(Counter<E> target, Counter<E> arg) {
+    if (sameIndex(target, arg)) {
+      ((IndexedCounter<E>) target).addInPlace((IndexedCounter<E>) arg, 1.0, true);
+      return;
+    }
     for (Map.Entry<E, Double> entry : arg.entrySet()) {
       double count = entry.getValue();
       if (count != 0) {
@@ -477,6 +491,10 @@ public class Counters  {
    * @return The target Counter is returned (for easier method chaining)
    */
   public static <E> Counter<E> divideInPlace(Counter<E> target, double divisor) {
+    if (target instanceof IndexedCounter) {
+      ((IndexedCounter<E>) target).divideInPlace(divisor);
+      return target;
+    }
     for (Entry<E, Double> entry : target.entrySet()) {
       target.setCount(entry.getKey(), entry.getValue() / divisor);
     }
@@ -491,6 +509,10 @@ public class Counters  {
    * @param multiplier The number by which to change each number in the Counter
    */
   public static <E> Counter<E> multiplyInPlace(Counter<E> target, double multiplier) {
+    if (target instanceof IndexedCounter) {
+      ((IndexedCounter<E>) target).multiplyInPlace(multiplier);
+      return target;
+    }
     for (Entry<E, Double> entry : target.entrySet()) {
       target.setCount(entry.getKey(), entry.getValue() * multiplier);
     }
@@ -1198,6 +1220,9 @@ public class Counters  {
    * @return The product of c1 and c2.
    */
   public static <E> double dotProduct(Counter<E> c1, Counter<E> c2) {
+    if (sameIndex(c1, c2)) {
+      return ((IndexedCounter<E>) c1).dotProduct((IndexedCounter<E>) c2);
+    }
     double dotProd = 0.0;
     if (c1.size() > c2.size()) {
       Counter<E> tmpCnt = c1;
@@ -1487,6 +1512,9 @@ public class Counters  {
    * @return the L2 norm of the values in c
    */
   public static <E, C extends Counter<E>> double sumSquares(C c) {
+    if (c instanceof IndexedCounter) {
+      return ((IndexedCounter<?>) c).sumSquares();
+    }
     double lenSq = 0.0;
     for (E key : c.keySet()) {
       double count = c.getCount(key);
@@ -1504,6 +1532,9 @@ public class Counters  {
    * @return Its length
    */
   public static <E, C extends Counter<E>> double L1Norm(C c) {
+    if (c instanceof IndexedCounter) {
+      return ((IndexedCounter<?>) c).sumAbs();
+    }
     double sumAbs = 0.0;
     for (E key : c.keySet()) {
       double count = c.getCount(key);
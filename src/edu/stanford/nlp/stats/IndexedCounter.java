@@ -0,0 +1,602 @@
+package edu.stanford.nlp.stats;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import edu.stanford.nlp.math.SloppyMath;
+import edu.stanford.nlp.util.Factory;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.logging.PrettyLogger;
+import edu.stanford.nlp.util.logging.Redwood.RedwoodChannels;
+
+/**
+ * A {@link Counter} which keeps its counts as primitive doubles in an open addressing
+ * table from the int ids of the keys in an {@link Index} to their counts, instead of the
+ * map of boxed {@link edu.stanford.nlp.util.MutableDouble}s of a {@link ClassicCounter}.
+ * Counters over the same Index (which is shared, not copied, by {@link #getFactory()})
+ * can be added, multiplied and normalized by {@link Counters} in loops over the arrays
+ * without looking up keys or boxing counts, and the counts of an id can be got and set
+ * directly with {@link #getCountById} and {@link #setCountById}.
+ * <p>
+ * Setting a count for a key not in the Index adds the key to it, unless the Index is locked,
+ * in which case it is an error.  Like ClassicCounter, this class is not threadsafe, but the
+ * Index may be shared by counters used in different threads if the Index itself is threadsafe.
+ */
+public class IndexedCounter<E> implements Serializable, Counter<E>, Iterable<E> {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Marks a free slot of the table */
+  private static final int FREE = -1;
+  /** Marks a slot whose key was removed, which lookups must probe past */
+  private static final int REMOVED = -2;
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private final Index<E> index;
+  /** The ids of the keys, or FREE or REMOVED; the length is a power of two */
+  int[] ids;
+  /** The count of the id in the same slot */
+  double[] counts;
+  /** Number of keys */
+  private int size; // = 0;
+  /** Number of REMOVED slots */
+  private int removed; // = 0;
+  private double totalCount; // = 0.0;
+  private double defaultValue; // = 0.0;
+
+  /** Makes an empty counter over a new Index. */
+  public IndexedCounter() {
+    this(new HashIndex<>());
+  }
+
+  /** Makes an empty counter over the given Index. */
+  public IndexedCounter(Index<E> index) {
+    this(index, DEFAULT_CAPACITY);
+  }
+
+  /** Makes an empty counter over the given Index, with room for about that many keys. */
+  public IndexedCounter(Index<E> index, int initialCapacity) {
+    this.index = index;
+    allocate(tableSize(initialCapacity));
+  }
+
+  /** Makes a counter over the given Index with the counts of the given Counter. */
+  public IndexedCounter(Index<E> index, Counter<E> c) {
+    this(index, c.size());
+    Counters.addInPlace(this, c);
+    setDefaultReturnValue(c.defaultReturnValue());
+  }
+
+  /** The Index of the keys. */
+  public Index<E> index() {
+    return index;
+  }
+
+  private static int tableSize(int capacity) {
+    int n = DEFAULT_CAPACITY;
+    while (n * 3 / 4 < capacity) {
+      n <<= 1;
+    }
+    return n;
+  }
+
+  private void allocate(int n) {
+    ids = new int[n];
+    Arrays.fill(ids, FREE);
+    counts = new double[n];
+  }
+
+  private static int hash(int id) {
+    int h = id * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /** The slot holding the id, or -1 if it isn't in the table. */
+  private int find(int id) {
+    int mask = ids.length - 1;
+    for (int i = hash(id) & mask; ; i = (i + 1) & mask) {
+      int x = ids[i];
+      if (x == id) {
+        return i;
+      } else if (x == FREE) {
+        return -1;
+      }
+    }
+  }
+
+  /** The slot holding the id, adding it with a count of 0 if it isn't in the table. */
+  private int findOrAdd(int id) {
+    int mask = ids.length - 1;
+    int firstRemoved = -1;
+    int i = hash(id) & mask;
+    for ( ; ; i = (i + 1) & mask) {
+      int x = ids[i];
+      if (x == id) {
+        return i;
+      } else if (x == FREE) {
+        break;
+      } else if (x == REMOVED && firstRemoved < 0) {
+        firstRemoved = i;
+      }
+    }
+    if (firstRemoved >= 0) {
+      i = firstRemoved;
+      removed--;
+    } else if ((size + removed + 1) * 4 > ids.length * 3) {
+      rehash();
+      return findOrAdd(id);
+    }
+    ids[i] = id;
+    counts[i] = 0.0;
+    size++;
+    return i;
+  }
+
+  private void rehash() {
+    int[] oldIds = ids;
+    double[] oldCounts = counts;
+    allocate(tableSize(size + 1));
+    int mask = ids.length - 1;
+    for (int j = 0; j < oldIds.length; j++) {
+      if (oldIds[j] >= 0) {
+        int i = hash(oldIds[j]) & mask;
+        while (ids[i] != FREE) {
+          i = (i + 1) & mask;
+        }
+        ids[i] = oldIds[j];
+        counts[i] = oldCounts[j];
+      }
+    }
+    removed = 0;
+  }
+
+  private void removeSlot(int i) {
+    totalCount -= counts[i];
+    ids[i] = REMOVED;
+    counts[i] = 0.0;
+    size--;
+    removed++;
+  }
+
+  private int id(E key) {
+    int id = index.addToIndex(key);
+    if (id < 0) {
+      throw new IllegalArgumentException("IndexedCounter: key not in the locked Index: " + key);
+    }
+    return id;
+  }
+
+  /** The count of the key with the given id in the Index. */
+  public double getCountById(int id) {
+    int i = find(id);
+    return (i < 0) ? defaultValue : counts[i];
+  }
+
+  /** Sets the count of the key with the given id in the Index. */
+  public void setCountById(int id, double count) {
+    int i = findOrAdd(id);
+    totalCount += count - counts[i];
+    counts[i] = count;
+  }
+
+  /** Adds to the count of the key with the given id in the Index, and returns the new count. */
+  public double incrementCountById(int id, double count) {
+    int i = findOrAdd(id);
+    totalCount += count;
+    return counts[i] += count;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Factory<Counter<E>> getFactory() {
+    return new IndexedCounterFactory<>(index);
+  }
+
+  private static class IndexedCounterFactory<E> implements Factory<Counter<E>> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Index<E> index;
+
+    private IndexedCounterFactory(Index<E> index) {
+      this.index = index;
+    }
+
+    @Override
+    public Counter<E> create() {
+      return new IndexedCounter<>(index);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public final void setDefaultReturnValue(double rv) { defaultValue = rv; }
+
+  /** {@inheritDoc} */
+  @Override
+  public double defaultReturnValue() { return defaultValue; }
+
+  /** {@inheritDoc} */
+  @Override
+  @SuppressWarnings("unchecked")
+  public double getCount(Object key) {
+    int id = index.indexOf((E) key);
+    return (id < 0) ? defaultValue : getCountById(id);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setCount(E key, double value) {
+    setCountById(id(key), value);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double incrementCount(E key, double value) {
+    return incrementCountById(id(key), value);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public final double incrementCount(E key) {
+    return incrementCount(key, 1.0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double decrementCount(E key, double value) {
+    return incrementCount(key, -value);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double decrementCount(E key) {
+    return incrementCount(key, -1.0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double logIncrementCount(E key, double value) {
+    int id = id(key);
+    int i = find(id);
+    double count;
+    if (i < 0) {
+      i = findOrAdd(id);
+      count = value;
+    } else {
+      count = SloppyMath.logAdd(value, counts[i]);
+    }
+    totalCount += count - counts[i];
+    counts[i] = count;
+    return count;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void addAll(Counter<E> counter) {
+    Counters.addInPlace(this, counter);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double remove(E key) {
+    int id = index.indexOf(key);
+    int i = (id < 0) ? -1 : find(id);
+    if (i < 0) {
+      return defaultValue;
+    }
+    double count = counts[i];
+    removeSlot(i);
+    return count;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean containsKey(E key) {
+    int id = index.indexOf(key);
+    return id >= 0 && find(id) >= 0;
+  }
+
+  /** An iterator over the slots with keys. */
+  private abstract class SlotIterator<T> implements Iterator<T> {
+    private int next = advance(0);
+    private int last = -1;
+
+    private int advance(int i) {
+      while (i < ids.length && ids[i] < 0) {
+        i++;
+      }
+      return i;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < ids.length;
+    }
+
+    /** Moves on to the next slot and returns it. */
+    int nextSlot() {
+      if (next >= ids.length) {
+        throw new NoSuchElementException();
+      }
+      last = next;
+      next = advance(next + 1);
+      return last;
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0 || ids[last] < 0) {
+        throw new IllegalStateException();
+      }
+      removeSlot(last);  // leaves the other slots where they are
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Set<E> keySet() {
+    return new AbstractSet<E>() {
+      @Override
+      public Iterator<E> iterator() {
+        return new SlotIterator<E>() {
+          @Override
+          public E next() {
+            return index.get(ids[nextSlot()]);
+          }
+        };
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public boolean contains(Object o) {
+        return containsKey((E) o);
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public boolean remove(Object o) {
+        boolean contained = containsKey((E) o);
+        IndexedCounter.this.remove((E) o);
+        return contained;
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Collection<Double> values() {
+    return new AbstractCollection<Double>() {
+      @Override
+      public Iterator<Double> iterator() {
+        return new SlotIterator<Double>() {
+          @Override
+          public Double next() {
+            return counts[nextSlot()];
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Set<Map.Entry<E,Double>> entrySet() {
+    return new AbstractSet<Map.Entry<E,Double>>() {
+      @Override
+      public Iterator<Map.Entry<E,Double>> iterator() {
+        return new SlotIterator<Map.Entry<E,Double>>() {
+          @Override
+          public Map.Entry<E,Double> next() {
+            final int slot = nextSlot();
+            final int id = ids[slot];
+            return new Map.Entry<E,Double>() {
+              @Override
+              public E getKey() {
+                return index.get(id);
+              }
+
+              @Override
+              public Double getValue() {
+                return ids[slot] == id ? counts[slot] : getCountById(id);
+              }
+
+              @Override
+              public Double setValue(Double value) {
+                double old = getValue();
+                setCountById(id, value);
+                return old;
+              }
+            };
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void clear() {
+    Arrays.fill(ids, FREE);
+    Arrays.fill(counts, 0.0);
+    size = 0;
+    removed = 0;
+    totalCount = 0.0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double totalCount() {
+    return totalCount;
+  }
+
+  /** The same as keySet().iterator(). */
+  @Override
+  public Iterator<E> iterator() {
+    return keySet().iterator();
+  }
+
+  //
+  // Loops over the table for the fast paths in Counters
+  //
+
+  /**
+   * Adds scale times the counts of arg to this counter, which has the same Index.
+   * Keys of arg with a count of 0 are added too unless skipZeros is true.
+   */
+  void addInPlace(IndexedCounter<E> arg, double scale, boolean skipZeros) {
+    int[] argIds = arg.ids;
+    double[] argCounts = arg.counts;
+    for (int j = 0; j < argIds.length; j++) {
+      if (argIds[j] >= 0 && ! (skipZeros && argCounts[j] == 0.0)) {
+        double count = scale * argCounts[j];
+        int i = findOrAdd(argIds[j]);  // before reading counts, which a rehash replaces
+        counts[i] += count;
+        totalCount += count;
+      }
+    }
+  }
+
+  /** The dot product of the counts of this counter and of another with the same Index. */
+  double dotProduct(IndexedCounter<E> other) {
+    IndexedCounter<E> small = (size <= other.size) ? this : other;
+    IndexedCounter<E> large = (small == this) ? other : this;
+    double dotProd = 0.0;
+    for (int j = 0; j < small.ids.length; j++) {
+      if (small.ids[j] >= 0) {
+        double count1 = small.counts[j];
+        if (count1 != 0.0) {
+          int i = large.find(small.ids[j]);
+          double count2 = (i < 0) ? large.defaultValue : large.counts[i];
+          if (Double.isNaN(count1) || Double.isInfinite(count1) || Double.isNaN(count2) || Double.isInfinite(count2)) {
+            throw new RuntimeException("Counters.dotProduct infinite or NaN value for key: " + index.get(small.ids[j]) + '\t' + count1 + '\t' + count2);
+          }
+          dotProd += count1 * count2;
+        }
+      }
+    }
+    return dotProd;
+  }
+
+  /** Multiplies all the counts by the multiplier. */
+  void multiplyInPlace(double multiplier) {
+    double total = 0.0;
+    for (int j = 0; j < ids.length; j++) {
+      if (ids[j] >= 0) {
+        total += counts[j] *= multiplier;
+      }
+    }
+    totalCount = total;
+  }
+
+  /** Divides all the counts by the divisor. */
+  void divideInPlace(double divisor) {
+    double total = 0.0;
+    for (int j = 0; j < ids.length; j++) {
+      if (ids[j] >= 0) {
+        total += counts[j] /= divisor;
+      }
+    }
+    totalCount = total;
+  }
+
+  /** The sum of the squares of the counts. */
+  double sumSquares() {
+    double lenSq = 0.0;
+    for (int j = 0; j < ids.length; j++) {
+      if (ids[j] >= 0) {
+        lenSq += counts[j] * counts[j];
+      }
+    }
+    return lenSq;
+  }
+
+  /** The sum of the absolute values of the counts. */
+  double sumAbs() {
+    double sumAbs = 0.0;
+    for (int j = 0; j < ids.length; j++) {
+      if (ids[j] >= 0) {
+        sumAbs += Math.abs(counts[j]);
+      }
+    }
+    return sumAbs;
+  }
+
+  /** Equality is defined over all Counter implementations, as for {@link ClassicCounter#equals}. */
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    } else if ( ! (o instanceof Counter)) {
+      return false;
+    }
+    return Counters.equals(this, (Counter<E>) o);
+  }
+
+  /** A hashCode over the keys and counts, the same for any order they were added in. */
+  @Override
+  public int hashCode() {
+    int hashCode = 0;
+    for (int j = 0; j < ids.length; j++) {
+      if (ids[j] >= 0) {
+        hashCode += index.get(ids[j]).hashCode() ^ Double.hashCode(counts[j]);
+      }
+    }
+    return hashCode;
+  }
+
+  /** Returns a String representation of the Counter, in the same format as a ClassicCounter. */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("{");
+    for (int j = 0; j < ids.length; j++) {
+      if (ids[j] >= 0) {
+        if (sb.length() > 1) {
+          sb.append(", ");
+        }
+        sb.append(index.get(ids[j])).append('=').append(counts[j]);
+      }
+    }
+    return sb.append('}').toString();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void prettyLog(RedwoodChannels channels, String description) {
+    PrettyLogger.log(channels, description, Counters.asMap(this));
+  }
+
+}
@@ -84,6 +84,8 @@ public class BaseTagger implements SequenceModel {
     private volatile double[][] localContextScores;
 
     protected final MaxentTagger maxentTagger;
+    /** Whether to normalize the scores with ArrayMath.fastLogNormalize */
+    private final boolean fastExp;
 
     public BaseTagger(MaxentTagger maxentTagger) {
         assert (maxentTagger != null);
@@ -92,9 +94,11 @@ public class BaseTagger implements SequenceModel {
         if (maxentTagger.config != null) {
             tagSeparator = maxentTagger.config.getTagSeparator();
             encoding = maxentTagger.config.getEncoding();
+            fastExp = maxentTagger.config.getFastExp();
         } else {
             tagSeparator = TaggerConfig.getDefaultTagSeparator();
             encoding = "utf-8";
+            fastExp = false;
         }
         history = new History(pairs, maxentTagger.extractors);
     }
@@ -289,7 +293,11 @@ public class BaseTagger implements SequenceModel {
     private double[] getAllScores() {
         double[] histories = getHistories(); // log score for each tag
         // tags is only used if we calculate approximate histories
-        ArrayMath.logNormalize(histories);
+        if (fastExp) {
+            ArrayMath.fastLogNormalize(histories);
+        } else {
+            ArrayMath.logNormalize(histories);
+        }
         // assert Arrays.stream(histories).map(x-> Math.exp(x)).sum() == 1
         return histories;
     }
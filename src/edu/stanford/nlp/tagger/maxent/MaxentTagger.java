@@ -1189,6 +1189,7 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
         log.info("Tag set: " + maxentTagger.tags.tagSet());
         Problem p = new Problem(samples, feats);
         LambdaSolveTagger prob = new LambdaSolveTagger(p, 0.0001, fnumArr);
+        prob.fastExp = config.getFastExp();
         maxentTagger.prob = prob;
 
         if (config.getSearch().equals("owlqn")) {
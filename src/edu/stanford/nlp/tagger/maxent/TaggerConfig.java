@@ -70,7 +70,8 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
             OUTPUT_FILE = "",
             OUTPUT_FORMAT = "slashTags",
             OUTPUT_FORMAT_OPTIONS = "",
-            NTHREADS = "1";
+            NTHREADS = "1",
+            FAST_EXP = "false";
 
     public static final String ENCODING_PROPERTY = "encoding",
             TAG_SEPARATOR_PROPERTY = "tagSeparator";
@@ -114,6 +115,7 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
         defaultValues.put("outputFormat", OUTPUT_FORMAT);
         defaultValues.put("outputFormatOptions", OUTPUT_FORMAT_OPTIONS);
         defaultValues.put("nthreads", NTHREADS);
+        defaultValues.put("fastExp", FAST_EXP);
     }
 
     /**
@@ -265,6 +267,7 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
         this.setProperty("outputFormat", props.getProperty("outputFormat", this.getProperty("outputFormat")).trim()); //this isn't something we save from time to time
         this.setProperty("outputFormatOptions", props.getProperty("outputFormatOptions", this.getProperty("outputFormatOptions")).trim()); //this isn't something we save from time to time
         this.setProperty("nthreads", props.getProperty("nthreads", this.getProperty("nthreads", NTHREADS)).trim());
+        this.setProperty("fastExp", props.getProperty("fastExp", this.getProperty("fastExp", FAST_EXP)).trim()); //this isn't something we save from time to time
         String sentenceDelimiter = props.getProperty("sentenceDelimiter", this.getProperty("sentenceDelimiter"));
         if (sentenceDelimiter != null) {
             // this isn't something we save from time to time.
@@ -453,6 +456,14 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
         return Integer.parseInt(getProperty("nthreads"));
     }
 
+    /**
+     * Whether to use the faster, approximate exp of SloppyMath.fastExp: when tagging, to normalize
+     * the tag scores, and when training, to work out the normalizing constants of the model.
+     */
+    public boolean getFastExp() {
+        return Boolean.parseBoolean(getProperty("fastExp"));
+    }
+
 
     /**
      * Return a regex of XML elements to tag inside of.  This may return an
@@ -560,6 +571,7 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
         pw.println("            outputFormat = " + getProperty("outputFormat"));
         pw.println("     outputFormatOptions = " + getProperty("outputFormatOptions"));
         pw.println("                nthreads = " + getProperty("nthreads"));
+        pw.println("                 fastExp = " + getProperty("fastExp"));
         pw.flush();
     }
 
@@ -805,6 +817,11 @@ public class TaggerConfig extends Properties /* Inherits implementation of Seria
 
         out.println("# testFile and textFile can use multiple threads to process text.");
         out.println("# nthreads = " + NTHREADS);
+        out.println();
+
+        out.println("# normalize tag scores, and the model's probabilities when training, with a faster exp");
+        out.println("# that is accurate to about 1e-8.");
+        out.println("# fastExp = " + FAST_EXP);
     }
 
     public Mode getMode() {
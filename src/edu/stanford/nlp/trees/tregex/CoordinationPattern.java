@@ -28,6 +28,11 @@ class CoordinationPattern extends TregexPattern {
     return children;
   }
 
+  /** Whether all the children must match ("and"), rather than any of them ("or"). */
+  boolean isConjunction() {
+    return isConj;
+  }
+
   @Override
   public String localString() {
     return (isConj ? "and" : "or");
@@ -227,6 +227,34 @@ public class DescriptionPattern extends TregexPattern  {
     this.variableGroups = oldPattern.variableGroups;
   }  
 
+  /**
+   * Returns the labels (after the basic category function, if any) that a node must
+   * have to match this description, or null if that isn't a small known set: for
+   * regular expressions, prefixes, negated descriptions, links and so on.
+   */
+  Set<String> exactLabels() {
+    if (negDesc || descriptionMode == null) {
+      return null;
+    }
+    switch (descriptionMode) {
+      case EXACT:
+        return Collections.singleton(exactMatch);
+      case STRINGS:
+        if (stringFilter instanceof ArrayStringFilter &&
+            ((ArrayStringFilter) stringFilter).getMode() == ArrayStringFilter.Mode.EXACT) {
+          return new HashSet<>(Arrays.asList(((ArrayStringFilter) stringFilter).getWords()));
+        }
+        return null;
+      default:
+        return null;
+    }
+  }
+
+  /** The function applied to node labels before matching them, or null. */
+  Function<String, String> basicCatFunction() {
+    return basicCatFunction;
+  }
+
   @Override
   public String localString() {
     return rel.toString() + ' ' + (negDesc ? "!" : "") + (basicCatFunction != null ? "@" : "") + stringDesc + (name == null ? "" : '=' + name);
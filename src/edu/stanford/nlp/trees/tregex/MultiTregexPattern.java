@@ -0,0 +1,350 @@
+package edu.stanford.nlp.trees.tregex;
+
+import edu.stanford.nlp.trees.HeadFinder;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.util.ArrayMap;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+/**
+ * Matches a set of {@link TregexPattern}s against trees together, for running
+ * many patterns over a large treebank.
+ *
+ * Each tree is indexed once for all the patterns: its nodes are listed in preorder,
+ * the node to parent map used by relations such as {@code >}, {@code >>} and {@code $}
+ * is filled in once and shared by the matchers of every pattern, and the nodes are
+ * grouped by label. A pattern whose root node is an exact label (such as {@code NP} or
+ * {@code /^(NP|VP)$/}) is only tried at nodes with that label, and a pattern that needs
+ * some other exactly labeled node (not under a negation, an optional relation or a
+ * disjunction) is skipped entirely on trees without such a node.
+ *
+ * Matches of each pattern are found in the same order as by {@link TregexMatcher#find()},
+ * and patterns are run in the order they were given. The {@link TregexMatcher} passed to
+ * a handler is only valid during the call: it moves on to the next match afterwards.
+ *
+ * Patterns with different basic category functions can be mixed; each is indexed on the
+ * labels it would compare against.
+ */
+public class MultiTregexPattern {
+
+  /** Receives the matches of the patterns on one tree. */
+  @FunctionalInterface
+  public interface MatchHandler {
+    void handle(int patternIndex, TregexMatcher matcher);
+  }
+
+  /** Receives the matches of the patterns on a list of trees. */
+  @FunctionalInterface
+  public interface TreebankMatchHandler {
+    void handle(int treeIndex, int patternIndex, TregexMatcher matcher);
+  }
+
+  /** Some of a set of labels, as seen through one basic category function. */
+  private static class LabelSet {
+    final int function;
+    final Set<String> labels;
+
+    LabelSet(int function, Set<String> labels) {
+      this.function = function;
+      this.labels = labels;
+    }
+  }
+
+  private final List<TregexPattern> patterns;
+  private final HeadFinder headFinder;
+  /** The distinct basic category functions of the patterns, by identity; null means none. */
+  private final List<Function<String, String>> functions = new ArrayList<>();
+  /** For each pattern, the labels its root must have (any of them), or null if it can match anywhere. */
+  private final List<List<LabelSet>> triggers = new ArrayList<>();
+  /** For each pattern, label sets of which the tree must contain at least one node each. */
+  private final List<List<LabelSet>> requirements = new ArrayList<>();
+
+  public MultiTregexPattern(List<TregexPattern> patterns) {
+    this(patterns, null);
+  }
+
+  /**
+   * @param patterns The patterns to match
+   * @param headFinder The HeadFinder for relations which use heads, or null for the default one
+   */
+  public MultiTregexPattern(List<TregexPattern> patterns, HeadFinder headFinder) {
+    this.patterns = new ArrayList<>(patterns);
+    this.headFinder = headFinder;
+    for (TregexPattern pattern : this.patterns) {
+      triggers.add(rootLabels(pattern));
+      List<LabelSet> required = new ArrayList<>();
+      collectRequiredLabels(pattern, required);
+      requirements.add(required);
+    }
+  }
+
+  public int size() {
+    return patterns.size();
+  }
+
+  public TregexPattern getPattern(int patternIndex) {
+    return patterns.get(patternIndex);
+  }
+
+  private int functionIndex(Function<String, String> function) {
+    for (int i = 0; i < functions.size(); i++) {
+      if (functions.get(i) == function) {
+        return i;
+      }
+    }
+    functions.add(function);
+    return functions.size() - 1;
+  }
+
+  private List<LabelSet> rootLabels(TregexPattern pattern) {
+    if (pattern instanceof DescriptionPattern) {
+      DescriptionPattern description = (DescriptionPattern) pattern;
+      Set<String> labels = description.exactLabels();
+      if (labels == null) {
+        return null;
+      }
+      return Collections.singletonList(new LabelSet(functionIndex(description.basicCatFunction()), labels));
+    }
+    if (pattern instanceof CoordinationPattern && ! ((CoordinationPattern) pattern).isConjunction()) {
+      // a disjunction of whole patterns: the root is one of the roots of the alternatives
+      List<LabelSet> union = new ArrayList<>();
+      for (TregexPattern child : pattern.getChildren()) {
+        List<LabelSet> labels = rootLabels(child);
+        if (labels == null) {
+          return null;
+        }
+        union.addAll(labels);
+      }
+      return union;
+    }
+    return null;
+  }
+
+  private void collectRequiredLabels(TregexPattern pattern, List<LabelSet> required) {
+    if (pattern.isNegated() || pattern.isOptional()) {
+      return;
+    }
+    if (pattern instanceof DescriptionPattern) {
+      DescriptionPattern description = (DescriptionPattern) pattern;
+      Set<String> labels = description.exactLabels();
+      if (labels != null) {
+        required.add(new LabelSet(functionIndex(description.basicCatFunction()), labels));
+      }
+      for (TregexPattern child : pattern.getChildren()) {
+        collectRequiredLabels(child, required);
+      }
+    } else if (pattern instanceof CoordinationPattern && ((CoordinationPattern) pattern).isConjunction()) {
+      for (TregexPattern child : pattern.getChildren()) {
+        collectRequiredLabels(child, required);
+      }
+    }
+    // any single alternative of a disjunction may match, so none of them is required
+  }
+
+  /** The nodes of one tree in preorder, with their parents and their positions by label. */
+  private class TreeIndex {
+    final Tree root;
+    final Tree[] nodes;
+    final IdentityHashMap<Tree, Tree> nodesToParents;
+    final List<Map<String, int[]>> positionsByLabel;
+
+    TreeIndex(Tree root) {
+      this.root = root;
+      List<Tree> preorder = new ArrayList<>();
+      nodesToParents = new IdentityHashMap<>();
+      Deque<Tree> stack = new ArrayDeque<>();
+      stack.push(root);
+      nodesToParents.put(root, null);
+      while ( ! stack.isEmpty()) {
+        Tree node = stack.pop();
+        preorder.add(node);
+        Tree[] children = node.children();
+        for (int i = children.length - 1; i >= 0; i--) {
+          nodesToParents.put(children[i], node);
+          stack.push(children[i]);
+        }
+      }
+      nodes = preorder.toArray(new Tree[preorder.size()]);
+
+      positionsByLabel = new ArrayList<>(functions.size());
+      for (Function<String, String> function : functions) {
+        Map<String, List<Integer>> positions = new HashMap<>();
+        for (int i = 0; i < nodes.length; i++) {
+          String value = nodes[i].value();
+          if (value == null) {
+            continue;
+          }
+          if (function != null) {
+            value = function.apply(value);
+          }
+          positions.computeIfAbsent(value, k -> new ArrayList<>()).add(i);
+        }
+        Map<String, int[]> index = new HashMap<>(positions.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+          index.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        positionsByLabel.add(index);
+      }
+    }
+
+    boolean contains(LabelSet labelSet) {
+      Map<String, int[]> index = positionsByLabel.get(labelSet.function);
+      for (String label : labelSet.labels) {
+        if (index.containsKey(label)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /** The positions of the nodes with any of these labels, in preorder. */
+    int[] positions(List<LabelSet> labelSets) {
+      if (labelSets.size() == 1 && labelSets.get(0).labels.size() == 1) {
+        int[] positions = positionsByLabel.get(labelSets.get(0).function).get(labelSets.get(0).labels.iterator().next());
+        return positions == null ? new int[0] : positions;
+      }
+      boolean[] marked = new boolean[nodes.length];
+      int count = 0;
+      for (LabelSet labelSet : labelSets) {
+        Map<String, int[]> index = positionsByLabel.get(labelSet.function);
+        for (String label : labelSet.labels) {
+          int[] positions = index.get(label);
+          if (positions != null) {
+            for (int position : positions) {
+              if ( ! marked[position]) {
+                marked[position] = true;
+                count++;
+              }
+            }
+          }
+        }
+      }
+      int[] positions = new int[count];
+      for (int i = 0, j = 0; j < count; i++) {
+        if (marked[i]) {
+          positions[j++] = i;
+        }
+      }
+      return positions;
+    }
+  }
+
+  /**
+   * Finds all the matches of all the patterns on a tree.
+   *
+   * @param tree The tree to match on
+   * @param handler Is passed the index of the pattern and its matcher for each match
+   */
+  public void find(Tree tree, MatchHandler handler) {
+    TreeIndex index = new TreeIndex(tree);
+    for (int p = 0; p < patterns.size(); p++) {
+      find(index, p, handler);
+    }
+  }
+
+  private void find(TreeIndex index, int p, MatchHandler handler) {
+    for (LabelSet required : requirements.get(p)) {
+      if ( ! index.contains(required)) {
+        return;
+      }
+    }
+    TregexMatcher matcher = patterns.get(p).matcher(index.root, index.root, index.nodesToParents,
+                                                    ArrayMap.newArrayMap(), new VariableStrings(), headFinder);
+    List<LabelSet> trigger = triggers.get(p);
+    if (trigger == null) {
+      for (Tree node : index.nodes) {
+        findAt(matcher, node, p, handler);
+      }
+    } else {
+      for (int position : index.positions(trigger)) {
+        findAt(matcher, index.nodes[position], p, handler);
+      }
+    }
+  }
+
+  private static void findAt(TregexMatcher matcher, Tree node, int p, MatchHandler handler) {
+    matcher.reset();
+    while (matcher.findAt(node)) {
+      handler.handle(p, matcher);
+    }
+  }
+
+  /**
+   * Finds all the matches of all the patterns on a list of trees, using a fork-join pool.
+   * The handler is called concurrently from several threads, though the matches on any
+   * one tree are all passed from one thread, in the order of {@link #find(Tree, MatchHandler)}.
+   *
+   * @param trees The trees to match on
+   * @param numThreads The number of threads to use
+   * @param handler Is passed the index of the tree, the index of the pattern and its matcher for each match
+   */
+  public void findAll(List<Tree> trees, int numThreads, TreebankMatchHandler handler) {
+    if (numThreads <= 1) {
+      for (int t = 0; t < trees.size(); t++) {
+        int treeIndex = t;
+        find(trees.get(t), (p, matcher) -> handler.handle(treeIndex, p, matcher));
+      }
+      return;
+    }
+    List<Tree> treeList = trees instanceof RandomAccess ? trees : new ArrayList<>(trees);
+    int grain = Math.max(1, treeList.size() / (8 * numThreads));
+    ForkJoinPool pool = new ForkJoinPool(numThreads);
+    try {
+      pool.invoke(new FindTask(treeList, 0, treeList.size(), grain, handler));
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Counts the matches of each pattern on a list of trees.
+   *
+   * @return The number of matches of each pattern, as {@link TregexMatcher#find()} would count them
+   */
+  public int[] countMatches(List<Tree> trees, int numThreads) {
+    AtomicIntegerArray counts = new AtomicIntegerArray(patterns.size());
+    findAll(trees, numThreads, (t, p, matcher) -> counts.incrementAndGet(p));
+    int[] result = new int[patterns.size()];
+    for (int p = 0; p < result.length; p++) {
+      result[p] = counts.get(p);
+    }
+    return result;
+  }
+
+  private class FindTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Tree> trees;
+    private final int start;
+    private final int end;
+    private final int grain;
+    private final TreebankMatchHandler handler;
+
+    FindTask(List<Tree> trees, int start, int end, int grain, TreebankMatchHandler handler) {
+      this.trees = trees;
+      this.start = start;
+      this.end = end;
+      this.grain = grain;
+      this.handler = handler;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start <= grain) {
+        for (int t = start; t < end; t++) {
+          int treeIndex = t;
+          find(trees.get(t), (p, matcher) -> handler.handle(treeIndex, p, matcher));
+        }
+      } else {
+        int middle = (start + end) >>> 1;
+        invokeAll(new FindTask(trees, start, middle, grain, handler),
+                  new FindTask(trees, middle, end, grain, handler));
+      }
+    }
+  }
+
+}
@@ -74,9 +74,11 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    * @param other The ArrayCoreMap to copy. It may not be null.
    */
   public ArrayCoreMap(ArrayCoreMap other) {
+    other.loadLazyValues();
     size = other.size;
     keys = Arrays.copyOf(other.keys, size);
     values = Arrays.copyOf(other.values, size);
+    slotPositions = other.slotPositions;  // the keys are in the same positions
   }
 
   /**
@@ -153,12 +155,109 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
     return null;
   }
 
+  /** Most keys which may be given a slot by {@link #keySlot}: one per 4 bits of an int */
+  private static final int MAX_SLOTS = 8;
+
+  /** The slots given out by {@link #keySlot} */
+  private static final Map<Class<?>, Integer> slots = new IdentityHashMap<>();
+
+  /**
+   * For each slot (4 bits per slot), one more than the position of its key in the arrays,
+   * or 0 if that isn't known or is more than 14.  Only a hint, which is checked against the
+   * key before being used, so it needn't be kept exactly up to date.
+   */
+  private transient int slotPositions; // = 0;
+
+  /**
+   * Gives the key a fixed slot number for use with {@link #getBySlot} and {@link #setBySlot}.
+   * This is meant for the few keys which are read many times over from a map, such as the
+   * word and tag of a {@link edu.stanford.nlp.ling.CoreLabel}: each map remembers the
+   * position of the key of each slot, so that looking the key up again is a single comparison
+   * rather than a scan of the keys.
+   *
+   * @param key The key
+   * @return The slot of the key, the same for every call with the same key
+   */
+  public static synchronized int keySlot(Class<? extends Key<?>> key) {
+    Integer slot = slots.get(key);
+    if (slot == null) {
+      if (slots.size() >= MAX_SLOTS) {
+        throw new IllegalStateException("ArrayCoreMap: no more than " + MAX_SLOTS + " keys can have slots");
+      }
+      slot = slots.size();
+      slots.put(key, slot);
+    }
+    return slot;
+  }
+
+  /** The remembered position of the key of the slot, or -1 if there is none. */
+  private int slotPosition(int slot) {
+    return ((slotPositions >>> (slot << 2)) & 0xF) - 1;
+  }
+
+  private void setSlotPosition(int slot, int i) {
+    int shift = slot << 2;
+    int hint = (i < 0xF) ? i + 1 : 0;
+    slotPositions = (slotPositions & ~(0xF << shift)) | (hint << shift);
+  }
+
+  /**
+   * The same as {@link #get}, for a key with the given slot from {@link #keySlot}.
+   * Subclasses which override get() to do more than look up the key shouldn't use this.
+   */
+  @SuppressWarnings("unchecked")
+  protected final <VALUE> VALUE getBySlot(Class<? extends Key<VALUE>> key, int slot) {
+    int i = slotPosition(slot);
+    if (i < 0 || i >= size || keys[i] != key) {
+      i = indexOf(key);
+      if (i < 0) {
+        return null;
+      }
+      setSlotPosition(slot, i);
+    }
+    if (listener != null) {
+      listener.accept(key);  // For tracking which entities were returned by the CoreMap
+    }
+    return (VALUE) values[i];
+  }
+
+  /**
+   * The same as {@link #set}, for a key with the given slot from {@link #keySlot}.
+   * Subclasses which override set() to do more than store the value shouldn't use this.
+   */
+  @SuppressWarnings("unchecked")
+  protected final <VALUE> VALUE setBySlot(Class<? extends Key<VALUE>> key, VALUE value, int slot) {
+    int i = slotPosition(slot);
+    if (i < 0 || i >= size || keys[i] != key) {
+      i = indexOf(key);
+      if (i < 0) {
+        set(key, value);  // adds it to the end
+        setSlotPosition(slot, size - 1);
+        return null;
+      }
+      setSlotPosition(slot, i);
+    }
+    VALUE rv = (VALUE) values[i];
+    values[i] = value;
+    return rv;
+  }
+
+  /** The position of the key in the arrays, or -1 if it isn't there. */
+  private int indexOf(Class<?> key) {
+    for (int i = 0; i < size; i++) {
+      if (keys[i] == key) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
   /**
    * {@inheritDoc}
    */
   @Override
   public Set<Class<?>> keySet() {
-
+    loadLazyValues();
     return new AbstractSet<Class<?>>() {
       @Override
       public Iterator<Class<?>> iterator() {
@@ -201,6 +300,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    *         non-null value.
    */
   public Set<Class<?>> keySetNotNull() {
+    loadLazyValues();
     Set<Class<?>> mapKeys = new IdentityHashSet<>();
     for (int i = 0; i < size(); ++i) {
       if (values[i] != null) {
@@ -280,6 +380,13 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
     return size;
   }
 
+  /**
+   * Sets the values which a subclass only works out when they are first asked for, before
+   * a method reads the arrays directly.  See {@link LazyCoreMap}.
+   */
+  void loadLazyValues() {
+  }
+
   /**
    * Keeps track of which ArrayCoreMaps have had toString called on
    * them.  We do not want to loop forever when there are cycles in
@@ -298,6 +405,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    */
   @Override
   public String toString() {
+    loadLazyValues();
     IdentityHashSet<CoreMap> calledSet = toStringCalled.get();
     boolean createdCalledSet = calledSet.isEmpty();
 
@@ -341,6 +449,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    */
   @Override
   public String toShorterString(String... what) {
+    loadLazyValues();
     StringBuilder s = new StringBuilder(SHORTER_STRING_CHARSTRING_START_SIZE);
     s.append('[');
     Set<String> whatSet = null;
@@ -419,6 +528,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    *     character. If the string contains spaces, it is wrapped in "{...}".
    */
   public String toShortString(char separator, String... what) {
+    loadLazyValues();
     StringBuilder s = new StringBuilder();
     for (int i = 0; i < size; i++) {
       boolean include;
@@ -516,6 +626,8 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
 
 
   private boolean equals(ArrayCoreMap other) {
+    loadLazyValues();
+    other.loadLazyValues();
     TwoDimensionalMap<CoreMap, CoreMap, Boolean> calledMap = equalsCalled.get();
     boolean createdCalledMap = (calledMap == null);
     if (createdCalledMap) {
@@ -592,6 +704,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    */
   @Override
   public int hashCode() {
+    loadLazyValues();
     IdentityHashSet<CoreMap> calledSet = hashCodeCalled.get();
     boolean createdCalledSet = (calledSet == null);
     if (createdCalledSet) {
@@ -638,6 +751,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    * @throws IOException If IO error
    */
   private void writeObject(ObjectOutputStream out) throws IOException {
+    loadLazyValues();
     compact();
     out.defaultWriteObject();
   }
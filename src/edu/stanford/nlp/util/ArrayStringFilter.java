@@ -67,6 +67,15 @@ public class ArrayStringFilter implements Predicate<String>, Serializable {
     }
   }
 
+  public Mode getMode() {
+    return mode;
+  }
+
+  /** Returns a copy of the words this filter tests against. */
+  public String[] getWords() {
+    return words.clone();
+  }
+
   @Override
   public String toString() {
     return mode.toString() + ':' + StringUtils.join(words, ",");
@@ -0,0 +1,144 @@
+package edu.stanford.nlp.util;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * An {@link ArrayCoreMap} some of whose values are only worked out when they are first asked
+ * for, such as the trees and dependency graphs of a sentence read from a protocol buffer which
+ * most readers of the sentence never look at.
+ *
+ * <p>
+ * A lazy value is set with {@link #setLazily}; the first {@link #get} (or anything which reads
+ * all the values, such as {@link #keySet}, {@link #equals} or {@link #toString}) calls its
+ * supplier and stores the result as a normal value.  {@link #containsKey} is true for a lazy
+ * value, and {@link #size} counts it, without working it out.  Unlike ArrayCoreMap, the map may be read from several threads
+ * at once while it still has lazy values (it must not be written to at the same time).
+ */
+public class LazyCoreMap extends ArrayCoreMap {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The suppliers of the values not worked out yet, or null if there are none */
+  private transient volatile Map<Class<?>, Supplier<?>> pending; // = null;
+
+  public LazyCoreMap() {
+    super();
+  }
+
+  public LazyCoreMap(int capacity) {
+    super(capacity);
+  }
+
+  /**
+   * Sets the value of the key to what the supplier returns, calling it the first time the
+   * value is asked for.
+   */
+  public synchronized <VALUE> void setLazily(Class<? extends Key<VALUE>> key, Supplier<? extends VALUE> supplier) {
+    super.remove(key);
+    if (pending == null) {
+      pending = new IdentityHashMap<>();
+    }
+    pending.put(key, supplier);
+  }
+
+  /** Whether the value of the key has yet to be worked out. */
+  public synchronized boolean isLazy(Class<? extends Key<?>> key) {
+    return pending != null && pending.containsKey(key);
+  }
+
+  /** Works out the value of the key if it is lazy (with the lock held; suppliers may get other values). */
+  @SuppressWarnings("unchecked")
+  private void load(Class<?> key) {
+    Supplier<?> supplier = (pending == null) ? null : pending.remove(key);
+    if (supplier != null) {
+      super.set((Class) key, supplier.get());
+    }
+  }
+
+  private void finishLoad() {
+    if (pending != null && pending.isEmpty()) {
+      pending = null;
+    }
+  }
+
+  @Override
+  void loadLazyValues() {
+    if (pending != null) {
+      synchronized (this) {
+        if (pending != null) {
+          for (Class<?> key : pending.keySet().toArray(new Class<?>[0])) {
+            load(key);
+          }
+          finishLoad();
+        }
+      }
+    }
+  }
+
+  @Override
+  public <VALUE> VALUE get(Class<? extends Key<VALUE>> key) {
+    if (pending != null) {
+      synchronized (this) {
+        if (pending != null) {
+          load(key);
+          finishLoad();
+        }
+        return super.get(key);
+      }
+    }
+    return super.get(key);
+  }
+
+  @Override
+  public <VALUE> VALUE set(Class<? extends Key<VALUE>> key, VALUE value) {
+    if (pending != null) {
+      synchronized (this) {
+        if (pending != null) {
+          pending.remove(key);
+          finishLoad();
+        }
+      }
+    }
+    return super.set(key, value);
+  }
+
+  @Override
+  public <VALUE> VALUE remove(Class<? extends Key<VALUE>> key) {
+    if (pending != null) {
+      synchronized (this) {
+        if (pending != null) {
+          load(key);
+          finishLoad();
+        }
+      }
+    }
+    return super.remove(key);
+  }
+
+  @Override
+  public int size() {
+    if (pending != null) {
+      synchronized (this) {
+        // the keys of the lazy values are never also set in the arrays
+        return super.size() + ((pending == null) ? 0 : pending.size());
+      }
+    }
+    return super.size();
+  }
+
+  @Override
+  public <VALUE> boolean containsKey(Class<? extends Key<VALUE>> key) {
+    if (pending != null) {
+      synchronized (this) {
+        if (pending != null && pending.containsKey(key)) {
+          return true;
+        }
+        return super.containsKey(key);
+      }
+    }
+    return super.containsKey(key);
+  }
+
+}
@@ -1,5 +1,8 @@
 package edu.stanford.nlp.util.concurrent;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.AbstractSet;
 import java.util.Collection;
@@ -10,6 +13,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
 
 import edu.stanford.nlp.math.SloppyMath;
 import edu.stanford.nlp.stats.Counter;
@@ -33,6 +37,10 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
   private static final int DEFAULT_CAPACITY = 100;
   
   private final ConcurrentMap<E,AtomicDouble> map;
+  // the total is kept in an adder, so that threads updating different keys don't contend for it.
+  // totalCount is only set when the counter is serialized, so that the serialized form is the same
+  // as when it was the total.
+  private transient DoubleAdder total;
   private final AtomicDouble totalCount;
   private double defaultReturnValue = 0.0;
   
@@ -42,9 +50,21 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
   
   public ConcurrentHashCounter(int initialCapacity) {
     map = new ConcurrentHashMap<>(initialCapacity);
+    total = new DoubleAdder();
     totalCount = new AtomicDouble();
   }
 
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    totalCount.set(total.sum());
+    out.defaultWriteObject();
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    total = new DoubleAdder();
+    total.add(totalCount.get());
+  }
+
   @Override
   public Iterator<E> iterator() {
     return keySet().iterator();
@@ -86,7 +106,7 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
       if (atomic == null) {
         atomic = map.putIfAbsent(key, new AtomicDouble(value));
         if (atomic == null) {
-          totalCount.addAndGet(value);
+          total.add(value);
           return;
         }
       }
@@ -96,14 +116,14 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
         if (oldValue == 0.0) {
           // don't compareAndSet a zero
           if (map.replace(key, atomic, new AtomicDouble(value))) {
-            totalCount.addAndGet(value);
+            total.add(value);
             return;
           }
           continue outer;
         }
 
         if (atomic.compareAndSet(oldValue, value)) {
-          totalCount.addAndGet(value - oldValue);
+          total.add(value - oldValue);
           return;
         }
       }
@@ -119,7 +139,7 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
       if (atomic == null) {
         atomic = map.putIfAbsent(key, new AtomicDouble(value));
         if (atomic == null) {
-          totalCount.addAndGet(value);
+          total.add(value);
           return value;
         }
       }
@@ -129,7 +149,7 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
         if (oldValue == 0.0) {
           // don't compareAndSet a zero
           if (map.replace(key, atomic, new AtomicDouble(value))) {
-            totalCount.addAndGet(value);
+            total.add(value);
             return value;
           }
           continue outer;
@@ -137,7 +157,7 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
 
         double newValue = oldValue + value;
         if (atomic.compareAndSet(oldValue, newValue)) {
-          totalCount.addAndGet(value);
+          total.add(value);
           return newValue;
         }
       }
@@ -168,7 +188,7 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
       if (atomic == null) {
         atomic = map.putIfAbsent(key, new AtomicDouble(value));
         if (atomic == null) {
-          totalCount.addAndGet(value);
+          total.add(value);
           return value;
         }
       }
@@ -178,7 +198,7 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
         if (oldValue == 0.0) {
           // don't compareAndSet a zero
           if (map.replace(key, atomic, new AtomicDouble(value))) {
-            totalCount.addAndGet(value);
+            total.add(value);
             return value;
           }
           continue outer;
@@ -186,7 +206,7 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
 
         double newValue = SloppyMath.logAdd(oldValue, value);
         if (atomic.compareAndSet(oldValue, newValue)) {
-          totalCount.addAndGet(value);
+          total.add(value);
           return newValue;
         }
       }
@@ -211,7 +231,7 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
         // only remove after setting to zero, to avoid concurrent updates
         map.remove(key, atomic);
         // succeed even if the remove fails, since the value was already adjusted
-        totalCount.addAndGet(-1.0 * oldValue);
+        total.add(-1.0 * oldValue);
         return oldValue;
       }
     }
@@ -361,13 +381,8 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
 
   @Override
   public void clear() {
-    for(;;) {
-      totalCount.set(0.0);
-      if (totalCount.get() == 0.0) {
-        map.clear();
-        return;
-      }
-    }
+    map.clear();
+    total.reset();
   }
 
   @Override
@@ -377,7 +392,7 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
 
   @Override
   public double totalCount() {
-    return totalCount.get();
+    return total.sum();
   }
 
   @SuppressWarnings("unchecked")
@@ -389,7 +404,7 @@ public class ConcurrentHashCounter<E> implements Serializable, Counter<E>, Itera
       return false;
     } else {
       final ConcurrentHashCounter<E> other = (ConcurrentHashCounter<E>) o;
-      return totalCount.get() == other.totalCount.get() && map.equals(other.map);
+      return total.sum() == other.total.sum() && map.equals(other.map);
     }
   }
 
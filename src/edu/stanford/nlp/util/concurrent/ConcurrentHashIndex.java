@@ -1,25 +1,45 @@
 package edu.stanford.nlp.util.concurrent;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.util.AbstractCollection;
 import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.RandomAccess;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.ReentrantLock;
 
 import edu.stanford.nlp.io.IOUtils;
-import edu.stanford.nlp.util.Generics;
 import edu.stanford.nlp.util.Index;
 
 /**
  * A fast threadsafe index that supports constant-time lookup in both directions. This
- * index is tuned for circumstances in which readers significantly outnumber writers.
+ * index is tuned for circumstances in which readers significantly outnumber writers,
+ * but it can also be filled from many threads at once, such as when interning the
+ * features of a dataset built in parallel.
+ *
+ * <p>
+ * Lookups take no locks.  A new item gets its id inside {@link ConcurrentHashMap#computeIfAbsent},
+ * which only locks the item's bin of the map, so threads adding different items seldom wait
+ * for each other.  The items are kept by id in fixed size chunks, so adding one never copies
+ * the ones already there.  {@link #lock()} freezes the index: it then adds nothing and keeps
+ * the items in one array of exactly the right size, until it is unlocked.
+ *
+ * <p>
+ * The id returned by {@link #addToIndex} or {@link #indexOf} can always be passed to {@link #get}.
+ * While other threads are adding items, {@link #size()} may count an item whose id is taken but
+ * which isn't stored yet, in which case {@code get()} of that id returns null for a moment.
  *
  * @author Spence Green
  *
@@ -32,10 +52,32 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
   public static final int UNKNOWN_ID = -1;
   private static final int DEFAULT_INITIAL_CAPACITY = 100;
 
-  private final ConcurrentHashMap<E,Integer> item2Index;
-  private int indexSize;
-  private final ReentrantLock lock;
-  private final AtomicReference<Object[]> index2Item;
+  /** The number of items in each chunk of the id to item table */
+  private static final int CHUNK_BITS = 10;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+  /**
+   * The serialized form is the one the index had before its items were kept in chunks: the map,
+   * the number of items, the lock and an array of the items.  Whether it is locked is added.
+   */
+  private static final ObjectStreamField[] serialPersistentFields = {
+      new ObjectStreamField("item2Index", ConcurrentHashMap.class),
+      new ObjectStreamField("indexSize", Integer.TYPE),
+      new ObjectStreamField("lock", ReentrantLock.class),
+      new ObjectStreamField("index2Item", AtomicReference.class),
+      new ObjectStreamField("locked", Boolean.TYPE),
+  };
+
+  private transient ConcurrentHashMap<E,Integer> item2Index;
+  /** The next id to give out, which is also the number of ids given out */
+  private transient AtomicInteger nextId;
+  /** Guards making new chunks and locking and clearing the index */
+  private transient ReentrantLock lock;
+  /** The items by id, in chunks made as they are needed; null while the index is locked */
+  private transient volatile AtomicReferenceArray<AtomicReferenceArray<Object>> chunks;
+  /** The items by id while the index is locked, else null */
+  private transient volatile Object[] frozen;
+  private transient volatile boolean locked; // = false;
 
   /**
    * Constructor.
@@ -51,22 +93,94 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
    */
   public ConcurrentHashIndex(int initialCapacity) {
     item2Index = new ConcurrentHashMap<>(initialCapacity);
-    indexSize = 0;
+    nextId = new AtomicInteger();
     lock = new ReentrantLock();
-    Object[] arr = new Object[initialCapacity];
-    index2Item = new AtomicReference<>(arr);
+    chunks = new AtomicReferenceArray<>(numChunks(initialCapacity));
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    Object[] arr = new Object[size()];
+    for (int i = 0; i < arr.length; i++) {
+      arr[i] = get(i);
+    }
+    ObjectOutputStream.PutField fields = out.putFields();
+    fields.put("item2Index", item2Index);
+    fields.put("indexSize", arr.length);
+    fields.put("lock", lock);
+    fields.put("index2Item", new AtomicReference<>(arr));
+    fields.put("locked", locked);
+    out.writeFields();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    ObjectInputStream.GetField fields = in.readFields();
+    item2Index = (ConcurrentHashMap<E,Integer>) fields.get("item2Index", null);
+    int size = fields.get("indexSize", 0);
+    nextId = new AtomicInteger(size);
+    lock = new ReentrantLock();
+    // read in the locked state, then unlocked if it wasn't locked
+    frozen = Arrays.copyOf(((AtomicReference<Object[]>) fields.get("index2Item", null)).get(), size);
+    locked = true;
+    if ( ! fields.get("locked", false)) {
+      unlock();
+    }
+  }
+
+  private static int numChunks(int capacity) {
+    return Math.max(1, (capacity + CHUNK_SIZE - 1) >> CHUNK_BITS);
+  }
+
+  /** The chunk holding the given id, made if it doesn't exist yet. */
+  private AtomicReferenceArray<Object> chunk(int id) {
+    int c = id >> CHUNK_BITS;
+    AtomicReferenceArray<AtomicReferenceArray<Object>> cs = chunks;
+    AtomicReferenceArray<Object> chunk = (cs != null && c < cs.length()) ? cs.get(c) : null;
+    if (chunk != null) {
+      return chunk;
+    }
+    lock.lock();
+    try {
+      cs = chunks;
+      if (cs == null) {
+        throw new IllegalStateException("ConcurrentHashIndex: item added while the index was being locked");
+      }
+      if (c >= cs.length()) {
+        AtomicReferenceArray<AtomicReferenceArray<Object>> newChunks = new AtomicReferenceArray<>(Math.max(c + 1, 2 * cs.length()));
+        for (int i = 0; i < cs.length(); i++) {
+          newChunks.set(i, cs.get(i));
+        }
+        chunks = cs = newChunks;
+      }
+      chunk = cs.get(c);
+      if (chunk == null) {
+        chunk = new AtomicReferenceArray<>(CHUNK_SIZE);
+        cs.set(c, chunk);
+      }
+      return chunk;
+    } finally {
+      lock.unlock();
+    }
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public E get(int i) {
-    Object[] arr = index2Item.get();
-    if (i < indexSize) {
-      // arr.length guaranteed to be == to size() given the
-      // implementation of indexOf below.
-      return (E) arr[i];
+    Object[] arr = frozen;
+    if (arr != null) {
+      if (i >= 0 && i < arr.length) {
+        return (E) arr[i];
+      }
+    } else if (i >= 0 && i < nextId.get()) {
+      AtomicReferenceArray<AtomicReferenceArray<Object>> cs = chunks;
+      if (cs == null) {
+        // locked or unlocked while we looked
+        return get(i);
+      }
+      AtomicReferenceArray<Object> chunk = cs.get(i >> CHUNK_BITS);
+      return (chunk == null) ? null : (E) chunk.get(i & (CHUNK_SIZE - 1));
     }
-    throw new ArrayIndexOutOfBoundsException(String.format("Out of bounds: %d >= %d", i, indexSize));
+    throw new ArrayIndexOutOfBoundsException(String.format("Out of bounds: %d >= %d", i, size()));
   }
 
   @Override
@@ -81,30 +195,25 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
     if (index != null) {
       return index;
     }
+    if (locked) {
+      return UNKNOWN_ID;
+    }
+    // Only the bin of o is locked while it gets its id, which is stored before anyone can look it up
+    return item2Index.computeIfAbsent(o, this::store);
+  }
 
-    lock.lock();
-    try {
-      // Recheck state
-      if (item2Index.containsKey(o)) {
-        return item2Index.get(o);
-
-      } else {
-        final int newIndex = indexSize++;
-        Object[] arr = index2Item.get();
-        assert newIndex <= arr.length;
-        if (newIndex == arr.length) {
-          // Increase size of array if necessary
-          Object[] newArr = new Object[2*newIndex];
-          System.arraycopy(arr, 0, newArr, 0, arr.length);
-          arr = newArr;
-        }
-        arr[newIndex] = o;
-        index2Item.set(arr);
-        item2Index.put(o, newIndex);
-        return newIndex;
+  /**
+   * Takes the next id for the item and stores the item under it.  The id is only taken once the
+   * chunk for it exists, so if making the chunk fails no id is used up.
+   */
+  private int store(Object item) {
+    while (true) {
+      int id = nextId.get();
+      AtomicReferenceArray<Object> chunk = chunk(id);
+      if (nextId.compareAndSet(id, id + 1)) {
+        chunk.set(id & (CHUNK_SIZE - 1), item);
+        return id;
       }
-    } finally {
-      lock.unlock();
     }
   }
 
@@ -134,7 +243,11 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
 
   @Override
   public List<E> objectsList() {
-    return Generics.newArrayList(item2Index.keySet());
+    List<E> objects = new ArrayList<>(size());
+    for (E o : this) {
+      objects.add(o);
+    }
+    return objects;
   }
 
   @Override
@@ -153,23 +266,57 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
 
   @Override
   public boolean isLocked() {
-    return false;
+    return locked;
   }
 
+  /**
+   * Stops new items being added, and compacts the items into a single array.
+   * Items shouldn't be being added by other threads at the time.
+   */
   @Override
   public void lock() {
-    throw new UnsupportedOperationException();
+    lock.lock();
+    try {
+      if ( ! locked) {
+        locked = true;
+        Object[] arr = new Object[nextId.get()];
+        for (int i = 0; i < arr.length; i++) {
+          arr[i] = get(i);
+        }
+        frozen = arr;
+        chunks = null;
+      }
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
   public void unlock() {
-    throw new UnsupportedOperationException();
+    lock.lock();
+    try {
+      if (locked) {
+        Object[] arr = frozen;
+        AtomicReferenceArray<AtomicReferenceArray<Object>> cs = new AtomicReferenceArray<>(numChunks(arr.length));
+        for (int i = 0; i < arr.length; i++) {
+          if (cs.get(i >> CHUNK_BITS) == null) {
+            cs.set(i >> CHUNK_BITS, new AtomicReferenceArray<>(CHUNK_SIZE));
+          }
+          cs.get(i >> CHUNK_BITS).set(i & (CHUNK_SIZE - 1), arr[i]);
+        }
+        chunks = cs;
+        frozen = null;
+        locked = false;
+      }
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
   public void saveToWriter(Writer out) throws IOException {
     final String nl = System.getProperty("line.separator");
-    for (int i = 0, sz = indexSize; i < sz; i++) {
+    for (int i = 0, sz = size(); i < sz; i++) {
       E o = get(i);
       if (o != null) {
         out.write(i + "=" + get(i) + nl);
@@ -182,7 +329,7 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
     PrintWriter bw = null;
     try {
       bw = IOUtils.getPrintWriter(s);
-      for (int i = 0, size = indexSize; i < size; i++) {
+      for (int i = 0, size = size(); i < size; i++) {
         E o = get(i);
         if (o != null) {
           bw.printf("%d=%s%n", i, o.toString());
@@ -220,7 +367,8 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
 
   @Override
   public int size() {
-    return indexSize;
+    Object[] arr = frozen;
+    return (arr != null) ? arr.length : nextId.get();
   }
 
   @Override
@@ -251,9 +399,12 @@ public class ConcurrentHashIndex<E> extends AbstractCollection<E> implements Ind
     lock.lock();
     try {
       item2Index.clear();
-      indexSize = 0;
-      Object[] arr = new Object[DEFAULT_INITIAL_CAPACITY];
-      index2Item.set(arr);
+      nextId.set(0);
+      if (locked) {
+        frozen = new Object[0];
+      } else {
+        chunks = new AtomicReferenceArray<>(numChunks(DEFAULT_INITIAL_CAPACITY));
+      }
     } finally {
       lock.unlock();
     }
@@ -0,0 +1,96 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.util.Random;
+
+import edu.stanford.nlp.math.ArrayMath;
+import edu.stanford.nlp.math.SloppyMath;
+
+/**
+ * Times the exact and fast versions of exp, logSum and logNormalize on arrays the size
+ * of a tagger's or CRF's label scores, and reports the largest difference between them.
+ * Usage: {@code java edu.stanford.nlp.benchmarks.ArrayMathBenchmark [arrayLength [numArrays]]}
+ */
+public class ArrayMathBenchmark {
+
+  private ArrayMathBenchmark() {} // static main
+
+  public static void main(String[] args) throws Exception {
+    int length = (args.length > 0) ? Integer.parseInt(args[0]) : 45;
+    int numArrays = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+    Random r = new Random(2718L);
+    double[][] arrays = new double[numArrays][length];
+    for (double[] a : arrays) {
+      for (int i = 0; i < length; i++) {
+        a[i] = -20.0 * r.nextDouble();
+      }
+    }
+
+    double[] copy = new double[length];
+    long[] best = BenchmarkTimer.bestNanos(10, 10,
+        () -> {
+          double sum = 0.0;
+          for (double[] a : arrays) {
+            for (double x : a) {
+              sum += Math.exp(x);
+            }
+          }
+          return sum;
+        },
+        () -> {
+          double sum = 0.0;
+          for (double[] a : arrays) {
+            for (double x : a) {
+              sum += SloppyMath.fastExp(x);
+            }
+          }
+          return sum;
+        },
+        () -> {
+          double sum = 0.0;
+          for (double[] a : arrays) {
+            sum += ArrayMath.logSum(a);
+          }
+          return sum;
+        },
+        () -> {
+          double sum = 0.0;
+          for (double[] a : arrays) {
+            sum += ArrayMath.fastLogSum(a);
+          }
+          return sum;
+        },
+        () -> {
+          double sum = 0.0;
+          for (double[] a : arrays) {
+            System.arraycopy(a, 0, copy, 0, a.length);
+            ArrayMath.logNormalize(copy);
+            sum += copy[0];
+          }
+          return sum;
+        },
+        () -> {
+          double sum = 0.0;
+          for (double[] a : arrays) {
+            System.arraycopy(a, 0, copy, 0, a.length);
+            ArrayMath.fastLogNormalize(copy);
+            sum += copy[0];
+          }
+          return sum;
+        });
+    String[] names = { "exp", "logSum", "logNormalize" };
+    for (int i = 0; i < names.length; i++) {
+      System.out.printf("%s Runtime: exact %.2f ms, fast %.2f ms%n", names[i],
+          BenchmarkTimer.millis(best[2 * i]), BenchmarkTimer.millis(best[2 * i + 1]));
+    }
+
+    double maxError = 0.0;
+    for (double[] a : arrays) {
+      for (double x : a) {
+        maxError = Math.max(maxError, Math.abs(SloppyMath.fastExp(x) / Math.exp(x) - 1.0));
+      }
+      maxError = Math.max(maxError, Math.abs(ArrayMath.fastLogSum(a) - ArrayMath.logSum(a)));
+    }
+    System.out.printf("Largest relative error of fastExp or absolute error of fastLogSum: %.3g%n", maxError);
+  }
+
+}
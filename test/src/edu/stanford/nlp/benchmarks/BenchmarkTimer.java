@@ -0,0 +1,47 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * The timing the benchmarks here share.  Each task is run a few times to warm up the JIT
+ * compiler, then timed several times, keeping its best time, as the other runs are slowed by
+ * whatever else the machine is doing.  The tasks take turns, so that a slow spell of the
+ * machine doesn't fall on one of them only.
+ */
+final class BenchmarkTimer {
+
+  /** Work to time, returning a value worked out from its results. */
+  interface Task {
+    double run() throws Exception;
+  }
+
+  /** The values the tasks return are added up here, so that the JIT compiler can't skip their work. */
+  private static volatile double sink;
+
+  private BenchmarkTimer() {} // static methods
+
+  /** Runs the tasks warmups times, then times them runs times, and returns their best times in nanoseconds. */
+  static long[] bestNanos(int warmups, int runs, Task... tasks) throws Exception {
+    for (int i = 0; i < warmups; i++) {
+      for (Task task : tasks) {
+        sink += task.run();
+      }
+    }
+    long[] best = new long[tasks.length];
+    Arrays.fill(best, Long.MAX_VALUE);
+    for (int i = 0; i < runs; i++) {
+      for (int j = 0; j < tasks.length; j++) {
+        long before = System.nanoTime();
+        double value = tasks[j].run();
+        best[j] = Math.min(best[j], System.nanoTime() - before);
+        sink += value;
+      }
+    }
+    return best;
+  }
+
+  static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+}
@@ -3,14 +3,23 @@ package edu.stanford.nlp.benchmarks;
 import edu.stanford.nlp.classify.Dataset;
 import edu.stanford.nlp.classify.LinearClassifierFactory;
 import edu.stanford.nlp.classify.RVFDataset;
+import edu.stanford.nlp.ie.NumberNormalizer;
 import edu.stanford.nlp.ie.crf.CRFClassifier;
 import edu.stanford.nlp.ie.machinereading.structure.AnnotationUtils;
 import edu.stanford.nlp.ling.*;
+import edu.stanford.nlp.ling.tokensregex.CoreMapExpressionExtractor;
+import edu.stanford.nlp.ling.tokensregex.MatchedExpression;
 import edu.stanford.nlp.optimization.DiffFunction;
 import edu.stanford.nlp.optimization.Minimizer;
 import edu.stanford.nlp.optimization.SGDMinimizer;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.TokenizerAnnotator;
+import edu.stanford.nlp.pipeline.WordsToSentencesAnnotator;
 import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.time.GenericTimeExpressionPatterns;
+import edu.stanford.nlp.time.Options;
+import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.Factory;
 
 import java.util.*;
@@ -299,6 +308,57 @@ public class Benchmarks {
         System.out.println("Scanning with cache UNfriendly lookups took "+delay+" ms");
     }
 
+    private static final String SUTIME_TEXT =
+        "The committee will meet again next Tuesday at 3 pm to discuss the budget. " +
+        "Shares of the company rose sharply after the announcement. " +
+        "She has lived in the city for more than twenty years. " +
+        "The bridge was designed by a team of engineers from three countries. " +
+        "Most of the guests left before the speeches started. " +
+        "He was born on July 4, 1976 in a small town in Ohio. " +
+        "The report says that the river is cleaner than it has been in decades. " +
+        "Prices for fresh fruit went up over the summer. " +
+        "The museum is closed on Mondays and on Christmas Day. " +
+        "Nobody on the team expected the project to be finished so quickly. ";
+
+    /**
+     * Time per sentence of running the SUTime rules over a mix of sentences with and without time
+     * expressions, with and without skipping the rules whose triggers are missing from the sentence.
+     */
+    public static void benchmarkSUTime() {
+        Properties props = new Properties();
+        // no holidays from JollyDay (its calendar files come with the models)
+        props.setProperty("sutime.binders", "0");
+        props.setProperty("sutime.rules", "edu/stanford/nlp/time/rules/defs.sutime.txt,edu/stanford/nlp/time/rules/english.sutime.txt,edu/stanford/nlp/time/rules/english.holidays.sutime.txt");
+        @SuppressWarnings("unchecked")
+        CoreMapExpressionExtractor<MatchedExpression> extractor = new GenericTimeExpressionPatterns(new Options("sutime", props)).createExtractor();
+        TokenizerAnnotator tokenizer = new TokenizerAnnotator(false, "en");
+        WordsToSentencesAnnotator splitter = new WordsToSentencesAnnotator(false);
+
+        for (boolean useTriggers : new boolean[] { false, true }) {
+            extractor.setUseTriggers(useTriggers);
+            long ns = 0;
+            int numSentences = 0;
+            int numExpressions = 0;
+            for (int i = 0; i < 50; i++) {
+                Annotation document = new Annotation(SUTIME_TEXT);
+                tokenizer.annotate(document);
+                splitter.annotate(document);
+                List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+                for (CoreMap sentence : sentences) {
+                    sentence.set(CoreAnnotations.NumerizedTokensAnnotation.class, NumberNormalizer.findAndMergeNumbers(sentence));
+                }
+                long start = System.nanoTime();
+                for (CoreMap sentence : sentences) {
+                    numExpressions += extractor.extractExpressions(sentence).size();
+                }
+                ns += System.nanoTime() - start;
+                numSentences += sentences.size();
+            }
+            System.out.println("SUTime " + (useTriggers ? "with" : "without") + " triggers took " +
+                (ns / 1000 / numSentences) + " us per sentence (" + numExpressions + " expressions)");
+        }
+    }
+
     public static void main(String[] args) {
         for (int i = 0; i < 100; i++) {
             // benchmarkRVFLogisticRegression();
@@ -306,6 +366,7 @@ public class Benchmarks {
             benchmarkSGD();
             // benchmarkCRF();
             // testAdjacency();
+            // benchmarkSUTime();
         }
     }
 }
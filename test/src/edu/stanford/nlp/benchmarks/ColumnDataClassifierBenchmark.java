@@ -0,0 +1,80 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import edu.stanford.nlp.classify.ColumnDataClassifier;
+import edu.stanford.nlp.classify.GeneralDataset;
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.util.Pair;
+
+/**
+ * Times {@link ColumnDataClassifier} reading (featurizing) a generated TSV file and
+ * cross-validating on it, with 1, 2, 4... threads, up to the number of processors.
+ * Usage: {@code java edu.stanford.nlp.benchmarks.ColumnDataClassifierBenchmark [numLines [numFolds [maxThreads]]]}
+ */
+public class ColumnDataClassifierBenchmark {
+
+  private ColumnDataClassifierBenchmark() {} // static main
+
+  /** Writes lines of a label and a text of random words, some of which depend on the label. */
+  private static void generate(File file, int numLines) throws IOException {
+    Random r = new Random(4L);
+    String[] labels = { "sports", "politics", "science", "arts" };
+    try (PrintWriter pw = IOUtils.getPrintWriter(file)) {
+      for (int i = 0; i < numLines; i++) {
+        int label = r.nextInt(labels.length);
+        StringBuilder text = new StringBuilder();
+        for (int j = 0, length = 10 + r.nextInt(20); j < length; j++) {
+          if (j > 0) {
+            text.append(' ');
+          }
+          // roughly Zipfian words, shifted towards the label a third of the time
+          int word = (int) Math.exp(r.nextDouble() * Math.log(20000));
+          if (r.nextInt(3) == 0) {
+            word = word * labels.length + label;
+          }
+          text.append("w").append(word);
+        }
+        pw.println(labels[label] + '\t' + text);
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    int numLines = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+    int numFolds = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+    int maxThreads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    File file = File.createTempFile("cdc", ".tsv");
+    file.deleteOnExit();
+    generate(file, numLines);
+
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      Properties props = new Properties();
+      props.setProperty("goldAnswerColumn", "0");
+      props.setProperty("1.useSplitWords", "true");
+      props.setProperty("1.splitWordsRegexp", " ");
+      props.setProperty("1.useSplitWordPairs", "true");
+      props.setProperty("1.useNGrams", "true");
+      props.setProperty("1.maxNGramLeng", "4");
+      props.setProperty("1.usePrefixSuffixNGrams", "true");
+      props.setProperty("crossValidationFolds", Integer.toString(numFolds));
+      props.setProperty("threads", Integer.toString(threads));
+      ColumnDataClassifier cdc = new ColumnDataClassifier(props);
+
+      long before = System.nanoTime();
+      Pair<GeneralDataset<String,String>, List<String[]>> data = cdc.readAndReturnTrainingExamples(file.getPath());
+      double read = BenchmarkTimer.millis(System.nanoTime() - before);
+      before = System.nanoTime();
+      Pair<Double, Double> scores = cdc.crossValidate(data.first(), data.second());
+      double crossValidate = BenchmarkTimer.millis(System.nanoTime() - before);
+      System.out.printf("%d threads: featurizing %.0f ms, cross-validation %.0f ms, total %.0f ms (accuracy %.4f)%n",
+          threads, read, crossValidate, read + crossValidate, scores.first());
+    }
+  }
+
+}
@@ -0,0 +1,126 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * Times reading the word, tag, NER, lemma and index of many {@link CoreLabel}s through the
+ * accessors (which look the keys up by slot) and through get(key) (which scans the keys),
+ * on one thread and on several.  Half of the labels have their keys set in the order of the
+ * tokenizer and the taggers and half in another order, as when labels come from different
+ * sources.  Usage: {@code java edu.stanford.nlp.benchmarks.CoreLabelBenchmark [numTokens [numThreads]]}
+ */
+public class CoreLabelBenchmark {
+
+  private CoreLabelBenchmark() {} // static main
+
+  public static void main(String[] args) throws Exception {
+    int numTokens = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+    int numThreads = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+
+    CoreLabel[] tokens = new CoreLabel[numTokens];
+    for (int i = 0; i < numTokens; i++) {
+      tokens[i] = (i % 2 == 0) ? tokenizerOrder(i) : otherOrder(i);
+    }
+
+    // each timing reads the tokens over and over, so that it takes long enough to measure
+    int repeats = Math.max(1, 4000000 / numTokens);
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      for (int threads : new int[] { 1, numThreads }) {
+        long[] best = BenchmarkTimer.bestNanos(5, 10,
+            () -> read(executor, threads, tokens, repeats, true),
+            () -> read(executor, threads, tokens, repeats, false));
+        double reads = (double) repeats * numTokens;
+        System.out.printf("%d thread(s): accessors %.1f ns/token, get(key) %.1f ns/token%n",
+            threads, best[0] / reads, best[1] / reads);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static CoreLabel tokenizerOrder(int i) {
+    CoreLabel token = new CoreLabel();
+    token.setValue("word" + (i % 1000));
+    token.setWord("word" + (i % 1000));
+    token.setOriginalText("word" + (i % 1000));
+    token.setBeginPosition(6 * i);
+    token.setEndPosition(6 * i + 5);
+    token.setBefore(" ");
+    token.setAfter(" ");
+    token.setIndex(i % 30 + 1);
+    token.setSentIndex(i / 30);
+    token.setTag("NN");
+    token.setLemma("word");
+    token.setNER("O");
+    return token;
+  }
+
+  private static CoreLabel otherOrder(int i) {
+    CoreLabel token = new CoreLabel();
+    token.setNER("O");
+    token.setTag("NN");
+    token.setIndex(i % 30 + 1);
+    token.setSentIndex(i / 30);
+    token.setBefore(" ");
+    token.setAfter(" ");
+    token.setBeginPosition(6 * i);
+    token.setEndPosition(6 * i + 5);
+    token.setOriginalText("word" + (i % 1000));
+    token.setWord("word" + (i % 1000));
+    token.setValue("word" + (i % 1000));
+    token.setLemma("word");  // after the word, as setWord removes the lemma
+    return token;
+  }
+
+  private static long readAccessors(CoreLabel[] tokens, int start, int end) {
+    long sum = 0;
+    for (int i = start; i < end; i++) {
+      CoreLabel token = tokens[i];
+      sum += token.word().length() + token.tag().length() + token.ner().length() + token.lemma().length() + token.index();
+    }
+    return sum;
+  }
+
+  private static long readGet(CoreLabel[] tokens, int start, int end) {
+    long sum = 0;
+    for (int i = start; i < end; i++) {
+      CoreLabel token = tokens[i];
+      sum += token.get(CoreAnnotations.TextAnnotation.class).length()
+          + token.get(CoreAnnotations.PartOfSpeechAnnotation.class).length()
+          + token.get(CoreAnnotations.NamedEntityTagAnnotation.class).length()
+          + token.get(CoreAnnotations.LemmaAnnotation.class).length()
+          + token.get(CoreAnnotations.IndexAnnotation.class);
+    }
+    return sum;
+  }
+
+  /** Reads the tokens, split over the threads, and returns a sum of what was read. */
+  private static double read(ExecutorService executor, int numThreads, CoreLabel[] tokens, int repeats, boolean accessors) throws Exception {
+    List<Future<Long>> futures = new ArrayList<>();
+    for (int t = 0; t < numThreads; t++) {
+      int start = (int) ((long) tokens.length * t / numThreads);
+      int end = (int) ((long) tokens.length * (t + 1) / numThreads);
+      futures.add(executor.submit(() -> {
+        long sum = 0;
+        for (int r = 0; r < repeats; r++) {
+          sum += accessors ? readAccessors(tokens, start, end) : readGet(tokens, start, end);
+        }
+        return sum;
+      }));
+    }
+    long sum = 0;
+    for (Future<Long> future : futures) {
+      sum += future.get();
+    }
+    return sum;
+  }
+
+}
@@ -0,0 +1,101 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.stats.Counters;
+import edu.stanford.nlp.stats.IndexedCounter;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+
+/**
+ * Times the common {@link Counters} operations (building a counter, addInPlace, dotProduct,
+ * L2Norm and normalize) on {@link ClassicCounter}s and on {@link IndexedCounter}s over
+ * one Index.  Usage: {@code java edu.stanford.nlp.benchmarks.CounterBenchmark [numCounters [numKeys]]}
+ */
+public class CounterBenchmark {
+
+  private CounterBenchmark() {} // static main
+
+  public static void main(String[] args) throws Exception {
+    int numCounters = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+    int numKeys = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+
+    // the same keys and counts for both kinds of counter
+    Random r = new Random(10101L);
+    String[] vocabulary = new String[numKeys * 20];
+    for (int i = 0; i < vocabulary.length; i++) {
+      vocabulary[i] = "feature" + i;
+    }
+    String[][] keys = new String[numCounters][numKeys];
+    double[][] values = new double[numCounters][numKeys];
+    for (int i = 0; i < numCounters; i++) {
+      for (int j = 0; j < numKeys; j++) {
+        keys[i][j] = vocabulary[r.nextInt(vocabulary.length)];
+        values[i][j] = r.nextDouble();
+      }
+    }
+
+    Index<String> index = new HashIndex<>();
+    long[] classic = time(ClassicCounter::new, keys, values);
+    long[] indexed = time(() -> new IndexedCounter<>(index), keys, values);
+    String[] names = { "Construction", "Add", "Dot Product", "L2 Norm", "Normalize" };
+    for (int i = 0; i < names.length; i++) {
+      System.out.printf("%s Runtime: ClassicCounter %.2f ms, IndexedCounter %.2f ms%n", names[i],
+          BenchmarkTimer.millis(classic[i]), BenchmarkTimer.millis(indexed[i]));
+    }
+  }
+
+  private static Counter<String>[] build(Supplier<Counter<String>> factory, String[][] keys, double[][] values) {
+    @SuppressWarnings("unchecked")
+    Counter<String>[] counters = new Counter[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      counters[i] = factory.get();
+      for (int j = 0; j < keys[i].length; j++) {
+        counters[i].incrementCount(keys[i][j], values[i][j]);
+      }
+    }
+    return counters;
+  }
+
+  /** The best times of building the counters and of each operation over all of them. */
+  private static long[] time(Supplier<Counter<String>> factory, String[][] keys, double[][] values) throws Exception {
+    Counter<String>[] counters = build(factory, keys, values);
+    Counter<String> sum = factory.get();
+    for (Counter<String> c : counters) {
+      Counters.addInPlace(sum, c);
+    }
+    return BenchmarkTimer.bestNanos(5, 10,
+        () -> build(factory, keys, values)[0].totalCount(),
+        () -> {
+          Counter<String> total = factory.get();
+          for (Counter<String> c : counters) {
+            Counters.addInPlace(total, c);
+          }
+          return total.totalCount();
+        },
+        () -> {
+          double dotProduct = 0.0;
+          for (Counter<String> c : counters) {
+            dotProduct += Counters.dotProduct(c, counters[0]) + Counters.dotProduct(sum, c);
+          }
+          return dotProduct;
+        },
+        () -> {
+          double norm = 0.0;
+          for (Counter<String> c : counters) {
+            norm += Counters.L2Norm(c);
+          }
+          return norm;
+        },
+        () -> {
+          for (Counter<String> c : counters) {
+            Counters.normalize(c);
+          }
+          return counters[0].totalCount();
+        });
+  }
+
+}
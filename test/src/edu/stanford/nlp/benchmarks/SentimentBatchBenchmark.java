@@ -0,0 +1,102 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
+import edu.stanford.nlp.sentiment.CollapseUnaryTransformer;
+import edu.stanford.nlp.sentiment.RNNOptions;
+import edu.stanford.nlp.sentiment.SentimentBatchEvaluator;
+import edu.stanford.nlp.sentiment.SentimentCostAndGradient;
+import edu.stanford.nlp.sentiment.SentimentModel;
+import edu.stanford.nlp.trees.Tree;
+
+/**
+ * Times running a randomly initialized sentiment model over random binary trees, one tree at a
+ * time with {@link SentimentCostAndGradient#forwardPropagateTree} and all at once with a
+ * {@link SentimentBatchEvaluator}, and checks that they predict the same classes.
+ * Usage: {@code java edu.stanford.nlp.benchmarks.SentimentBatchBenchmark [numTrees [numHid]]}
+ */
+public class SentimentBatchBenchmark {
+
+  private SentimentBatchBenchmark() {} // static main
+
+  /** Returns a random binary tree in the sentiment treebank format over the words. */
+  public static Tree randomTree(Random random, int length, int vocabularySize) {
+    StringBuilder sb = new StringBuilder();
+    randomTree(random, length, vocabularySize, sb);
+    return new CollapseUnaryTransformer().transformTree(Tree.valueOf(sb.toString()));
+  }
+
+  private static void randomTree(Random random, int length, int vocabularySize, StringBuilder sb) {
+    sb.append('(').append(random.nextInt(5)).append(' ');
+    if (length == 1) {
+      sb.append("w").append(random.nextInt(vocabularySize));
+    } else {
+      int split = 1 + random.nextInt(length - 1);
+      randomTree(random, split, vocabularySize, sb);
+      sb.append(' ');
+      randomTree(random, length - split, vocabularySize, sb);
+    }
+    sb.append(')');
+  }
+
+  /** Returns a random model with a vector for each word the trees use. */
+  public static SentimentModel randomModel(List<Tree> trees, int numHid) {
+    RNNOptions op = new RNNOptions();
+    op.numHid = numHid;
+    op.randomSeed = 1234;
+    return new SentimentModel(op, trees);
+  }
+
+  public static void main(String[] args) throws Exception {
+    int numTrees = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+    int numHid = (args.length > 1) ? Integer.parseInt(args[1]) : 25;
+    Random random = new Random(1234L);
+    List<Tree> trees = new ArrayList<>();
+    for (int i = 0; i < numTrees; i++) {
+      trees.add(randomTree(random, 5 + random.nextInt(40), 5000));
+    }
+    SentimentModel model = randomModel(trees, numHid);
+    SentimentCostAndGradient scorer = new SentimentCostAndGradient(model, null);
+    SentimentBatchEvaluator evaluator = new SentimentBatchEvaluator(model);
+
+    long[] best = BenchmarkTimer.bestNanos(3, 5,
+        () -> {
+          for (Tree tree : trees) {
+            scorer.forwardPropagateTree(tree);
+          }
+          return RNNCoreAnnotations.getPredictedClass(trees.get(0));
+        },
+        () -> {
+          evaluator.forwardPropagateTrees(trees);
+          return RNNCoreAnnotations.getPredictedClass(trees.get(0));
+        });
+
+    for (Tree tree : trees) {
+      scorer.forwardPropagateTree(tree);
+    }
+    List<Integer> classes = new ArrayList<>();
+    for (Tree tree : trees) {
+      for (Tree node : tree) {
+        if ( ! node.isLeaf()) {
+          classes.add(RNNCoreAnnotations.getPredictedClass(node));
+        }
+      }
+    }
+    evaluator.forwardPropagateTrees(trees);
+    int different = 0;
+    int n = 0;
+    for (Tree tree : trees) {
+      for (Tree node : tree) {
+        if ( ! node.isLeaf() && RNNCoreAnnotations.getPredictedClass(node) != classes.get(n++)) {
+          different++;
+        }
+      }
+    }
+    System.out.printf("One tree at a time %.1f ms, batched %.1f ms; %d predictions differ%n",
+        BenchmarkTimer.millis(best[0]), BenchmarkTimer.millis(best[1]), different);
+  }
+
+}
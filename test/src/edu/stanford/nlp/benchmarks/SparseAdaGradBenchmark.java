@@ -0,0 +1,113 @@
+package edu.stanford.nlp.benchmarks;
+
+import java.util.Random;
+
+import edu.stanford.nlp.optimization.SparseAdaGradMinimizer;
+import edu.stanford.nlp.optimization.SparseOnlineFunction;
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+
+/**
+ * Times {@link SparseAdaGradMinimizer} on a synthetic sparse logistic regression problem, on one
+ * thread and Hogwild style on several, and prints the objective reached by each.
+ * Usage: {@code java edu.stanford.nlp.benchmarks.SparseAdaGradBenchmark [numData [numFeatures [numPasses]]]}
+ */
+public class SparseAdaGradBenchmark {
+
+  private SparseAdaGradBenchmark() {} // static main
+
+  /**
+   * Logistic regression over binary features, each datum having a few features out of many.
+   * Only reads the weights, so is threadsafe.
+   */
+  public static class SparseLogisticFunction implements SparseOnlineFunction<Integer> {
+
+    private final int[][] features;
+    private final boolean[] labels;
+
+    /** Makes data whose labels come from random weights of the features, with some noise. */
+    public SparseLogisticFunction(int numData, int numFeatures, int featuresPerDatum, Random r) {
+      double[] trueWeights = new double[numFeatures];
+      for (int i = 0; i < numFeatures; i++) {
+        trueWeights[i] = r.nextGaussian();
+      }
+      features = new int[numData][featuresPerDatum];
+      labels = new boolean[numData];
+      for (int d = 0; d < numData; d++) {
+        double score = 0.0;
+        for (int j = 0; j < featuresPerDatum; j++) {
+          features[d][j] = r.nextInt(numFeatures);
+          score += trueWeights[features[d][j]];
+        }
+        labels[d] = score + 0.5 * r.nextGaussian() > 0;
+      }
+    }
+
+    private double margin(Counter<Integer> x, int d) {
+      double score = 0.0;
+      for (int feature : features[d]) {
+        score += x.getCount(feature);
+      }
+      return labels[d] ? score : -score;
+    }
+
+    @Override
+    public double valueAt(Counter<Integer> x, int[] selectedData) {
+      double value = 0.0;
+      for (int d : selectedData) {
+        value += Math.log1p(Math.exp(-margin(x, d)));
+      }
+      return value;
+    }
+
+    @Override
+    public Counter<Integer> derivativeAt(Counter<Integer> x, int[] selectedData) {
+      Counter<Integer> derivative = new ClassicCounter<>();
+      for (int d : selectedData) {
+        double g = -1.0 / (1.0 + Math.exp(margin(x, d)));
+        if ( ! labels[d]) {
+          g = -g;
+        }
+        for (int feature : features[d]) {
+          derivative.incrementCount(feature, g);
+        }
+      }
+      return derivative;
+    }
+
+    /** The objective over all the data. */
+    public double valueAt(Counter<Integer> x) {
+      double value = 0.0;
+      for (int d = 0; d < features.length; d++) {
+        value += Math.log1p(Math.exp(-margin(x, d)));
+      }
+      return value;
+    }
+
+    @Override
+    public int dataSize() {
+      return features.length;
+    }
+  }
+
+  public static void main(String[] args) {
+    int numData = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+    int numFeatures = (args.length > 1) ? Integer.parseInt(args[1]) : 100000;
+    int numPasses = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+    SparseLogisticFunction function = new SparseLogisticFunction(numData, numFeatures, 20, new Random(2011L));
+
+    int processors = Runtime.getRuntime().availableProcessors();
+    for (int numThreads = 1; numThreads <= processors; numThreads *= 2) {
+      SparseAdaGradMinimizer<Integer, SparseLogisticFunction> minimizer =
+          new SparseAdaGradMinimizer<>(numPasses, 0.1, 10, 0.0, 0.0);
+      minimizer.quiet = true;
+      minimizer.setNumThreads(numThreads);
+      long before = System.nanoTime();
+      Counter<Integer> x = minimizer.minimize(function, new ClassicCounter<>());
+      double time = BenchmarkTimer.millis(System.nanoTime() - before);
+      System.out.printf("%d threads: %.0f ms, %.0f data/s, objective %.4f%n", numThreads, time,
+          1000.0 * numData * numPasses / time, function.valueAt(x) / numData);
+    }
+  }
+
+}
@@ -0,0 +1,86 @@
+package edu.stanford.nlp.classify;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+import junit.framework.TestCase;
+
+import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.Triple;
+
+/**
+ * Tests that featurizing and cross-validating on several threads gives the same datasets and
+ * scores as on one, in ColumnDataClassifier and in CrossValidator.
+ */
+public class ColumnDataClassifierTest extends TestCase {
+
+  private static final String[] WORDS = { "good", "bad", "great", "awful", "fine", "the", "movie", "was", "not", "plot", "acting", "a" };
+
+  /** Writes a TSV file of labels and sentences, with enough lines for several featurizing chunks. */
+  private static File trainFile(int numLines) throws Exception {
+    File file = File.createTempFile("cdc", ".tsv");
+    file.deleteOnExit();
+    Random random = new Random(7);
+    try (PrintWriter pw = new PrintWriter(file, "utf-8")) {
+      for (int i = 0; i < numLines; i++) {
+        StringBuilder sentence = new StringBuilder();
+        int score = 0;
+        for (int j = 0, len = 3 + random.nextInt(8); j < len; j++) {
+          int word = random.nextInt(WORDS.length);
+          score += (word < 5) ? ((word % 2 == 0) ? 1 : -1) : 0;
+          sentence.append(j == 0 ? "" : " ").append(WORDS[word]).append(j == len - 1 ? "." : "");
+        }
+        pw.println(((score > 0 || (score == 0 && random.nextBoolean())) ? "pos" : "neg") + '\t' + sentence);
+      }
+    }
+    return file;
+  }
+
+  private static ColumnDataClassifier classifier(int threads) {
+    Properties props = new Properties();
+    props.setProperty("goldAnswerColumn", "0");
+    props.setProperty("1.splitWordsWithPTBTokenizer", "true");
+    props.setProperty("1.useSplitWords", "true");
+    props.setProperty("1.useSplitWordPairs", "true");
+    props.setProperty("1.useNGrams", "true");
+    props.setProperty("1.maxNGramLeng", "3");
+    props.setProperty("crossValidationFolds", "5");
+    props.setProperty("threads", Integer.toString(threads));
+    return new ColumnDataClassifier(props);
+  }
+
+  public void testSameResultsOnThreads() throws Exception {
+    String file = trainFile(1000).getPath();
+    Pair<GeneralDataset<String,String>, List<String[]>> expected = classifier(1).readAndReturnTrainingExamples(file);
+    Pair<Double,Double> expectedScores = classifier(1).crossValidate(expected.first(), expected.second());
+    for (int threads : new int[] { 2, 4 }) {
+      ColumnDataClassifier cdc = classifier(threads);
+      Pair<GeneralDataset<String,String>, List<String[]>> data = cdc.readAndReturnTrainingExamples(file);
+      assertEquals(expected.first().size(), data.first().size());
+      assertEquals(expected.first().labelIndex.objectsList(), data.first().labelIndex.objectsList());
+      assertEquals(expected.first().featureIndex.objectsList(), data.first().featureIndex.objectsList());
+      for (int i = 0; i < expected.first().size(); i++) {
+        assertEquals(expected.first().getDatum(i).label(), data.first().getDatum(i).label());
+        assertEquals(expected.first().getDatum(i).asFeatures(), data.first().getDatum(i).asFeatures());
+      }
+      Pair<Double,Double> scores = cdc.crossValidate(data.first(), data.second());
+      assertEquals(expectedScores.first(), scores.first());
+      assertEquals(expectedScores.second(), scores.second());
+    }
+  }
+
+  public void testCrossValidatorOnThreads() throws Exception {
+    GeneralDataset<String,String> data = classifier(1).readTrainingExamples(trainFile(300).getPath());
+    CrossValidator<String,String> validator = new CrossValidator<>(data, 7);
+    ToDoubleFunction<Triple<GeneralDataset<String,String>,GeneralDataset<String,String>,CrossValidator.SavedState>> accuracy = fold -> {
+      LinearClassifier<String,String> cl = new LinearClassifierFactory<String,String>().trainClassifier(fold.first());
+      return cl.evaluateAccuracy(fold.second());
+    };
+    assertEquals(validator.computeAverage(accuracy), validator.computeAverage(accuracy, 3));
+  }
+
+}
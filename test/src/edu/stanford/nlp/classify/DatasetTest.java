@@ -8,11 +8,57 @@ import org.junit.Test;
 import edu.stanford.nlp.ling.BasicDatum;
 import edu.stanford.nlp.ling.Datum;
 import edu.stanford.nlp.stats.Counter;
+import edu.stanford.nlp.util.concurrent.ConcurrentHashIndex;
 
 
 /** @author Christopher Manning */
 public class DatasetTest {
 
+  @Test
+  public void testAddFromManyThreads() throws InterruptedException {
+    Dataset<String, String> data = new Dataset<>(10, new ConcurrentHashIndex<>(), new ConcurrentHashIndex<>());
+    RVFDataset<String, String> rvfData = new RVFDataset<>(10, new ConcurrentHashIndex<>(), new ConcurrentHashIndex<>());
+    int numThreads = 4;
+    int numDatums = 2000;
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int thread = t;
+      threads[t] = new Thread(() -> {
+        for (int i = thread; i < numDatums; i += numThreads) {
+          Datum<String, String> datum = new BasicDatum<>(Arrays.asList("f" + (i % 300), "g" + (i % 7), "datum" + i), "l" + (i % 3));
+          data.add(datum);
+          rvfData.add(datum);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (GeneralDataset<String, String> dataset : Arrays.<GeneralDataset<String, String>>asList(data, rvfData)) {
+      Assert.assertEquals(numDatums, dataset.size());
+      Assert.assertEquals(3, dataset.numClasses());
+      Assert.assertEquals(300 + 7 + numDatums, dataset.numFeatures());
+      boolean[] seen = new boolean[numDatums];
+      for (int d = 0; d < numDatums; d++) {
+        Datum<String, String> datum = dataset.getDatum(d);
+        String id = null;
+        for (String feature : datum.asFeatures()) {
+          if (feature.startsWith("datum")) {
+            id = feature;
+          }
+        }
+        int i = Integer.parseInt(id.substring(5));
+        Assert.assertFalse(seen[i]);
+        seen[i] = true;
+        Assert.assertEquals("l" + (i % 3), datum.label());
+        Assert.assertTrue(datum.asFeatures().contains("f" + (i % 300)));
+        Assert.assertTrue(datum.asFeatures().contains("g" + (i % 7)));
+        Assert.assertEquals(3, datum.asFeatures().size());
+      }
+    }
+  }
+
   @Test
   public void testDataset() {
     Dataset<String, String> data = new Dataset<>();
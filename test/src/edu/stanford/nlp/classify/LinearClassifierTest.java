@@ -0,0 +1,80 @@
+package edu.stanford.nlp.classify;
+
+import java.util.Arrays;
+
+import edu.stanford.nlp.ling.BasicDatum;
+import edu.stanford.nlp.ling.Datum;
+import edu.stanford.nlp.stats.Counter;
+import junit.framework.TestCase;
+
+/**
+ * Tests that the {@code int[]} scoring methods of LinearClassifier give the same scores as
+ * the Counter ones.
+ */
+public class LinearClassifierTest extends TestCase {
+
+  private static final double TOL = 1e-12;
+
+  private static LinearClassifier<String, String> classifier() {
+    Dataset<String, String> data = new Dataset<>();
+    data.add(new BasicDatum<>(Arrays.asList("a", "b"), "X"));
+    data.add(new BasicDatum<>(Arrays.asList("b", "c"), "Y"));
+    data.add(new BasicDatum<>(Arrays.asList("c", "d"), "Z"));
+    data.add(new BasicDatum<>(Arrays.asList("a", "d"), "X"));
+    return new LinearClassifierFactory<String, String>().trainClassifier(data);
+  }
+
+  private static void assertScores(Counter<String> expected, LinearClassifier<String, String> lc, double[] scores, int offset) {
+    for (String label : lc.labels()) {
+      assertEquals(expected.getCount(label), scores[offset + lc.labelIndex().indexOf(label)], TOL);
+    }
+  }
+
+  public void testSameAsCounter() {
+    LinearClassifier<String, String> lc = classifier();
+    Datum<String, String> datum = new BasicDatum<>(Arrays.asList("a", "c", "unseen"));
+    int[] features = lc.featureIndicesOf(datum.asFeatures());
+    assertEquals(2, features.length);
+    double[] scores = new double[lc.labelIndex().size()];
+    lc.scoresOf(features, scores);
+    assertScores(lc.scoresOf(datum), lc, scores, 0);
+    assertEquals(lc.scoresOf(datum), lc.scoresOf(features));
+  }
+
+  public void testValues() {
+    LinearClassifier<String, String> lc = classifier();
+    int[] features = lc.featureIndicesOf(Arrays.asList("b", "d"));
+    double[] values = { 2.0, -0.5 };
+    double[] scores = new double[lc.labelIndex().size()];
+    lc.scoresOf(features, values, scores);
+    for (String label : lc.labels()) {
+      double expected = 2.0 * lc.weight("b", label) - 0.5 * lc.weight("d", label);
+      assertEquals(expected, scores[lc.labelIndex().indexOf(label)], TOL);
+    }
+  }
+
+  public void testBatch() {
+    LinearClassifier<String, String> lc = classifier();
+    int numLabels = lc.labelIndex().size();
+    int[][] data = { lc.featureIndicesOf(Arrays.asList("a")), lc.featureIndicesOf(Arrays.asList("b", "c", "d")), {} };
+    double[] scores = new double[data.length * numLabels];
+    lc.scoresOf(data, null, scores);
+    for (int i = 0; i < data.length; i++) {
+      assertScores(lc.scoresOf(data[i]), lc, scores, i * numLabels);
+    }
+  }
+
+  public void testWeightsChangedInPlace() {
+    LinearClassifier<String, String> lc = classifier();
+    int[] features = lc.featureIndicesOf(Arrays.asList("a"));
+    double[] scores = new double[lc.labelIndex().size()];
+    lc.scoresOf(features, scores);
+    double[][] weights = lc.weights();
+    weights[features[0]][0] += 1.0;
+    double[] newScores = new double[scores.length];
+    lc.scoresOf(features, newScores);
+    assertEquals(scores[0] + 1.0, newScores[0], TOL);
+    assertScores(lc.scoresOf(features), lc, newScores, 0);
+  }
+
+}
@@ -0,0 +1,139 @@
+package edu.stanford.nlp.classify;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import edu.stanford.nlp.ling.BasicDatum;
+import edu.stanford.nlp.ling.RVFDatum;
+import edu.stanford.nlp.stats.ClassicCounter;
+
+/**
+ * Tests that a MappedDataset reads back what was written to it, and trains the same
+ * classifier as the data in memory.
+ */
+public class MappedDatasetTest extends TestCase {
+
+  private static Dataset<String, String> dataset() {
+    Dataset<String, String> data = new Dataset<>();
+    data.add(new BasicDatum<>(Arrays.asList("fever", "cough", "congestion"), "cold"));
+    data.add(new BasicDatum<>(Arrays.asList("fever", "cough", "nausea"), "flu"));
+    data.add(new BasicDatum<>(Arrays.asList("cough", "congestion"), "cold"));
+    data.add(new BasicDatum<>(Arrays.asList("cough", "congestion", "cough"), "cold"));
+    data.add(new BasicDatum<>(Arrays.asList("fever", "nausea"), "flu"));
+    data.add(new BasicDatum<>(Arrays.asList("cough", "sore throat"), "cold"));
+    data.add(new BasicDatum<>(Arrays.asList("fever", "aches"), "flu"));
+    return data;
+  }
+
+  private static String tempFile() throws IOException {
+    File file = File.createTempFile("mapped", ".dataset");
+    file.deleteOnExit();
+    new File(file.getPath() + ".index").deleteOnExit();
+    return file.getPath();
+  }
+
+  private static MappedDataset<String, String> mapped(GeneralDataset<String, String> data, boolean realValued) throws IOException {
+    return mapped(data, realValued, tempFile());
+  }
+
+  /** Writes the dataset to a file with the same indices, and maps it. */
+  private static MappedDataset<String, String> mapped(GeneralDataset<String, String> data, boolean realValued, String path) throws IOException {
+    MappedDataset.Writer<String, String> writer =
+        new MappedDataset.Writer<>(path, realValued, data.labelIndex(), data.featureIndex());
+    for (int i = 0; i < data.size(); i++) {
+      writer.add(realValued ? data.getRVFDatum(i) : data.getDatum(i));
+    }
+    assertEquals(data.size(), writer.size());
+    return writer.finish();
+  }
+
+  public void testReadBack() throws IOException {
+    Dataset<String, String> data = dataset();
+    String path = tempFile();
+    MappedDataset<String, String> mapped = mapped(data, false, path);
+    assertFalse(mapped.isRealValued());
+    assertEquals(data.size(), mapped.size());
+    assertTrue(Arrays.equals(data.getLabelsArray(), mapped.getLabelsArray()));
+    assertTrue(Arrays.deepEquals(data.getDataArray(), mapped.getDataArray()));
+    assertNull(mapped.getValuesArray());
+    for (int i = 0; i < data.size(); i++) {
+      assertEquals(data.getDatum(i).asFeatures(), mapped.getDatum(i).asFeatures());
+      assertEquals(data.getDatum(i).label(), mapped.getDatum(i).label());
+    }
+    assertEquals(data.numFeatureTokens(), mapped.numFeatureTokens());
+    assertEquals(data.numDatumsPerLabel(), mapped.numDatumsPerLabel());
+
+    // and again from the saved indices
+    MappedDataset<String, String> loaded = MappedDataset.load(path);
+    assertEquals(data.featureIndex().objectsList(), loaded.featureIndex().objectsList());
+    assertTrue(Arrays.deepEquals(data.getDataArray(), loaded.getDataArray()));
+    loaded.close();
+    mapped.close();
+  }
+
+  public void testRealValues() throws IOException {
+    RVFDataset<String, String> data = new RVFDataset<>();
+    ClassicCounter<String> c1 = new ClassicCounter<>();
+    c1.setCount("height", 1.8);
+    c1.setCount("weight", -0.5);
+    data.add(new RVFDatum<>(c1, "tall"));
+    ClassicCounter<String> c2 = new ClassicCounter<>();
+    c2.setCount("height", 1.5);
+    data.add(new RVFDatum<>(c2, "short"));
+    MappedDataset<String, String> mapped = mapped(data, true);
+    assertTrue(mapped.isRealValued());
+    for (int i = 0; i < data.size(); i++) {
+      assertEquals(data.getRVFDatum(i).asFeaturesCounter(), mapped.getRVFDatum(i).asFeaturesCounter());
+    }
+    mapped.close();
+  }
+
+  public void testSameObjective() throws IOException {
+    Dataset<String, String> data = dataset();
+    MappedDataset<String, String> mapped = mapped(data, false);
+    LogPrior prior = new LogPrior(LogPrior.LogPriorType.QUADRATIC);
+    LogConditionalObjectiveFunction<String, String> inMemory = new LogConditionalObjectiveFunction<>(data, prior);
+    MappedLogConditionalObjectiveFunction<String, String> fromDisk = new MappedLogConditionalObjectiveFunction<>(mapped, prior);
+    assertEquals(inMemory.domainDimension(), fromDisk.domainDimension());
+
+    Random r = new Random(3L);
+    double[] x = new double[fromDisk.domainDimension()];
+    for (int i = 0; i < x.length; i++) {
+      x[i] = r.nextGaussian();
+    }
+    assertEquals(inMemory.valueAt(x), fromDisk.valueAt(x), 1e-10);
+    double[] expected = inMemory.derivativeAt(x);
+    double[] actual = fromDisk.derivativeAt(x);
+    for (int i = 0; i < x.length; i++) {
+      assertEquals(expected[i], actual[i], 1e-10);
+    }
+
+    // the stochastic gradients of a split of the data add up to the full one
+    fromDisk.calculateStochastic(x, null, new int[] { 0, 1, 2 });
+    double value = fromDisk.lastValue();
+    double[] derivative = fromDisk.getDerivative().clone();
+    fromDisk.calculateStochastic(x, null, new int[] { 3, 4, 5, 6 });
+    assertEquals(inMemory.valueAt(x), value + fromDisk.lastValue(), 1e-10);
+    for (int i = 0; i < x.length; i++) {
+      assertEquals(expected[i], derivative[i] + fromDisk.getDerivative()[i], 1e-10);
+    }
+    mapped.close();
+  }
+
+  public void testTrain() throws IOException {
+    Dataset<String, String> data = dataset();
+    MappedDataset<String, String> mapped = mapped(data, false);
+    LinearClassifier<String, String> inMemory = new LinearClassifierFactory<String, String>().trainClassifier(data);
+    LinearClassifier<String, String> fromDisk = new LinearClassifierFactory<String, String>().trainClassifier(mapped);
+    for (int i = 0; i < data.size(); i++) {
+      assertEquals(inMemory.classOf(data.getDatum(i)), fromDisk.classOf(data.getDatum(i)));
+      assertEquals(inMemory.scoreOf(data.getDatum(i), "flu"), fromDisk.scoreOf(data.getDatum(i), "flu"), 1e-3);
+    }
+    mapped.close();
+  }
+
+}
@@ -0,0 +1,224 @@
+package edu.stanford.nlp.coref;
+
+import java.util.*;
+
+import edu.stanford.nlp.coref.data.CorefChain;
+import edu.stanford.nlp.coref.data.CorefCluster;
+import edu.stanford.nlp.coref.data.Dictionaries;
+import edu.stanford.nlp.coref.data.Document;
+import edu.stanford.nlp.coref.data.DocumentMaker;
+import edu.stanford.nlp.coref.data.Mention;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.IntTuple;
+import edu.stanford.nlp.util.Pair;
+import junit.framework.TestCase;
+
+/**
+ * Tests that resolving coreference a window of sentences at a time finds the same chains as
+ * resolving the whole document, for an algorithm which only looks a few mentions back.
+ */
+public class CorefSystemTest extends TestCase {
+
+  private static final String[] WORDS = { "he", "she", "it", "dog", "cat" };
+  private static final int MAX_MENTION_DISTANCE = 4;
+
+  /**
+   * Makes a document of the mentions as the DocumentPreprocessor would, without the features:
+   * numbering all the mentions, then dropping those with the same span as the mention before
+   * them (as the mention reordering does), and if dropLastSentence, the mentions of the last
+   * sentence of the document.
+   */
+  private static class SimpleDocumentMaker extends DocumentMaker {
+
+    private final boolean dropLastSentence;
+
+    SimpleDocumentMaker() throws Exception {
+      this(false);
+    }
+
+    SimpleDocumentMaker(boolean dropLastSentence) throws Exception {
+      super(new Properties(), null);
+      this.dropLastSentence = dropLastSentence;
+    }
+
+    @Override
+    public Document makeDocument(Annotation anno) {
+      List<List<Mention>> mentions = new ArrayList<>();
+      for (CoreMap sentence : anno.get(CoreAnnotations.SentencesAnnotation.class)) {
+        mentions.add(sentence.get(CorefCoreAnnotations.CorefMentionsAnnotation.class));
+      }
+      Document document = new Document(anno, mentions, null);
+      int id = 0;
+      for (List<Mention> sentenceMentions : mentions) {
+        for (Mention m : sentenceMentions) {
+          m.mentionID = id++;
+        }
+      }
+      int num = 0;
+      for (int i = 0; i < mentions.size(); i++) {
+        List<Mention> kept = new ArrayList<>();
+        for (Mention m : mentions.get(i)) {
+          Mention last = kept.isEmpty() ? null : kept.get(kept.size() - 1);
+          if ((dropLastSentence && i == mentions.size() - 1) || (last != null && last.startIndex == m.startIndex && last.endIndex == m.endIndex)) {
+            continue;
+          }
+          m.mentionNum = num++;
+          m.corefClusterID = m.mentionID;
+          m.sentNum = i;
+          document.predictedMentionsByID.put(m.mentionID, m);
+          document.positions.put(m, new IntTuple(new int[] { i, kept.size() }));
+          document.corefClusters.put(m.mentionID, new CorefCluster(m.mentionID, new HashSet<>(Collections.singletonList(m))));
+          kept.add(m);
+        }
+        mentions.set(i, kept);
+      }
+      return document;
+    }
+
+  }
+
+  /** Links each mention to the closest mention with the same head a few mentions back. */
+  private static class HeadMatchAlgorithm implements CorefAlgorithm {
+
+    @Override
+    public void runCoref(Document document) {
+      List<Mention> mentions = new ArrayList<>(document.predictedMentionsByID.values());
+      mentions.sort((m1, m2) -> Integer.compare(m1.mentionNum, m2.mentionNum));
+      for (int i = 0; i < mentions.size(); i++) {
+        Mention m = mentions.get(i);
+        for (int j = i - 1; j >= 0 && j >= i - MAX_MENTION_DISTANCE; j--) {
+          if (mentions.get(j).headString.equals(m.headString)) {
+            CorefUtils.mergeCoreferenceClusters(new Pair<>(mentions.get(j).mentionID, m.mentionID), document);
+            break;
+          }
+        }
+      }
+    }
+
+  }
+
+  /** A random document; if duplicates, some mentions are given twice (and dropped the second time). */
+  private static Annotation randomDocument(Random random, int numSentences, boolean duplicates) {
+    List<CoreMap> sentences = new ArrayList<>();
+    for (int i = 0; i < numSentences; i++) {
+      List<CoreLabel> tokens = new ArrayList<>();
+      List<Mention> mentions = new ArrayList<>();
+      int numMentions = random.nextInt(4);
+      for (int j = 0; j < numMentions; j++) {
+        CoreLabel token = new CoreLabel();
+        token.setWord(WORDS[random.nextInt(WORDS.length)]);
+        token.setValue(token.word());
+        tokens.add(token);
+        Mention m = new Mention(-1, j, j + 1, tokens, null, null, Collections.singletonList(token));
+        m.headWord = token;
+        m.headIndex = j;
+        m.headString = token.word();
+        m.mentionType = Dictionaries.MentionType.NOMINAL;
+        m.animacy = Dictionaries.Animacy.UNKNOWN;
+        m.gender = Dictionaries.Gender.UNKNOWN;
+        m.number = Dictionaries.Number.UNKNOWN;
+        mentions.add(m);
+        if (duplicates && random.nextInt(3) == 0) {
+          Mention duplicate = new Mention(-1, j, j + 1, tokens, null, null, Collections.singletonList(token));
+          duplicate.headWord = token;
+          duplicate.headIndex = j;
+          duplicate.headString = token.word();
+          mentions.add(duplicate);
+        }
+      }
+      CoreMap sentence = new ArrayCoreMap();
+      sentence.set(CoreAnnotations.TokensAnnotation.class, tokens);
+      sentence.set(CorefCoreAnnotations.CorefMentionsAnnotation.class, mentions);
+      sentences.add(sentence);
+    }
+    Annotation document = new Annotation("");
+    document.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+    return document;
+  }
+
+  /** The chains as the positions of their mentions, and whether their mentions and ids agree. */
+  private static Set<List<String>> chains(Annotation document) {
+    Set<List<String>> chains = new HashSet<>();
+    for (Map.Entry<Integer, CorefChain> entry : document.get(CorefCoreAnnotations.CorefChainAnnotation.class).entrySet()) {
+      List<String> chain = new ArrayList<>();
+      for (CorefChain.CorefMention m : entry.getValue().getMentionsInTextualOrder()) {
+        assertEquals(entry.getKey().intValue(), m.corefClusterID);
+        chain.add(m.mentionID + "@" + m.position + "/" + m.sentNum + ":" + m.mentionSpan);
+      }
+      chains.add(chain);
+    }
+    return chains;
+  }
+
+  private static void assertSameChainsInWindows(boolean duplicates) throws Exception {
+    // with duplicates, up to half of the mentions before a window are dropped, so it needs twice the context
+    int maxMentionDistance = duplicates ? 2 * MAX_MENTION_DISTANCE : MAX_MENTION_DISTANCE;
+    for (int trial = 0; trial < 20; trial++) {
+      int numSentences = 1 + new Random(trial).nextInt(60);
+      Annotation whole = randomDocument(new Random(trial), numSentences, duplicates);
+      new CorefSystem(new SimpleDocumentMaker(), new HeadMatchAlgorithm(), true, false).annotate(whole);
+      Set<List<String>> expected = chains(whole);
+      for (int windowSize : new int[] { 1, 3, 10 }) {
+        Annotation windowed = randomDocument(new Random(trial), numSentences, duplicates);
+        new CorefSystem(new SimpleDocumentMaker(), new HeadMatchAlgorithm(), true, false, windowSize, maxMentionDistance).annotate(windowed);
+        assertEquals("trial " + trial + ", window " + windowSize, expected, chains(windowed));
+      }
+    }
+  }
+
+  public void testSameChainsInWindows() throws Exception {
+    assertSameChainsInWindows(false);
+  }
+
+  public void testSameIdsWithDroppedMentions() throws Exception {
+    assertSameChainsInWindows(true);
+  }
+
+  /**
+   * The mentions of the last sentence of each window are dropped by their own window, but are
+   * context for the next windows, whose algorithm gives them cluster ids; those mustn't be left
+   * on them.
+   */
+  public void testNoClusterIdsForDroppedMentions() throws Exception {
+    for (int trial = 0; trial < 20; trial++) {
+      Annotation windowed = randomDocument(new Random(trial), 20, false);
+      new CorefSystem(new SimpleDocumentMaker(true), new HeadMatchAlgorithm(), false, false, 3, 2 * MAX_MENTION_DISTANCE).annotate(windowed);
+      Map<Integer, CorefChain> chains = windowed.get(CorefCoreAnnotations.CorefChainAnnotation.class);
+      int numChainMentions = 0;
+      for (CorefChain chain : chains.values()) {
+        numChainMentions += chain.getMentionsInTextualOrder().size();
+      }
+      int numClusteredMentions = 0;
+      for (CoreMap sentence : windowed.get(CoreAnnotations.SentencesAnnotation.class)) {
+        for (Mention m : sentence.get(CorefCoreAnnotations.CorefMentionsAnnotation.class)) {
+          if (m.corefClusterID != -1) {
+            assertTrue("trial " + trial, chains.containsKey(m.corefClusterID));
+            numClusteredMentions++;
+          }
+        }
+      }
+      assertEquals("trial " + trial, numChainMentions, numClusteredMentions);
+    }
+  }
+
+  public void testNoWindowsWithGoldMentions() throws Exception {
+    DocumentMaker goldMaker = new SimpleDocumentMaker() {
+      @Override
+      public boolean usesGoldMentions() {
+        return true;
+      }
+    };
+    CorefSystem system = new CorefSystem(goldMaker, new HeadMatchAlgorithm(), true, false, 2, MAX_MENTION_DISTANCE);
+    try {
+      system.annotate(randomDocument(new Random(1), 5, false));
+      fail("Expected gold mentions to be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+}
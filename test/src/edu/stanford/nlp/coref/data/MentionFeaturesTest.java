@@ -0,0 +1,81 @@
+package edu.stanford.nlp.coref.data;
+
+import java.util.*;
+
+import edu.stanford.nlp.coref.CorefRules;
+import edu.stanford.nlp.ling.CoreLabel;
+import junit.framework.TestCase;
+
+/**
+ * Tests that the checks on the cached features of mentions give the same answers as the
+ * {@link CorefRules} checks on the mentions themselves.
+ */
+public class MentionFeaturesTest extends TestCase {
+
+  private static final String[][] WORDS = {
+      { "the", "DT" }, { "East", "NNP" }, { "east", "JJ" }, { "big", "JJ" }, { "Big", "JJ" }, { "bank", "NN" },
+      { "Bank", "NNP" }, { "three", "CD" }, { "3", "CD" }, { "3.5", "CD" }, { "runs", "VBZ" }, { ",", "," },
+      { "which", "WDT" }, { "lower", "JJR" }, { "of", "IN" },
+  };
+
+  private static Mention randomMention(Random random, int id) {
+    List<CoreLabel> sentence = new ArrayList<>();
+    int length = 1 + random.nextInt(6);
+    for (int i = 0; i < length; i++) {
+      String[] word = WORDS[random.nextInt(WORDS.length)];
+      CoreLabel token = new CoreLabel();
+      token.setWord(word[0]);
+      token.setValue(word[0]);
+      token.setTag(word[1]);
+      sentence.add(token);
+    }
+    int start = random.nextInt(length);
+    int end = start + 1 + random.nextInt(length - start);
+    Mention m = new Mention(id, start, end, sentence, null, null, new ArrayList<>(sentence.subList(start, end)));
+    m.headIndex = start + random.nextInt(end - start);
+    m.headWord = sentence.get(m.headIndex);
+    m.headString = m.headWord.word().toLowerCase();
+    m.mentionType = Dictionaries.MentionType.NOMINAL;
+    return m;
+  }
+
+  public void testSameAsRules() {
+    Random random = new Random(13);
+    Document document = new Document();
+    List<Mention> mentions = new ArrayList<>();
+    for (int id = 0; id < 300; id++) {
+      Mention m = randomMention(random, id);
+      mentions.add(m);
+      document.predictedMentionsByID.put(id, m);
+    }
+    MentionFeatures features = document.getMentionFeatures(null);
+    assertSame(features, document.getMentionFeatures(null));
+    int incompatible = 0;
+    int numbers = 0;
+    for (Mention m : mentions) {
+      assertEquals(m.removePhraseAfterHead(), features.spanBeforePhraseAfterHead(m));
+      assertFalse(features.isPronoun(m));
+      for (Mention ant : mentions) {
+        boolean expected = CorefRules.entityHaveIncompatibleModifier(m, ant);
+        assertEquals(m + " / " + ant, expected, features.haveIncompatibleModifier(m, ant));
+        incompatible += expected ? 1 : 0;
+        expected = CorefRules.entityNumberInLaterMention(m, ant);
+        assertEquals(m + " / " + ant, expected, features.numberInLaterMention(m, ant));
+        numbers += expected ? 1 : 0;
+      }
+    }
+    assertTrue(incompatible > 100);
+    assertTrue(numbers > 100);
+
+    // mentions not in the table
+    Mention other = randomMention(random, 7);
+    other.mentionType = Dictionaries.MentionType.PRONOMINAL;
+    assertTrue(features.isPronoun(other));
+    assertEquals(other.removePhraseAfterHead(), features.spanBeforePhraseAfterHead(other));
+    for (Mention m : mentions) {
+      assertEquals(CorefRules.entityHaveIncompatibleModifier(other, m), features.haveIncompatibleModifier(other, m));
+      assertEquals(CorefRules.entityNumberInLaterMention(m, other), features.numberInLaterMention(m, other));
+    }
+  }
+
+}
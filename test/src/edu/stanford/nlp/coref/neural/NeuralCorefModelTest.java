@@ -0,0 +1,64 @@
+package edu.stanford.nlp.coref.neural;
+
+import edu.stanford.nlp.neural.NeuralUtils;
+import junit.framework.TestCase;
+import org.ejml.simple.SimpleMatrix;
+
+import java.util.*;
+
+/**
+ * Tests that scoring mention pairs in batches gives the scores of scoring them one at a time.
+ */
+public class NeuralCorefModelTest extends TestCase {
+
+  private static final int MENTION_SIZE = 7;
+  private static final int HIDDEN_SIZE = 5;
+  private static final int FEATURE_SIZE = 4;
+
+  private static NeuralCorefModel randomModel(Random random) {
+    List<SimpleMatrix> pairwiseModel = Arrays.asList(
+        NeuralUtils.randomGaussian(6, HIDDEN_SIZE, random), NeuralUtils.randomGaussian(6, 1, random),
+        NeuralUtils.randomGaussian(3, 6, random), NeuralUtils.randomGaussian(3, 1, random),
+        NeuralUtils.randomGaussian(1, 3, random), NeuralUtils.randomGaussian(1, 1, random));
+    List<SimpleMatrix> anaphoricityModel = Arrays.asList(
+        NeuralUtils.randomGaussian(1, MENTION_SIZE + 2, random), NeuralUtils.randomGaussian(1, 1, random));
+    return new NeuralCorefModel(NeuralUtils.randomGaussian(HIDDEN_SIZE, MENTION_SIZE, random),
+        NeuralUtils.randomGaussian(HIDDEN_SIZE, MENTION_SIZE, random),
+        NeuralUtils.randomGaussian(HIDDEN_SIZE, FEATURE_SIZE, random),
+        NeuralUtils.randomGaussian(HIDDEN_SIZE, 1, random),
+        anaphoricityModel, pairwiseModel, null);
+  }
+
+  public void testSameScoresAsOnePairAtATime() {
+    Random random = new Random(17);
+    NeuralCorefModel model = randomModel(random);
+    List<SimpleMatrix> mentions = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      mentions.add(NeuralUtils.randomGaussian(MENTION_SIZE, 1, random));
+    }
+    assertEquals(0, model.getPairwiseScorer(Collections.emptyList()).score(0, new int[0], Collections.emptyList()).length);
+    NeuralCorefModel.PairwiseScorer scorer = model.getPairwiseScorer(mentions);
+    int positive = 0;
+    // fewer and more candidates than before, so the buffers shrink and grow
+    for (int anaphor : new int[] { 29, 3, 0, 17, 1, 25 }) {
+      int[] antecedents = new int[anaphor];
+      List<SimpleMatrix> features = new ArrayList<>();
+      for (int i = 0; i < anaphor; i++) {
+        antecedents[i] = anaphor - 1 - i;
+        features.add(NeuralUtils.randomGaussian(FEATURE_SIZE, 1, random));
+      }
+      double[] scores = scorer.score(anaphor, antecedents, features);
+      assertEquals(anaphor, scores.length);
+      for (int i = 0; i < anaphor; i++) {
+        double expected = model.getPairwiseScore(model.getAntecedentEmbedding(mentions.get(antecedents[i])),
+            model.getAnaphorEmbedding(mentions.get(anaphor)), features.get(i));
+        assertEquals(expected, scores[i], 1e-9);
+        if (scores[i] > 0) {
+          positive++;
+        }
+      }
+    }
+    assertTrue(positive > 0);
+  }
+
+}
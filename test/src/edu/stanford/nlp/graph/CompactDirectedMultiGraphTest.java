@@ -0,0 +1,131 @@
+package edu.stanford.nlp.graph;
+
+import java.util.*;
+
+import edu.stanford.nlp.util.CollectionUtils;
+import junit.framework.TestCase;
+
+/**
+ * Tests that a CompactDirectedMultiGraph reads the same as the graph it was copied from.
+ */
+public class CompactDirectedMultiGraphTest extends TestCase {
+
+  private static DirectedMultiGraph<Integer, String> randomGraph(Random random, int numVertices, int numEdges, boolean acyclic) {
+    DirectedMultiGraph<Integer, String> graph = new DirectedMultiGraph<>();
+    for (int v = 0; v < numVertices; v++) {
+      graph.addVertex(v * 3 - 5);
+    }
+    for (int e = 0; e < numEdges; e++) {
+      int source = random.nextInt(numVertices);
+      int target = random.nextInt(numVertices);
+      if (acyclic && source >= target) {
+        continue;
+      }
+      graph.add(source * 3 - 5, target * 3 - 5, "e" + e);
+    }
+    // leave some vertices without edges, and some edges removed again
+    graph.removeEdge(-5, -2, "none");
+    List<String> edges = graph.getAllEdges();
+    if ( ! edges.isEmpty()) {
+      String edge = edges.get(random.nextInt(edges.size()));
+      for (Integer source : graph.getAllVertices()) {
+        for (Integer target : graph.getChildren(source)) {
+          if (graph.getEdges(source, target).contains(edge)) {
+            graph.removeEdge(source, target, edge);
+            assertEquals(edges.size() - 1, graph.getNumEdges());
+            return graph;
+          }
+        }
+      }
+    }
+    return graph;
+  }
+
+  private static <V, E> void assertSameGraph(DirectedMultiGraph<V, E> expected, DirectedMultiGraph<V, E> actual, List<V> probes) {
+    assertEquals(expected.getNumVertices(), actual.getNumVertices());
+    assertEquals(expected.getNumEdges(), actual.getNumEdges());
+    assertEquals(expected.isEmpty(), actual.isEmpty());
+    assertEquals(new ArrayList<>(expected.getAllVertices()), new ArrayList<>(actual.getAllVertices()));
+    assertEquals(expected.getAllEdges(), actual.getAllEdges());
+    assertEquals(CollectionUtils.toList(expected.edgeIterable()), CollectionUtils.toList(actual.edgeIterable()));
+    assertEquals(expected, actual);
+    assertEquals(actual, expected);
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(expected.toString(), actual.toString());
+    for (V v : probes) {
+      assertEquals(expected.containsVertex(v), actual.containsVertex(v));
+      assertEquals(expected.getAllVertices().contains(v), actual.getAllVertices().contains(v));
+      assertEquals(expected.getOutgoingEdges(v), actual.getOutgoingEdges(v));
+      assertEquals(expected.getIncomingEdges(v), actual.getIncomingEdges(v));
+      assertEquals(CollectionUtils.toList(expected.outgoingEdgeIterable(v)), CollectionUtils.toList(actual.outgoingEdgeIterable(v)));
+      assertEquals(CollectionUtils.toList(expected.incomingEdgeIterable(v)), CollectionUtils.toList(actual.incomingEdgeIterable(v)));
+      assertEquals(expected.getInDegree(v), actual.getInDegree(v));
+      assertEquals(expected.getOutDegree(v), actual.getOutDegree(v));
+      if (expected.getChildren(v) == null) {
+        assertNull(actual.getChildren(v));
+        assertNull(actual.getParents(v));
+        assertNull(actual.getNeighbors(v));
+        continue;
+      }
+      assertEquals(new ArrayList<>(expected.getChildren(v)), new ArrayList<>(actual.getChildren(v)));
+      assertEquals(new ArrayList<>(expected.getParents(v)), new ArrayList<>(actual.getParents(v)));
+      assertEquals(expected.getNeighbors(v), actual.getNeighbors(v));
+      for (V w : probes) {
+        assertEquals(expected.isEdge(v, w), actual.isEdge(v, w));
+        assertEquals(expected.isNeighbor(v, w), actual.isNeighbor(v, w));
+        assertEquals(expected.getEdges(v, w), actual.getEdges(v, w));
+        assertEquals(expected.getChildren(v).contains(w), actual.getChildren(v).contains(w));
+        assertEquals(expected.getShortestPath(v, w), actual.getShortestPath(v, w));
+        assertEquals(expected.getShortestPathEdges(v, w, true), actual.getShortestPathEdges(v, w, true));
+      }
+    }
+  }
+
+  public void testSameAsCopiedGraph() {
+    Random random = new Random(11);
+    List<Integer> probes = new ArrayList<>();
+    for (int v = -8; v < 70; v++) {
+      probes.add(v);
+    }
+    for (int trial = 0; trial < 30; trial++) {
+      DirectedMultiGraph<Integer, String> graph = randomGraph(random, 1 + random.nextInt(20), random.nextInt(40), trial % 2 == 0);
+      // small keys which are shared by several vertices, and negative ones
+      CompactDirectedMultiGraph<Integer, String> compact = new CompactDirectedMultiGraph<>(graph, v -> v % 7);
+      assertSameGraph(graph, compact, probes);
+      assertEquals(graph.getConnectedComponents(), compact.getConnectedComponents());
+      if (trial % 2 == 0) {
+        assertEquals(graph.topologicalSort(), compact.topologicalSort());
+      }
+
+      DirectedMultiGraph<Integer, String> copy = new DirectedMultiGraph<>(compact);
+      assertSameGraph(graph, copy, probes);
+    }
+  }
+
+  public void testReadOnly() {
+    DirectedMultiGraph<Integer, String> graph = new DirectedMultiGraph<>();
+    graph.add(1, 2, "1->2");
+    graph.add(2, 3, "2->3");
+    CompactDirectedMultiGraph<Integer, String> compact = new CompactDirectedMultiGraph<>(graph, v -> v);
+    try {
+      compact.add(3, 4, "3->4");
+      fail("Expected an UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      compact.removeVertex(1);
+      fail("Expected an UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      compact.edgeIterator().remove();
+      fail("Expected an UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    assertEquals(2, compact.getNumEdges());
+  }
+
+}
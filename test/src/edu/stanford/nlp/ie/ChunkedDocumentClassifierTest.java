@@ -0,0 +1,95 @@
+package edu.stanford.nlp.ie;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Tests that streaming classification returns every document, whole and in
+ * order, and keeps a bounded number of tokens in flight.
+ */
+public class ChunkedDocumentClassifierTest extends TestCase {
+
+  private static List<List<CoreLabel>> makeDocuments(int numDocs, Random random) {
+    List<List<CoreLabel>> documents = new ArrayList<>();
+    for (int d = 0; d < numDocs; d++) {
+      List<CoreLabel> document = new ArrayList<>();
+      int numSentences = 1 + random.nextInt(d % 7 == 0 ? 40 : 3);
+      for (int s = 0; s < numSentences; s++) {
+        int length = 1 + random.nextInt(12);
+        for (int w = 0; w < length; w++) {
+          CoreLabel token = new CoreLabel();
+          token.setWord(w == length - 1 ? "." : "w" + d + '_' + s + '_' + w);
+          document.add(token);
+        }
+      }
+      documents.add(document);
+    }
+    return documents;
+  }
+
+  private static void runStreaming(int numThreads, int chunkSize) {
+    Random random = new Random(numThreads * 31 + chunkSize);
+    List<List<CoreLabel>> documents = makeDocuments(200, random);
+    AtomicInteger tokensInFlight = new AtomicInteger();
+    AtomicInteger maxTokensInFlight = new AtomicInteger();
+    Function<List<CoreLabel>, List<CoreLabel>> classifier = piece -> {
+      maxTokensInFlight.accumulateAndGet(tokensInFlight.addAndGet(piece.size()), Math::max);
+      for (CoreLabel token : piece) {
+        token.set(CoreAnnotations.AnswerAnnotation.class, token.word().toUpperCase());
+      }
+      if (piece.hashCode() % 5 == 0) {
+        Thread.yield();
+      }
+      tokensInFlight.addAndGet(-piece.size());
+      return piece;
+    };
+
+    List<List<CoreLabel>> output = new ArrayList<>();
+    ChunkedDocumentClassifier<CoreLabel> streamer =
+        new ChunkedDocumentClassifier<>(classifier, output::add, numThreads, chunkSize);
+    int longestDocument = 0;
+    for (List<CoreLabel> document : documents) {
+      streamer.put(document);
+      longestDocument = Math.max(longestDocument, document.size());
+    }
+    streamer.finish();
+
+    assertEquals(documents.size(), output.size());
+    for (int d = 0; d < documents.size(); d++) {
+      assertEquals(documents.get(d), output.get(d));
+      for (CoreLabel token : output.get(d)) {
+        assertEquals(token.word().toUpperCase(), token.get(CoreAnnotations.AnswerAnnotation.class));
+      }
+    }
+    // pieces are at most a sentence over chunkSize, and chunks at most a piece over it
+    assertTrue(maxTokensInFlight.get() <= 2 * Math.max(1, numThreads) * (2 * chunkSize + 24));
+    assertTrue(maxTokensInFlight.get() < longestDocument || chunkSize >= longestDocument);
+  }
+
+  public void testSingleThread() {
+    runStreaming(1, 30);
+  }
+
+  public void testMultipleThreads() {
+    runStreaming(4, 30);
+    runStreaming(3, 7);
+    runStreaming(8, 1000);
+  }
+
+  public void testRejectsBadChunkSize() {
+    try {
+      new ChunkedDocumentClassifier<CoreLabel>(piece -> piece, doc -> { }, 2, 0);
+      fail("Expected an IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+}
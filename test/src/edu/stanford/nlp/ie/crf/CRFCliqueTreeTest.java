@@ -0,0 +1,123 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.math.ArrayMath;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the buffer-based calibration in {@link CRFCliqueTree} against plain
+ * FactorTable message passing.
+ */
+public class CRFCliqueTreeTest extends TestCase {
+
+  private static FactorTable randomTable(Random r, int numClasses, int windowSize) {
+    FactorTable ft = new FactorTable(numClasses, windowSize);
+    for (int i = 0; i < ft.size(); i++) {
+      // leave a few impossible entries, as label dictionaries do
+      ft.setValue(i, r.nextInt(10) == 0 ? Double.NEGATIVE_INFINITY : 5.0 * r.nextGaussian());
+    }
+    return ft;
+  }
+
+  /** The original FactorTable-per-message forward-backward. */
+  private static void referenceCalibrate(FactorTable[] factorTables) {
+    FactorTable[] messages = new FactorTable[factorTables.length - 1];
+    for (int i = 1; i < factorTables.length; i++) {
+      messages[i - 1] = factorTables[i - 1].sumOutFront();
+      factorTables[i].multiplyInFront(messages[i - 1]);
+    }
+    for (int i = factorTables.length - 2; i >= 0; i--) {
+      FactorTable summedOut = factorTables[i + 1].sumOutEnd();
+      summedOut.divideBy(messages[i]);
+      factorTables[i].multiplyInEnd(summedOut);
+    }
+  }
+
+  public void testSumOutFrontMatchesStridedLogSum() {
+    Random r = new Random(1);
+    for (int windowSize = 1; windowSize <= 3; windowSize++) {
+      FactorTable ft = randomTable(r, 5, windowSize);
+      FactorTable summed = ft.sumOutFront();
+      double[] table = new double[ft.size()];
+      for (int i = 0; i < table.length; i++) {
+        table[i] = ft.getValue(i);
+      }
+      for (int i = 0; i < summed.size(); i++) {
+        assertEquals(ArrayMath.logSum(table, i, table.length, summed.size()), summed.getValue(i), 0.0);
+      }
+    }
+  }
+
+  public void testCalibrateMatchesReference() {
+    Random r = new Random(42);
+    for (int windowSize = 1; windowSize <= 3; windowSize++) {
+      for (int length : new int[] { 1, 2, 7, 30 }) {
+        FactorTable[] expected = new FactorTable[length];
+        FactorTable[] actual = new FactorTable[length];
+        for (int i = 0; i < length; i++) {
+          expected[i] = randomTable(r, 4, windowSize);
+          actual[i] = new FactorTable(expected[i]);
+        }
+        if (length > 1) {
+          referenceCalibrate(expected);
+        }
+        CRFCliqueTree.calibrate(actual);
+        for (int i = 0; i < length; i++) {
+          for (int j = 0; j < expected[i].size(); j++) {
+            assertEquals(expected[i].getValue(j), actual[i].getValue(j), 0.0);
+          }
+        }
+      }
+    }
+  }
+
+  public void testFactorTableMatchesCliqueProduct() {
+    Random r = new Random(7);
+    int numClasses = 3;
+    int windowSize = 3;
+    List<Index<CRFLabel>> labelIndices = new ArrayList<>();
+    for (int j = 0; j < windowSize; j++) {
+      Index<CRFLabel> labelIndex = new HashIndex<>();
+      FactorTable all = new FactorTable(numClasses, j + 1);
+      for (int k = 0; k < all.size(); k++) {
+        if (j == 0 || r.nextInt(4) != 0) {
+          labelIndex.add(new CRFLabel(all.toArray(k)));
+        }
+      }
+      labelIndices.add(labelIndex);
+    }
+    int[][] data = { { 0, 1 }, { 2 }, { 1, 3 } };
+    double[][] weights = new double[4][numClasses * numClasses * numClasses];
+    for (double[] row : weights) {
+      for (int k = 0; k < row.length; k++) {
+        row[k] = r.nextGaussian();
+      }
+    }
+    CliquePotentialFunction potential = new LinearCliquePotentialFunction(weights);
+
+    FactorTable expected = null;
+    for (int j = 0; j < windowSize; j++) {
+      FactorTable ft = new FactorTable(numClasses, j + 1);
+      Index<CRFLabel> labelIndex = labelIndices.get(j);
+      for (int k = 0; k < labelIndex.size(); k++) {
+        ft.setValue(labelIndex.get(k).getLabel(), potential.computeCliquePotential(j + 1, k, data[j], null, 0));
+      }
+      if (j > 0) {
+        ft.multiplyInEnd(expected);
+      }
+      expected = ft;
+    }
+
+    FactorTable actual = CRFCliqueTree.getFactorTable(data, labelIndices, numClasses, potential, null, 0);
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.getValue(i), actual.getValue(i), 0.0);
+    }
+  }
+
+}
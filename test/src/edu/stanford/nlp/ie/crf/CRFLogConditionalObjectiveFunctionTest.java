@@ -0,0 +1,121 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that the multithreaded gradient gives the same results as the
+ * single threaded one.
+ */
+public class CRFLogConditionalObjectiveFunctionTest extends TestCase {
+
+  private static final int NUM_CLASSES = 3;
+  private static final int NUM_NODE_FEATURES = 40;
+  private static final int NUM_EDGE_FEATURES = 20;
+
+  private static CRFLogConditionalObjectiveFunction makeFunction(int numThreads) {
+    Random r = new Random(11);
+    Index<String> classIndex = new HashIndex<>();
+    for (int c = 0; c < NUM_CLASSES; c++) {
+      classIndex.add("C" + c);
+    }
+    List<Index<CRFLabel>> labelIndices = new ArrayList<>();
+    for (int size = 1; size <= 2; size++) {
+      Index<CRFLabel> labelIndex = new HashIndex<>();
+      FactorTable all = new FactorTable(NUM_CLASSES, size);
+      for (int k = 0; k < all.size(); k++) {
+        labelIndex.add(new CRFLabel(all.toArray(k)));
+      }
+      labelIndices.add(labelIndex);
+    }
+    int[] map = new int[NUM_NODE_FEATURES + NUM_EDGE_FEATURES];
+    for (int f = NUM_NODE_FEATURES; f < map.length; f++) {
+      map[f] = 1;
+    }
+
+    int numDocs = 25;
+    int[][][][] data = new int[numDocs][][][];
+    int[][] labels = new int[numDocs][];
+    for (int d = 0; d < numDocs; d++) {
+      int length = 1 + r.nextInt(40);
+      data[d] = new int[length][2][];
+      labels[d] = new int[length];
+      for (int i = 0; i < length; i++) {
+        data[d][i][0] = new int[] { r.nextInt(NUM_NODE_FEATURES), r.nextInt(NUM_NODE_FEATURES) };
+        data[d][i][1] = new int[] { NUM_NODE_FEATURES + r.nextInt(NUM_EDGE_FEATURES) };
+        labels[d][i] = r.nextInt(NUM_CLASSES);
+      }
+    }
+    return new CRFLogConditionalObjectiveFunction(data, labels, 2, classIndex, labelIndices, map,
+        "QUADRATIC", "C0", 1.0, null, numThreads);
+  }
+
+  private static double[] point(int dimension) {
+    Random r = new Random(5);
+    double[] x = new double[dimension];
+    for (int i = 0; i < x.length; i++) {
+      x[i] = r.nextGaussian();
+    }
+    return x;
+  }
+
+  public void testThreadedGradientMatchesSingleThreaded() {
+    CRFLogConditionalObjectiveFunction single = makeFunction(1);
+    double[] x = point(single.domainDimension());
+    double expectedValue = single.valueAt(x);
+    double[] expectedDerivative = single.derivativeAt(x).clone();
+
+    for (int numThreads : new int[] { 2, 3, 8 }) {
+      CRFLogConditionalObjectiveFunction threaded = makeFunction(numThreads);
+      assertEquals(expectedValue, threaded.valueAt(x), 0.0);
+      double[] derivative = threaded.derivativeAt(x);
+      for (int i = 0; i < derivative.length; i++) {
+        assertEquals(expectedDerivative[i], derivative[i], 0.0);
+      }
+    }
+  }
+
+  public void testThreadedStochasticGradientMatchesSingleThreaded() {
+    int[] batch = { 3, 1, 4, 1, 5, 9, 2, 6 };
+    CRFLogConditionalObjectiveFunction single = makeFunction(1);
+    double[] x = point(single.domainDimension());
+    single.calculateStochasticGradient(x, batch);
+    double[] expected = single.getDerivative().clone();
+
+    CRFLogConditionalObjectiveFunction threaded = makeFunction(4);
+    threaded.calculateStochasticGradient(x, batch);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], threaded.getDerivative()[i], 0.0);
+    }
+  }
+
+  private static int gradientThreads() {
+    int count = 0;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("CRF gradient") && thread.isAlive()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public void testThreadsStopped() throws InterruptedException {
+    CRFLogConditionalObjectiveFunction threaded = makeFunction(4);
+    double[] x = point(threaded.domainDimension());
+    for (int i = 0; i < 3; i++) {
+      threaded.derivativeAt(x);
+      x[0] += 1.0;
+    }
+    // the pool is shut down when the evaluation returns; give its threads a moment to exit
+    for (int i = 0; i < 100 && gradientThreads() > 0; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, gradientThreads());
+  }
+
+}
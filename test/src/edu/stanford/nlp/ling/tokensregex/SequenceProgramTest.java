@@ -0,0 +1,120 @@
+package edu.stanford.nlp.ling.tokensregex;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.SentenceUtils;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+/**
+ * Tests that running the compiled program of a pattern finds the same matches as its NFA.
+ */
+public class SequenceProgramTest extends TestCase {
+
+  private static final String[] WORDS = { "a", "b", "c" };
+  private static final String[] ATOMS = { "a", "b", "c", "[]", "/a|b/", "[!{word:c}]", "[{word:a} | {word:c}]" };
+  private static final String[] QUANTIFIERS = { "?", "*", "+", "??", "*?", "+?", "{2}", "{1,3}", "{0,7}", "{6,8}", "{2,}?" };
+
+  private static String randomPattern(Random random, int depth) {
+    int n = 1 + random.nextInt(3);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      sb.append(randomTerm(random, depth));
+    }
+    return sb.toString();
+  }
+
+  private static String randomTerm(Random random, int depth) {
+    String term;
+    int choice = depth == 0 ? 0 : random.nextInt(6);
+    switch (choice) {
+      case 1:
+        term = "(" + randomPattern(random, depth - 1) + ")";
+        break;
+      case 2:
+        term = "(?: " + randomPattern(random, depth - 1) + ")";
+        break;
+      case 3:
+        term = "(" + randomPattern(random, depth - 1) + " | " + randomPattern(random, depth - 1) + ")";
+        break;
+      default:
+        term = ATOMS[random.nextInt(ATOMS.length)];
+    }
+    if (random.nextInt(3) == 0) {
+      term += QUANTIFIERS[random.nextInt(QUANTIFIERS.length)];
+    }
+    return term;
+  }
+
+  private static List<CoreLabel> randomTokens(Random random) {
+    String[] words = new String[random.nextInt(10)];
+    for (int i = 0; i < words.length; i++) {
+      words[i] = WORDS[random.nextInt(WORDS.length)];
+    }
+    return SentenceUtils.toCoreLabelList(words);
+  }
+
+  private static String describe(SequenceMatcher<?> matcher) {
+    StringBuilder sb = new StringBuilder();
+    for (int g = 0; g <= matcher.groupCount(); g++) {
+      sb.append(' ').append(matcher.start(g)).append('-').append(matcher.end(g));
+    }
+    return sb.toString();
+  }
+
+  private static List<String> findAll(TokenSequencePattern pattern, List<CoreLabel> tokens, boolean useProgram) {
+    List<String> matches = new ArrayList<>();
+    TokenSequenceMatcher matcher = pattern.getMatcher(tokens);
+    matcher.useProgram = useProgram;
+    while (matcher.find()) {
+      matches.add(describe(matcher));
+    }
+    if (tokens.size() <= 6) {
+      // the NFA may not get back to the branches it splits off to stay under the branch limit
+      // (and so miss the longest match), but without a limit it only copes with short sequences
+      matcher.reset();
+      matcher.setBranchLimit(-1);
+      matches.add(matcher.matches() ? "matches" + describe(matcher) : "no match");
+    }
+    return matches;
+  }
+
+  public void testSameMatchesAsNFA() {
+    Random random = new Random(7);
+    int compiled = 0;
+    int numMatches = 0;
+    for (int p = 0; p < 400; p++) {
+      String patternString = randomPattern(random, 2);
+      if (random.nextInt(8) == 0) {
+        patternString = "^ " + patternString;
+      }
+      if (random.nextInt(8) == 0) {
+        patternString = patternString + " $";
+      }
+      TokenSequencePattern pattern = TokenSequencePattern.compile(patternString);
+      if (pattern.program == null) {
+        continue;
+      }
+      compiled++;
+      for (int trial = 0; trial < 20; trial++) {
+        List<CoreLabel> tokens = randomTokens(random);
+        List<String> expected = findAll(pattern, tokens, false);
+        assertEquals(patternString + " on " + SentenceUtils.listToString(tokens), expected, findAll(pattern, tokens, true));
+        numMatches += expected.size();
+      }
+    }
+    assertTrue(compiled > 300);
+    assertTrue(numMatches > 10000);
+  }
+
+  public void testFallBack() {
+    assertNotNull(TokenSequencePattern.compile("(a b) c+ $").program);
+    assertNull(TokenSequencePattern.compile("(a) \\1").program);
+    assertNull(TokenSequencePattern.compile("(a?)*").program);
+    assertNull(TokenSequencePattern.compile("(a | b) & ([]{2})").program);
+  }
+
+}
@@ -0,0 +1,151 @@
+package edu.stanford.nlp.ling.tokensregex;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.CoreMap;
+import junit.framework.TestCase;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Tests that the triggers of token sequence patterns are found in every sequence the patterns
+ * match, and that skipping the rules whose triggers are missing doesn't change what a
+ * CoreMapExpressionExtractor extracts.
+ */
+public class TokenSequenceTriggerTest extends TestCase {
+
+  private static final String[] WORDS = { "one", "two", "and", "the", "big", "dog", "barks", "The", "cat", "tree" };
+
+  private static final String RULES =
+      "ner = { type: \"CLASS\", value: \"edu.stanford.nlp.ling.CoreAnnotations$NamedEntityTagAnnotation\" }\n" +
+      "ENV.defaults[\"stage\"] = 1\n" +
+      "{ ruleType: \"tokens\", pattern: ( /one/ ), result: 1 }\n" +
+      "{ ruleType: \"tokens\", pattern: ( /big/ /dog/ ), action: ( Annotate($0, ner, \"ANIMAL\") ) }\n" +
+      "{ ruleType: \"tokens\", pattern: ( /two/ ), result: 2 }\n" +
+      "{ ruleType: \"tokens\", pattern: ( /t.*/ ), result: \"T\" }\n" +
+      "{ ruleType: \"text\", pattern: /cat/, result: \"CAT\" }\n" +
+      "{ ruleType: \"composite\", pattern: ( /one|two/ /and/ /one|two/ ), result: \"PAIR\" }\n" +
+      "{ stage: 2, ruleType: \"tokens\", pattern: ( [ { ner:ANIMAL } ] /barks/ ), result: \"BARK\" }\n" +
+      "{ stage: 2, ruleType: \"tokens\", pattern: ( [ { ner:ANIMAL } ]+ /and/ ), result: \"ANIMALS\" }\n" +
+      "{ stage: 2, ruleType: \"tokens\", pattern: ( [ { word:\"the\" } | { word:\"a\" } ] /cat|tree/ ), result: \"NP\" }\n" +
+      "{ stage: 3, ruleType: \"composite\", pattern: ( /PAIR|pair/ ), result: \"NONE\" }\n";
+
+  private static List<CoreLabel> tokens(String... words) {
+    List<CoreLabel> tokens = new ArrayList<>();
+    int offset = 0;
+    for (int i = 0; i < words.length; i++) {
+      CoreLabel token = new CoreLabel();
+      token.setWord(words[i]);
+      token.setValue(words[i]);
+      token.setOriginalText(words[i]);
+      token.setNER("O");
+      token.setBeginPosition(offset);
+      token.setEndPosition(offset + words[i].length());
+      token.set(CoreAnnotations.TokenBeginAnnotation.class, i);
+      token.set(CoreAnnotations.TokenEndAnnotation.class, i + 1);
+      offset += words[i].length() + 1;
+      tokens.add(token);
+    }
+    return tokens;
+  }
+
+  private static CoreMap sentence(String[] words) {
+    Annotation sentence = new Annotation(String.join(" ", words));
+    sentence.set(CoreAnnotations.TokensAnnotation.class, tokens(words));
+    sentence.set(CoreAnnotations.CharacterOffsetBeginAnnotation.class, 0);
+    sentence.set(CoreAnnotations.CharacterOffsetEndAnnotation.class, sentence.get(CoreAnnotations.TextAnnotation.class).length());
+    return sentence;
+  }
+
+  private static boolean canMatch(Env env, String pattern, String... words) {
+    TokenSequenceTrigger trigger = TokenSequenceTrigger.of(TokenSequencePattern.compile(env, pattern));
+    return trigger.canMatch(new TokenSequenceTrigger.Index(tokens(words)));
+  }
+
+  private static boolean canMatch(String pattern, String... words) {
+    return canMatch(TokenSequencePattern.getNewEnv(), pattern, words);
+  }
+
+  public void testTriggers() {
+    assertTrue(canMatch("/the|a/ /dog/", "the", "dog"));
+    assertFalse(canMatch("/the|a/ /dog/", "the", "cat"));
+    assertTrue(canMatch("/the/? ([{lemma:dog}] | /cat/)+", "a", "cat"));
+    assertFalse(canMatch("/the/? ([{lemma:dog}] | /cat/)+", "the", "dog"));
+    assertFalse(canMatch("[{ner:DATE}]", "today"));
+    assertFalse(canMatch("[]* /today|now/", "Today"));
+    Env env = TokenSequencePattern.getNewEnv();
+    env.setDefaultStringPatternFlags(Pattern.CASE_INSENSITIVE);
+    assertTrue(canMatch(env, "[]* /today|now/", "Today"));
+    assertNull(TokenSequenceTrigger.of(TokenSequencePattern.compile("[]*")));
+    assertNull(TokenSequenceTrigger.of(TokenSequencePattern.compile("/do.*/")));
+    assertNull(TokenSequenceTrigger.of(TokenSequencePattern.compile("(/a/ | []) /b/?")));
+    assertNull(TokenSequenceTrigger.of(TokenSequencePattern.compile("[!{word:a}]")));
+  }
+
+  public void testIgnoreCaseInTurkishLocale() {
+    Locale locale = Locale.getDefault();
+    try {
+      Locale.setDefault(new Locale("tr", "TR"));
+      Env env = TokenSequencePattern.getNewEnv();
+      env.setDefaultStringPatternFlags(Pattern.CASE_INSENSITIVE);
+      assertTrue(canMatch(env, "/TITLE/", "title"));
+      assertTrue(canMatch(env, "/title/", "TITLE"));
+    } finally {
+      Locale.setDefault(locale);
+    }
+  }
+
+  public void testTriggerInEveryMatch() {
+    String[] patterns = { "/one/ /and/? /two/", "(/one/ | /two/)+ /and/", "[{word:one} | {word:two}]{2}", "[{word:the} & !{word:big}] /dog/" };
+    Random random = new Random(3);
+    for (String patternString : patterns) {
+      TokenSequencePattern pattern = TokenSequencePattern.compile(patternString);
+      TokenSequenceTrigger trigger = TokenSequenceTrigger.of(pattern);
+      assertNotNull(patternString, trigger);
+      for (int trial = 0; trial < 200; trial++) {
+        String[] words = new String[random.nextInt(6)];
+        for (int i = 0; i < words.length; i++) {
+          words[i] = WORDS[random.nextInt(WORDS.length)];
+        }
+        List<CoreLabel> tokens = tokens(words);
+        if (pattern.getMatcher(tokens).find()) {
+          assertTrue(patternString + " on " + Arrays.toString(words), trigger.canMatch(new TokenSequenceTrigger.Index(tokens)));
+        }
+      }
+    }
+  }
+
+  private static List<String> extract(CoreMapExpressionExtractor<MatchedExpression> extractor, String[] words) {
+    List<String> extracted = new ArrayList<>();
+    for (MatchedExpression expr : extractor.extractExpressions(sentence(words))) {
+      extracted.add(expr.getTokenOffsets() + "=" + expr.getValue());
+    }
+    return extracted;
+  }
+
+  @SuppressWarnings("unchecked")
+  public void testSameExtractions() throws Exception {
+    Env env = TokenSequencePattern.getNewEnv();
+    env.setDefaultNestedResultsAnnotationKey(CoreAnnotations.NumerizedTokensAnnotation.class);
+    CoreMapExpressionExtractor<MatchedExpression> extractor = CoreMapExpressionExtractor.createExtractorFromString(env, RULES);
+    Random random = new Random(5);
+    int numExtracted = 0;
+    for (int trial = 0; trial < 500; trial++) {
+      String[] words = new String[1 + random.nextInt(8)];
+      for (int i = 0; i < words.length; i++) {
+        words[i] = WORDS[random.nextInt(WORDS.length)];
+      }
+      extractor.setUseTriggers(false);
+      List<String> expected = extract(extractor, words);
+      extractor.setUseTriggers(true);
+      assertEquals(Arrays.toString(words), expected, extract(extractor, words));
+      numExtracted += expected.size();
+    }
+    assertTrue(numExtracted > 500);
+    // the action of one rule makes the next one match
+    assertEquals(Collections.singletonList("(2,4)=STRING(BARK)"), extract(extractor, new String[] { "a", "big", "dog", "barks" }));
+  }
+
+}
@@ -0,0 +1,110 @@
+package edu.stanford.nlp.ling.tokensregex.matcher;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Tests AhoCorasickMatcher against matching each key at each position.
+ */
+public class AhoCorasickMatcherTest extends TestCase {
+
+  private static List<String> findAll(AhoCorasickMatcher matcher, List<String> tokens) {
+    List<String> matches = new ArrayList<>();
+    matcher.findAll(tokens, (start, end, value) -> matches.add(start + "-" + end + ":" + value));
+    Collections.sort(matches);
+    return matches;
+  }
+
+  private static List<String> findAllByBruteForce(List<List<String>> keys, List<String> tokens, boolean ignoreCase) {
+    List<String> matches = new ArrayList<>();
+    for (int k = 0; k < keys.size(); k++) {
+      List<String> key = keys.get(k);
+      for (int start = 0; start + key.size() <= tokens.size(); start++) {
+        boolean match = true;
+        for (int i = 0; i < key.size() && match; i++) {
+          String token = tokens.get(start + i);
+          match = token != null && (ignoreCase ? key.get(i).equalsIgnoreCase(token) : key.get(i).equals(token));
+        }
+        if (match) {
+          matches.add(start + "-" + (start + key.size()) + ":" + k);
+        }
+      }
+    }
+    Collections.sort(matches);
+    return matches;
+  }
+
+  public void testBasic() {
+    AhoCorasickMatcher matcher = new AhoCorasickMatcher.Builder(false)
+        .add(Arrays.asList("a", "white", "cat"), 0)
+        .add(Arrays.asList("a", "white", "hat"), 1)
+        .add(Arrays.asList("white"), 2)
+        .add(Arrays.asList("white", "hat"), 3)
+        .add(Arrays.asList("white", "hat"), 4)
+        .build();
+    assertEquals(5, matcher.size());
+    List<String> tokens = Arrays.asList("a", "white", "cat", "is", "wearing", "a", "white", "hat", null, "White");
+    assertEquals(Arrays.asList("0-3:0", "1-2:2", "5-8:1", "6-7:2", "6-8:3", "6-8:4"), findAll(matcher, tokens));
+
+    List<String> order = new ArrayList<>();
+    matcher.findAll(tokens, (start, end, value) -> order.add(start + "-" + end + ":" + value));
+    assertEquals(Arrays.asList("1-2:2", "0-3:0", "6-7:2", "5-8:1", "6-8:3", "6-8:4"), order);
+  }
+
+  public void testIgnoreCase() {
+    AhoCorasickMatcher matcher = new AhoCorasickMatcher.Builder(true)
+        .add(Arrays.asList("New", "York"), 0)
+        .add(Arrays.asList("YORK", "city"), 1)
+        .build();
+    assertEquals(Arrays.asList("0-2:0", "1-3:1"), findAll(matcher, Arrays.asList("new", "York", "CITY")));
+    assertEquals("istanbul", AhoCorasickMatcher.foldCase("ISTANBUL"));
+  }
+
+  public void testRejectsEmptyKey() {
+    try {
+      new AhoCorasickMatcher.Builder(false).add(Collections.emptyList(), 0);
+      fail("Expected an IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  public void testRandomAgainstBruteForce() throws Exception {
+    Random random = new Random(42);
+    String[] vocab = { "a", "b", "c", "A", "B", "d" };
+    for (boolean ignoreCase : new boolean[] { false, true }) {
+      List<List<String>> keys = new ArrayList<>();
+      AhoCorasickMatcher.Builder builder = new AhoCorasickMatcher.Builder(ignoreCase);
+      for (int k = 0; k < 300; k++) {
+        List<String> key = new ArrayList<>();
+        for (int i = 1 + random.nextInt(5); i > 0; i--) {
+          key.add(vocab[random.nextInt(vocab.length)]);
+        }
+        keys.add(key);
+        builder.add(key, k);
+      }
+      AhoCorasickMatcher matcher = builder.build();
+
+      File file = File.createTempFile("AhoCorasickMatcherTest", ".bin");
+      file.deleteOnExit();
+      matcher.save(file);
+      AhoCorasickMatcher loaded = AhoCorasickMatcher.load(file);
+      assertEquals(matcher.size(), loaded.size());
+      assertEquals(matcher.numStates(), loaded.numStates());
+      assertEquals(ignoreCase, loaded.ignoreCase());
+
+      for (int trial = 0; trial < 50; trial++) {
+        List<String> tokens = new ArrayList<>();
+        for (int i = random.nextInt(40); i > 0; i--) {
+          tokens.add(random.nextInt(20) == 0 ? "x" : vocab[random.nextInt(vocab.length)]);
+        }
+        List<String> expected = findAllByBruteForce(keys, tokens, ignoreCase);
+        assertEquals(expected, findAll(matcher, tokens));
+        assertEquals(expected, findAll(loaded, tokens));
+      }
+    }
+  }
+
+}
@@ -298,4 +298,20 @@ public class ArrayMathTest {
     }
   }
 
+  @Test
+  public void testFastLogSum() {
+    double[] a = { -1.5, 0.3, -40.0, 2.7, Double.NEGATIVE_INFINITY, -0.01, 1.0 };
+    Assert.assertEquals(ArrayMath.logSum(a), ArrayMath.fastLogSum(a), 1e-8);
+    Assert.assertEquals(ArrayMath.logSum(a, 1, 5), ArrayMath.fastLogSum(a, 1, 5), 1e-8);
+    Assert.assertEquals(Double.NEGATIVE_INFINITY, ArrayMath.fastLogSum(a, 2, 2), 0.0);
+    double[] none = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+    Assert.assertEquals(Double.NEGATIVE_INFINITY, ArrayMath.fastLogSum(none), 0.0);
+
+    double[] exact = a.clone();
+    double[] fast = a.clone();
+    ArrayMath.logNormalize(exact);
+    ArrayMath.fastLogNormalize(fast);
+    Assert.assertArrayEquals(exact, fast, 1e-8);
+  }
+
 }
@@ -110,5 +110,20 @@ public class SloppyMathTest extends TestCase {
     assertEquals(-42, SloppyMath.parseInt("-42"));
     assertEquals(42000000000000l, SloppyMath.parseInt("42000000000000"));
   }
-}
 
+  public void testFastExp() {
+    for (double x = -745.0; x < 720.0; x += 0.37) {
+      double exact = Math.exp(x);
+      if (x > -708.0 && x < 709.0) {
+        assertEquals(exact, SloppyMath.fastExp(x), exact * 1e-8);
+      }
+    }
+    assertEquals(1.0, SloppyMath.fastExp(0.0));
+    assertEquals(0.0, SloppyMath.fastExp(-750.0));
+    assertEquals(0.0, SloppyMath.fastExp(Double.NEGATIVE_INFINITY));
+    assertEquals(Double.POSITIVE_INFINITY, SloppyMath.fastExp(710.0));
+    assertEquals(Double.POSITIVE_INFINITY, SloppyMath.fastExp(Double.POSITIVE_INFINITY));
+    assertTrue(Double.isNaN(SloppyMath.fastExp(Double.NaN)));
+  }
+
+}
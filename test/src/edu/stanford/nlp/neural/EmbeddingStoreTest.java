@@ -0,0 +1,97 @@
+package edu.stanford.nlp.neural;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.ejml.simple.SimpleMatrix;
+import org.junit.Test;
+
+import edu.stanford.nlp.io.IOUtils;
+
+/**
+ * Tests writing, mapping and converting an EmbeddingStore.
+ */
+public class EmbeddingStoreTest {
+
+  private static String tempPath() throws IOException {
+    File file = File.createTempFile("embeddings", ".bin");
+    file.deleteOnExit();
+    return file.getPath();
+  }
+
+  @Test
+  public void testInMemory() {
+    EmbeddingStore store = new EmbeddingStore(new String[] { "a", "b" }, new float[] { 1, 2, 3, 4 }, 2);
+    assertEquals(2, store.size());
+    assertEquals(1, store.indexOf("b"));
+    assertEquals(-1, store.indexOf("c"));
+    assertArrayEquals(new float[] { 3, 4 }, store.get("b"), 0.0f);
+    assertNull(store.get("c"));
+    assertEquals(2.0, store.getMatrix("a").get(1), 0.0);
+  }
+
+  @Test
+  public void testWriteAndMap() throws IOException {
+    String path = tempPath();
+    Map<String, float[]> vectors = new HashMap<>();
+    EmbeddingStore.Writer writer = new EmbeddingStore.Writer(path, 3);
+    for (int i = 0; i < 1000; i++) {
+      float[] vector = { i, -i, i * 0.5f };
+      vectors.put("word" + i, vector);
+      writer.add("word" + i, vector);
+    }
+    writer.add("été", new float[] { 7, 8, 9 });
+    try (EmbeddingStore store = writer.finish()) {
+      assertEquals(1001, store.size());
+      assertEquals(3, store.dim());
+      for (Map.Entry<String, float[]> entry : vectors.entrySet()) {
+        assertArrayEquals(entry.getValue(), store.get(entry.getKey()), 0.0f);
+      }
+      assertArrayEquals(new float[] { 7, 8, 9 }, store.get("été"), 0.0f);
+      float[] buffer = new float[5];
+      store.get(store.indexOf("word10"), buffer, 2);
+      assertArrayEquals(new float[] { 0, 0, 10, -10, 5 }, buffer, 0.0f);
+      assertFalse(store.containsWord("word1000"));
+    }
+    try (EmbeddingStore store = EmbeddingStore.load(path)) {
+      assertEquals(-999.0f, store.get(store.indexOf("word999"), 1), 0.0f);
+    }
+  }
+
+  @Test
+  public void testConverters() throws IOException {
+    File text = File.createTempFile("embeddings", ".txt");
+    text.deleteOnExit();
+    try (PrintWriter pw = IOUtils.getPrintWriter(text)) {
+      pw.println("3 2");
+      pw.println("the 0.5 -1.5");
+      pw.println("*UNK* 0 0");
+      pw.println("dog 2.25 3");
+    }
+    try (EmbeddingStore store = EmbeddingStore.fromText(text.getPath(), tempPath())) {
+      assertEquals(3, store.size());
+      assertArrayEquals(new float[] { 2.25f, 3f }, store.get("dog"), 0.0f);
+    }
+
+    Map<String, SimpleMatrix> matrices = new HashMap<>();
+    matrices.put("*UNK*", new SimpleMatrix(new double[][] { { 0 }, { 0 } }));
+    matrices.put("the", new SimpleMatrix(new double[][] { { 0.5 }, { -1.5 } }));
+    try (EmbeddingStore store = EmbeddingStore.fromEmbedding(new Embedding(matrices), tempPath())) {
+      assertEquals(2, store.size());
+      assertEquals(-1.5, store.getMatrix("the").get(1), 0.0);
+    }
+
+    Map<String, float[]> map = new HashMap<>();
+    map.put("cat", new float[] { 1, 2 });
+    map.put("dog", new float[] { 3, 4 });
+    try (EmbeddingStore store = EmbeddingStore.fromMap(new VectorMap(map), tempPath())) {
+      assertArrayEquals(new float[] { 3, 4 }, store.get("dog"), 0.0f);
+    }
+  }
+
+}
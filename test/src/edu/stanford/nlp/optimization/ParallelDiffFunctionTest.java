@@ -0,0 +1,153 @@
+package edu.stanford.nlp.optimization;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that working out a sum-over-data function in parallel gives the same value and
+ * derivative as working it out in one go, and that QNMinimizer finds the same answer when it
+ * tries several step sizes at once.
+ */
+public class ParallelDiffFunctionTest extends TestCase {
+
+  private static final int NUM_DATA = 200;
+  private static final int DIM = 5;
+
+  private static final double[][] inputs = new double[NUM_DATA][DIM];
+  private static final double[] outputs = new double[NUM_DATA];
+
+  static {
+    Random r = new Random(42L);
+    for (int d = 0; d < NUM_DATA; d++) {
+      for (int i = 0; i < DIM; i++) {
+        inputs[d][i] = r.nextGaussian();
+        outputs[d] += (i + 1) * inputs[d][i];
+      }
+      outputs[d] += 0.1 * r.nextGaussian();
+    }
+  }
+
+  /** Least squares with a quadratic prior, which is shared out over the batches. */
+  private static class LeastSquaresFunction extends AbstractStochasticCachingDiffFunction {
+
+    @Override
+    public void calculateStochastic(double[] x, double[] v, int[] batch) {
+      double priorFactor = (double) batch.length / NUM_DATA;
+      value = 0.0;
+      derivative = new double[DIM];
+      for (int i = 0; i < DIM; i++) {
+        value += priorFactor * x[i] * x[i] / 2.0;
+        derivative[i] = priorFactor * x[i];
+      }
+      for (int d : batch) {
+        double error = -outputs[d];
+        for (int i = 0; i < DIM; i++) {
+          error += x[i] * inputs[d][i];
+        }
+        value += error * error / 2.0;
+        for (int i = 0; i < DIM; i++) {
+          derivative[i] += error * inputs[d][i];
+        }
+      }
+    }
+
+    @Override
+    protected void calculate(double[] x) {
+      int[] all = new int[NUM_DATA];
+      for (int d = 0; d < NUM_DATA; d++) {
+        all[d] = d;
+      }
+      calculateStochastic(x, null, all);
+    }
+
+    @Override
+    public int dataDimension() {
+      return NUM_DATA;
+    }
+
+    @Override
+    public int domainDimension() {
+      return DIM;
+    }
+  }
+
+  public void testSameAsSerial() {
+    double[] x = { 0.5, -1.0, 2.0, 0.0, 3.0 };
+    LeastSquaresFunction serial = new LeastSquaresFunction();
+    ParallelDiffFunction parallel = new ParallelDiffFunction(LeastSquaresFunction::new, 4, 7);
+    assertEquals(serial.valueAt(x), parallel.valueAt(x), 1e-8);
+    double[] serialDerivative = serial.derivativeAt(x);
+    double[] parallelDerivative = parallel.derivativeAt(x);
+    for (int i = 0; i < DIM; i++) {
+      assertEquals(serialDerivative[i], parallelDerivative[i], 1e-8);
+    }
+
+    double[][] points = { x, new double[DIM], { 1.0, 2.0, 3.0, 4.0, 5.0 } };
+    double[] values = parallel.valuesAt(points);
+    for (int p = 0; p < points.length; p++) {
+      assertEquals(serial.valueAt(points[p]), values[p], 1e-8);
+      // the derivatives at the points were kept and are the same as when worked out again
+      assertTrue(Arrays.equals(new ParallelDiffFunction(LeastSquaresFunction::new, 4, 7).derivativeAt(points[p]),
+          parallel.derivativeAt(points[p])));
+    }
+  }
+
+  public void testDeterministic() {
+    double[] x = { 0.3, 0.1, -0.7, 1.1, 0.0 };
+    ParallelDiffFunction one = new ParallelDiffFunction(LeastSquaresFunction::new, 1, 8);
+    ParallelDiffFunction many = new ParallelDiffFunction(LeastSquaresFunction::new, 8, 8);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(one.valueAt(x), many.valueAt(x));
+      assertTrue(Arrays.equals(one.derivativeAt(x), many.derivativeAt(x)));
+      x[i] += 1.0;
+    }
+  }
+
+  public void testParallelLineSearch() {
+    QNMinimizer serial = new QNMinimizer();
+    serial.useBacktracking();
+    serial.shutUp();
+    double[] serialAnswer = serial.minimize(new ParallelDiffFunction(LeastSquaresFunction::new, 4, 4), 1e-8, new double[DIM]);
+
+    QNMinimizer parallel = new QNMinimizer();
+    parallel.useBacktracking();
+    parallel.shutUp();
+    parallel.setParallelLineSearchPoints(4);
+    double[] parallelAnswer = parallel.minimize(new ParallelDiffFunction(LeastSquaresFunction::new, 4, 4), 1e-8, new double[DIM]);
+
+    assertTrue(Arrays.equals(serialAnswer, parallelAnswer));
+    for (int i = 0; i < DIM; i++) {
+      assertEquals(i + 1, parallelAnswer[i], 0.1);
+    }
+  }
+
+  private static int poolThreads() {
+    int count = 0;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("ParallelDiffFunction") && thread.isAlive()) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  public void testThreadsReusedAndClosed() throws InterruptedException {
+    int before = poolThreads();
+    double[] x = new double[DIM];
+    ParallelDiffFunction parallel = new ParallelDiffFunction(LeastSquaresFunction::new, 3, 6);
+    for (int i = 0; i < 20; i++) {
+      parallel.valueAt(x);
+      parallel.valuesAt(new double[][] { x, { 1.0, 1.0, 1.0, 1.0, 1.0 } });
+      x[i % DIM] += 1.0;
+    }
+    assertEquals(before + 3, poolThreads());
+    parallel.close();
+    assertEquals(before, poolThreads());
+    // and it still works after being closed
+    assertEquals(new LeastSquaresFunction().valueAt(x), parallel.valueAt(x), 1e-8);
+    parallel.close();
+  }
+
+}
@@ -0,0 +1,126 @@
+package edu.stanford.nlp.optimization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import edu.stanford.nlp.benchmarks.SparseAdaGradBenchmark;
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+import junit.framework.TestCase;
+
+/**
+ * Tests that SparseAdaGradMinimizer learns a sparse logistic regression, on one thread and
+ * Hogwild style on several, and the serial updates of all the features of a batch.
+ */
+public class SparseAdaGradMinimizerTest extends TestCase {
+
+  /** Half the squared distance of the weights from targets of alternately +1 and -1. */
+  private static class TargetFunction implements SparseOnlineFunction<Integer> {
+
+    final int numFeatures;
+    int numDerivatives; // = 0;
+
+    TargetFunction(int numFeatures) {
+      this.numFeatures = numFeatures;
+    }
+
+    private static double target(int feature) {
+      return (feature % 2 == 0) ? 1.0 : -1.0;
+    }
+
+    @Override
+    public double valueAt(Counter<Integer> x, int[] selectedData) {
+      double value = 0.0;
+      for (int k = 0; k < numFeatures; k++) {
+        double d = x.getCount(k) - target(k);
+        value += 0.5 * d * d;
+      }
+      return value;
+    }
+
+    @Override
+    public Counter<Integer> derivativeAt(Counter<Integer> x, int[] selectedData) {
+      numDerivatives++;
+      Counter<Integer> gradient = new ClassicCounter<>();
+      for (int k = 0; k < numFeatures; k++) {
+        gradient.setCount(k, x.getCount(k) - target(k));
+      }
+      return gradient;
+    }
+
+    @Override
+    public int dataSize() {
+      return 1;
+    }
+
+  }
+
+  /** Every feature of a batch is updated, and negative weights are kept. */
+  public void testSerialUpdatesAllFeatures() {
+    TargetFunction function = new TargetFunction(10);
+    SparseAdaGradMinimizer<Integer, TargetFunction> minimizer = new SparseAdaGradMinimizer<>(200, 0.5, 1, 0.0, 0.0);
+    minimizer.quiet = true;
+    Counter<Integer> x = minimizer.minimize(function, new ClassicCounter<>());
+    for (int k = 0; k < 10; k++) {
+      assertEquals("feature " + k, TargetFunction.target(k), x.getCount(k), 0.05);
+    }
+  }
+
+  /** maxIterations counts feature updates, and is checked after each batch. */
+  public void testSerialMaxIterations() {
+    TargetFunction function = new TargetFunction(10);
+    SparseAdaGradMinimizer<Integer, TargetFunction> minimizer = new SparseAdaGradMinimizer<>(100, 0.5, 1, 0.0, 0.0);
+    minimizer.quiet = true;
+    minimizer.minimize(function, new ClassicCounter<>(), 20);
+    assertEquals(3, function.numDerivatives);
+  }
+
+  public void testQuietPrintsNothing() {
+    SparseAdaGradMinimizer<Integer, TargetFunction> minimizer = new SparseAdaGradMinimizer<>(5, 0.5, 1, 0.0, 0.0);
+    minimizer.quiet = true;
+    PrintStream out = System.out;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    System.setOut(new PrintStream(bytes, true));
+    try {
+      minimizer.minimize(new TargetFunction(10), new ClassicCounter<>(), 1000);
+    } finally {
+      System.setOut(out);
+    }
+    assertEquals("", bytes.toString());
+  }
+
+  private static double minimize(SparseAdaGradBenchmark.SparseLogisticFunction function, int numThreads) {
+    SparseAdaGradMinimizer<Integer, SparseAdaGradBenchmark.SparseLogisticFunction> minimizer =
+        new SparseAdaGradMinimizer<>(10, 0.1, 5, 0.0, 0.0);
+    minimizer.quiet = true;
+    minimizer.setNumThreads(numThreads);
+    Counter<Integer> x = minimizer.minimize(function, new ClassicCounter<>());
+    return function.valueAt(x) / function.dataSize();
+  }
+
+  public void testHogwild() {
+    SparseAdaGradBenchmark.SparseLogisticFunction function =
+        new SparseAdaGradBenchmark.SparseLogisticFunction(2000, 200, 5, new Random(7L));
+    double start = Math.log(2.0);
+    double serial = minimize(function, 1);
+    double hogwild = minimize(function, 4);
+    assertTrue("serial objective " + serial, serial < 0.6 * start);
+    assertTrue("hogwild objective " + hogwild, hogwild < 0.6 * start);
+    assertEquals(serial, hogwild, 0.05);
+  }
+
+  public void testHogwildKeepsAdaGradSums() {
+    SparseAdaGradBenchmark.SparseLogisticFunction function =
+        new SparseAdaGradBenchmark.SparseLogisticFunction(200, 50, 5, new Random(7L));
+    SparseAdaGradMinimizer<Integer, SparseAdaGradBenchmark.SparseLogisticFunction> minimizer =
+        new SparseAdaGradMinimizer<>(2, 0.1, 5, 0.0, 0.0);
+    minimizer.quiet = true;
+    minimizer.setNumThreads(4);
+    minimizer.minimize(function, new ClassicCounter<>());
+    // the sums the threads added to are copied back, into the same counter
+    assertTrue(minimizer.sumGradSquare instanceof ClassicCounter);
+    assertFalse(minimizer.sumGradSquare.keySet().isEmpty());
+  }
+
+}
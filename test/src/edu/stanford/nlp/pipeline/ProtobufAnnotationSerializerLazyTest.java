@@ -0,0 +1,96 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.*;
+import java.util.List;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.trees.GrammaticalRelation;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeCoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.LazyCoreMap;
+import junit.framework.TestCase;
+
+/**
+ * Tests that reading a document lazily gives the same annotation as reading it straight away,
+ * making the trees and graphs only when they are asked for.
+ */
+public class ProtobufAnnotationSerializerLazyTest extends TestCase {
+
+  private static Annotation document() {
+    Annotation doc = new Annotation("The dog barks. It runs.");
+    new TokenizerAnnotator(false).annotate(doc);
+    new WordsToSentencesAnnotator(false).annotate(doc);
+    for (CoreMap sentence : doc.get(CoreAnnotations.SentencesAnnotation.class)) {
+      List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+      StringBuilder tree = new StringBuilder("(ROOT (S");
+      for (CoreLabel token : tokens) {
+        token.setTag("NN");
+        token.setNER("O");
+        tree.append(" (NN ").append(token.word()).append(')');
+      }
+      sentence.set(TreeCoreAnnotations.TreeAnnotation.class, Tree.valueOf(tree.append("))").toString()));
+      // every word depends on the first one
+      SemanticGraph graph = new SemanticGraph();
+      IndexedWord root = new IndexedWord(tokens.get(0));
+      graph.addRoot(root);
+      for (CoreLabel token : tokens.subList(1, tokens.size())) {
+        IndexedWord word = new IndexedWord(token);
+        graph.addVertex(word);
+        graph.addEdge(root, word, GrammaticalRelation.valueOf("dep"), 1.0, false);
+      }
+      sentence.set(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class, graph);
+      sentence.set(SemanticGraphCoreAnnotations.EnhancedPlusPlusDependenciesAnnotation.class, graph);
+    }
+    return doc;
+  }
+
+  public void testSameAsEager() throws Exception {
+    ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer(false);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    serializer.write(document(), bytes);
+    Annotation eager = serializer.read(new ByteArrayInputStream(bytes.toByteArray())).first;
+    Annotation lazy = serializer.readLazy(new ByteArrayInputStream(bytes.toByteArray())).first;
+
+    assertEquals(eager.get(CoreAnnotations.TokensAnnotation.class), lazy.get(CoreAnnotations.TokensAnnotation.class));
+    List<CoreMap> eagerSentences = eager.get(CoreAnnotations.SentencesAnnotation.class);
+    List<CoreMap> lazySentences = lazy.get(CoreAnnotations.SentencesAnnotation.class);
+    assertEquals(2, lazySentences.size());
+    LazyCoreMap sentence = (LazyCoreMap) lazySentences.get(0);
+    assertTrue(sentence.isLazy(TreeCoreAnnotations.TreeAnnotation.class));
+    assertTrue(sentence.isLazy(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class));
+    assertTrue(sentence.containsKey(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class));
+    assertEquals(eagerSentences.get(0).get(CoreAnnotations.TokensAnnotation.class), sentence.get(CoreAnnotations.TokensAnnotation.class));
+    assertTrue(sentence.isLazy(TreeCoreAnnotations.TreeAnnotation.class));
+
+    assertEquals(eagerSentences.get(0).get(TreeCoreAnnotations.TreeAnnotation.class), sentence.get(TreeCoreAnnotations.TreeAnnotation.class));
+    assertFalse(sentence.isLazy(TreeCoreAnnotations.TreeAnnotation.class));
+    SemanticGraph graph = sentence.get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class);
+    assertEquals(eagerSentences.get(0).get(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class).toString(), graph.toString());
+    // the graph is made over the tokens of the sentence
+    assertSame(sentence.get(CoreAnnotations.TokensAnnotation.class).get(0), graph.getFirstRoot().backingLabel());
+
+    assertEquals(eager, lazy);
+  }
+
+  public void testMappedFile() throws Exception {
+    ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer(false);
+    Annotation doc = document();
+    byte[] proto = serializer.toProto(doc).toByteArray();
+    File file = File.createTempFile("lazy", ".ser");
+    file.deleteOnExit();
+    try (OutputStream os = new FileOutputStream(file)) {
+      os.write(new byte[] { 1, 2, 3 });
+      os.write(proto);
+      os.write(new byte[] { 4, 5 });
+    }
+    Annotation lazy = serializer.readLazy(file, 3, proto.length);
+    assertEquals(serializer.fromProto(serializer.toProto(doc)), lazy);
+    assertEquals(doc.get(CoreAnnotations.TextAnnotation.class), lazy.get(CoreAnnotations.TextAnnotation.class));
+  }
+
+}
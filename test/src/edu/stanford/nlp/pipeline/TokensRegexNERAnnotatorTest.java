@@ -0,0 +1,123 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Tests that matching literal entries with a trie gives the same annotations as TokensRegex.
+ */
+public class TokensRegexNERAnnotatorTest extends TestCase {
+
+  private static final String[] VOCAB = { "New", "York", "new", "york", "City", "of", "the", "Bank", "America", "Canada", "a" };
+
+  private static TokensRegexNERAnnotator makeAnnotator(File mapping, boolean ignoreCase, boolean literalTrie) {
+    return makeAnnotator(mapping, ignoreCase, literalTrie, null);
+  }
+
+  private static TokensRegexNERAnnotator makeAnnotator(File mapping, boolean ignoreCase, boolean literalTrie, File cache) {
+    Properties props = new Properties();
+    if (cache != null) {
+      props.setProperty("tokensregexner.literaltrie.cache", cache.getAbsolutePath());
+    }
+    props.setProperty("tokensregexner.mapping", mapping.getAbsolutePath());
+    props.setProperty("tokensregexner.ignorecase", String.valueOf(ignoreCase));
+    props.setProperty("tokensregexner.literaltrie", String.valueOf(literalTrie));
+    return new TokensRegexNERAnnotator("tokensregexner", props);
+  }
+
+  private static List<String> annotate(TokensRegexNERAnnotator annotator, List<String> words, List<String> ner) {
+    List<CoreLabel> tokens = new ArrayList<>();
+    for (int i = 0; i < words.size(); i++) {
+      CoreLabel token = new CoreLabel();
+      token.setWord(words.get(i));
+      token.setValue(words.get(i));
+      token.setNER(ner.get(i));
+      tokens.add(token);
+    }
+    Annotation annotation = new Annotation(String.join(" ", words));
+    annotation.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    annotator.annotate(annotation);
+    List<String> result = new ArrayList<>();
+    for (CoreLabel token : tokens) {
+      result.add(token.ner());
+    }
+    return result;
+  }
+
+  private static File mapping() throws Exception {
+    File mapping = File.createTempFile("TokensRegexNERAnnotatorTest", ".tab");
+    mapping.deleteOnExit();
+    Random random = new Random(7);
+    try (PrintWriter pw = IOUtils.getPrintWriter(mapping.getAbsolutePath())) {
+      for (int i = 0; i < 60; i++) {
+        StringBuilder pattern = new StringBuilder();
+        for (int j = 1 + random.nextInt(3); j > 0; j--) {
+          if (pattern.length() > 0) {
+            pattern.append(' ');
+          }
+          pattern.append(VOCAB[random.nextInt(VOCAB.length)]);
+        }
+        // distinct priorities, so ties are not left to match order
+        pw.println(pattern + "\tTYPE" + i + "\tLOCATION\t" + i);
+      }
+      pw.println("Ca.*\tREGEX\t\t100");
+      pw.println("( /[Nn]ew/ /York|york/ )\tTOKENSREGEX\t\t30.5");
+    }
+    return mapping;
+  }
+
+  private static void assertSameAnnotations(TokensRegexNERAnnotator expected, TokensRegexNERAnnotator actual, Random random) {
+    for (int trial = 0; trial < 200; trial++) {
+      List<String> words = new ArrayList<>();
+      List<String> ner = new ArrayList<>();
+      for (int i = 1 + random.nextInt(15); i > 0; i--) {
+        words.add(VOCAB[random.nextInt(VOCAB.length)]);
+        ner.add(random.nextInt(4) == 0 ? "LOCATION" : "O");
+      }
+      assertEquals(words.toString(), annotate(expected, words, ner), annotate(actual, words, ner));
+    }
+  }
+
+  public void testLiteralTrieMatchesTokensRegex() throws Exception {
+    File mapping = mapping();
+    Random random = new Random(7);
+
+    for (boolean ignoreCase : new boolean[] { false, true }) {
+      assertSameAnnotations(makeAnnotator(mapping, ignoreCase, false), makeAnnotator(mapping, ignoreCase, true), random);
+    }
+  }
+
+  public void testLiteralTrieCache() throws Exception {
+    File mapping = mapping();
+    File cache = File.createTempFile("TokensRegexNERAnnotatorTest", "");
+    assertTrue(cache.delete());
+    try {
+      Random random = new Random(11);
+      TokensRegexNERAnnotator built = makeAnnotator(mapping, false, true, cache);
+      File[] saved = cache.listFiles();
+      assertEquals(1, saved.length);
+      long modified = saved[0].lastModified();
+      // the second annotator maps the saved matcher rather than saving another
+      TokensRegexNERAnnotator loaded = makeAnnotator(mapping, false, true, cache);
+      assertEquals(1, cache.listFiles().length);
+      assertEquals(modified, saved[0].lastModified());
+      assertSameAnnotations(makeAnnotator(mapping, false, false), built, random);
+      assertSameAnnotations(makeAnnotator(mapping, false, false), loaded, random);
+      // entries matched ignoring case get a matcher of their own
+      assertSameAnnotations(makeAnnotator(mapping, true, false), makeAnnotator(mapping, true, true, cache), random);
+      assertEquals(2, cache.listFiles().length);
+    } finally {
+      for (File file : cache.listFiles()) {
+        file.delete();
+      }
+      cache.delete();
+    }
+  }
+
+}
@@ -3,6 +3,7 @@ package edu.stanford.nlp.semgraph;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -245,4 +246,33 @@ public class SemanticGraphTest extends TestCase {
     }
   }
 
+  public void testCompact() {
+    SemanticGraph original = makeGraph();
+    SemanticGraph compact = new SemanticGraph(original);
+    compact.compact();
+    assertTrue(compact.isCompact());
+    assertEquals(original, compact);
+    assertEquals(original.toString(), compact.toString());
+    assertEquals(original.toList(), compact.toList());
+    assertEquals(original.topologicalSort(), compact.topologicalSort());
+    for (IndexedWord word : original.vertexSet()) {
+      assertEquals(original.outgoingEdgeList(word), compact.outgoingEdgeList(word));
+      assertEquals(original.incomingEdgeList(word), compact.incomingEdgeList(word));
+      assertEquals(original.getParent(word), compact.getParent(word));
+      assertEquals(original.descendants(word), compact.descendants(word));
+    }
+    IndexedWord first = original.getNodeByIndex(1);
+    IndexedWord last = original.getNodeByIndex(45);
+    assertEquals(original.getShortestUndirectedPathEdges(first, last), compact.getShortestUndirectedPathEdges(first, last));
+
+    // removing edges through an iterator turns the graph back into the usual form
+    int numEdges = compact.edgeCount();
+    Iterator<SemanticGraphEdge> edges = compact.outgoingEdgeIterator(compact.getFirstRoot());
+    edges.next();
+    edges.remove();
+    assertFalse(compact.isCompact());
+    assertEquals(numEdges - 1, compact.edgeCount());
+    assertEquals(original.outgoingEdgeList(original.getFirstRoot()).size() - 1, compact.outgoingEdgeList(compact.getFirstRoot()).size());
+  }
+
 }
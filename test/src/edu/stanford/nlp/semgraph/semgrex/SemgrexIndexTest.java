@@ -0,0 +1,124 @@
+package edu.stanford.nlp.semgraph.semgrex;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Tests that running Semgrex patterns on the candidates from a SemgrexIndex finds
+ * all the matches that running them on every graph does.
+ */
+public class SemgrexIndexTest extends TestCase {
+
+  private static final String[] WORDS = { "ate/VBD", "Bill/NNP", "muffins/NNS", "blueberry/NN", "saw/VBD", "dog/NN", "the/DT", "big/JJ" };
+  private static final String[] RELATIONS = { "nsubj", "obj", "compound", "det", "amod" };
+
+  private static final String[] PATTERNS = {
+      "{word:ate}",
+      "{word:ate} >nsubj {}",
+      "{tag:VBD} >obj {word:muffins}",
+      "{tag:/VB.*/} >obj ({} >det {word:the})",
+      "{lemma:dog} <nsubj {}",
+      "{} >/nsubj|obj/ {tag:NN}",
+      "{word:ate} !>nsubj {}",
+      "{word:saw} ?>amod {}=a",
+      "{} [>nsubj {word:Bill} | >obj {word:Bill}]",
+      "{word:ate} : {word:dog}",
+      "!{word:ate} >compound {}",
+      "{$} >det {}",
+      "{word:Ate}",
+  };
+
+  private static SemanticGraph randomGraph(Random random) {
+    StringBuilder sb = new StringBuilder();
+    sb.append('[').append(WORDS[random.nextInt(WORDS.length)]);
+    for (int i = 1 + random.nextInt(3); i > 0; i--) {
+      sb.append(' ').append(RELATIONS[random.nextInt(RELATIONS.length)]).append('>');
+      appendNode(sb, random, 2);
+    }
+    sb.append(']');
+    SemanticGraph graph = SemanticGraph.valueOf(sb.toString());
+    for (IndexedWord word : graph.vertexSet()) {
+      word.setLemma(word.word().toLowerCase());
+    }
+    return graph;
+  }
+
+  private static void appendNode(StringBuilder sb, Random random, int depth) {
+    String word = WORDS[random.nextInt(WORDS.length)];
+    if (depth == 0 || random.nextInt(3) == 0) {
+      sb.append(word);
+      return;
+    }
+    sb.append('[').append(word);
+    for (int i = 1 + random.nextInt(2); i > 0; i--) {
+      sb.append(' ').append(RELATIONS[random.nextInt(RELATIONS.length)]).append('>');
+      appendNode(sb, random, depth - 1);
+    }
+    sb.append(']');
+  }
+
+  private static List<String> findAll(SemgrexPattern pattern, List<SemanticGraph> graphs) {
+    List<String> matches = new ArrayList<>();
+    for (int id = 0; id < graphs.size(); id++) {
+      SemgrexMatcher matcher = pattern.matcher(graphs.get(id));
+      while (matcher.find()) {
+        matches.add(id + ":" + matcher.getMatch().index());
+      }
+    }
+    return matches;
+  }
+
+  public void testCandidatesContainAllMatches() throws Exception {
+    Random random = new Random(5);
+    List<SemanticGraph> graphs = new ArrayList<>();
+    SemgrexIndex.Builder builder = new SemgrexIndex.Builder();
+    for (int i = 0; i < 400; i++) {
+      SemanticGraph graph = randomGraph(random);
+      graphs.add(graph);
+      assertEquals(i, builder.add(graph));
+    }
+    SemgrexIndex index = builder.build();
+    assertEquals(graphs.size(), index.size());
+
+    File file = File.createTempFile("SemgrexIndexTest", ".idx");
+    file.deleteOnExit();
+    index.save(file);
+    SemgrexIndex loaded = SemgrexIndex.load(file);
+    assertEquals(index.size(), loaded.size());
+    assertEquals(index.numTerms(), loaded.numTerms());
+
+    boolean pruned = false;
+    for (String patternString : PATTERNS) {
+      SemgrexPattern pattern = SemgrexPattern.compile(patternString);
+      List<String> expected = findAll(pattern, graphs);
+      for (SemgrexIndex idx : new SemgrexIndex[] { index, loaded }) {
+        List<String> matches = new ArrayList<>();
+        idx.find(pattern, graphs::get, (id, matcher) -> matches.add(id + ":" + matcher.getMatch().index()));
+        assertEquals(patternString, expected, matches);
+      }
+      assertTrue(Arrays.equals(index.candidates(pattern), loaded.candidates(pattern)));
+      pruned |= index.candidates(pattern).length < graphs.size();
+    }
+    assertTrue(pruned);
+    assertEquals(0, index.candidates(SemgrexPattern.compile("{word:Ate}")).length);
+  }
+
+  public void testPostings() {
+    SemgrexIndex.Builder builder = new SemgrexIndex.Builder();
+    builder.add(SemanticGraph.valueOf("[ate/VBD nsubj>Bill/NNP obj>muffins/NNS]"));
+    builder.add(SemanticGraph.valueOf("[saw/VBD nsubj>Bill/NNP]"));
+    builder.add(SemanticGraph.valueOf("[ate/VBD obj>dog/NN]"));
+    SemgrexIndex index = builder.build();
+    assertTrue(Arrays.equals(new int[] { 0, 1 }, index.graphsWithAttribute(CoreAnnotations.TextAnnotation.class, "Bill")));
+    assertTrue(Arrays.equals(new int[] { 0, 2 }, index.graphsWithRelation("obj")));
+    assertTrue(Arrays.equals(new int[] { 0, 1, 2 }, index.graphsWithAttribute(CoreAnnotations.PartOfSpeechAnnotation.class, "VBD")));
+    assertTrue(Arrays.equals(new int[] { 0 }, index.candidates(SemgrexPattern.compile("{word:ate} >nsubj {word:Bill}"))));
+    assertTrue(Arrays.equals(new int[] { 0, 1, 2 }, index.candidates(SemgrexPattern.compile("{} >/nsubj|obj/ {}"))));
+  }
+
+}
@@ -0,0 +1,67 @@
+package edu.stanford.nlp.sentiment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.simple.SimpleMatrix;
+
+import edu.stanford.nlp.benchmarks.SentimentBatchBenchmark;
+import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
+import edu.stanford.nlp.trees.Tree;
+import junit.framework.TestCase;
+
+/**
+ * Tests that batched evaluation annotates trees as evaluating them one at a time does.
+ */
+public class SentimentBatchEvaluatorTest extends TestCase {
+
+  private static void assertSameAsSerial(boolean useTensors) {
+    Random random = new Random(17L);
+    List<Tree> trees = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      trees.add(SentimentBatchBenchmark.randomTree(random, 1 + random.nextInt(12), 30));
+    }
+    SentimentModel model = SentimentBatchBenchmark.randomModel(trees, 6);
+    model.op.useTensors = useTensors;
+
+    List<Tree> expected = new ArrayList<>();
+    SentimentCostAndGradient scorer = new SentimentCostAndGradient(model, null);
+    for (Tree tree : trees) {
+      Tree copy = tree.deepCopy();
+      scorer.forwardPropagateTree(copy);
+      expected.add(copy);
+    }
+    new SentimentBatchEvaluator(model).forwardPropagateTrees(trees);
+
+    for (int i = 0; i < trees.size(); i++) {
+      List<Tree> expectedNodes = expected.get(i).preOrderNodeList();
+      List<Tree> nodes = trees.get(i).preOrderNodeList();
+      assertEquals(expectedNodes.size(), nodes.size());
+      for (int j = 0; j < nodes.size(); j++) {
+        if (nodes.get(j).isLeaf()) {
+          continue;
+        }
+        assertEquals(RNNCoreAnnotations.getPredictedClass(expectedNodes.get(j)), RNNCoreAnnotations.getPredictedClass(nodes.get(j)));
+        assertEquals(RNNCoreAnnotations.getNodeVector(expectedNodes.get(j)), RNNCoreAnnotations.getNodeVector(nodes.get(j)));
+        assertEquals(RNNCoreAnnotations.getPredictions(expectedNodes.get(j)), RNNCoreAnnotations.getPredictions(nodes.get(j)));
+      }
+    }
+  }
+
+  private static void assertEquals(SimpleMatrix expected, SimpleMatrix actual) {
+    assertEquals(expected.getNumElements(), actual.getNumElements());
+    for (int i = 0; i < expected.getNumElements(); i++) {
+      assertEquals(expected.get(i), actual.get(i), 1e-12);
+    }
+  }
+
+  public void testSameAsSerial() {
+    assertSameAsSerial(true);
+  }
+
+  public void testWithoutTensors() {
+    assertSameAsSerial(false);
+  }
+
+}
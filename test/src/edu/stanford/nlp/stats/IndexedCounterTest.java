@@ -0,0 +1,95 @@
+package edu.stanford.nlp.stats;
+
+import java.util.Random;
+
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+
+/**
+ * Tests for the IndexedCounter, both the usual Counter tests and the
+ * {@link Counters} fast paths for counters over the same Index.
+ */
+public class IndexedCounterTest extends CounterTestBase {
+
+  public IndexedCounterTest() {
+    super(new IndexedCounter<String>());
+  }
+
+  public void testFastPathsSameAsClassicCounter() {
+    Random random = new Random(7);
+    Index<String> index = new HashIndex<>();
+    IndexedCounter<String> a = new IndexedCounter<>(index);
+    IndexedCounter<String> b = new IndexedCounter<>(index);
+    ClassicCounter<String> classicA = new ClassicCounter<>();
+    ClassicCounter<String> classicB = new ClassicCounter<>();
+    for (int i = 0; i < 2000; i++) {
+      String key = "k" + random.nextInt(500);
+      double count = random.nextInt(10) - 3;
+      if (random.nextBoolean()) {
+        a.incrementCount(key, count);
+        classicA.incrementCount(key, count);
+      } else {
+        b.setCount(key, count);
+        classicB.setCount(key, count);
+      }
+      if (i % 7 == 0) {
+        String removed = "k" + random.nextInt(500);
+        a.remove(removed);
+        classicA.remove(removed);
+      }
+    }
+    assertEquals(classicA.size(), a.size());
+    assertTrue(Counters.equals(classicA, a, 1e-9));
+    assertTrue(Counters.equals(a, classicA, 1e-9));
+    assertEquals(classicA, a);
+
+    assertEquals(Counters.dotProduct(classicA, classicB), Counters.dotProduct(a, b), 1e-9);
+    assertEquals(Counters.L2Norm(classicA), Counters.L2Norm(a), 1e-9);
+    assertEquals(Counters.L1Norm(classicB), Counters.L1Norm(b), 1e-9);
+
+    Counters.addInPlace(classicA, classicB, 2.5);
+    Counters.addInPlace(a, b, 2.5);
+    assertTrue(Counters.equals(classicA, a, 1e-9));
+    Counters.addInPlace(classicA, classicB);
+    Counters.addInPlace(a, b);
+    assertTrue(Counters.equals(classicA, a, 1e-9));
+    assertEquals(classicA.totalCount(), a.totalCount(), 1e-9);
+
+    Counters.multiplyInPlace(classicA, -0.5);
+    Counters.multiplyInPlace(a, -0.5);
+    assertTrue(Counters.equals(classicA, a, 1e-9));
+    Counters.normalize(classicB);
+    Counters.normalize(b);
+    assertTrue(Counters.equals(classicB, b, 1e-9));
+    assertEquals(1.0, b.totalCount(), 1e-9);
+
+    // counters over different Indices go the slow way
+    IndexedCounter<String> c = new IndexedCounter<>(new HashIndex<>(), a);
+    assertEquals(Counters.dotProduct(classicA, classicB), Counters.dotProduct(c, b), 1e-9);
+    assertTrue(Counters.equals(new ClassicCounter<>(a), c, 1e-9));  // both copies leave out zero counts
+  }
+
+  public void testIds() {
+    Index<String> index = new HashIndex<>();
+    IndexedCounter<String> a = new IndexedCounter<>(index);
+    a.incrementCount("x", 2.0);
+    int x = index.indexOf("x");
+    assertEquals(2.0, a.getCountById(x));
+    a.incrementCountById(x, 1.0);
+    a.setCountById(index.addToIndex("y"), 4.0);
+    assertEquals(3.0, a.getCount("x"));
+    assertEquals(4.0, a.getCount("y"));
+    assertEquals(7.0, a.totalCount());
+    assertEquals(0.0, a.getCount("z"));
+    assertEquals(2, index.size());
+
+    index.lock();
+    try {
+      a.setCount("z", 1.0);
+      fail("Expected the locked Index to refuse a new key");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+}
@@ -0,0 +1,133 @@
+package edu.stanford.nlp.trees.tregex;
+
+import junit.framework.TestCase;
+
+import java.util.*;
+
+import edu.stanford.nlp.trees.*;
+
+/**
+ * Tests that matching patterns together finds the same matches as matching them one at a time.
+ */
+public class MultiTregexPatternTest extends TestCase {
+
+  private static final String[] LABELS = { "S", "NP", "NP-SBJ", "VP", "PP", "NN", "VB", "DT", "IN" };
+
+  private static final String[] PATTERNS = {
+      "NP",
+      "NP < NN",
+      "@NP <, DT=d",
+      "/^(NP|VP)$/ < (PP < NP=n)",
+      "VP !< VB",
+      "__ < NN < DT",
+      "S [< NP | < VP=v]",
+      "NP < DT | VP < VB",
+      "NP ?< DT=d < NN",
+      "NP >> VP",
+      "PP $- NP",
+      "NN | VB",
+      "@NP=a < (__ < =a)",
+      "/(.+)/#1%x < (__ < /(.+)/#1%x)",
+      "__=a < (__ << ~a)",
+      "IN !>> S",
+      "__ < (VB < DT)",
+      "NP <<, NN",
+  };
+
+  private static Tree randomTree(Random random, int depth) {
+    String label = LABELS[random.nextInt(LABELS.length)];
+    if (depth == 0 || random.nextInt(4) == 0) {
+      return TregexTest.treeFromString("(" + label + " w)");
+    }
+    StringBuilder sb = new StringBuilder("(" + label);
+    for (int i = 1 + random.nextInt(3); i > 0; i--) {
+      sb.append(' ').append(randomTree(random, depth - 1));
+    }
+    sb.append(')');
+    return TregexTest.treeFromString(sb.toString());
+  }
+
+  private static List<TregexPattern> compilePatterns() {
+    List<TregexPattern> patterns = new ArrayList<>();
+    for (String pattern : PATTERNS) {
+      patterns.add(TregexPattern.compile(pattern));
+    }
+    return patterns;
+  }
+
+  private static String describe(Tree tree, int p, TregexMatcher matcher) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(p).append(':').append(matcher.getMatch().nodeNumber(tree));
+    for (String name : new TreeSet<>(matcher.getNodeNames())) {
+      Tree node = matcher.getNode(name);
+      sb.append(' ').append(name).append('=').append(node == null ? "null" : node.nodeNumber(tree));
+    }
+    return sb.toString();
+  }
+
+  private static List<String> findOneAtATime(List<TregexPattern> patterns, Tree tree) {
+    List<String> matches = new ArrayList<>();
+    for (int p = 0; p < patterns.size(); p++) {
+      TregexMatcher matcher = patterns.get(p).matcher(tree);
+      while (matcher.find()) {
+        matches.add(describe(tree, p, matcher));
+      }
+    }
+    return matches;
+  }
+
+  public void testSameMatchesAsFind() {
+    List<TregexPattern> patterns = compilePatterns();
+    MultiTregexPattern multi = new MultiTregexPattern(patterns);
+    assertEquals(patterns.size(), multi.size());
+    Random random = new Random(17);
+    int numMatches = 0;
+    for (int trial = 0; trial < 300; trial++) {
+      Tree tree = randomTree(random, 4);
+      List<String> matches = new ArrayList<>();
+      multi.find(tree, (p, matcher) -> matches.add(describe(tree, p, matcher)));
+      assertEquals(tree.toString(), findOneAtATime(patterns, tree), matches);
+      numMatches += matches.size();
+    }
+    assertTrue(numMatches > 1000);
+  }
+
+  public void testParallelFindAll() {
+    List<TregexPattern> patterns = compilePatterns();
+    MultiTregexPattern multi = new MultiTregexPattern(patterns);
+    Random random = new Random(3);
+    List<Tree> trees = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      trees.add(randomTree(random, 5));
+    }
+
+    List<List<String>> expected = new ArrayList<>();
+    int[] expectedCounts = new int[patterns.size()];
+    for (Tree tree : trees) {
+      List<String> matches = findOneAtATime(patterns, tree);
+      expected.add(matches);
+      for (String match : matches) {
+        expectedCounts[Integer.parseInt(match.substring(0, match.indexOf(':')))]++;
+      }
+    }
+
+    for (int numThreads : new int[] { 1, 4 }) {
+      List<List<String>> found = new ArrayList<>();
+      for (int i = 0; i < trees.size(); i++) {
+        found.add(Collections.synchronizedList(new ArrayList<>()));
+      }
+      multi.findAll(trees, numThreads, (t, p, matcher) -> found.get(t).add(describe(trees.get(t), p, matcher)));
+      assertEquals(expected, found);
+      assertTrue(Arrays.equals(expectedCounts, multi.countMatches(trees, numThreads)));
+    }
+  }
+
+  public void testExactLabels() {
+    assertEquals(Collections.singleton("NP"), ((DescriptionPattern) TregexPattern.compile("NP < NN")).exactLabels());
+    assertEquals(new HashSet<>(Arrays.asList("NP", "VP")), ((DescriptionPattern) TregexPattern.compile("NP|VP")).exactLabels());
+    assertNull(((DescriptionPattern) TregexPattern.compile("/^NP/")).exactLabels());
+    assertNull(((DescriptionPattern) TregexPattern.compile("!NP")).exactLabels());
+    assertNull(((DescriptionPattern) TregexPattern.compile("__")).exactLabels());
+  }
+
+}
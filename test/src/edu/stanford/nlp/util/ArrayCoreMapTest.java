@@ -351,4 +351,83 @@ public class ArrayCoreMapTest extends TestCase {
     assertEquals("fozzle", boff.get(CoreAnnotations.LemmaAnnotation.class));
   }
 
+  public void testCoreLabelSlotAccessors() {
+    // labels with their keys in different orders, so the remembered positions are often wrong
+    CoreLabel first = new CoreLabel();
+    first.setWord("dog");
+    first.setTag("NN");
+    first.setNER("O");
+    CoreLabel second = new CoreLabel();
+    second.set(CoreAnnotations.PartOfSpeechAnnotation.class, "VBZ");
+    second.set(CoreAnnotations.LemmaAnnotation.class, "bark");
+    second.set(CoreAnnotations.TextAnnotation.class, "barks");
+    CoreLabel empty = new CoreLabel();
+    for (int i = 0; i < 3; i++) {
+      assertEquals("dog", first.word());
+      assertEquals("barks", second.word());
+      assertNull(empty.word());
+      assertEquals("NN", first.tag());
+      assertEquals("VBZ", second.tag());
+      assertNull(first.lemma());
+      assertEquals("bark", second.lemma());
+      assertEquals("O", first.ner());
+      assertNull(second.ner());
+      assertEquals(-1, second.index());
+    }
+
+    second.setTag("VBD");
+    assertEquals("VBD", second.get(CoreAnnotations.PartOfSpeechAnnotation.class));
+    second.setWord("barked");
+    assertEquals("barked", second.get(CoreAnnotations.TextAnnotation.class));
+    assertNull(second.lemma());  // setWord still removes the lemma
+    assertEquals(2, second.size());
+    first.setIndex(4);
+    first.setBeginPosition(10);
+    first.setEndPosition(13);
+    assertEquals(6, first.size());
+    assertEquals(4, first.index());
+    assertEquals(10, first.beginPosition());
+    assertEquals(13, first.endPosition());
+    first.remove(CoreAnnotations.TextAnnotation.class);
+    assertNull(first.word());
+    assertEquals("NN", first.tag());
+    assertEquals(Integer.valueOf(4), first.get(CoreAnnotations.IndexAnnotation.class));
+    assertEquals(ArrayCoreMap.keySlot(CoreAnnotations.TextAnnotation.class), ArrayCoreMap.keySlot(CoreAnnotations.TextAnnotation.class));
+  }
+
+  public void testCoreLabelSlotsPastTheHints() {
+    // positions past 14 aren't remembered, and are found by the usual scan
+    CoreLabel label = new CoreLabel();
+    label.setBeginPosition(0);
+    label.setEndPosition(3);
+    label.setIndex(1);
+    label.setSentIndex(0);
+    label.setBefore("");
+    label.setAfter(" ");
+    label.setOriginalText("dog");
+    label.setDocID("doc");
+    label.setIsNewline(false);
+    label.set(CoreAnnotations.TokenBeginAnnotation.class, 0);
+    label.set(CoreAnnotations.TokenEndAnnotation.class, 1);
+    label.set(CoreAnnotations.ShapeAnnotation.class, "xxx");
+    label.set(CoreAnnotations.StemAnnotation.class, "dog");
+    label.set(CoreAnnotations.ChunkAnnotation.class, "B-NP");
+    label.set(CoreAnnotations.UtteranceAnnotation.class, 0);
+    label.set(CoreAnnotations.SpeakerAnnotation.class, "a");
+    label.setWord("dog");
+    label.setTag("NN");
+    assertTrue(label.size() > 16);
+    for (int i = 0; i < 2; i++) {
+      assertEquals("dog", label.word());
+      assertEquals("NN", label.tag());
+      assertEquals(1, label.index());
+      assertEquals(3, label.endPosition());
+    }
+    label.setTag("VB");
+    assertEquals("VB", label.tag());
+    CoreLabel copy = new CoreLabel(label);
+    assertEquals("VB", copy.tag());
+    assertEquals("dog", copy.word());
+  }
+
 }
@@ -0,0 +1,88 @@
+package edu.stanford.nlp.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import junit.framework.TestCase;
+
+/**
+ * Tests that the lazy values of a LazyCoreMap are only worked out once, when first read, and
+ * that the map reads the same as an ArrayCoreMap with the values set.
+ */
+public class LazyCoreMapTest extends TestCase {
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  private LazyCoreMap lazyMap() {
+    LazyCoreMap map = new LazyCoreMap();
+    map.set(CoreAnnotations.TextAnnotation.class, "dog");
+    map.setLazily(CoreAnnotations.LemmaAnnotation.class, () -> {
+      calls.incrementAndGet();
+      return "dog";
+    });
+    // a lazy value which reads another one
+    map.setLazily(CoreAnnotations.ValueAnnotation.class, () -> {
+      calls.incrementAndGet();
+      return map.get(CoreAnnotations.LemmaAnnotation.class) + "s";
+    });
+    return map;
+  }
+
+  private static ArrayCoreMap eagerMap() {
+    ArrayCoreMap map = new ArrayCoreMap();
+    map.set(CoreAnnotations.TextAnnotation.class, "dog");
+    map.set(CoreAnnotations.LemmaAnnotation.class, "dog");
+    map.set(CoreAnnotations.ValueAnnotation.class, "dogs");
+    return map;
+  }
+
+  public void testGet() {
+    LazyCoreMap map = lazyMap();
+    assertTrue(map.containsKey(CoreAnnotations.LemmaAnnotation.class));
+    assertTrue(map.isLazy(CoreAnnotations.LemmaAnnotation.class));
+    assertFalse(map.containsKey(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertEquals(0, calls.get());
+    assertEquals("dogs", map.get(CoreAnnotations.ValueAnnotation.class));
+    assertEquals(2, calls.get());
+    assertFalse(map.isLazy(CoreAnnotations.LemmaAnnotation.class));
+    assertEquals("dog", map.get(CoreAnnotations.LemmaAnnotation.class));
+    assertEquals(2, calls.get());
+  }
+
+  public void testSetAndRemove() {
+    LazyCoreMap map = lazyMap();
+    map.set(CoreAnnotations.LemmaAnnotation.class, "cat");
+    assertEquals("cats", map.get(CoreAnnotations.ValueAnnotation.class));
+    assertEquals("cat", map.remove(CoreAnnotations.LemmaAnnotation.class));
+    assertFalse(map.containsKey(CoreAnnotations.LemmaAnnotation.class));
+    assertEquals(1, calls.get());
+  }
+
+  public void testSizeLeavesValuesLazy() {
+    LazyCoreMap map = lazyMap();
+    assertEquals(3, map.size());
+    assertEquals(0, calls.get());
+    assertTrue(map.isLazy(CoreAnnotations.LemmaAnnotation.class));
+    map.set(CoreAnnotations.LemmaAnnotation.class, "cat");
+    assertEquals(3, map.size());
+    map.setLazily(CoreAnnotations.TextAnnotation.class, () -> "cat");
+    assertEquals(3, map.size());
+    map.remove(CoreAnnotations.ValueAnnotation.class);
+    assertEquals(2, map.size());
+    assertEquals(1, calls.get());
+    assertTrue(map.isLazy(CoreAnnotations.TextAnnotation.class));
+  }
+
+  public void testSameAsArrayCoreMap() {
+    assertEquals(3, lazyMap().size());
+    assertEquals(eagerMap().keySet(), lazyMap().keySet());
+    assertEquals(eagerMap(), lazyMap());
+    assertEquals(lazyMap(), eagerMap());
+    assertEquals(lazyMap(), lazyMap());
+    assertEquals(eagerMap().hashCode(), lazyMap().hashCode());
+    assertEquals(eagerMap().toString(), lazyMap().toString());
+    assertEquals(eagerMap(), new ArrayCoreMap(lazyMap()));
+    assertEquals(eagerMap(), new ArrayCoreMap((CoreMap) lazyMap()));
+  }
+
+}
@@ -1,5 +1,11 @@
 package edu.stanford.nlp.util.concurrent;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+
 import edu.stanford.nlp.stats.ClassicCounter;
 import edu.stanford.nlp.stats.CounterTestBase;
 
@@ -14,4 +20,31 @@ public class ConcurrentHashCounterTest extends CounterTestBase {
     // TODO(spenceg): Fix concurrenthashcounter and reactivate
 //    super(new ConcurrentHashCounter<String>());
   }
+
+  @SuppressWarnings("unchecked")
+  public void testSerialization() throws Exception {
+    ConcurrentHashCounter<String> counter = new ConcurrentHashCounter<>();
+    counter.incrementCount("a", 2.0);
+    counter.incrementCount("b", -0.5);
+    counter.setCount("c", 3.0);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(counter);
+    }
+    ConcurrentHashCounter<String> read;
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      read = (ConcurrentHashCounter<String>) in.readObject();
+    }
+    assertEquals(counter.keySet(), read.keySet());
+    for (String key : counter.keySet()) {
+      assertEquals(counter.getCount(key), read.getCount(key));
+    }
+    assertEquals(4.5, read.totalCount(), 1e-12);
+    read.incrementCount("a", 1.0);
+    assertEquals(5.5, read.totalCount(), 1e-12);
+
+    // the total is still serialized as an AtomicDouble, so older serialized counters can be read
+    ObjectStreamClass form = ObjectStreamClass.lookup(ConcurrentHashCounter.class);
+    assertEquals(AtomicDouble.class, form.getField("totalCount").getType());
+  }
 }
@@ -2,8 +2,14 @@ package edu.stanford.nlp.util.concurrent;
 
 import junit.framework.TestCase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import edu.stanford.nlp.util.Index;
 
@@ -81,4 +87,94 @@ public class ConcurrentHashIndexTest extends TestCase  {
     assertEquals("Beast", foo.get(1));
   }
 
+  public void testManyThreads() throws InterruptedException {
+    ConcurrentHashIndex<String> index = new ConcurrentHashIndex<>(10);
+    int numThreads = 8;
+    int numItems = 5000;
+    int[][] ids = new int[numThreads][numItems];
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int thread = t;
+      threads[t] = new Thread(() -> {
+        // every thread adds every item, in a different order
+        for (int i = 0; i < numItems; i++) {
+          int item = (i * 7 + thread * 613) % numItems;
+          ids[thread][item] = index.addToIndex("item" + item);
+          assertEquals("item" + item, index.get(ids[thread][item]));
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(numItems, index.size());
+    for (int item = 0; item < numItems; item++) {
+      for (int t = 1; t < numThreads; t++) {
+        assertEquals(ids[0][item], ids[t][item]);
+      }
+      assertEquals("item" + item, index.get(ids[0][item]));
+    }
+  }
+
+  public void testLock() {
+    ConcurrentHashIndex<String> index = new ConcurrentHashIndex<>(2);
+    for (int i = 0; i < 3000; i++) {
+      index.add("item" + i);
+    }
+    index.lock();
+    assertTrue(index.isLocked());
+    assertEquals(ConcurrentHashIndex.UNKNOWN_ID, index.addToIndex("new"));
+    assertEquals(3000, index.size());
+    assertEquals("item2999", index.get(2999));
+    assertEquals(1234, index.indexOf("item1234"));
+    assertEquals("item0", index.objectsList().get(0));
+    try {
+      index.get(3000);
+      fail("Expected an out of bounds id to be refused");
+    } catch (ArrayIndexOutOfBoundsException e) {
+      // expected
+    }
+    index.unlock();
+    assertEquals(3000, index.addToIndex("new"));
+    assertEquals("item2999", index.get(2999));
+    assertEquals("new", index.get(3000));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ConcurrentHashIndex<String> serializeAndRead(ConcurrentHashIndex<String> index) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(index);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return (ConcurrentHashIndex<String>) in.readObject();
+    }
+  }
+
+  public void testSerialization() throws Exception {
+    ConcurrentHashIndex<String> index = new ConcurrentHashIndex<>(2);
+    for (int i = 0; i < 3000; i++) {
+      index.add("item" + i);
+    }
+    ConcurrentHashIndex<String> read = serializeAndRead(index);
+    assertFalse(read.isLocked());
+    assertEquals(index.objectsList(), read.objectsList());
+    assertEquals(1234, read.indexOf("item1234"));
+    assertEquals(3000, read.addToIndex("new"));
+    assertEquals("new", read.get(3000));
+
+    index.lock();
+    read = serializeAndRead(index);
+    assertTrue(read.isLocked());
+    assertEquals(index.objectsList(), read.objectsList());
+    assertEquals(ConcurrentHashIndex.UNKNOWN_ID, read.addToIndex("new"));
+
+    // the items are still serialized as one array, so older serialized indices can be read
+    ObjectStreamClass form = ObjectStreamClass.lookup(ConcurrentHashIndex.class);
+    assertEquals(6465313844985269109L, form.getSerialVersionUID());
+    assertEquals(AtomicReference.class, form.getField("index2Item").getType());
+    assertEquals(int.class, form.getField("indexSize").getType());
+  }
+
 }